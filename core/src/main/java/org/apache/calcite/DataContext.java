@@ -21,6 +21,9 @@
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
 import org.apache.calcite.rel.type.TimeFrameSet;
+import org.apache.calcite.runtime.MemoryTracker;
+import org.apache.calcite.runtime.RuntimeStatistics;
+import org.apache.calcite.runtime.SpillManager;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.sql.advise.SqlAdvisor;
 
@@ -32,6 +35,7 @@
 import java.io.OutputStream;
 import java.lang.reflect.Modifier;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -100,6 +104,37 @@ enum Variable {
      * When no timeout is set, the value is 0 or not present. */
     TIMEOUT("timeout", Long.class),
 
+    /** Manager that allows operators to spill rows to disk, and records how
+     * much they spilled. Present only if spilling is enabled for the current
+     * statement. */
+    SPILL_MANAGER("spillManager", SpillManager.class),
+
+    /** Tracker that counts the memory that operators use to hold rows, and
+     * enforces the statement's memory limit. Present only if memory is
+     * tracked for the current statement. */
+    MEMORY_TRACKER("memoryTracker", MemoryTracker.class),
+
+    /** Ordinal of the partition of each table that the current thread should
+     * read, between 0 and {@link #PARTITION_COUNT} - 1. Present only if the
+     * statement is reading a table in parallel.
+     *
+     * @see org.apache.calcite.schema.PartitionedScannableTable */
+    PARTITION("partition", Integer.class),
+
+    /** Number of partitions into which the rows of each table are divided.
+     * Present only if the statement is reading a table in parallel. */
+    PARTITION_COUNT("partitionCount", Integer.class),
+
+    /** Counters that record decisions that operators made at run time. */
+    RUNTIME_STATISTICS("runtimeStatistics", RuntimeStatistics.class),
+
+    /** Filters on join keys that hash joins have built from their build
+     * side, for table scans on their probe side to apply. Present only if
+     * runtime filters are enabled for the current statement.
+     *
+     * @see org.apache.calcite.runtime.RuntimeFilter */
+    RUNTIME_FILTERS("runtimeFilters", Map.class),
+
     /** Advisor that suggests completion hints for SQL statements. */
     SQL_ADVISOR("sqlAdvisor", SqlAdvisor.class),
 
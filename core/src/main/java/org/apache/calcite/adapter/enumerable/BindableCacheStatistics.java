@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics about how the {@link org.apache.calcite.runtime.Bindable}
+ * objects that execute enumerable plans were obtained: from the in-memory
+ * cache, from the on-disk class cache, or by compiling generated code.
+ *
+ * <p>The statistics are cumulative since the class was loaded, or since the
+ * last call to {@link #reset()}, and are safe to read while queries are
+ * being prepared.
+ *
+ * @see EnumerableInterpretable#cacheStatistics()
+ * @see org.apache.calcite.config.CalciteSystemProperty#BINDABLE_CACHE_MAX_SIZE
+ * @see org.apache.calcite.config.CalciteSystemProperty#BINDABLE_CACHE_DIRECTORY
+ */
+public final class BindableCacheStatistics {
+  private final LongAdder memoryHitCount = new LongAdder();
+  private final LongAdder diskHitCount = new LongAdder();
+  private final LongAdder compileCount = new LongAdder();
+  private final LongAdder compileNanos = new LongAdder();
+  private final LongAdder diskLoadNanos = new LongAdder();
+  private final LongAdder diskErrorCount = new LongAdder();
+  private final LongAdder interpretedCount = new LongAdder();
+  private final LongAdder javacCompileCount = new LongAdder();
+  private final LongAdder javacFallbackCount = new LongAdder();
+
+  BindableCacheStatistics() {
+  }
+
+  /** Returns the number of requests satisfied by the in-memory cache. */
+  public long memoryHitCount() {
+    return memoryHitCount.sum();
+  }
+
+  /** Returns the number of requests satisfied by loading previously compiled
+   * classes from the on-disk cache. */
+  public long diskHitCount() {
+    return diskHitCount.sum();
+  }
+
+  /** Returns the number of requests for which the generated code had to be
+   * compiled. */
+  public long compileCount() {
+    return compileCount.sum();
+  }
+
+  /** Returns the total number of requests. */
+  public long requestCount() {
+    return memoryHitCount() + diskHitCount() + compileCount();
+  }
+
+  /** Returns the fraction of requests that did not need to compile code,
+   * between 0 and 1; or 0 if there have been no requests. */
+  public double hitRate() {
+    final long requestCount = requestCount();
+    return requestCount == 0
+        ? 0D
+        : (double) (memoryHitCount() + diskHitCount()) / requestCount;
+  }
+
+  /** Returns the total time spent compiling generated code, in the given
+   * unit. */
+  public long compileTime(TimeUnit unit) {
+    return unit.convert(compileNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the total time spent loading classes from the on-disk cache, in
+   * the given unit. */
+  public long diskLoadTime(TimeUnit unit) {
+    return unit.convert(diskLoadNanos.sum(), TimeUnit.NANOSECONDS);
+  }
+
+  /** Returns the number of times that the on-disk cache could not be read or
+   * written, for example because a file was corrupt or the directory was not
+   * writable. Such errors are not fatal; the code is compiled instead. */
+  public long diskErrorCount() {
+    return diskErrorCount.sum();
+  }
+
+  /** Returns the number of times that a plan was run in the interpreter
+   * because the code generated for it was still being compiled.
+   *
+   * @see org.apache.calcite.config.CalciteConnectionProperty#TIERED_COMPILATION */
+  public long interpretedCount() {
+    return interpretedCount.sum();
+  }
+
+  /** Returns the number of compiles, among those counted by
+   * {@link #compileCount()}, that were done by {@code javac}.
+   *
+   * @see BindableCompiler#JAVAC */
+  public long javacCompileCount() {
+    return javacCompileCount.sum();
+  }
+
+  /** Returns the number of times that {@code javac} was requested but the
+   * code was compiled by Janino, because {@code javac} was not available or
+   * could not compile the code.
+   *
+   * @see BindableCompiler#JAVAC */
+  public long javacFallbackCount() {
+    return javacFallbackCount.sum();
+  }
+
+  /** Sets all statistics to zero. */
+  public void reset() {
+    memoryHitCount.reset();
+    diskHitCount.reset();
+    compileCount.reset();
+    compileNanos.reset();
+    diskLoadNanos.reset();
+    diskErrorCount.reset();
+    interpretedCount.reset();
+    javacCompileCount.reset();
+    javacFallbackCount.reset();
+  }
+
+  void recordMemoryHit() {
+    memoryHitCount.increment();
+  }
+
+  void recordDiskHit(long nanos) {
+    diskHitCount.increment();
+    diskLoadNanos.add(nanos);
+  }
+
+  void recordCompile(long nanos) {
+    compileCount.increment();
+    compileNanos.add(nanos);
+  }
+
+  void recordDiskError() {
+    diskErrorCount.increment();
+  }
+
+  void recordInterpreted() {
+    interpretedCount.increment();
+  }
+
+  void recordJavacCompile() {
+    javacCompileCount.increment();
+  }
+
+  void recordJavacFallback() {
+    javacFallbackCount.increment();
+  }
+
+  @Override public String toString() {
+    return String.format(Locale.ROOT,
+        "requests=%d, memoryHits=%d, diskHits=%d, compiles=%d, hitRate=%.3f, "
+            + "compileTimeMillis=%d, diskLoadTimeMillis=%d, diskErrors=%d, "
+            + "interpreted=%d, javacCompiles=%d, javacFallbacks=%d",
+        requestCount(), memoryHitCount(), diskHitCount(), compileCount(),
+        hitRate(), compileTime(TimeUnit.MILLISECONDS),
+        diskLoadTime(TimeUnit.MILLISECONDS), diskErrorCount(),
+        interpretedCount(), javacCompileCount(), javacFallbackCount());
+  }
+}
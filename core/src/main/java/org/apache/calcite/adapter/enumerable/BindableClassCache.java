@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Directory of files, each holding the bytecode of a generated class and of
+ * its inner classes, keyed by a hash of the class's source code.
+ *
+ * <p>Allows a process to load the classes that a previous process compiled
+ * from the same generated code, rather than compiling it again.
+ *
+ * <p>The key also includes the Java specification version and the
+ * implementation version of Calcite (if known), but not a fingerprint of
+ * every class that the generated code references. If you deploy a build of
+ * Calcite whose version number has not changed (for example, a snapshot),
+ * clear the directory.
+ *
+ * <p>Files are written to a temporary file and then renamed, so several
+ * processes may share a directory. A file that cannot be read is ignored.
+ */
+class BindableClassCache {
+  /** Identifies a file written by this class; the last byte is the version of
+   * the file format. */
+  private static final int MAGIC = 0xCA1CB101;
+
+  private static final String SUFFIX = ".classes";
+
+  private final Path directory;
+
+  BindableClassCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /** Returns the key under which the classes compiled from a given source
+   * by Janino are stored. */
+  static String key(String source) {
+    return key(BindableCompiler.JANINO, source);
+  }
+
+  /** Returns the key under which the classes compiled from a given source
+   * by a given compiler are stored. */
+  static String key(BindableCompiler compilerKind, String source) {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    final Package p = BindableClassCache.class.getPackage();
+    final @Nullable String implementationVersion =
+        p == null ? null : p.getImplementationVersion();
+    digest.update(
+        (System.getProperty("java.specification.version") + "\n"
+            + implementationVersion + "\n"
+            + compilerKind + "\n")
+            .getBytes(UTF_8));
+    digest.update(source.getBytes(UTF_8));
+    final StringBuilder buf = new StringBuilder();
+    for (byte b : digest.digest()) {
+      buf.append(Character.forDigit((b >> 4) & 0xF, 16))
+          .append(Character.forDigit(b & 0xF, 16));
+    }
+    return buf.toString();
+  }
+
+  private Path path(String key) {
+    return directory.resolve(key + SUFFIX);
+  }
+
+  /** Reads the bytecode of the classes stored under a given key, or returns
+   * null if there is no such entry.
+   *
+   * @throws IOException if the entry exists but cannot be read */
+  @Nullable Map<String, byte[]> load(String key) throws IOException {
+    final Path path = path(key);
+    try (InputStream in = Files.newInputStream(path);
+         DataInputStream data =
+             new DataInputStream(new BufferedInputStream(in))) {
+      if (data.readInt() != MAGIC) {
+        throw new IOException("not a class cache file: " + path);
+      }
+      final int count = data.readInt();
+      final Map<String, byte[]> classes = new LinkedHashMap<>();
+      for (int i = 0; i < count; i++) {
+        final String name = data.readUTF();
+        final byte[] bytes = new byte[data.readInt()];
+        data.readFully(bytes);
+        classes.put(name, bytes);
+      }
+      return classes;
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /** Stores the bytecode of a set of classes under a given key, replacing
+   * any existing entry. */
+  void store(String key, Map<String, byte[]> classes) throws IOException {
+    Files.createDirectories(directory);
+    final Path tempPath = Files.createTempFile(directory, key, ".tmp");
+    try {
+      try (OutputStream out = Files.newOutputStream(tempPath);
+           DataOutputStream data =
+               new DataOutputStream(new BufferedOutputStream(out))) {
+        data.writeInt(MAGIC);
+        data.writeInt(classes.size());
+        for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+          data.writeUTF(entry.getKey());
+          data.writeInt(entry.getValue().length);
+          data.write(entry.getValue());
+        }
+      }
+      try {
+        Files.move(tempPath, path(key), StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempPath, path(key), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempPath);
+    }
+  }
+
+  /** Removes the entry stored under a given key, if any. */
+  void remove(String key) throws IOException {
+    Files.deleteIfExists(path(key));
+  }
+
+  /** Class loader that defines classes from bytecode held in memory. */
+  static class ByteArrayClassLoader extends ClassLoader {
+    private final Map<String, byte[]> classes;
+
+    ByteArrayClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+      super(parent);
+      this.classes = classes;
+    }
+
+    @Override protected Class<?> findClass(String name)
+        throws ClassNotFoundException {
+      final byte[] bytes = classes.get(name);
+      if (bytes == null) {
+        throw new ClassNotFoundException(name);
+      }
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+}
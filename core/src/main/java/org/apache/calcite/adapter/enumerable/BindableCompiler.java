@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+/**
+ * Compiler that turns the Java code generated for an enumerable plan into a
+ * {@link org.apache.calcite.runtime.Bindable} class.
+ *
+ * @see org.apache.calcite.config.CalciteConnectionProperty#COMPILER
+ */
+public enum BindableCompiler {
+  /** Janino, an embedded compiler. It is fast, and is always available. */
+  JANINO,
+
+  /** The system Java compiler ({@code javac}), invoked in-process via
+   * {@link javax.tools.ToolProvider#getSystemJavaCompiler()}.
+   *
+   * <p>It is slower than Janino, but produces bytecode that the JIT compiler
+   * optimizes better, so may be preferable for long-running queries or for
+   * plans whose classes are cached. It requires a JDK (not just a JRE), and
+   * the classes that the generated code references must be on the class
+   * path. If it is not available, or fails to compile the code, Janino is
+   * used. */
+  JAVAC
+}
@@ -65,6 +65,7 @@
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
@@ -860,6 +861,96 @@ static JoinType toLinq4jJoinType(JoinRelType joinRelType) {
         "Unable to convert " + joinRelType + " to Linq4j JoinType");
   }
 
+  /** Wraps an expression whose rows an operator will hold in memory, so that
+   * memory is reserved for them, if the statement tracks memory; otherwise
+   * returns the expression unchanged.
+   *
+   * @see #releaseMemory
+   * @see org.apache.calcite.runtime.MemoryTracker#track */
+  static Expression trackMemory(EnumerableRelImplementor implementor,
+      BlockBuilder builder, RelNode rel, Expression input) {
+    if (!implementor.isMemoryTracked()) {
+      return input;
+    }
+    return builder.append("tracked",
+        Expressions.call(BuiltInMethod.MEMORY_TRACK.method,
+            implementor.getRootExpression(),
+            Expressions.constant(rel.getRelTypeName()), input));
+  }
+
+  /** Wraps the output of an operator so that, when it is closed, it releases
+   * the memory that {@link #trackMemory} reserved for the operator's
+   * input. */
+  static Expression releaseMemory(EnumerableRelImplementor implementor,
+      Expression output, Expression tracked) {
+    if (!implementor.isMemoryTracked()) {
+      return output;
+    }
+    return Expressions.call(BuiltInMethod.MEMORY_RELEASE.method, output,
+        tracked);
+  }
+
+  /** Wraps the output of an operator that builds all of its output before it
+   * returns its first row, so that memory is reserved for each row that it
+   * returns, if the statement tracks memory. */
+  static Expression trackOutputMemory(EnumerableRelImplementor implementor,
+      RelNode rel, Expression output) {
+    if (!implementor.isMemoryTracked()) {
+      return output;
+    }
+    return Expressions.call(BuiltInMethod.MEMORY_TRACK_OUTPUT.method,
+        implementor.getRootExpression(),
+        Expressions.constant(rel.getRelTypeName()), output);
+  }
+
+  /** Declares a {@link org.apache.calcite.runtime.MemoryTracker.GroupTracker}
+   * with which an aggregate reserves memory for each group as it creates it,
+   * if the statement tracks memory; otherwise returns null.
+   *
+   * @see #callGroupTracker */
+  static @Nullable Expression trackGroups(EnumerableRelImplementor implementor,
+      BlockBuilder builder, RelNode rel) {
+    if (!implementor.isMemoryTracked()) {
+      return null;
+    }
+    return builder.append("groupTracker",
+        Expressions.call(BuiltInMethod.MEMORY_TRACK_GROUPS.method,
+            implementor.getRootExpression(),
+            Expressions.constant(rel.getRelTypeName())));
+  }
+
+  /** Applies a method of a group tracker to an expression, or returns the
+   * expression unchanged if there is no group tracker.
+   *
+   * @param groupTracker Group tracker returned by {@link #trackGroups}, or
+   *                     null
+   * @param method Method of the group tracker; for example
+   *               {@link BuiltInMethod#GROUP_TRACKER_RELEASE}
+   * @param e Argument to the method */
+  static Expression callGroupTracker(@Nullable Expression groupTracker,
+      BuiltInMethod method, Expression e) {
+    return groupTracker == null
+        ? e
+        : Expressions.call(groupTracker, method.method, e);
+  }
+
+  /** Returns whether rows of a given physical type can be written to a
+   * {@link org.apache.calcite.runtime.SpillFile}. Rows of user-defined classes
+   * (such as those of a reflective schema) are not, unless they are
+   * serializable. */
+  static boolean isSpillable(PhysType physType) {
+    switch (physType.getFormat()) {
+    case ARRAY:
+    case LIST:
+      return true;
+    default:
+      final Type type = physType.getJavaRowType();
+      return !(type instanceof Class)
+          || ((Class<?>) type).isPrimitive()
+          || Serializable.class.isAssignableFrom((Class<?>) type);
+    }
+  }
+
   /** Returns a predicate expression based on a join condition. */
   static Expression generatePredicate(
       EnumerableRelImplementor implementor,
@@ -891,7 +982,8 @@ static Expression generatePredicate(
                     ImmutableMap.of(left_, leftPhysType,
                         right_, rightPhysType)),
                 implementor.allCorrelateVariables,
-                implementor.getConformance())));
+                implementor.getConformance(),
+                implementor.getLiteralHoister())));
     return Expressions.lambda(Predicate2.class, builder.toBlock(), left_, right_);
   }
 
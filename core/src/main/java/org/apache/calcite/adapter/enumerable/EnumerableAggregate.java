@@ -16,8 +16,12 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.DataContext;
 import org.apache.calcite.adapter.enumerable.impl.AggResultContextImpl;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.Ord;
 import org.apache.calcite.linq4j.function.Function0;
 import org.apache.calcite.linq4j.function.Function1;
@@ -26,21 +30,36 @@
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
 import org.apache.calcite.linq4j.tree.ParameterExpression;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.linq4j.tree.Statement;
+import org.apache.calcite.linq4j.tree.Types;
 import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.InvalidRelException;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.runtime.PrimitiveHashAggregate;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Util;
 
 import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Objects.requireNonNull;
 
@@ -99,6 +118,12 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
   }
 
   @Override public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
+    // The aggregate holds every group in memory before it returns the first.
+    // If the statement tracks memory, it reserves memory for each group as
+    // it creates the group.
+    if (canFuse()) {
+      return implementFused(implementor, pref, (EnumerableCalc) getInput());
+    }
     final JavaTypeFactory typeFactory = implementor.getTypeFactory();
     final BlockBuilder builder = new BlockBuilder();
     final EnumerableRel child = (EnumerableRel) getInput();
@@ -112,6 +137,11 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
         PhysTypeImpl.of(
             typeFactory, getRowType(), pref.preferCustom());
 
+    if (canImplementPrimitive()) {
+      return implementPrimitive(implementor, builder, childExp,
+          result.physType, physType);
+    }
+
     // final Enumerable<Employee> child = <<child adapter>>;
     // Function1<Employee, Integer> keySelector =
     //     new Function1<Employee, Integer>() {
@@ -274,10 +304,14 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
             inputPhysType.generateSelector(parameter, groupSet.asList(),
                 set.asList(), keyPhysType.getFormat()));
       }
+      final @Nullable Expression groupTracker_ =
+          EnumUtils.trackGroups(implementor, builder, this);
       final Expression keySelectors_ =
           builder.append("keySelectors",
-              Expressions.call(BuiltInMethod.ARRAYS_AS_LIST.method,
-                  list));
+              EnumUtils.callGroupTracker(groupTracker_,
+                  BuiltInMethod.GROUP_TRACKER_KEY_SELECTORS,
+                  Expressions.call(BuiltInMethod.ARRAYS_AS_LIST.method,
+                      list)));
       final Expression resultSelector =
           builder.append("resultSelector",
               Expressions.lambda(Function2.class,
@@ -286,18 +320,22 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
                   acc_));
       builder.add(
           Expressions.return_(null,
-              Expressions.call(
-                  BuiltInMethod.GROUP_BY_MULTIPLE.method,
-                  Expressions.list(childExp,
-                      keySelectors_,
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                          resultSelector))
-                      .appendIfNotNull(keyPhysType.comparer()))));
+              EnumUtils.callGroupTracker(groupTracker_,
+                  BuiltInMethod.GROUP_TRACKER_RELEASE,
+                  Expressions.call(
+                      BuiltInMethod.GROUP_BY_MULTIPLE.method,
+                      Expressions.list(childExp,
+                          keySelectors_,
+                          EnumUtils.callGroupTracker(groupTracker_,
+                              BuiltInMethod.GROUP_TRACKER_ACCUMULATOR_INITIALIZER,
+                              Expressions.call(lambdaFactory,
+                                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method)),
+                          Expressions.call(lambdaFactory,
+                              BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                          Expressions.call(lambdaFactory,
+                              BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                              resultSelector))
+                          .appendIfNotNull(keyPhysType.comparer())))));
     } else if (groupCount == 0) {
       final Expression resultSelector =
           builder.append(
@@ -326,20 +364,27 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
     } else if (aggCalls.isEmpty()
         && groupSet.equals(
             ImmutableBitSet.range(child.getRowType().getFieldCount()))) {
+      // The groups are held in a set inside "distinct", so reserve memory
+      // for each group as it is returned.
       builder.add(
           Expressions.return_(
               null,
-              Expressions.call(
-                  inputPhysType.convertTo(childExp, physType.getFormat()),
-                  BuiltInMethod.DISTINCT.method,
-                  Expressions.<Expression>list()
-                      .appendIfNotNull(physType.comparer()))));
+              EnumUtils.trackOutputMemory(implementor, this,
+                  Expressions.call(
+                      inputPhysType.convertTo(childExp, physType.getFormat()),
+                      BuiltInMethod.DISTINCT.method,
+                      Expressions.<Expression>list()
+                          .appendIfNotNull(physType.comparer())))));
     } else {
+      final @Nullable Expression groupTracker_ =
+          EnumUtils.trackGroups(implementor, builder, this);
       final Expression keySelector_ =
           builder.append("keySelector",
-              inputPhysType.generateSelector(parameter,
-                  groupSet.asList(),
-                  keyPhysType.getFormat()));
+              EnumUtils.callGroupTracker(groupTracker_,
+                  BuiltInMethod.GROUP_TRACKER_KEY_SELECTOR,
+                  inputPhysType.generateSelector(parameter,
+                      groupSet.asList(),
+                      keyPhysType.getFormat())));
       final Expression resultSelector_ =
           builder.append("resultSelector",
               Expressions.lambda(Function2.class,
@@ -348,18 +393,605 @@ public EnumerableAggregate(RelOptCluster cluster, RelTraitSet traitSet,
                   acc_));
       builder.add(
           Expressions.return_(null,
-              Expressions.call(childExp,
-                  BuiltInMethod.GROUP_BY2.method,
-                  Expressions.list(keySelector_,
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
-                      Expressions.call(lambdaFactory,
-                          BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
-                          resultSelector_))
-                      .appendIfNotNull(keyPhysType.comparer()))));
+              EnumUtils.callGroupTracker(groupTracker_,
+                  BuiltInMethod.GROUP_TRACKER_RELEASE,
+                  Expressions.call(childExp,
+                      BuiltInMethod.GROUP_BY2.method,
+                      Expressions.list(keySelector_,
+                          EnumUtils.callGroupTracker(groupTracker_,
+                              BuiltInMethod.GROUP_TRACKER_ACCUMULATOR_INITIALIZER,
+                              Expressions.call(lambdaFactory,
+                                  BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_INITIALIZER.method)),
+                          Expressions.call(lambdaFactory,
+                              BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_ADDER.method),
+                          Expressions.call(lambdaFactory,
+                              BuiltInMethod.AGG_LAMBDA_FACTORY_ACC_RESULT_SELECTOR.method,
+                              resultSelector_))
+                          .appendIfNotNull(keyPhysType.comparer())))));
     }
     return implementor.result(physType, builder.toBlock());
   }
+
+  /** Returns whether this aggregate can be implemented using
+   * {@link PrimitiveHashAggregate}: the
+   * {@link CalciteConnectionProperty#PRIMITIVE_HASH_AGGREGATE} property is
+   * set, there are one or two keys, all exact integers, and every aggregate
+   * function is {@code COUNT}, or {@code SUM}, {@code SUM0}, {@code MIN} or
+   * {@code MAX} of an exact integer. */
+  private boolean canImplementPrimitive() {
+    final boolean enabled =
+        getCluster().getPlanner().getContext()
+            .maybeUnwrap(CalciteConnectionConfig.class)
+            .map(CalciteConnectionConfig::primitiveHashAggregate)
+            .orElse(false);
+    if (!enabled
+        || getGroupType() != Group.SIMPLE
+        || getGroupCount() < 1
+        || getGroupCount() > 2) {
+      return false;
+    }
+    final List<RelDataTypeField> fields = getInput().getRowType().getFieldList();
+    for (int key : groupSet) {
+      if (!isExactInteger(fields.get(key).getType())) {
+        return false;
+      }
+    }
+    for (AggregateCall aggCall : aggCalls) {
+      if (!aggCall.collation.getFieldCollations().isEmpty()) {
+        return false;
+      }
+      switch (aggCall.getAggregation().getKind()) {
+      case COUNT:
+        break;
+      case SUM:
+      case SUM0:
+      case MIN:
+      case MAX:
+        if (aggCall.getArgList().size() != 1
+            || !isExactInteger(fields.get(aggCall.getArgList().get(0)).getType())
+            || !isExactInteger(aggCall.getType())) {
+          return false;
+        }
+        break;
+      default:
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns whether this aggregate and its input, an
+   * {@link EnumerableCalc}, can be implemented as a single loop: the
+   * {@link CalciteConnectionProperty#FUSE_OPERATORS} property is set, there
+   * are no grouping sets and no aggregate function sorts its input, and the
+   * aggregate cannot use {@link PrimitiveHashAggregate}. */
+  private boolean canFuse() {
+    final boolean enabled =
+        getCluster().getPlanner().getContext()
+            .maybeUnwrap(CalciteConnectionConfig.class)
+            .map(CalciteConnectionConfig::fuseOperators)
+            .orElse(false);
+    if (!enabled
+        || !(getInput() instanceof EnumerableCalc)
+        || getGroupType() != Group.SIMPLE) {
+      return false;
+    }
+    for (AggregateCall aggCall : aggCalls) {
+      if (!aggCall.collation.getFieldCollations().isEmpty()) {
+        return false;
+      }
+    }
+    return !canImplementPrimitive();
+  }
+
+  /** Implements this aggregate and its input {@link EnumerableCalc} as a
+   * single loop over the input of the Calc. The Calc's condition and the
+   * expressions that the aggregate uses are evaluated into local variables,
+   * and the Calc's output rows are never created. */
+  private Result implementFused(EnumerableRelImplementor implementor,
+      Prefer pref, EnumerableCalc calc) {
+    // final Enumerable<Employee> child = <<calc input>>;
+    // final Map groups = new HashMap();
+    // final Enumerator<Employee> inputEnumerator = child.enumerator();
+    // try {
+    //   while (inputEnumerator.moveNext()) {
+    //     final Employee in = (Employee) inputEnumerator.current();
+    //     if (in.salary > 1000F) {               // condition of the Calc
+    //       final int v = in.deptno;             // expressions of the Calc
+    //       final int v0 = in.empid + 1;
+    //       final Object key = v;
+    //       Object[] acc = (Object[]) groups.get(key);
+    //       if (acc == null) {
+    //         acc = (Object[]) accumulatorInitializer.apply();
+    //         groups.put(key, acc);
+    //       }
+    //       acc[0] = (Integer) acc[0] + v0;      // SUM(v0)
+    //     }
+    //   }
+    // } finally {
+    //   inputEnumerator.close();
+    // }
+    // return Enumerables.groups(groups, resultSelector);
+    //
+    // or, if key has 0 columns, a single accumulator is created before the
+    // loop, and the result is a singleton enumerable.
+    final JavaTypeFactory typeFactory = implementor.getTypeFactory();
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel source = (EnumerableRel) calc.getInput();
+    final Result result = implementor.visitChild(calc, 0, source, pref);
+    final Expression childExp = builder.append("child", result.block);
+    final PhysType sourcePhysType = result.physType;
+
+    final PhysType inputPhysType =
+        PhysTypeImpl.of(typeFactory, calc.getRowType(), JavaRowFormat.ARRAY);
+    final PhysType physType =
+        PhysTypeImpl.of(typeFactory, getRowType(), pref.preferCustom());
+    final PhysType keyPhysType =
+        inputPhysType.project(groupSet.asList(), JavaRowFormat.LIST);
+    final int groupCount = getGroupCount();
+
+    final List<AggImpState> aggs = new ArrayList<>(aggCalls.size());
+    for (Ord<AggregateCall> call : Ord.zip(aggCalls)) {
+      aggs.add(new AggImpState(call.i, call.e, false));
+    }
+
+    final List<Expression> initExpressions = new ArrayList<>();
+    final BlockBuilder initBlock = new BlockBuilder();
+    final List<Type> aggStateTypes =
+        createAggStateTypes(initExpressions, initBlock, aggs, typeFactory);
+    final PhysType accPhysType =
+        PhysTypeImpl.of(typeFactory,
+            typeFactory.createSyntheticType(aggStateTypes));
+    declareParentAccumulator(initExpressions, initBlock, accPhysType);
+    final Expression accumulatorInitializer =
+        builder.append("accumulatorInitializer",
+            Expressions.lambda(Function0.class, initBlock.toBlock()));
+    final Type accType = accPhysType.getJavaRowType();
+    final Expression newAcc =
+        Expressions.convert_(
+            Expressions.call(accumulatorInitializer,
+                BuiltInMethod.FUNCTION0_APPLY.method),
+            accType);
+
+    final ParameterExpression groups_ =
+        Expressions.parameter(Map.class, builder.newName("groups"));
+    final ParameterExpression inputEnumerator_ =
+        Expressions.parameter(
+            Types.of(Enumerator.class, sourcePhysType.getJavaRowType()),
+            builder.newName("inputEnumerator"));
+    final ParameterExpression acc_ =
+        Expressions.parameter(accType, builder.newName("acc"));
+    final @Nullable Expression groupTracker_;
+    if (groupCount == 0) {
+      builder.add(Expressions.declare(Modifier.FINAL, acc_, newAcc));
+      groupTracker_ = null;
+    } else {
+      builder.add(
+          Expressions.declare(Modifier.FINAL, groups_,
+              Expressions.new_(HashMap.class)));
+      groupTracker_ = EnumUtils.trackGroups(implementor, builder, this);
+    }
+
+    // Do not optimize; expressions must not be moved into, or out of,
+    // conditional statements.
+    final BlockBuilder loopBlock = new BlockBuilder(false, builder);
+    final Expression in_ =
+        loopBlock.append("in",
+            EnumUtils.convert(
+                Expressions.call(inputEnumerator_,
+                    BuiltInMethod.ENUMERATOR_CURRENT.method),
+                sourcePhysType.getJavaRowType()));
+    final RexToLixTranslator.InputGetter sourceGetter =
+        new RexToLixTranslator.InputGetterImpl(in_, sourcePhysType);
+    final Expression condition =
+        RexToLixTranslator.translateCondition(calc.getProgram(), typeFactory,
+            loopBlock, sourceGetter, implementor.allCorrelateVariables,
+            implementor.getConformance(), implementor.getLiteralHoister());
+
+    // Evaluate only the expressions of the Calc that the aggregate uses.
+    final BlockBuilder groupBlock = new BlockBuilder(false, loopBlock);
+    final RexToLixTranslator.InputGetter inputGetter =
+        fusedInputGetter(implementor, calc, groupBlock, sourceGetter,
+            inputPhysType);
+
+    if (groupCount > 0) {
+      final List<Expression> keys = new ArrayList<>();
+      for (Ord<Integer> key : Ord.zip(groupSet.asList())) {
+        keys.add(
+            inputGetter.field(groupBlock, key.e,
+                keyPhysType.getJavaFieldType(key.i)));
+      }
+      final Expression key_ =
+          groupBlock.append("key",
+              Expressions.box(keyPhysType.record(keys)));
+      groupBlock.add(
+          Expressions.declare(0, acc_,
+              Expressions.convert_(
+                  Expressions.call(groups_, BuiltInMethod.MAP_GET.method,
+                      key_),
+                  accType)));
+      final List<Statement> newGroup = new ArrayList<>();
+      newGroup.add(Expressions.statement(Expressions.assign(acc_, newAcc)));
+      newGroup.add(
+          Expressions.statement(
+              Expressions.call(groups_, BuiltInMethod.MAP_PUT.method,
+                  key_, acc_)));
+      if (groupTracker_ != null) {
+        newGroup.add(
+            Expressions.statement(
+                Expressions.call(groupTracker_,
+                    BuiltInMethod.GROUP_TRACKER_ADD.method, key_, acc_)));
+      }
+      groupBlock.add(
+          Expressions.ifThen(
+              Expressions.equal(acc_, Expressions.constant(null)),
+              Expressions.block(newGroup)));
+    }
+
+    for (int i = 0, stateOffset = 0; i < aggs.size(); i++) {
+      final AggImpState agg = aggs.get(i);
+      final int stateSize = requireNonNull(agg.state, "agg.state").size();
+      final List<Expression> accumulator = new ArrayList<>(stateSize);
+      for (int j = 0; j < stateSize; j++) {
+        accumulator.add(accPhysType.fieldReference(acc_, j + stateOffset));
+      }
+      agg.state = accumulator;
+      stateOffset += stateSize;
+      agg.implementor.implementAdd(requireNonNull(agg.context, "agg.context"),
+          createAddContext(groupBlock, agg, accumulator, inputPhysType,
+              inputGetter, implementor, typeFactory));
+    }
+
+    loopBlock.add(
+        condition == RexImpTable.TRUE_EXPR
+            ? groupBlock.toBlock()
+            : Expressions.ifThen(condition, groupBlock.toBlock()));
+    builder.add(
+        Expressions.declare(Modifier.FINAL, inputEnumerator_,
+            Expressions.call(childExp,
+                BuiltInMethod.ENUMERABLE_ENUMERATOR.method)));
+    builder.add(
+        Expressions.tryFinally(
+            Expressions.while_(
+                Expressions.call(inputEnumerator_,
+                    BuiltInMethod.ENUMERATOR_MOVE_NEXT.method),
+                loopBlock.toBlock()),
+            Expressions.statement(
+                Expressions.call(inputEnumerator_,
+                    BuiltInMethod.ENUMERATOR_CLOSE.method))));
+
+    if (groupCount == 0) {
+      final List<Expression> results = new ArrayList<>();
+      for (AggImpState agg : aggs) {
+        results.add(
+            agg.implementor.implementResult(
+                requireNonNull(agg.context, "agg.context"),
+                new AggResultContextImpl(builder, agg.call,
+                    requireNonNull(agg.state, "agg.state"), null, null)));
+      }
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(BuiltInMethod.SINGLETON_ENUMERABLE.method,
+                  physType.record(results))));
+      return implementor.result(physType, builder.toBlock());
+    }
+
+    final BlockBuilder resultBlock = new BlockBuilder();
+    final ParameterExpression key_ =
+        Expressions.parameter(keyPhysType.getJavaRowType(), "key");
+    final List<Expression> results = new ArrayList<>();
+    for (int j = 0; j < groupCount; j++) {
+      results.add(keyPhysType.fieldReference(key_, j));
+    }
+    for (AggImpState agg : aggs) {
+      results.add(
+          agg.implementor.implementResult(
+              requireNonNull(agg.context, "agg.context"),
+              new AggResultContextImpl(resultBlock, agg.call,
+                  requireNonNull(agg.state, "agg.state"), key_,
+                  keyPhysType)));
+    }
+    resultBlock.add(physType.record(results));
+    final Expression resultSelector_ =
+        builder.append("resultSelector",
+            Expressions.lambda(Function2.class, resultBlock.toBlock(), key_,
+                acc_));
+    builder.add(
+        Expressions.return_(null,
+            EnumUtils.callGroupTracker(groupTracker_,
+                BuiltInMethod.GROUP_TRACKER_RELEASE,
+                Expressions.call(BuiltInMethod.ENUMERABLES_GROUPS.method,
+                    groups_, resultSelector_))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Returns an {@link RexToLixTranslator.InputGetter} for the fields of a
+   * Calc's output row, for use when the Calc is fused into this aggregate.
+   * Each field that this aggregate uses is evaluated once per row into a
+   * local variable in {@code block}; other fields are not evaluated. */
+  private RexToLixTranslator.InputGetter fusedInputGetter(
+      EnumerableRelImplementor implementor, EnumerableCalc calc,
+      BlockBuilder block, RexToLixTranslator.InputGetter sourceGetter,
+      PhysType inputPhysType) {
+    final ImmutableBitSet.Builder used = groupSet.rebuild();
+    for (AggregateCall aggCall : aggCalls) {
+      used.addAll(aggCall.getArgList());
+      if (aggCall.filterArg >= 0) {
+        used.set(aggCall.filterArg);
+      }
+    }
+    final List<Integer> ordinals = used.build().asList();
+    final RexProgram program = calc.getProgram();
+    final List<RexNode> exprs =
+        Util.transform(ordinals,
+            i -> program.expandLocalRef(program.getProjectList().get(i)));
+    final RexProgram usedProgram =
+        RexProgram.create(program.getInputRowType(), exprs, null,
+            Util.transform(ordinals, calc.getRowType().getFieldNames()::get),
+            getCluster().getRexBuilder());
+    final List<Expression> values =
+        RexToLixTranslator.translateProjects(usedProgram,
+            implementor.getTypeFactory(), implementor.getConformance(), block,
+            null, inputPhysType.project(ordinals, JavaRowFormat.ARRAY),
+            DataContext.ROOT, sourceGetter, implementor.allCorrelateVariables,
+            implementor.getLiteralHoister());
+    final List<@Nullable Expression> fields =
+        new ArrayList<>(Collections.nCopies(calc.getRowType().getFieldCount(),
+            null));
+    for (Ord<Integer> ordinal : Ord.zip(ordinals)) {
+      fields.set(ordinal.e, block.append("v", values.get(ordinal.i)));
+    }
+    return (list, index, storageType) -> {
+      final Expression field =
+          requireNonNull(fields.get(index), () -> "field #" + index);
+      return storageType == null ? field : EnumUtils.convert(field, storageType);
+    };
+  }
+
+  private static boolean isExactInteger(RelDataType type) {
+    switch (type.getSqlTypeName()) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+      return true;
+    default:
+      return false;
+    }
+  }
+
+  /** Implements this aggregate using {@link PrimitiveHashAggregate}. */
+  private Result implementPrimitive(EnumerableRelImplementor implementor,
+      BlockBuilder builder, Expression childExp, PhysType inputPhysType,
+      PhysType physType) {
+    // RowAdder rowAdder = new RowAdder() {
+    //   public int add(PrimitiveHashAggregate table, Object row) {
+    //     final Employee in = (Employee) row;
+    //     final Integer v = in.deptno;
+    //     final int g = table.group(v == null ? 0L : v.longValue(), v == null);
+    //     table.add(0, g, 1L);                       // COUNT(*)
+    //     final Integer v2 = in.commission;
+    //     if (v2 != null) {
+    //       table.max(1, g, v2.longValue());         // MAX(commission)
+    //     }
+    //     return g;
+    //   }
+    // };
+    // Function1<PrimitiveHashAggregate, Object[]> resultSelector =
+    //     new Function1<PrimitiveHashAggregate, Object[]>() {
+    //       public Object[] apply(PrimitiveHashAggregate t) {
+    //         return new Object[] {
+    //             t.keyIsNull(0) ? null : (int) t.key(0),
+    //             t.value(0),
+    //             t.hasValue(1) ? (int) t.value(1) : null};
+    //       }
+    //     };
+    // return PrimitiveHashAggregate.aggregate(child, 1, 2, rowAdder,
+    //     resultSelector);
+    final int groupCount = getGroupCount();
+    final ParameterExpression table_ =
+        Expressions.parameter(PrimitiveHashAggregate.class, "table");
+    final ParameterExpression row_ =
+        Expressions.parameter(Object.class, "row");
+    // Do not optimize; variables such as "g" must not be inlined into
+    // conditional statements.
+    final BlockBuilder adderBlock = new BlockBuilder(false);
+    final Expression in_ =
+        adderBlock.append("in",
+            Expressions.convert_(row_,
+                Types.box(inputPhysType.getJavaRowType())));
+    final List<Expression> keyArgs = new ArrayList<>();
+    for (int key : groupSet) {
+      final Expression v_ =
+          adderBlock.append("v", inputPhysType.fieldReference(in_, key));
+      final @Nullable Expression isNull = isNull(v_);
+      keyArgs.add(
+          isNull == null
+              ? toLong(v_)
+              : Expressions.condition(isNull, Expressions.constant(0L),
+                  toLong(v_)));
+      keyArgs.add(Util.first(isNull, Expressions.constant(false)));
+    }
+    final Expression g_ =
+        adderBlock.append("g",
+            Expressions.call(table_,
+                groupCount == 1
+                    ? BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_GROUP.method
+                    : BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_GROUP2.method,
+                keyArgs));
+    for (Ord<AggregateCall> aggCall : Ord.zip(aggCalls)) {
+      final List<Expression> conditions = new ArrayList<>();
+      if (aggCall.e.filterArg >= 0) {
+        final Expression f_ =
+            adderBlock.append("f",
+                inputPhysType.fieldReference(in_, aggCall.e.filterArg));
+        conditions.add(
+            Primitive.is(f_.getType())
+                ? f_
+                : Expressions.call(BuiltInMethod.OBJECTS_EQUAL.method,
+                    Expressions.constant(true), f_));
+      }
+      final Method method;
+      final Expression value;
+      if (aggCall.e.getAggregation().getKind() == SqlKind.COUNT) {
+        // COUNT(x, y) counts rows where x and y are not null.
+        for (int arg : aggCall.e.getArgList()) {
+          final Expression v_ =
+              adderBlock.append("v", inputPhysType.fieldReference(in_, arg));
+          if (isNull(v_) != null) {
+            conditions.add(
+                Expressions.notEqual(v_, Expressions.constant(null)));
+          }
+        }
+        method = BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_ADD.method;
+        value = Expressions.constant(1L);
+      } else {
+        final Expression v_ =
+            adderBlock.append("v",
+                inputPhysType.fieldReference(in_,
+                    aggCall.e.getArgList().get(0)));
+        if (isNull(v_) != null) {
+          conditions.add(Expressions.notEqual(v_, Expressions.constant(null)));
+        }
+        switch (aggCall.e.getAggregation().getKind()) {
+        case MIN:
+          method = BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_MIN.method;
+          break;
+        case MAX:
+          method = BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_MAX.method;
+          break;
+        default:
+          method = BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_ADD.method;
+          break;
+        }
+        value = toLong(v_);
+      }
+      final Statement statement =
+          Expressions.statement(
+              Expressions.call(table_, method,
+                  Expressions.constant(aggCall.i), g_, value));
+      adderBlock.add(
+          conditions.isEmpty()
+              ? statement
+              : Expressions.ifThen(Expressions.foldAnd(conditions),
+                  statement));
+    }
+    adderBlock.add(Expressions.return_(null, g_));
+    final Expression rowAdder_ =
+        builder.append("rowAdder",
+            Expressions.lambda(PrimitiveHashAggregate.RowAdder.class,
+                adderBlock.toBlock(), table_, row_));
+
+    final ParameterExpression t_ =
+        Expressions.parameter(PrimitiveHashAggregate.class, "t");
+    final List<RelDataTypeField> fields = getRowType().getFieldList();
+    final List<Expression> results = new ArrayList<>();
+    for (int i = 0; i < groupCount; i++) {
+      final Expression i_ = Expressions.constant(i);
+      results.add(
+          fromLong(
+              Expressions.call(t_,
+                  BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_KEY.method, i_),
+              Expressions.call(t_,
+                  BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_KEY_IS_NULL.method,
+                  i_),
+              fields.get(i).getType(), physType.getJavaFieldType(i)));
+    }
+    for (Ord<AggregateCall> aggCall : Ord.zip(aggCalls)) {
+      final Expression i_ = Expressions.constant(aggCall.i);
+      final int field = groupCount + aggCall.i;
+      results.add(
+          fromLong(
+              Expressions.call(t_,
+                  BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_VALUE.method, i_),
+              Expressions.not(
+                  Expressions.call(t_,
+                      BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_HAS_VALUE.method,
+                      i_)),
+              fields.get(field).getType(), physType.getJavaFieldType(field)));
+    }
+    final BlockBuilder resultBlock = new BlockBuilder();
+    resultBlock.add(physType.record(results));
+    final Expression resultSelector_ =
+        builder.append("resultSelector",
+            Expressions.lambda(Function1.class, resultBlock.toBlock(), t_));
+    final @Nullable Expression groupTracker_ =
+        EnumUtils.trackGroups(implementor, builder, this);
+    builder.add(
+        Expressions.return_(null,
+            groupTracker_ == null
+                ? Expressions.call(BuiltInMethod.PRIMITIVE_HASH_AGGREGATE.method,
+                    childExp, Expressions.constant(groupCount),
+                    Expressions.constant(aggCalls.size()), rowAdder_,
+                    resultSelector_)
+                : Expressions.call(groupTracker_,
+                    BuiltInMethod.GROUP_TRACKER_RELEASE.method,
+                    Expressions.call(
+                        BuiltInMethod.PRIMITIVE_HASH_AGGREGATE_TRACKED.method,
+                        childExp, Expressions.constant(groupCount),
+                        Expressions.constant(aggCalls.size()), rowAdder_,
+                        resultSelector_, groupTracker_))));
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /** Returns an expression that is true if a value is null, or null if the
+   * value cannot be null. */
+  private static @Nullable Expression isNull(Expression v) {
+    return Primitive.is(v.getType())
+        ? null
+        : Expressions.equal(v, Expressions.constant(null));
+  }
+
+  /** Converts a non-null integer value to {@code long}. */
+  private static Expression toLong(Expression v) {
+    final Type type = v.getType();
+    if (type == long.class) {
+      return v;
+    } else if (Primitive.is(type)) {
+      return Expressions.convert_(v, long.class);
+    } else if (type instanceof Class
+        && Number.class.isAssignableFrom((Class) type)) {
+      return Expressions.unbox(v, Primitive.LONG);
+    } else {
+      return Expressions.unbox(Expressions.convert_(v, Number.class),
+          Primitive.LONG);
+    }
+  }
+
+  /** Converts a {@code long} value to the Java type of an output field,
+   * or null if the field is nullable and {@code isNull} is true.
+   *
+   * <p>Narrowing casts are not checked; they wrap around, as does the
+   * arithmetic of the default implementation of {@code SUM}. */
+  private static Expression fromLong(Expression v, Expression isNull,
+      RelDataType type, Type javaType) {
+    final Primitive primitive;
+    switch (type.getSqlTypeName()) {
+    case TINYINT:
+      primitive = Primitive.BYTE;
+      break;
+    case SMALLINT:
+      primitive = Primitive.SHORT;
+      break;
+    case INTEGER:
+      primitive = Primitive.INT;
+      break;
+    default:
+      primitive = Primitive.LONG;
+      break;
+    }
+    final Expression narrowed =
+        primitive == Primitive.LONG
+            ? v
+            : Expressions.convert_(v, primitive.getPrimitiveClass());
+    if (Primitive.is(javaType)) {
+      return narrowed;
+    }
+    final Expression boxed = Expressions.box(narrowed, primitive);
+    if (!type.isNullable()) {
+      return boxed;
+    }
+    return Expressions.condition(isNull,
+        Expressions.constant(null, primitive.getBoxClass()), boxed);
+  }
 }
@@ -255,33 +255,11 @@ protected void createAccumulatorAdders(
 
       stateOffset += stateSize;
 
-      AggAddContext addContext =
-          new AggAddContextImpl(builder2, accumulator) {
-            @Override public List<RexNode> rexArguments() {
-              List<RelDataTypeField> inputTypes =
-                  inputPhysType.getRowType().getFieldList();
-              List<RexNode> args = new ArrayList<>();
-              for (int index : agg.call.getArgList()) {
-                args.add(RexInputRef.of(index, inputTypes));
-              }
-              return args;
-            }
-
-            @Override public @Nullable RexNode rexFilterArgument() {
-              return agg.call.filterArg < 0
-                  ? null
-                  : RexInputRef.of(agg.call.filterArg,
-                      inputPhysType.getRowType());
-            }
-
-            @Override public RexToLixTranslator rowTranslator() {
-              return RexToLixTranslator.forAggregation(typeFactory,
-                  currentBlock(),
-                  new RexToLixTranslator.InputGetterImpl(inParameter,
-                      inputPhysType),
-                  implementor.getConformance());
-            }
-          };
+      final AggAddContext addContext =
+          createAddContext(builder2, agg, accumulator, inputPhysType,
+              new RexToLixTranslator.InputGetterImpl(inParameter,
+                  inputPhysType),
+              implementor, typeFactory);
 
       agg.implementor.implementAdd(requireNonNull(agg.context, "agg.context"),
           addContext);
@@ -293,6 +271,38 @@ protected void createAccumulatorAdders(
     }
   }
 
+  /** Creates a context in which an aggregate function adds the values of
+   * an input row, obtained via {@code inputGetter}, to its accumulator. */
+  protected static AggAddContext createAddContext(BlockBuilder builder,
+      AggImpState agg, List<Expression> accumulator, PhysType inputPhysType,
+      RexToLixTranslator.InputGetter inputGetter,
+      EnumerableRelImplementor implementor, JavaTypeFactory typeFactory) {
+    return new AggAddContextImpl(builder, accumulator) {
+      @Override public List<RexNode> rexArguments() {
+        List<RelDataTypeField> inputTypes =
+            inputPhysType.getRowType().getFieldList();
+        List<RexNode> args = new ArrayList<>();
+        for (int index : agg.call.getArgList()) {
+          args.add(RexInputRef.of(index, inputTypes));
+        }
+        return args;
+      }
+
+      @Override public @Nullable RexNode rexFilterArgument() {
+        return agg.call.filterArg < 0
+            ? null
+            : RexInputRef.of(agg.call.filterArg,
+                inputPhysType.getRowType());
+      }
+
+      @Override public RexToLixTranslator rowTranslator() {
+        return RexToLixTranslator.forAggregation(typeFactory,
+            currentBlock(), inputGetter, implementor.getConformance())
+            .setLiteralHoister(implementor.getLiteralHoister());
+      }
+    };
+  }
+
   protected List<Type> createAggStateTypes(
       final List<Expression> initExpressions,
       final BlockBuilder initBlock,
@@ -166,7 +166,8 @@ public static EnumerableCalc create(final RelNode input,
               typeFactory,
               builder2,
               new RexToLixTranslator.InputGetterImpl(input, result.physType),
-              implementor.allCorrelateVariables, implementor.getConformance());
+              implementor.allCorrelateVariables, implementor.getConformance(),
+              implementor.getLiteralHoister());
       builder2.add(
           Expressions.ifThen(
               condition,
@@ -198,7 +199,8 @@ public static EnumerableCalc create(final RelNode input,
             physType,
             DataContext.ROOT,
             new RexToLixTranslator.InputGetterImpl(input, result.physType),
-            implementor.allCorrelateVariables);
+            implementor.allCorrelateVariables,
+            implementor.getLiteralHoister());
     builder3.add(
         Expressions.return_(
             null, physType.record(expressions)));
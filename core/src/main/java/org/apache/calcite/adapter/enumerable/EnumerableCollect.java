@@ -95,9 +95,9 @@ public static Collect create(RelNode input, RelDataType rowType) {
     // final Enumerable<Object[]> converted = child.select(<<conversion code>>);
     // if collectionType is ARRAY or MULTISET: final List<Object[]> list = converted.toList();
     // if collectionType is MAP:               final Map<Object, Object> map = converted.toMap();
-    Expression child_ =
-        builder.append(
-            "child", result.block);
+    final Expression child_ =
+        EnumUtils.trackMemory(implementor, builder, this,
+            builder.append("child", result.block));
 
     Expression conv_ = child_;
     Expression collectionExpr;
@@ -153,8 +153,10 @@ public static Collect create(RelNode input, RelDataType rowType) {
 
     builder.add(
         Expressions.return_(null,
-            Expressions.call(
-                BuiltInMethod.SINGLETON_ENUMERABLE.method, collectionExpr)));
+            EnumUtils.releaseMemory(implementor,
+                Expressions.call(
+                    BuiltInMethod.SINGLETON_ENUMERABLE.method, collectionExpr),
+                child_)));
 
     return implementor.result(physType, builder.toBlock());
   }
@@ -16,6 +16,8 @@
  */
 package org.apache.calcite.adapter.enumerable;
 
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.interpreter.Bindables;
 import org.apache.calcite.linq4j.tree.BlockBuilder;
 import org.apache.calcite.linq4j.tree.Expression;
 import org.apache.calcite.linq4j.tree.Expressions;
@@ -27,24 +29,31 @@
 import org.apache.calcite.rel.RelCollationTraitDef;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
+import org.apache.calcite.rel.RelWriter;
 import org.apache.calcite.rel.core.CorrelationId;
 import org.apache.calcite.rel.core.Join;
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.metadata.RelMdCollation;
 import org.apache.calcite.rel.metadata.RelMdUtil;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexInputRef;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.type.SqlTypeName;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.ImmutableIntList;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
+import org.apache.calcite.util.mapping.IntPair;
 
 import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -168,6 +177,124 @@ public static EnumerableHashJoin create(
     }
   }
 
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    final int adaptiveThreshold = isSemiJoin() ? 0 : adaptiveJoinThreshold();
+    return super.explainTerms(pw)
+        .itemIf("adaptiveThreshold", adaptiveThreshold, adaptiveThreshold > 0);
+  }
+
+  /** Returns the maximum number of build rows for which this join, if it
+   * chooses its algorithm at run time, uses a nested loop; or 0 if it always
+   * uses a hash table.
+   *
+   * @see CalciteConnectionConfig#adaptiveJoinThreshold() */
+  private int adaptiveJoinThreshold() {
+    return getCluster().getPlanner().getContext()
+        .maybeUnwrap(CalciteConnectionConfig.class)
+        .map(CalciteConnectionConfig::adaptiveJoinThreshold)
+        .orElse(0);
+  }
+
+  /** Returns the maximum number of build rows for which this join builds
+   * runtime filters, or 0 if it does not build runtime filters.
+   *
+   * @see CalciteConnectionConfig#runtimeFilterMaxKeys() */
+  private int runtimeFilterMaxKeys() {
+    return getCluster().getPlanner().getContext()
+        .maybeUnwrap(CalciteConnectionConfig.class)
+        .map(CalciteConnectionConfig::runtimeFilterMaxKeys)
+        .orElse(0);
+  }
+
+  /** Asks the table scans on the probe (left) side to apply a runtime filter
+   * to each key column that they produce, and returns a list of pairs
+   * (filter identifier, build key ordinal).
+   *
+   * <p>A scan may discard a row only if the join would discard it, so the
+   * join must not generate nulls on the right, and each probe key must be a
+   * column of a scan, passing unchanged through filters and projections. */
+  private List<Pair<String, Integer>> registerRuntimeFilters(
+      EnumerableRelImplementor implementor) {
+    if (joinType != JoinRelType.INNER && joinType != JoinRelType.RIGHT
+        || runtimeFilterMaxKeys() <= 0) {
+      return ImmutableList.of();
+    }
+    final List<Pair<String, Integer>> runtimeFilters = new ArrayList<>();
+    for (IntPair pair : joinInfo.pairs()) {
+      final Pair<RelNode, Integer> scanColumn = scanColumn(left, pair.source);
+      if (scanColumn != null
+          && isRuntimeFilterable(left.getRowType(), pair.source)
+          && isRuntimeFilterable(right.getRowType(), pair.target)
+          && isRuntimeFilterable(scanColumn.left.getRowType(),
+              scanColumn.right)) {
+        runtimeFilters.add(
+            Pair.of(
+                implementor.registerRuntimeFilter(scanColumn.left,
+                    scanColumn.right),
+                pair.target));
+      }
+    }
+    return runtimeFilters;
+  }
+
+  /** Returns the table scan and column that produce a given field of a
+   * relational expression, or null if the field is computed.
+   *
+   * <p>The scan is either an {@link EnumerableTableScan}, which passes the
+   * runtime filter to the table if it is a
+   * {@link org.apache.calcite.schema.FilterableTable}, or an
+   * {@link EnumerableInterpreter} of a
+   * {@link org.apache.calcite.interpreter.Bindables.BindableTableScan},
+   * which applies the runtime filter to the rows that the table returns. */
+  private static @Nullable Pair<RelNode, Integer> scanColumn(RelNode rel,
+      int field) {
+    for (;;) {
+      if (rel instanceof EnumerableTableScan
+          || rel instanceof EnumerableInterpreter
+              && ((EnumerableInterpreter) rel).getInput()
+                  instanceof Bindables.BindableTableScan) {
+        return Pair.of(rel, field);
+      } else if (rel instanceof EnumerableFilter) {
+        rel = ((EnumerableFilter) rel).getInput();
+      } else if (rel instanceof EnumerableProject) {
+        final RexNode e = ((EnumerableProject) rel).getProjects().get(field);
+        if (!(e instanceof RexInputRef)) {
+          return null;
+        }
+        field = ((RexInputRef) e).getIndex();
+        rel = ((EnumerableProject) rel).getInput();
+      } else if (rel instanceof EnumerableCalc) {
+        final RexProgram program = ((EnumerableCalc) rel).getProgram();
+        final RexNode e =
+            program.expandLocalRef(program.getProjectList().get(field));
+        if (!(e instanceof RexInputRef)) {
+          return null;
+        }
+        field = ((RexInputRef) e).getIndex();
+        rel = ((EnumerableCalc) rel).getInput();
+      } else {
+        return null;
+      }
+    }
+  }
+
+  /** Returns whether a runtime filter can be built on a field; that is,
+   * whether its type is an exact integer or a string. */
+  private static boolean isRuntimeFilterable(RelDataType rowType, int field) {
+    final SqlTypeName typeName =
+        rowType.getFieldList().get(field).getType().getSqlTypeName();
+    switch (typeName) {
+    case TINYINT:
+    case SMALLINT:
+    case INTEGER:
+    case BIGINT:
+    case VARCHAR:
+      return true;
+    default:
+      return false;
+    }
+  }
+
   @Override public Result implement(EnumerableRelImplementor implementor, Prefer pref) {
     switch (joinType) {
     case SEMI:
@@ -210,24 +337,31 @@ private Result implementHashSemiJoin(EnumerableRelImplementor implementor, Prefe
                 rightResult.physType, nonEquiCondition);
       }
     }
+    // The semi-join builds a hash table of the right input.
+    final Expression trackedRight =
+        EnumUtils.trackMemory(implementor, builder, this, rightExpression);
+    final Expression join =
+        Expressions.call(
+            method,
+            Expressions.list(
+                leftExpression,
+                trackedRight,
+                leftResult.physType.generateAccessorWithoutNulls(joinInfo.leftKeys),
+                rightResult.physType.generateAccessorWithoutNulls(joinInfo.rightKeys),
+                Util.first(keyPhysType.comparer(),
+                    Expressions.constant(null)),
+                predicate));
     return implementor.result(
         physType,
         builder.append(
-            Expressions.call(
-                method,
-                Expressions.list(
-                    leftExpression,
-                    rightExpression,
-                    leftResult.physType.generateAccessorWithoutNulls(joinInfo.leftKeys),
-                    rightResult.physType.generateAccessorWithoutNulls(joinInfo.rightKeys),
-                    Util.first(keyPhysType.comparer(),
-                        Expressions.constant(null)),
-                    predicate)))
+            EnumUtils.releaseMemory(implementor, join, trackedRight))
             .toBlock());
   }
 
   private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pref) {
     BlockBuilder builder = new BlockBuilder();
+    final List<Pair<String, Integer>> runtimeFilters =
+        registerRuntimeFilters(implementor);
     final Result leftResult =
         implementor.visitChild(this, 0, (EnumerableRel) left, pref);
     Expression leftExpression =
@@ -238,6 +372,18 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
     Expression rightExpression =
         builder.append(
             "right", rightResult.block);
+    // Publish a filter on each key for which a table scan on the probe side
+    // is waiting.
+    for (Pair<String, Integer> runtimeFilter : runtimeFilters) {
+      rightExpression =
+          builder.append("right",
+              Expressions.call(BuiltInMethod.RUNTIME_FILTER_PUBLISH.method,
+                  implementor.getRootExpression(),
+                  Expressions.constant(runtimeFilter.left), rightExpression,
+                  rightResult.physType.generateAccessor(
+                      ImmutableList.of(runtimeFilter.right)),
+                  Expressions.constant(runtimeFilterMaxKeys())));
+    }
     final PhysType physType =
         PhysTypeImpl.of(
             implementor.getTypeFactory(), getRowType(), pref.preferArray());
@@ -256,29 +402,72 @@ private Result implementHashJoin(EnumerableRelImplementor implementor, Prefer pr
                 rightResult.physType, nonEquiCondition);
       }
     }
-    return implementor.result(
-        physType,
+    // If spilling is enabled and both inputs can be written to disk, call a
+    // join that spills when the build side exceeds the memory budget.
+    final boolean spillable =
+        implementor.isSpillEnabled()
+            && EnumUtils.isSpillable(leftResult.physType)
+            && EnumUtils.isSpillable(rightResult.physType);
+    // If adaptive joins are enabled, call a join that chooses its algorithm
+    // once it has read the build side.
+    final int adaptiveThreshold = adaptiveJoinThreshold();
+    // Otherwise, if rows are to be held off-heap and the build side can be
+    // encoded, call a join that holds the build side off-heap.
+    final boolean offHeap =
+        !spillable
+            && adaptiveThreshold <= 0
+            && implementor.isOffHeapEnabled()
+            && EnumUtils.isSpillable(rightResult.physType);
+    // If the statement tracks memory, reserve memory for the rows of the
+    // build side. A join that spills reserves memory itself.
+    final Expression buildExpression =
+        spillable
+            ? rightExpression
+            : EnumUtils.trackMemory(implementor, builder, this,
+                rightExpression);
+    final Expressions.FluentList<Expression> arguments = Expressions.list();
+    if (spillable || adaptiveThreshold > 0) {
+      arguments.append(implementor.getRootExpression())
+          .append(leftExpression);
+    } else if (offHeap) {
+      arguments.append(leftExpression);
+    }
+    arguments.append(buildExpression)
+        .append(leftResult.physType.generateAccessorWithoutNulls(joinInfo.leftKeys))
+        .append(rightResult.physType.generateAccessorWithoutNulls(joinInfo.rightKeys))
+        .append(
+            EnumUtils.joinSelector(joinType,
+                physType,
+                ImmutableList.of(
+                    leftResult.physType, rightResult.physType)))
+        .append(
+            Util.first(keyPhysType.comparer(),
+                Expressions.constant(null)))
+        .append(
+            Expressions.constant(joinType.generatesNullsOnLeft()))
+        .append(
+            Expressions.constant(
+                joinType.generatesNullsOnRight()))
+        .append(predicate);
+    final Expression join;
+    if (adaptiveThreshold > 0) {
+      arguments.append(Expressions.constant(adaptiveThreshold))
+          .append(Expressions.constant(spillable));
+      join = Expressions.call(BuiltInMethod.ADAPTIVE_HASH_JOIN.method,
+          arguments);
+    } else if (spillable) {
+      join = Expressions.call(BuiltInMethod.SPILLABLE_HASH_JOIN.method,
+          arguments);
+    } else if (offHeap) {
+      join = Expressions.call(BuiltInMethod.OFF_HEAP_HASH_JOIN.method,
+          arguments);
+    } else {
+      join = Expressions.call(leftExpression, BuiltInMethod.HASH_JOIN.method,
+          arguments);
+    }
+    return implementor.result(physType,
         builder.append(
-            Expressions.call(
-                leftExpression,
-                BuiltInMethod.HASH_JOIN.method,
-                Expressions.list(
-                    rightExpression,
-                    leftResult.physType.generateAccessorWithoutNulls(joinInfo.leftKeys),
-                    rightResult.physType.generateAccessorWithoutNulls(joinInfo.rightKeys),
-                    EnumUtils.joinSelector(joinType,
-                        physType,
-                        ImmutableList.of(
-                            leftResult.physType, rightResult.physType)))
-                    .append(
-                        Util.first(keyPhysType.comparer(),
-                            Expressions.constant(null)))
-                    .append(
-                        Expressions.constant(joinType.generatesNullsOnLeft()))
-                    .append(
-                        Expressions.constant(
-                            joinType.generatesNullsOnRight()))
-                    .append(predicate)))
+            EnumUtils.releaseMemory(implementor, join, buildExpression))
             .toBlock());
   }
 }
@@ -18,10 +18,14 @@
 
 import org.apache.calcite.DataContext;
 import org.apache.calcite.avatica.Helper;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.config.CalciteSystemProperty;
 import org.apache.calcite.interpreter.Compiler;
 import org.apache.calcite.interpreter.InterpretableConvention;
 import org.apache.calcite.interpreter.InterpretableRel;
+import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.interpreter.JoinNode;
 import org.apache.calcite.interpreter.Node;
 import org.apache.calcite.interpreter.Row;
 import org.apache.calcite.interpreter.Sink;
@@ -38,12 +42,24 @@
 import org.apache.calcite.plan.RelTraitSet;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.Sort;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.core.Union;
+import org.apache.calcite.rel.core.Values;
 import org.apache.calcite.runtime.ArrayBindable;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.runtime.Typed;
+import org.apache.calcite.util.Holder;
+import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.Util;
 
+import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 
@@ -53,11 +69,20 @@
 import org.codehaus.commons.compiler.ICompilerFactory;
 import org.codehaus.commons.compiler.ISimpleCompiler;
 
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
 
@@ -96,13 +121,59 @@ protected EnumerableInterpretable(RelOptCluster cluster, RelNode input) {
    * <p>It allows to re-use Bindable objects for queries appearing relatively
    * often. It is used to avoid the cost of compiling and generating a new class
    * and also instantiating the object.
+   *
+   * <p>The key is the compiler and the class body; classes compiled by
+   * {@code javac} are not shared with connections that use Janino, and vice
+   * versa.
    */
-  private static final Cache<String, Bindable> BINDABLE_CACHE =
+  private static final Cache<Pair<BindableCompiler, String>, Bindable>
+      BINDABLE_CACHE =
       CacheBuilder.newBuilder()
           .concurrencyLevel(CalciteSystemProperty.BINDABLE_CACHE_CONCURRENCY_LEVEL.value())
           .maximumSize(CalciteSystemProperty.BINDABLE_CACHE_MAX_SIZE.value())
           .build();
 
+  /**
+   * The on-disk cache of compiled classes, or null if
+   * {@link CalciteSystemProperty#BINDABLE_CACHE_DIRECTORY} is not set.
+   *
+   * <p>It is consulted when the in-memory cache misses (or is disabled), and
+   * allows a process to re-use the classes compiled by a previous process.
+   */
+  private static final @Nullable BindableClassCache CLASS_CACHE =
+      createClassCache(CalciteSystemProperty.BINDABLE_CACHE_DIRECTORY.value());
+
+  private static final BindableCacheStatistics STATISTICS =
+      new BindableCacheStatistics();
+
+  private static final AtomicInteger COMPILE_THREAD_ID = new AtomicInteger();
+
+  /** Pool of threads that compile generated code in the background, if
+   * {@link CalciteConnectionProperty#TIERED_COMPILATION} is enabled. Threads
+   * are created on demand, and are daemons, so that they do not prevent the
+   * JVM from exiting. */
+  private static final ExecutorService COMPILE_EXECUTOR =
+      Executors.newCachedThreadPool(r -> {
+        final Thread thread =
+            new Thread(r, "calcite-compile-" + COMPILE_THREAD_ID.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private static @Nullable BindableClassCache createClassCache(
+      @Nullable String directory) {
+    return directory == null || directory.isEmpty()
+        ? null
+        : new BindableClassCache(Paths.get(directory));
+  }
+
+  /** Returns statistics about how Bindable objects were obtained: how many
+   * came from the in-memory and on-disk caches, how many were compiled, and
+   * how long compilation took. */
+  public static BindableCacheStatistics cacheStatistics() {
+    return STATISTICS;
+  }
+
   public static Bindable toBindable(Map<String, Object> parameters,
       CalcitePrepare.@Nullable SparkHandler spark, EnumerableRel rel,
       EnumerableRel.Prefer prefer) {
@@ -119,11 +190,22 @@ public static Bindable toBindable(Map<String, Object> parameters,
 
     Hook.JAVA_PLAN.run(s);
 
+    final @Nullable CalciteConnectionConfig config =
+        rel.getCluster().getPlanner().getContext()
+            .unwrap(CalciteConnectionConfig.class);
+    final BindableCompiler compilerKind =
+        config == null ? BindableCompiler.JANINO : config.compiler();
+    final int fieldCount = rel.getRowType().getFieldCount();
     try {
       if (spark != null && spark.enabled()) {
         return spark.compile(expr, s);
+      } else if (config != null
+          && config.tieredCompilation()
+          && fieldCount != 1
+          && isInterpretable(rel)) {
+        return getTieredBindable(expr, s, rel, compilerKind);
       } else {
-        return getBindable(expr, s, rel.getRowType().getFieldCount());
+        return getBindable(expr, s, fieldCount, compilerKind);
       }
     } catch (Exception e) {
       throw Helper.INSTANCE.wrap("Error while compiling generated Java code:\n"
@@ -131,9 +213,68 @@ public static Bindable toBindable(Map<String, Object> parameters,
     }
   }
 
+  /** Returns whether the interpreter can run a plan at a speed comparable
+   * to that of compiled code; that is, whether the plan consists only of
+   * scans, values, filters, projections, sorts, unions, aggregates and
+   * joins that the interpreter can hash. Other joins are excluded because
+   * the interpreter evaluates them using a nested loop. */
+  static boolean isInterpretable(RelNode rel) {
+    if (!(rel instanceof TableScan
+        || rel instanceof Values
+        || rel instanceof Filter
+        || rel instanceof Project
+        || rel instanceof Calc
+        || rel instanceof Sort
+        || rel instanceof Union
+        || rel instanceof Join && JoinNode.isHashable((Join) rel)
+        || rel instanceof Aggregate
+            && ((Aggregate) rel).getGroupType() == Aggregate.Group.SIMPLE)) {
+      return false;
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (!isInterpretable(input)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns a Bindable that runs a plan in the interpreter until the
+   * generated code, which is compiled in the background, is ready. If the
+   * code has already been compiled and is in the in-memory cache, returns
+   * the compiled Bindable. */
+  private static Bindable getTieredBindable(ClassDeclaration expr,
+      String classBody, RelNode rel, BindableCompiler compilerKind) {
+    final Bindable cached =
+        BINDABLE_CACHE.getIfPresent(Pair.of(compilerKind, classBody));
+    if (cached != null) {
+      STATISTICS.recordMemoryHit();
+      return cached;
+    }
+    final int fieldCount = rel.getRowType().getFieldCount();
+    final Holder<Executor> executor = Holder.of(COMPILE_EXECUTOR);
+    Hook.COMPILE_EXECUTOR.run(executor);
+    final CompletableFuture<Bindable> future =
+        CompletableFuture.supplyAsync(() -> {
+          try {
+            return getBindable(expr, classBody, fieldCount, compilerKind);
+          } catch (Exception e) {
+            throw new CompletionException(e);
+          }
+        }, executor.get());
+    return new TieredBindable(rel, future, classBody);
+  }
+
   static Bindable getBindable(ClassDeclaration expr, String classBody, int fieldCount)
       throws CompileException, ExecutionException, ClassNotFoundException,
       InvocationTargetException, InstantiationException, IllegalAccessException {
+    return getBindable(expr, classBody, fieldCount, BindableCompiler.JANINO);
+  }
+
+  static Bindable getBindable(ClassDeclaration expr, String classBody,
+      int fieldCount, BindableCompiler compilerKind)
+      throws CompileException, ExecutionException, ClassNotFoundException,
+      InvocationTargetException, InstantiationException, IllegalAccessException {
     ICompilerFactory compilerFactory;
     ClassLoader classLoader =
         requireNonNull(EnumerableInterpretable.class.getClassLoader(),
@@ -164,17 +305,127 @@ static Bindable getBindable(ClassDeclaration expr, String classBody, int fieldCo
       StaticFieldDetector detector = new StaticFieldDetector();
       expr.accept(detector);
       if (!detector.containsStaticField) {
-        return BINDABLE_CACHE.get(classBody, () ->  compileToBindable(expr.name, s, compiler));
+        final boolean[] miss = {false};
+        final Bindable bindable =
+            BINDABLE_CACHE.get(Pair.of(compilerKind, classBody), () -> {
+              miss[0] = true;
+              return compileToBindable(expr.name, s, compilerKind, compiler,
+                  CLASS_CACHE, STATISTICS);
+            });
+        if (!miss[0]) {
+          STATISTICS.recordMemoryHit();
+        }
+        return bindable;
       }
     }
-    return compileToBindable(expr.name, s, compiler);
+    return compileToBindable(expr.name, s, compilerKind, compiler, CLASS_CACHE,
+        STATISTICS);
   }
 
-  private static Bindable<?> compileToBindable(String className, String s, ISimpleCompiler compiler)
+  static Bindable<?> compileToBindable(String className, String s,
+      ISimpleCompiler compiler, @Nullable BindableClassCache classCache,
+      BindableCacheStatistics statistics)
       throws CompileException, ClassNotFoundException, InvocationTargetException,
       InstantiationException, IllegalAccessException {
+    return compileToBindable(className, s, BindableCompiler.JANINO, compiler,
+        classCache, statistics);
+  }
+
+  /** Creates a Bindable from the source code of a class, loading the class
+   * from the on-disk cache if possible, otherwise compiling it (and storing
+   * the result in the on-disk cache).
+   *
+   * <p>If {@code compilerKind} is {@link BindableCompiler#JAVAC} but
+   * {@code javac} is not available or cannot compile the code, compiles
+   * using {@code compiler}, a Janino compiler, and records a fallback in
+   * {@code statistics}. The on-disk key includes the compiler that produced
+   * the classes, so such classes are stored as if Janino had been
+   * requested. */
+  static Bindable<?> compileToBindable(String className, String s,
+      BindableCompiler compilerKind, ISimpleCompiler compiler,
+      @Nullable BindableClassCache classCache,
+      BindableCacheStatistics statistics)
+      throws CompileException, ClassNotFoundException, InvocationTargetException,
+      InstantiationException, IllegalAccessException {
+    @Nullable String key = null;
+    if (classCache != null) {
+      key = BindableClassCache.key(compilerKind, s);
+      final long start = System.nanoTime();
+      try {
+        final Map<String, byte[]> classes = classCache.load(key);
+        if (classes != null) {
+          final ClassLoader classLoader =
+              new BindableClassCache.ByteArrayClassLoader(classes,
+                  requireNonNull(
+                      EnumerableInterpretable.class.getClassLoader(),
+                      "classLoader"));
+          final Bindable<?> bindable = newBindable(classLoader, className);
+          statistics.recordDiskHit(System.nanoTime() - start);
+          return bindable;
+        }
+      } catch (IOException | ReflectiveOperationException | LinkageError e) {
+        // The entry is corrupt, or was compiled against different versions
+        // of the classes it references. Discard it and compile again.
+        statistics.recordDiskError();
+        try {
+          classCache.remove(key);
+        } catch (IOException ignore) {
+          // ignore; the entry will be overwritten
+        }
+      }
+    }
+    final ClassLoader parentClassLoader =
+        requireNonNull(EnumerableInterpretable.class.getClassLoader(),
+            "classLoader");
+    if (compilerKind == BindableCompiler.JAVAC) {
+      @Nullable Map<String, byte[]> classes = null;
+      final long start = System.nanoTime();
+      if (JavacClassCompiler.isAvailable()) {
+        try {
+          classes = JavacClassCompiler.compile(className, s, parentClassLoader);
+        } catch (CompileException e) {
+          // The generated code is written for Janino, which accepts some
+          // constructs that javac rejects. Compile using Janino instead.
+        }
+      }
+      if (classes != null) {
+        statistics.recordCompile(System.nanoTime() - start);
+        statistics.recordJavacCompile();
+        storeClasses(classCache, key, classes, statistics);
+        return newBindable(
+            new BindableClassCache.ByteArrayClassLoader(classes,
+                parentClassLoader),
+            className);
+      }
+      statistics.recordJavacFallback();
+      if (key != null) {
+        key = BindableClassCache.key(BindableCompiler.JANINO, s);
+      }
+    }
+    final long start = System.nanoTime();
     compiler.cook(s);
-    return (Bindable<?>) compiler.getClassLoader()
+    statistics.recordCompile(System.nanoTime() - start);
+    storeClasses(classCache, key, compiler.getBytecodes(), statistics);
+    return newBindable(compiler.getClassLoader(), className);
+  }
+
+  private static void storeClasses(@Nullable BindableClassCache classCache,
+      @Nullable String key, Map<String, byte[]> classes,
+      BindableCacheStatistics statistics) {
+    if (classCache != null && key != null) {
+      try {
+        classCache.store(key, classes);
+      } catch (IOException e) {
+        statistics.recordDiskError();
+      }
+    }
+  }
+
+  private static Bindable<?> newBindable(ClassLoader classLoader,
+      String className)
+      throws ClassNotFoundException, InvocationTargetException,
+      InstantiationException, IllegalAccessException {
+    return (Bindable<?>) classLoader
         .loadClass(className)
         .getDeclaredConstructors()[0]
         .newInstance();
@@ -231,6 +482,59 @@ static ArrayBindable box(final Bindable bindable) {
     };
   }
 
+  /** Bindable that runs a plan in the {@link Interpreter} until the code
+   * generated for the plan has been compiled, and then runs the compiled
+   * code.
+   *
+   * <p>An execution that has started in the interpreter finishes in the
+   * interpreter; executions that start later use the compiled code. If the
+   * interpreter cannot run the plan, waits for the compiled code.
+   *
+   * <p>The plan is prepared for the interpreter (optimized, and the code for
+   * its expressions compiled) once, on the first execution, and the
+   * preparation is re-used by later executions. */
+  private static class TieredBindable implements ArrayBindable {
+    private final Supplier<Interpreter.Prepared> prepared;
+    private final CompletableFuture<Bindable> compiled;
+    private final String classBody;
+    private volatile boolean interpretable = true;
+
+    TieredBindable(RelNode rel, CompletableFuture<Bindable> compiled,
+        String classBody) {
+      this.prepared = Suppliers.memoize(() -> Interpreter.prepare(rel));
+      this.compiled = compiled;
+      this.classBody = classBody;
+    }
+
+    @Override public Class<Object[]> getElementType() {
+      return Object[].class;
+    }
+
+    @Override public Enumerable<@Nullable Object[]> bind(
+        DataContext dataContext) {
+      if (interpretable && !compiled.isDone()) {
+        try {
+          final Interpreter interpreter =
+              new Interpreter(dataContext, prepared.get());
+          STATISTICS.recordInterpreted();
+          return interpreter;
+        } catch (RuntimeException | AssertionError e) {
+          // The interpreter has no implementation for part of the plan.
+          interpretable = false;
+        }
+      }
+      final Bindable bindable;
+      try {
+        bindable = compiled.join();
+      } catch (CompletionException e) {
+        throw Helper.INSTANCE.wrap(
+            "Error while compiling generated Java code:\n" + classBody,
+            e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
+      }
+      return box(bindable).bind(dataContext);
+    }
+  }
+
   /** Interpreter node that reads from an {@link Enumerable}.
    *
    * <p>From the interpreter's perspective, it is a leaf node. */
@@ -29,6 +29,9 @@
 import org.apache.calcite.rel.SingleRel;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -98,10 +101,20 @@ public static EnumerableInterpreter create(RelNode input, double factor) {
         builder.append("interpreter",
             Expressions.new_(Interpreter.class, implementor.getRootExpression(),
                 implementor.stash(getInput(), RelNode.class)));
-    final Expression sliced_ =
+    Expression sliced_ =
         getRowType().getFieldCount() == 1
             ? Expressions.call(BuiltInMethod.SLICE0.method, interpreter_)
             : interpreter_;
+    // The interpreter scans the table when it is created, so it cannot pass
+    // runtime filters to the table; apply them to the rows it returns.
+    for (Pair<String, Integer> runtimeFilter
+        : implementor.takeRuntimeFilters(this)) {
+      sliced_ =
+          Expressions.call(BuiltInMethod.RUNTIME_FILTER_FILTER.method,
+              implementor.getRootExpression(),
+              Expressions.constant(runtimeFilter.left), sliced_,
+              physType.generateAccessor(ImmutableList.of(runtimeFilter.right)));
+    }
     builder.add(sliced_);
     return implementor.result(physType, builder.toBlock());
   }
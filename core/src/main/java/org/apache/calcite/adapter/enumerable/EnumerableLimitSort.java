@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -110,13 +111,27 @@ public static EnumerableLimitSort create(
       offsetVal = getExpression(this.offset);
     }
 
+    final Expression keySelector = builder.append("keySelector", pair.left);
+    final @Nullable Expression comparator =
+        builder.appendIfNotNull("comparator", pair.right);
+    if (implementor.isSpillEnabled() && EnumUtils.isSpillable(inputPhysType)) {
+      // Sort that writes sorted runs to disk if the rows that might be
+      // returned exceed the memory budget of the statement
+      builder.add(
+          Expressions.return_(null,
+              Expressions.call(
+                  BuiltInMethod.EXTERNAL_ORDER_BY_WITH_FETCH_AND_OFFSET.method,
+                  implementor.getRootExpression(), childExp, keySelector,
+                  Util.first(comparator, Expressions.constant(null)),
+                  builder.append("offset", offsetVal),
+                  builder.append("fetch", fetchVal))));
+      return implementor.result(physType, builder.toBlock());
+    }
     builder.add(
         Expressions.return_(null,
             Expressions.call(BuiltInMethod.ORDER_BY_WITH_FETCH_AND_OFFSET.method,
-                Expressions.list(childExp,
-                        builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right))
+                Expressions.list(childExp, keySelector)
+                    .appendIfNotNull(comparator)
                     .appendIfNotNull(
                         builder.appendIfNotNull("offset",
                             Expressions.constant(offsetVal)))
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelDistribution;
+import org.apache.calcite.rel.RelDistributions;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.Exchange;
+import org.apache.calcite.util.BuiltInMethod;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Implementation of {@link Exchange} in
+ * {@link EnumerableConvention enumerable calling convention} that runs
+ * several copies of its input in parallel, each on its own thread and reading
+ * its own partition of the tables, and gathers their rows into a single
+ * stream.
+ *
+ * <p>It is not created by the planner, but added to a physical plan by
+ * {@link EnumerableParallelizer}. The tables read by the input must implement
+ * {@link org.apache.calcite.schema.PartitionedScannableTable} or
+ * {@link org.apache.calcite.schema.PartitionedFilterableTable}.
+ *
+ * @see org.apache.calcite.runtime.LocalExchange
+ */
+public class EnumerableLocalExchange extends Exchange implements EnumerableRel {
+  /** Number of copies of the input that run in parallel. */
+  public final int parallelism;
+
+  /** Creates an EnumerableLocalExchange.
+   *
+   * <p>Use {@link #create} unless you know what you're doing. */
+  public EnumerableLocalExchange(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RelDistribution distribution, int parallelism) {
+    super(cluster, traitSet, input, distribution);
+    Preconditions.checkArgument(parallelism > 1,
+        "parallelism must be greater than 1: %s", parallelism);
+    this.parallelism = parallelism;
+    assert getConvention() instanceof EnumerableConvention;
+  }
+
+  /** Creates an EnumerableLocalExchange. */
+  public static EnumerableLocalExchange create(RelNode input,
+      int parallelism) {
+    final RelOptCluster cluster = input.getCluster();
+    final RelTraitSet traitSet =
+        cluster.traitSetOf(EnumerableConvention.INSTANCE)
+            .replace(RelDistributions.SINGLETON);
+    return new EnumerableLocalExchange(cluster, traitSet, input,
+        RelDistributions.SINGLETON, parallelism);
+  }
+
+  @Override public EnumerableLocalExchange copy(RelTraitSet traitSet,
+      RelNode newInput, RelDistribution newDistribution) {
+    return new EnumerableLocalExchange(getCluster(), traitSet, newInput,
+        newDistribution, parallelism);
+  }
+
+  @Override public RelWriter explainTerms(RelWriter pw) {
+    return super.explainTerms(pw)
+        .item("parallelism", parallelism);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final EnumerableRel child = (EnumerableRel) getInput();
+    final Result result = implementor.visitChild(this, 0, child, pref);
+
+    // The input becomes the body of a function that is called once per
+    // partition. Its "root" parameter hides the statement's data context, so
+    // each copy of the input sees the data context of its partition.
+    //
+    // LocalExchange.gather(root,
+    //     new Function1<DataContext, Enumerable>() {
+    //       public Enumerable apply(DataContext root) {
+    //         <<child adapter>>
+    //       }
+    //     },
+    //     4)
+    final Expression fragment =
+        Expressions.lambda(Function1.class, result.block, DataContext.ROOT);
+    builder.add(
+        Expressions.return_(null,
+            Expressions.call(BuiltInMethod.LOCAL_EXCHANGE_GATHER.method,
+                implementor.getRootExpression(), fragment,
+                Expressions.constant(parallelism))));
+    return implementor.result(result.physType, builder.toBlock());
+  }
+}
@@ -194,7 +194,8 @@ private Expression implementEmitter(EnumerableRelImplementor implementor,
             (JavaTypeFactory) getCluster().getTypeFactory(),
             builder2,
             new PassedRowsInputGetter(row_, rows_, inputPhysType),
-            implementor.getConformance());
+            implementor.getConformance())
+            .setLiteralHoister(implementor.getLiteralHoister());
 
     final ParameterExpression result_ =
         Expressions.parameter(physType.getJavaRowType());
@@ -316,7 +317,8 @@ private Expression implementMatcher(EnumerableRelImplementor implementor,
               builder2,
               inputGetter1,
               implementor.allCorrelateVariables,
-              implementor.getConformance());
+              implementor.getConformance(),
+              implementor.getLiteralHoister());
 
       builder2.add(Expressions.return_(null, condition));
       final Expression predicate_ =
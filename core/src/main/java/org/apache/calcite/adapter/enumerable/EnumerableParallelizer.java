@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.interpreter.Bindables.BindableTableScan;
+import org.apache.calcite.linq4j.Ord;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelCollation;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.PartitionedFilterableTable;
+import org.apache.calcite.schema.PartitionedScannableTable;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.calcite.schema.QueryableTable;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.sql.SqlAggFunction;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites a physical plan in {@link EnumerableConvention} so that parts of
+ * it run on several threads.
+ *
+ * <p>A pipeline of {@link EnumerableCalc}, {@link EnumerableFilter} and
+ * {@link EnumerableProject} over a scan of a
+ * {@link PartitionedScannableTable} or {@link PartitionedFilterableTable}
+ * (either an {@link EnumerableTableScan} or an {@link EnumerableInterpreter}
+ * over a {@link BindableTableScan}) is placed below an {@link EnumerableLocalExchange}, which runs one copy of
+ * the pipeline per partition.
+ *
+ * <p>An {@link EnumerableAggregate} over such a pipeline is split into two
+ * phases: a partial aggregate that runs in each copy of the pipeline, and a
+ * final aggregate above the exchange that combines the partial results. This
+ * is possible if the aggregate has a single grouping set and every aggregate
+ * function is one of {@code COUNT}, {@code SUM}, {@code SUM0}, {@code MIN}
+ * and {@code MAX}, without {@code DISTINCT}.
+ *
+ * <p>A pipeline whose output is sorted is not parallelized, because the
+ * exchange does not preserve the order of rows, and its consumer may rely
+ * on it.
+ *
+ * <p>The rewrite happens after planning, so the cost model does not take
+ * parallelism into account.
+ */
+public class EnumerableParallelizer {
+  private final int parallelism;
+
+  private EnumerableParallelizer(int parallelism) {
+    this.parallelism = parallelism;
+  }
+
+  /** Rewrites a plan so that its partitioned table scans, and the filters,
+   * projections and aggregates over them, run on {@code parallelism}
+   * threads. Returns the plan unchanged if {@code parallelism} is 1 or if
+   * no part of the plan can run in parallel. */
+  public static RelNode parallelize(RelNode rel, int parallelism) {
+    if (parallelism <= 1 || !(rel instanceof EnumerableRel)) {
+      return rel;
+    }
+    return new EnumerableParallelizer(parallelism).visit(rel);
+  }
+
+  private RelNode visit(RelNode rel) {
+    if (isPipeline(rel) && !isSorted(rel)) {
+      return EnumerableLocalExchange.create(rel, parallelism);
+    }
+    if (rel instanceof EnumerableAggregate) {
+      final EnumerableAggregate aggregate = (EnumerableAggregate) rel;
+      final RelNode input = aggregate.getInput();
+      if (isPipeline(input)) {
+        final List<AggregateCall> finalAggCalls = finalAggCalls(aggregate);
+        if (finalAggCalls != null) {
+          final RelNode exchange =
+              EnumerableLocalExchange.create(aggregate, parallelism);
+          return aggregate.copy(aggregate.getTraitSet(), exchange,
+              ImmutableBitSet.range(aggregate.getGroupCount()), null,
+              finalAggCalls);
+        }
+      }
+    }
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : rel.getInputs()) {
+      if (!(input instanceof EnumerableRel)) {
+        // Leave inputs in other conventions alone.
+        return rel;
+      }
+      final RelNode newInput = visit(input);
+      changed |= newInput != input;
+      inputs.add(newInput);
+    }
+    return changed ? rel.copy(rel.getTraitSet(), inputs) : rel;
+  }
+
+  /** Returns whether a relational expression consists of filters and
+   * projections over a scan of a partitioned table, and therefore returns
+   * the same rows whether it is executed once or once per partition. */
+  private static boolean isPipeline(RelNode rel) {
+    if (rel instanceof EnumerableTableScan) {
+      return isPartitioned(((EnumerableTableScan) rel).getTable());
+    }
+    if (rel instanceof EnumerableInterpreter
+        && rel.getInput(0) instanceof BindableTableScan) {
+      return isPartitionedForInterpreter(
+          ((BindableTableScan) rel.getInput(0)).getTable());
+    }
+    if (rel instanceof EnumerableCalc
+        || rel instanceof EnumerableFilter
+        || rel instanceof EnumerableProject) {
+      return RelOptUtil.getVariablesUsed(rel).isEmpty()
+          && isPipeline(rel.getInput(0));
+    }
+    return false;
+  }
+
+  /** Returns whether {@link EnumerableTableScan} reads a table by calling
+   * {@link PartitionedScannableTable#scan(org.apache.calcite.DataContext)}
+   * or {@link PartitionedFilterableTable#scan(org.apache.calcite.DataContext, List)},
+   * and will therefore read just one partition of the table if the data
+   * context identifies a partition. */
+  private static boolean isPartitioned(RelOptTable table) {
+    if (table.unwrap(QueryableTable.class) != null) {
+      return false;
+    }
+    if (table.unwrap(ScannableTable.class) != null) {
+      return table.unwrap(PartitionedScannableTable.class) != null;
+    }
+    return table.unwrap(FilterableTable.class) != null
+        && table.unwrap(PartitionedFilterableTable.class) != null;
+  }
+
+  /** Returns whether the interpreter reads a table by calling
+   * {@link PartitionedFilterableTable#scan(org.apache.calcite.DataContext, List)}
+   * or {@link PartitionedScannableTable#scan(org.apache.calcite.DataContext)}.
+   * The interpreter tries the table SPIs in a different order than
+   * {@link EnumerableTableScan}. */
+  private static boolean isPartitionedForInterpreter(RelOptTable table) {
+    if (table.unwrap(ProjectableFilterableTable.class) != null) {
+      return false;
+    }
+    if (table.unwrap(FilterableTable.class) != null) {
+      return table.unwrap(PartitionedFilterableTable.class) != null;
+    }
+    return table.unwrap(PartitionedScannableTable.class) != null;
+  }
+
+  private static boolean isSorted(RelNode rel) {
+    final RelCollation collation = rel.getTraitSet().getCollation();
+    return collation != null && !collation.getFieldCollations().isEmpty();
+  }
+
+  /** Returns the aggregate calls of the final phase of a two-phase
+   * aggregate, or null if the aggregate cannot be split. The input of the
+   * final phase is the output of the original aggregate, computed for each
+   * partition. */
+  private static @Nullable List<AggregateCall> finalAggCalls(Aggregate aggregate) {
+    if (aggregate.getGroupType() != Aggregate.Group.SIMPLE) {
+      return null;
+    }
+    final int groupCount = aggregate.getGroupCount();
+    final ImmutableList.Builder<AggregateCall> calls = ImmutableList.builder();
+    for (Ord<AggregateCall> call : Ord.zip(aggregate.getAggCallList())) {
+      if (call.e.isDistinct()
+          || call.e.distinctKeys != null
+          || !call.e.collation.getFieldCollations().isEmpty()) {
+        return null;
+      }
+      final SqlAggFunction aggFunction;
+      switch (call.e.getAggregation().getKind()) {
+      case COUNT:
+        aggFunction = SqlStdOperatorTable.SUM0;
+        break;
+      case SUM:
+      case SUM0:
+      case MIN:
+      case MAX:
+        aggFunction = call.e.getAggregation();
+        break;
+      default:
+        return null;
+      }
+      calls.add(
+          AggregateCall.create(call.e.getParserPosition(), aggFunction,
+              false, call.e.isApproximate(), call.e.ignoreNulls(),
+              ImmutableList.of(), ImmutableList.of(groupCount + call.i), -1,
+              null, call.e.collation, groupCount, aggregate,
+              call.e.getType(), call.e.getName()));
+    }
+    return calls.build();
+  }
+}
@@ -42,12 +42,14 @@
 import org.apache.calcite.linq4j.tree.UnaryExpression;
 import org.apache.calcite.linq4j.tree.VisitorImpl;
 import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.sql.validate.SqlConformance;
 import org.apache.calcite.sql.validate.SqlConformanceEnum;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Equivalence;
@@ -55,6 +57,8 @@
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 
+import org.checkerframework.checker.nullness.qual.Nullable;
+
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
@@ -65,6 +69,7 @@
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -85,6 +90,14 @@ public class EnumerableRelImplementor extends JavaRelImplementor {
   // A combination of IdentityHashMap + LinkedHashMap to ensure deterministic order
   private final Map<Equivalence.Wrapper<Object>, ParameterExpression> stashedParameters =
       new LinkedHashMap<>();
+  /** Variables that hold hoisted literals; see {@link #hoistLiteral}. */
+  private final List<ParameterExpression> literalParameters = new ArrayList<>();
+
+  /** Runtime filters that table scans should apply, keyed by scan; each is
+   * a pair (filter identifier, column ordinal). */
+  private final Map<RelNode, List<Pair<String, Integer>>> runtimeFilters =
+      new IdentityHashMap<>();
+  private int runtimeFilterCount;
 
   @SuppressWarnings("methodref.receiver.bound.invalid")
   protected final Function1<String, RexToLixTranslator.InputGetter> allCorrelateVariables =
@@ -163,9 +176,23 @@ public ClassDeclaration implementRoot(EnumerableRel rootRel,
                         Expressions.constant(input.name)),
                     input.type)));
 
+    // final int v2literal = ((Integer) root.get("v2literal")).intValue()
+    final Collection<Statement> literals =
+        Collections2.transform(literalParameters,
+            input -> {
+              final Expression value =
+                  Expressions.convert_(
+                      Expressions.call(DataContext.ROOT,
+                          BuiltInMethod.DATA_CONTEXT_GET.method,
+                          Expressions.constant(input.name)),
+                      Primitive.box(input.type));
+              return Expressions.declare(Modifier.FINAL, input,
+                  Primitive.is(input.type) ? Expressions.unbox(value) : value);
+            });
+
     final BlockStatement block =
         Expressions.block(
-            Iterables.concat(stashed, result.block.statements));
+            Iterables.concat(stashed, literals, result.block.statements));
     memberDeclarations.add(
         Expressions.methodDecl(Modifier.PUBLIC, Enumerable.class,
             BuiltInMethod.BINDABLE_BIND.method.getName(),
@@ -456,6 +483,29 @@ public <T> Expression stash(T input, Class<? super T> clazz) {
     return x;
   }
 
+  /** Stores the value of a literal in the parameters of the statement, and
+   * returns a variable that holds it at run time.
+   *
+   * <p>The generated code depends only on the number and types of the
+   * literals, not their values, so statements that differ only in the values
+   * of their literals generate the same class, which is compiled once and
+   * cached.
+   *
+   * @param value Value of the literal, not null
+   * @param type  Java type of the literal, a primitive type or
+   *              {@link String} or {@link java.math.BigDecimal}
+   */
+  private ParameterExpression hoistLiteral(Object value, Type type) {
+    final Primitive primitive = Primitive.of(type);
+    final Object value2 =
+        primitive == null ? value : primitive.number((Number) value);
+    final String name = "v" + map.size() + "literal";
+    final ParameterExpression x = Expressions.variable(type, name);
+    map.put(name, value2);
+    literalParameters.add(x);
+    return x;
+  }
+
   public void registerCorrelVariable(final String name,
       final ParameterExpression pe,
       final BlockBuilder corrBlock, final PhysType physType) {
@@ -488,6 +538,73 @@ public EnumerableRel.Result result(PhysType physType, BlockStatement block) {
         SqlConformanceEnum.DEFAULT);
   }
 
+  /** Returns whether literals in generated code are hoisted into the
+   * parameters of the statement; that is, whether the statement is being
+   * prepared with
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#HOIST_LITERALS}.
+   *
+   * @see #getLiteralHoister() */
+  public boolean isLiteralHoistingEnabled() {
+    return Boolean.TRUE.equals(map.get("_hoistLiterals"));
+  }
+
+  /** Returns the hoister that a {@link RexToLixTranslator} should use to
+   * hoist literals into the parameters of the statement, or null if literals
+   * are not hoisted.
+   *
+   * @see #isLiteralHoistingEnabled() */
+  public RexToLixTranslator.@Nullable LiteralHoister getLiteralHoister() {
+    return isLiteralHoistingEnabled() ? this::hoistLiteral : null;
+  }
+
+  /** Returns whether operators that buffer rows may spill them to disk; that
+   * is, whether the statement is being prepared with a positive
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#SPILL_MEMORY_BUDGET}.
+   * If so, they should generate calls to methods that can spill, such as
+   * {@link org.apache.calcite.runtime.SpillableHashJoin#hashJoin}. */
+  public boolean isSpillEnabled() {
+    return Boolean.TRUE.equals(map.get("_spill"));
+  }
+
+  /** Returns whether operators that build hash tables should hold their rows
+   * off-heap; that is, whether the statement is being prepared with
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#OFF_HEAP_ROWS}.
+   * If so, they should generate calls to methods that use an
+   * {@link org.apache.calcite.runtime.OffHeapHashTable}. */
+  public boolean isOffHeapEnabled() {
+    return Boolean.TRUE.equals(map.get("_offHeap"));
+  }
+
+  /** Returns whether operators that buffer rows should reserve memory for
+   * them; that is, whether the statement is being prepared with a positive
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#QUERY_MEMORY_LIMIT}.
+   * If so, they should wrap the rows they buffer in a call to
+   * {@link org.apache.calcite.runtime.MemoryTracker#track}. */
+  public boolean isMemoryTracked() {
+    return Boolean.TRUE.equals(map.get("_trackMemory"));
+  }
+
+  /** Asks a table scan to apply a runtime filter to a column, and returns
+   * the identifier of the filter. A hash join calls this method before it
+   * implements its probe input, and generates code to publish the filter
+   * from its build input; the scan calls {@link #takeRuntimeFilters} when it
+   * is implemented.
+   *
+   * @see org.apache.calcite.runtime.RuntimeFilter */
+  public String registerRuntimeFilter(RelNode scan, int ordinal) {
+    final String id = "rf" + runtimeFilterCount++;
+    runtimeFilters.computeIfAbsent(scan, k -> new ArrayList<>())
+        .add(Pair.of(id, ordinal));
+    return id;
+  }
+
+  /** Returns and removes the runtime filters that a table scan should apply;
+   * each is a pair (filter identifier, column ordinal). */
+  public List<Pair<String, Integer>> takeRuntimeFilters(RelNode scan) {
+    final List<Pair<String, Integer>> list = runtimeFilters.remove(scan);
+    return list == null ? ImmutableList.of() : list;
+  }
+
   /** Visitor that finds types in an {@link Expression} tree. */
   @VisibleForTesting
   static class TypeFinder extends VisitorImpl<Void> {
@@ -107,15 +107,32 @@ public class EnumerableRepeatUnion extends RepeatUnion implements EnumerableRel
         PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
             pref.prefer(seedResult.format));
 
-    Expression unionExp =
-        Expressions.call(BuiltInMethod.REPEAT_UNION.method,
-            seedExp,
-            iterativeExp,
-            Expressions.constant(iterationLimit, int.class),
-            Expressions.constant(all, boolean.class),
-            Util.first(physType.comparer(),
-                Expressions.call(BuiltInMethod.IDENTITY_COMPARER.method)),
-            cleanUpFunctionExp);
+    final Expression comparerExp =
+        Util.first(physType.comparer(),
+            Expressions.call(BuiltInMethod.IDENTITY_COMPARER.method));
+    final Expression unionExp;
+    if (!all
+        && implementor.isOffHeapEnabled()
+        && EnumUtils.isSpillable(physType)) {
+      // Hold the rows seen so far, to eliminate duplicates, off-heap
+      unionExp =
+          Expressions.call(BuiltInMethod.REPEAT_UNION_WITH_FILTER.method,
+              seedExp,
+              iterativeExp,
+              Expressions.constant(iterationLimit, int.class),
+              Expressions.call(BuiltInMethod.OFF_HEAP_DISTINCT_FILTER.method,
+                  comparerExp),
+              cleanUpFunctionExp);
+    } else {
+      unionExp =
+          Expressions.call(BuiltInMethod.REPEAT_UNION.method,
+              seedExp,
+              iterativeExp,
+              Expressions.constant(iterationLimit, int.class),
+              Expressions.constant(all, boolean.class),
+              comparerExp,
+              cleanUpFunctionExp);
+    }
     builder.add(unionExp);
 
     return implementor.result(physType, builder.toBlock());
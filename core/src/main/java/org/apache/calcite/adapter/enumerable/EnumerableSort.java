@@ -27,6 +27,7 @@
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.util.BuiltInMethod;
 import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -85,14 +86,29 @@ public static EnumerableSort create(RelNode child, RelCollation collation,
         inputPhysType.generateCollationKey(
             collation.getFieldCollations());
 
-    builder.add(
-        Expressions.return_(null,
-            Expressions.call(childExp,
-                BuiltInMethod.ORDER_BY.method,
-                Expressions.list(
-                    builder.append("keySelector", pair.left))
-                    .appendIfNotNull(
-                        builder.appendIfNotNull("comparator", pair.right)))));
+    final Expression keySelector = builder.append("keySelector", pair.left);
+    final @Nullable Expression comparator =
+        builder.appendIfNotNull("comparator", pair.right);
+    final Expression sort;
+    if (implementor.isSpillEnabled() && EnumUtils.isSpillable(inputPhysType)) {
+      // Sort that writes sorted runs to disk if the input exceeds the
+      // memory budget of the statement
+      sort =
+          Expressions.call(BuiltInMethod.EXTERNAL_ORDER_BY.method,
+              implementor.getRootExpression(), childExp, keySelector,
+              Util.first(comparator, Expressions.constant(null)));
+    } else {
+      final Expression trackedExp =
+          EnumUtils.trackMemory(implementor, builder, this, childExp);
+      sort =
+          EnumUtils.releaseMemory(implementor,
+              Expressions.call(trackedExp,
+                  BuiltInMethod.ORDER_BY.method,
+                  Expressions.list(keySelector)
+                      .appendIfNotNull(comparator)),
+              trackedExp);
+    }
+    builder.add(Expressions.return_(null, sort));
     return implementor.result(physType, builder.toBlock());
   }
 }
@@ -126,7 +126,8 @@ private Result defaultTableFunctionImplement(
         RexToLixTranslator.forAggregation(
             (JavaTypeFactory) getCluster().getTypeFactory(),
             bb, null, implementor.getConformance());
-    t = t.setCorrelates(implementor.allCorrelateVariables);
+    t = t.setCorrelates(implementor.allCorrelateVariables)
+        .setLiteralHoister(implementor.getLiteralHoister());
     bb.add(Expressions.return_(null, t.translate(getCall())));
     return implementor.result(physType, bb.toBlock());
   }
@@ -155,7 +156,8 @@ private Result tvfImplementorBasedImplement(
             (RexCall) getCall(),
             inputEnumerable,
             result.physType,
-            physType));
+            physType,
+            implementor.getLiteralHoister()));
 
     return implementor.result(physType, builder.toBlock());
   }
@@ -48,6 +48,7 @@
 import org.apache.calcite.schema.TransientTable;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.util.BuiltInMethod;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.collect.ImmutableList;
 
@@ -197,16 +198,63 @@ public static JavaRowFormat deduceFormat(RelOptTable table) {
         : JavaRowFormat.CUSTOM;
   }
 
-  private Expression getExpression(PhysType physType) {
-    final Expression expression = table.getExpression(Queryable.class);
+  private Expression getExpression(PhysType physType,
+      Expression rootExpression, List<Pair<String, Integer>> runtimeFilters) {
+    Expression expression = table.getExpression(Queryable.class);
     if (expression == null) {
       throw new IllegalStateException(
           "Unable to implement " + RelOptUtil.toString(this, SqlExplainLevel.ALL_ATTRIBUTES)
           + ": " + table + ".getExpression(Queryable.class) returned null");
     }
+    final Expression pushed = pushRuntimeFilters(expression, runtimeFilters);
+    if (pushed != null) {
+      expression = pushed;
+      runtimeFilters = ImmutableList.of();
+    }
     final Expression expression2 = toEnumerable(expression);
     assert Types.isAssignableFrom(Enumerable.class, expression2.getType());
-    return toRows(physType, expression2);
+    Expression expression3 = toRows(physType, expression2);
+    for (Pair<String, Integer> runtimeFilter : runtimeFilters) {
+      expression3 =
+          Expressions.call(BuiltInMethod.RUNTIME_FILTER_FILTER.method,
+              rootExpression, Expressions.constant(runtimeFilter.left),
+              expression3,
+              physType.generateAccessor(ImmutableList.of(runtimeFilter.right)));
+    }
+    return expression3;
+  }
+
+  /** If an expression scans a {@link FilterableTable} or
+   * {@link ProjectableFilterableTable}, returns an expression that scans the
+   * table passing it a condition for each runtime filter; otherwise returns
+   * null. */
+  private static @Nullable Expression pushRuntimeFilters(Expression expression,
+      List<Pair<String, Integer>> runtimeFilters) {
+    if (runtimeFilters.isEmpty()
+        || !(expression instanceof MethodCallExpression)) {
+      return null;
+    }
+    final MethodCallExpression call = (MethodCallExpression) expression;
+    final BuiltInMethod method;
+    if (call.method.equals(BuiltInMethod.SCHEMAS_ENUMERABLE_FILTERABLE.method)) {
+      method = BuiltInMethod.RUNTIME_FILTER_SCAN_FILTERABLE;
+    } else if (call.method.equals(
+        BuiltInMethod.SCHEMAS_ENUMERABLE_PROJECTABLE_FILTERABLE.method)) {
+      method = BuiltInMethod.RUNTIME_FILTER_SCAN_PROJECTABLE_FILTERABLE;
+    } else {
+      return null;
+    }
+    final List<Expression> ids = new ArrayList<>();
+    final List<Expression> ordinals = new ArrayList<>();
+    for (Pair<String, Integer> runtimeFilter : runtimeFilters) {
+      ids.add(Expressions.constant(runtimeFilter.left));
+      ordinals.add(Expressions.constant(runtimeFilter.right));
+    }
+    // Arguments of Schemas.enumerable are (table, root).
+    return Expressions.call(method.method, call.expressions.get(1),
+        call.expressions.get(0),
+        Expressions.newArrayInit(String.class, ids),
+        Expressions.newArrayInit(int.class, ordinals));
   }
 
   private static Expression toEnumerable(Expression expression) {
@@ -338,7 +386,9 @@ private static boolean hasCollectionField(RelDataType rowType) {
             implementor.getTypeFactory(),
             getRowType(),
             format());
-    final Expression expression = getExpression(physType);
+    final Expression expression =
+        getExpression(physType, implementor.getRootExpression(),
+            implementor.takeRuntimeFilters(this));
     return implementor.result(physType, Blocks.toBlock(expression));
   }
 }
@@ -90,11 +90,15 @@ public static EnumerableTableSpool create(RelNode input, Type readType,
         Expressions.call(tableExp,
             BuiltInMethod.MODIFIABLE_TABLE_GET_MODIFIABLE_COLLECTION.method);
 
-    Expression inputExp = builder.append("input", inputResult.block);
+    Expression inputExp =
+        EnumUtils.trackMemory(implementor, builder, this,
+            builder.append("input", inputResult.block));
 
     Expression spoolExp =
-        Expressions.call(BuiltInMethod.LAZY_COLLECTION_SPOOL.method,
-            collectionExp, inputExp);
+        EnumUtils.releaseMemory(implementor,
+            Expressions.call(BuiltInMethod.LAZY_COLLECTION_SPOOL.method,
+                collectionExp, inputExp),
+            inputExp);
     builder.add(spoolExp);
 
     PhysType physType =
@@ -182,7 +182,10 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
     final EnumerableRel child = (EnumerableRel) getInput();
     final BlockBuilder builder = new BlockBuilder();
     final Result result = implementor.visitChild(this, 0, child, pref);
-    Expression source_ = builder.append("source", result.block);
+    final Expression input_ =
+        EnumUtils.trackMemory(implementor, builder, this,
+            builder.append("source", result.block));
+    Expression source_ = input_;
 
     final List<Expression> translatedConstants =
         new ArrayList<>(constants.size());
@@ -290,7 +293,8 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
 
       final RexToLixTranslator translator =
           RexToLixTranslator.forAggregation(typeFactory, builder4,
-              inputGetter, implementor.getConformance());
+              inputGetter, implementor.getConformance())
+              .setLiteralHoister(implementor.getLiteralHoister());
 
       final List<Expression> outputRow = new ArrayList<>();
       int fieldCountWithAggResults =
@@ -446,7 +450,8 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
       final Function<BlockBuilder, WinAggFrameResultContext>
           resultContextBuilder =
           getBlockBuilderWinAggFrameResultContextFunction(typeFactory,
-              implementor.getConformance(), result, translatedConstants,
+              implementor.getConformance(), implementor.getLiteralHoister(),
+              result, translatedConstants,
               comparator_, rows_, i_, startX, endX, minX, maxX,
               hasRows, frameRowCount, partitionRowCount,
               jDecl, inputPhysTypeFinal);
@@ -525,7 +530,8 @@ private static void sampleOfTheGeneratedWindowedAggregate() {
 
     //   return Linq4j.asEnumerable(list);
     builder.add(
-        Expressions.return_(null, source_));
+        Expressions.return_(null,
+            EnumUtils.releaseMemory(implementor, source_, input_)));
     return implementor.result(inputPhysType, builder.toBlock());
   }
 
@@ -555,6 +561,7 @@ private static Statement buildExcludeGuard(Group group, Expression comparator,
   private static Function<BlockBuilder, WinAggFrameResultContext>
       getBlockBuilderWinAggFrameResultContextFunction(
       final JavaTypeFactory typeFactory, final SqlConformance conformance,
+      final RexToLixTranslator.@Nullable LiteralHoister literalHoister,
       final Result result, final List<Expression> translatedConstants,
       final Expression comparator_,
       final Expression rows_, final ParameterExpression i_,
@@ -574,7 +581,8 @@ private static Statement buildExcludeGuard(Group group, Expression comparator,
                 translatedConstants);
 
         return RexToLixTranslator.forAggregation(typeFactory,
-            block, inputGetter, conformance);
+            block, inputGetter, conformance)
+            .setLiteralHoister(literalHoister);
       }
 
       @Override public Expression computeIndex(Expression offset,
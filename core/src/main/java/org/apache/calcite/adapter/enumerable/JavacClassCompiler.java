@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.codehaus.commons.compiler.CompileException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compiles the source code of a generated class, in memory, using the system
+ * Java compiler.
+ *
+ * @see BindableCompiler#JAVAC
+ */
+class JavacClassCompiler {
+  private JavacClassCompiler() {
+  }
+
+  /** Returns whether the system Java compiler is available. */
+  static boolean isAvailable() {
+    return ToolProvider.getSystemJavaCompiler() != null;
+  }
+
+  /** Compiles the source code of a class in the default package, and
+   * returns the bytecode of the class and of its inner classes, keyed by
+   * class name.
+   *
+   * <p>The class path is that of the JVM, plus the URLs of any
+   * {@link URLClassLoader} between {@code classLoader} and the system
+   * class loader. */
+  static Map<String, byte[]> compile(String className, String source,
+      ClassLoader classLoader) throws CompileException {
+    final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    if (javac == null) {
+      throw new CompileException("system Java compiler is not available",
+          null);
+    }
+    final DiagnosticCollector<JavaFileObject> diagnostics =
+        new DiagnosticCollector<>();
+    final Map<String, ByteArrayOutputStream> outputs = new LinkedHashMap<>();
+    final JavaFileObject sourceFile =
+        new SimpleJavaFileObject(uri("string:///" + className
+            + JavaFileObject.Kind.SOURCE.extension),
+            JavaFileObject.Kind.SOURCE) {
+          @Override public CharSequence getCharContent(
+              boolean ignoreEncodingErrors) {
+            return source;
+          }
+        };
+    final boolean success;
+    try (StandardJavaFileManager standardFileManager =
+             javac.getStandardFileManager(diagnostics, Locale.ROOT, UTF_8);
+         JavaFileManager fileManager =
+             new ForwardingJavaFileManager<JavaFileManager>(
+                 standardFileManager) {
+               @Override public JavaFileObject getJavaFileForOutput(
+                   Location location, String name, JavaFileObject.Kind kind,
+                   @Nullable FileObject sibling) {
+                 return new SimpleJavaFileObject(
+                     uri("mem:///" + name.replace('.', '/') + kind.extension),
+                     kind) {
+                   @Override public OutputStream openOutputStream() {
+                     final ByteArrayOutputStream out =
+                         new ByteArrayOutputStream();
+                     outputs.put(name, out);
+                     return out;
+                   }
+                 };
+               }
+             }) {
+      success =
+          javac.getTask(null, fileManager, diagnostics,
+              ImmutableList.of("-classpath", classPath(classLoader),
+                  "-proc:none", "-nowarn"),
+              null, ImmutableList.of(sourceFile)).call();
+    } catch (IOException e) {
+      throw new CompileException("error while compiling: " + e, null);
+    }
+    if (!success) {
+      final StringBuilder b = new StringBuilder();
+      for (Diagnostic<? extends JavaFileObject> diagnostic
+          : diagnostics.getDiagnostics()) {
+        if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+          b.append("Line ").append(diagnostic.getLineNumber()).append(": ")
+              .append(diagnostic.getMessage(Locale.ROOT)).append('\n');
+        }
+      }
+      throw new CompileException(b.toString(), null);
+    }
+    final Map<String, byte[]> classes = new LinkedHashMap<>();
+    outputs.forEach((name, out) -> classes.put(name, out.toByteArray()));
+    return classes;
+  }
+
+  private static URI uri(String s) {
+    try {
+      return new URI(s);
+    } catch (URISyntaxException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private static String classPath(ClassLoader classLoader) {
+    final Set<String> paths = new LinkedHashSet<>();
+    for (@Nullable ClassLoader c = classLoader;
+         c != null && c != ClassLoader.getSystemClassLoader();
+         c = c.getParent()) {
+      if (c instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) c).getURLs()) {
+          if ("file".equals(url.getProtocol())) {
+            try {
+              paths.add(Paths.get(url.toURI()).toString());
+            } catch (URISyntaxException | IllegalArgumentException e) {
+              // ignore URLs that are not file-system paths
+            }
+          }
+        }
+      }
+    }
+    final String classPath = System.getProperty("java.class.path");
+    if (classPath != null && !classPath.isEmpty()) {
+      paths.add(classPath);
+    }
+    return String.join(File.pathSeparator, paths);
+  }
+}
@@ -124,6 +124,7 @@ public class RexToLixTranslator implements RexVisitor<RexToLixTranslator.Result>
   private final BlockBuilder list;
   private final @Nullable BlockBuilder staticList;
   private final @Nullable Function1<String, InputGetter> correlates;
+  private final @Nullable LiteralHoister literalHoister;
 
   /**
    * Map from RexLiteral's variable name to its literal, which is often a
@@ -161,7 +162,8 @@ private RexToLixTranslator(@Nullable RexProgram program,
       @Nullable BlockBuilder staticList,
       RexBuilder builder,
       SqlConformance conformance,
-      @Nullable Function1<String, InputGetter> correlates) {
+      @Nullable Function1<String, InputGetter> correlates,
+      @Nullable LiteralHoister literalHoister) {
     this.program = program; // may be null
     this.typeFactory = requireNonNull(typeFactory, "typeFactory");
     this.conformance = requireNonNull(conformance, "conformance");
@@ -171,6 +173,7 @@ private RexToLixTranslator(@Nullable RexProgram program,
     this.staticList = staticList;
     this.builder = requireNonNull(builder, "builder");
     this.correlates = correlates; // may be null
+    this.literalHoister = literalHoister; // may be null
   }
 
   /**
@@ -187,13 +190,16 @@ private RexToLixTranslator(@Nullable RexProgram program,
    * @param inputGetter Generates expressions for inputs
    * @param correlates Provider of references to the values of correlated
    *                   variables
+   * @param literalHoister Hoists literals into the parameters of the
+   *                       statement, or null
    * @return Sequence of expressions, optional condition
    */
   public static List<Expression> translateProjects(RexProgram program,
       JavaTypeFactory typeFactory, SqlConformance conformance,
       BlockBuilder list, @Nullable BlockBuilder staticList,
       @Nullable PhysType outputPhysType, Expression root,
-      InputGetter inputGetter, @Nullable Function1<String, InputGetter> correlates) {
+      InputGetter inputGetter, @Nullable Function1<String, InputGetter> correlates,
+      @Nullable LiteralHoister literalHoister) {
     List<Type> storageTypes = null;
     if (outputPhysType != null) {
       final RelDataType rowType = outputPhysType.getRowType();
@@ -203,11 +209,23 @@ public static List<Expression> translateProjects(RexProgram program,
       }
     }
     return new RexToLixTranslator(program, typeFactory, root, inputGetter,
-        list, staticList, new RexBuilder(typeFactory), conformance,  null)
+        list, staticList, new RexBuilder(typeFactory), conformance,  null,
+        literalHoister)
         .setCorrelates(correlates)
         .translateList(program.getProjectList(), storageTypes);
   }
 
+  /** Translates a {@link RexProgram} to a sequence of expressions and
+   * declarations, without hoisting literals. */
+  public static List<Expression> translateProjects(RexProgram program,
+      JavaTypeFactory typeFactory, SqlConformance conformance,
+      BlockBuilder list, @Nullable BlockBuilder staticList,
+      @Nullable PhysType outputPhysType, Expression root,
+      InputGetter inputGetter, @Nullable Function1<String, InputGetter> correlates) {
+    return translateProjects(program, typeFactory, conformance, list,
+        staticList, outputPhysType, root, inputGetter, correlates, null);
+  }
+
   @Deprecated // to be removed before 2.0
   public static List<Expression> translateProjects(RexProgram program,
       JavaTypeFactory typeFactory, SqlConformance conformance,
@@ -221,9 +239,19 @@ public static Expression translateTableFunction(JavaTypeFactory typeFactory,
       SqlConformance conformance, BlockBuilder list,
       Expression root, RexCall rexCall, Expression inputEnumerable,
       PhysType inputPhysType, PhysType outputPhysType) {
+    return translateTableFunction(typeFactory, conformance, list, root,
+        rexCall, inputEnumerable, inputPhysType, outputPhysType, null);
+  }
+
+  public static Expression translateTableFunction(JavaTypeFactory typeFactory,
+      SqlConformance conformance, BlockBuilder list,
+      Expression root, RexCall rexCall, Expression inputEnumerable,
+      PhysType inputPhysType, PhysType outputPhysType,
+      @Nullable LiteralHoister literalHoister) {
     final RexToLixTranslator translator =
         new RexToLixTranslator(null, typeFactory, root, null, list,
-            null, new RexBuilder(typeFactory), conformance, null);
+            null, new RexBuilder(typeFactory), conformance, null,
+            literalHoister);
     return translator
         .translateTableFunction(rexCall, inputEnumerable, inputPhysType,
             outputPhysType);
@@ -235,7 +263,7 @@ public static RexToLixTranslator forAggregation(JavaTypeFactory typeFactory,
       SqlConformance conformance) {
     final ParameterExpression root = DataContext.ROOT;
     return new RexToLixTranslator(null, typeFactory, root, inputGetter, list,
-        null, new RexBuilder(typeFactory), conformance, null);
+        null, new RexBuilder(typeFactory), conformance, null, null);
   }
 
   Expression translate(RexNode expr) {
@@ -1156,6 +1184,14 @@ private Expression translateTableFunction(RexCall rexCall, Expression inputEnume
   public static Expression translateCondition(RexProgram program,
       JavaTypeFactory typeFactory, BlockBuilder list, InputGetter inputGetter,
       Function1<String, InputGetter> correlates, SqlConformance conformance) {
+    return translateCondition(program, typeFactory, list, inputGetter,
+        correlates, conformance, null);
+  }
+
+  public static Expression translateCondition(RexProgram program,
+      JavaTypeFactory typeFactory, BlockBuilder list, InputGetter inputGetter,
+      Function1<String, InputGetter> correlates, SqlConformance conformance,
+      @Nullable LiteralHoister literalHoister) {
     RexLocalRef condition = program.getCondition();
     if (condition == null) {
       return RexImpTable.TRUE_EXPR;
@@ -1163,7 +1199,8 @@ public static Expression translateCondition(RexProgram program,
     final ParameterExpression root = DataContext.ROOT;
     RexToLixTranslator translator =
         new RexToLixTranslator(program, typeFactory, root, inputGetter, list,
-            null, new RexBuilder(typeFactory), conformance, null);
+            null, new RexBuilder(typeFactory), conformance, null,
+            literalHoister);
     translator = translator.setCorrelates(correlates);
     return translator.translate(
         condition,
@@ -1184,7 +1221,7 @@ public RexToLixTranslator setBlock(BlockBuilder list) {
       return this;
     }
     return new RexToLixTranslator(program, typeFactory, root, inputGetter, list,
-        staticList, builder, conformance, correlates);
+        staticList, builder, conformance, correlates, literalHoister);
   }
 
   public RexToLixTranslator setCorrelates(
@@ -1193,7 +1230,18 @@ public RexToLixTranslator setCorrelates(
       return this;
     }
     return new RexToLixTranslator(program, typeFactory, root, inputGetter, list,
-        staticList, builder, conformance, correlates);
+        staticList, builder, conformance, correlates, literalHoister);
+  }
+
+  /** Returns a translator that hoists literals using a given hoister, or
+   * does not hoist literals if {@code literalHoister} is null. */
+  public RexToLixTranslator setLiteralHoister(
+      @Nullable LiteralHoister literalHoister) {
+    if (this.literalHoister == literalHoister) {
+      return this;
+    }
+    return new RexToLixTranslator(program, typeFactory, root, inputGetter, list,
+        staticList, builder, conformance, correlates, literalHoister);
   }
 
   public Expression getRoot() {
@@ -1327,9 +1375,12 @@ private static Expression scaleValue(
         ? getTypedNullLiteral(literal)
         : translateLiteral(literal, literal.getType(),
             typeFactory, RexImpTable.NullAs.NOT_POSSIBLE);
+    final ParameterExpression hoisted = hoistLiteral(literal, valueExpression);
     final ParameterExpression valueVariable;
     final Expression literalValue =
-        appendConstant("literal_value", valueExpression);
+        hoisted != null
+            ? hoisted
+            : appendConstant("literal_value", valueExpression);
     if (literalValue instanceof ParameterExpression) {
       valueVariable = (ParameterExpression) literalValue;
     } else {
@@ -1348,14 +1399,47 @@ private static Expression scaleValue(
         Expressions.parameter(Boolean.TYPE, list.newName("literal_isNull"));
     list.add(Expressions.declare(Modifier.FINAL, isNullVariable, isNullExpression));
 
-    // Maintain the map from valueVariable (ParameterExpression) to real Expression
-    literalMap.put(valueVariable, valueExpression);
+    // Maintain the map from valueVariable (ParameterExpression) to real
+    // Expression. A hoisted literal has no compile-time value; its variable
+    // is read from the DataContext when the statement executes.
+    if (hoisted == null) {
+      literalMap.put(valueVariable, valueExpression);
+    }
     final Result result = new Result(isNullVariable, valueVariable);
     // Cache RexLiteral's result
     rexResultMap.put(literal, result);
     return result;
   }
 
+  /** Hoists a literal into the parameters of the statement, if this
+   * translator has a {@link LiteralHoister}; returns the variable that holds
+   * it, or null.
+   *
+   * <p>Only numbers, character strings, and date-time and interval values
+   * are hoisted. Other literals, in particular symbols and booleans, often
+   * determine the shape of the generated code, and gain little from being
+   * hoisted. */
+  private @Nullable ParameterExpression hoistLiteral(RexLiteral literal,
+      Expression valueExpression) {
+    if (literalHoister == null) {
+      return null;
+    }
+    final Object value;
+    if (valueExpression instanceof ConstantExpression) {
+      value = ((ConstantExpression) valueExpression).value;
+      if (!(value instanceof Number || value instanceof String)) {
+        return null;
+      }
+    } else if (literal.getTypeName() == SqlTypeName.DECIMAL
+        && valueExpression.getType() == BigDecimal.class) {
+      value = literal.getValueAs(BigDecimal.class);
+    } else {
+      return null;
+    }
+    return literalHoister.hoist(requireNonNull(value, "value"),
+        valueExpression.getType());
+  }
+
   /**
    * Returns an {@code Expression} for null literal without losing its type
    * information.
@@ -1863,6 +1947,20 @@ public interface InputGetter {
     Expression field(BlockBuilder list, int index, @Nullable Type storageType);
   }
 
+  /** Hoists literals out of generated code.
+   *
+   * @see EnumerableRelImplementor#getLiteralHoister() */
+  public interface LiteralHoister {
+    /** Stores the value of a literal in the parameters of the statement, and
+     * returns a variable that holds the value at run time.
+     *
+     * @param value Value of the literal, not null
+     * @param type  Java type of the literal, a primitive type or
+     *              {@link String} or {@link java.math.BigDecimal}
+     */
+    ParameterExpression hoist(Object value, Type type);
+  }
+
   /** Implementation of {@link InputGetter} that calls
    * {@link PhysType#fieldReference}. */
   public static class InputGetterImpl implements InputGetter {
@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.linq4j.tree.Primitive;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Values of one column of a {@link VectorBatch}.
+ *
+ * <p>Values whose Java representation is a primitive type (or its box) are
+ * held in a {@code long[]} (for {@code boolean}, {@code byte}, {@code char},
+ * {@code short}, {@code int} and {@code long}) or a {@code double[]} (for
+ * {@code float} and {@code double}); other values are held in an
+ * {@code Object[]}. Null values are marked in a bitmap.
+ *
+ * <p>A column vector is written while its batch is being built, and is
+ * immutable afterwards; operators may therefore share a column vector between
+ * several batches.
+ */
+public final class ColumnVector {
+  private static final long[] EMPTY_LONGS = {};
+  private static final double[] EMPTY_DOUBLES = {};
+  private static final @Nullable Object[] EMPTY_OBJECTS = {};
+
+  /** How a column vector stores its values. */
+  public enum Storage {
+    LONG, DOUBLE, OBJECT
+  }
+
+  private final @Nullable Primitive primitive;
+  private final Storage storage;
+  private final long[] longs;
+  private final double[] doubles;
+  private final @Nullable Object[] objects;
+  /** Bit {@code i} is set if value {@code i} is null. */
+  private final long[] nulls;
+
+  private ColumnVector(@Nullable Primitive primitive, int capacity) {
+    this.primitive = primitive;
+    this.storage = storage(primitive);
+    this.longs = storage == Storage.LONG ? new long[capacity] : EMPTY_LONGS;
+    this.doubles =
+        storage == Storage.DOUBLE ? new double[capacity] : EMPTY_DOUBLES;
+    this.objects =
+        storage == Storage.OBJECT ? new Object[capacity] : EMPTY_OBJECTS;
+    this.nulls = new long[(capacity + 63) >>> 6];
+  }
+
+  /** Creates a column vector.
+   *
+   * @param primitive Java primitive type of the values, or null if the values
+   *                  are objects
+   * @param capacity Number of values
+   */
+  public static ColumnVector create(@Nullable Primitive primitive,
+      int capacity) {
+    return new ColumnVector(primitive, capacity);
+  }
+
+  /** Returns how values of a given primitive type are stored. */
+  public static Storage storage(@Nullable Primitive primitive) {
+    if (primitive == null) {
+      return Storage.OBJECT;
+    }
+    switch (primitive) {
+    case BOOLEAN:
+    case BYTE:
+    case CHAR:
+    case SHORT:
+    case INT:
+    case LONG:
+      return Storage.LONG;
+    case FLOAT:
+    case DOUBLE:
+      return Storage.DOUBLE;
+    default:
+      return Storage.OBJECT;
+    }
+  }
+
+  /** Returns the Java primitive type of the values, or null if they are
+   * objects. */
+  public @Nullable Primitive getPrimitive() {
+    return primitive;
+  }
+
+  public Storage getStorage() {
+    return storage;
+  }
+
+  public boolean isNull(int i) {
+    return (nulls[i >>> 6] & (1L << i)) != 0;
+  }
+
+  public void setNull(int i) {
+    nulls[i >>> 6] |= 1L << i;
+  }
+
+  /** Returns value {@code i} of a column whose storage is
+   * {@link Storage#LONG}; for a {@code boolean} column, 1 means true. */
+  public long getLong(int i) {
+    return longs[i];
+  }
+
+  /** Returns value {@code i} of a column whose storage is
+   * {@link Storage#LONG} or {@link Storage#DOUBLE}. */
+  public double getDouble(int i) {
+    return storage == Storage.LONG ? longs[i] : doubles[i];
+  }
+
+  /** Returns value {@code i}, boxed as the Java type of the column, or null. */
+  public @Nullable Object getObject(int i) {
+    if (isNull(i)) {
+      return null;
+    }
+    if (primitive == null) {
+      return objects[i];
+    }
+    switch (primitive) {
+    case BOOLEAN:
+      return longs[i] != 0;
+    case BYTE:
+      return (byte) longs[i];
+    case CHAR:
+      return (char) longs[i];
+    case SHORT:
+      return (short) longs[i];
+    case INT:
+      return (int) longs[i];
+    case LONG:
+      return longs[i];
+    case FLOAT:
+      return (float) doubles[i];
+    case DOUBLE:
+      return doubles[i];
+    default:
+      return objects[i];
+    }
+  }
+
+  /** Sets value {@code i} of a column whose storage is {@link Storage#LONG},
+   * truncating it to the width of the column's type as a Java cast would. */
+  public void setLong(int i, long value) {
+    if (primitive == null) {
+      throw new IllegalStateException("not a primitive column");
+    }
+    switch (primitive) {
+    case BOOLEAN:
+      longs[i] = value != 0 ? 1 : 0;
+      break;
+    case BYTE:
+      longs[i] = (byte) value;
+      break;
+    case CHAR:
+      longs[i] = (char) value;
+      break;
+    case SHORT:
+      longs[i] = (short) value;
+      break;
+    case INT:
+      longs[i] = (int) value;
+      break;
+    default:
+      longs[i] = value;
+    }
+  }
+
+  /** Sets value {@code i} of a column whose storage is
+   * {@link Storage#DOUBLE}. */
+  public void setDouble(int i, double value) {
+    doubles[i] = primitive == Primitive.FLOAT ? (float) value : value;
+  }
+
+  /** Sets value {@code i} from its boxed representation, or null. */
+  public void set(int i, @Nullable Object value) {
+    if (value == null) {
+      setNull(i);
+      return;
+    }
+    switch (storage) {
+    case LONG:
+      if (value instanceof Boolean) {
+        longs[i] = (Boolean) value ? 1 : 0;
+      } else if (value instanceof Character) {
+        longs[i] = (Character) value;
+      } else {
+        setLong(i, ((Number) value).longValue());
+      }
+      break;
+    case DOUBLE:
+      setDouble(i, ((Number) value).doubleValue());
+      break;
+    default:
+      objects[i] = value;
+    }
+  }
+
+  /** Sets value {@code i} to value {@code j} of another column of the same
+   * type. */
+  public void copy(int i, ColumnVector source, int j) {
+    if (source.isNull(j)) {
+      setNull(i);
+      return;
+    }
+    switch (storage) {
+    case LONG:
+      longs[i] = source.longs[j];
+      break;
+    case DOUBLE:
+      doubles[i] = source.doubles[j];
+      break;
+    default:
+      objects[i] = source.objects[j];
+    }
+  }
+
+  /** Returns a column vector containing the values at the given positions of
+   * this column vector. */
+  public ColumnVector gather(int[] selection, int count) {
+    final ColumnVector v = new ColumnVector(primitive, count);
+    for (int i = 0; i < count; i++) {
+      v.copy(i, this, selection[i]);
+    }
+    return v;
+  }
+}
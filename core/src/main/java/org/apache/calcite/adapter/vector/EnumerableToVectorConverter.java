@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.List;
+
+/**
+ * Relational expression that converts the rows of an enumerable input into
+ * batches.
+ *
+ * <p>It is a leaf of a tree of {@link VectorRel}s; see {@link VectorContext}.
+ */
+public class EnumerableToVectorConverter extends ConverterImpl
+    implements VectorRel {
+  protected EnumerableToVectorConverter(RelOptCluster cluster,
+      RelTraitSet traitSet, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traitSet, input);
+  }
+
+  /** Creates an EnumerableToVectorConverter. */
+  public static EnumerableToVectorConverter create(RelNode input) {
+    return new EnumerableToVectorConverter(input.getCluster(),
+        input.getTraitSet().replace(VectorConvention.INSTANCE), input);
+  }
+
+  @Override public EnumerableToVectorConverter copy(RelTraitSet traitSet,
+      List<RelNode> inputs) {
+    return new EnumerableToVectorConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.CONVERTER_COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<VectorBatch> execute(VectorContext context) {
+    final JavaTypeFactory typeFactory = VectorContext.typeFactory(this);
+    return VectorBatch.fromRows(context.source(this),
+        VectorBatch.primitives(typeFactory, getRowType()));
+  }
+
+  /**
+   * Rule that converts an enumerable relational expression to vectorized
+   * convention.
+   *
+   * @see VectorRules#FROM_ENUMERABLE
+   */
+  public static class EnumerableToVectorConverterRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(EnumerableRel.class, VectorRules::canVectorize,
+            EnumerableConvention.INSTANCE, VectorConvention.INSTANCE,
+            "EnumerableToVectorConverterRule")
+        .withRuleFactory(EnumerableToVectorConverterRule::new);
+
+    /** Called from the Config. */
+    protected EnumerableToVectorConverterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      return create(rel);
+    }
+  }
+}
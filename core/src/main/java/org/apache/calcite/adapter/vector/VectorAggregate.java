@@ -0,0 +1,346 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.AggregateCall;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Aggregate} in
+ * {@link VectorConvention vectorized convention}.
+ *
+ * <p>Reads all batches of its input into a hash table. For each batch, it
+ * first finds the group of every row, then updates each accumulator for the
+ * whole batch in a loop over primitive values.
+ *
+ * <p>Supports {@code COUNT}, and {@code SUM}, {@code SUM0}, {@code MIN} and
+ * {@code MAX} of numeric values represented as Java primitives, with or
+ * without {@code FILTER}; see {@link #isSupported(Aggregate)}. */
+public class VectorAggregate extends Aggregate implements VectorRel {
+  public VectorAggregate(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, ImmutableBitSet groupSet,
+      @Nullable List<ImmutableBitSet> groupSets,
+      List<AggregateCall> aggCalls) {
+    super(cluster, traitSet, ImmutableList.of(), input, groupSet, groupSets,
+        aggCalls);
+    assert getConvention() instanceof VectorConvention;
+  }
+
+  /** Creates a VectorAggregate. */
+  public static VectorAggregate create(RelNode input,
+      ImmutableBitSet groupSet, @Nullable List<ImmutableBitSet> groupSets,
+      List<AggregateCall> aggCalls) {
+    final RelOptCluster cluster = input.getCluster();
+    return new VectorAggregate(cluster,
+        cluster.traitSetOf(VectorConvention.INSTANCE), input, groupSet,
+        groupSets, aggCalls);
+  }
+
+  @Override public VectorAggregate copy(RelTraitSet traitSet, RelNode input,
+      ImmutableBitSet groupSet, @Nullable List<ImmutableBitSet> groupSets,
+      List<AggregateCall> aggCalls) {
+    return new VectorAggregate(getCluster(), traitSet, input, groupSet,
+        groupSets, aggCalls);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  /** Returns whether an aggregate can be implemented by a
+   * {@link VectorAggregate}. */
+  public static boolean isSupported(Aggregate aggregate) {
+    if (aggregate.getGroupType() != Group.SIMPLE) {
+      return false;
+    }
+    final JavaTypeFactory typeFactory = VectorContext.typeFactory(aggregate);
+    final List<RelDataType> inputTypes =
+        RelOptUtil.getFieldTypeList(aggregate.getInput().getRowType());
+    for (AggregateCall aggCall : aggregate.getAggCallList()) {
+      if (aggCall.isDistinct()
+          || aggCall.distinctKeys != null
+          || !aggCall.collation.getFieldCollations().isEmpty()) {
+        return false;
+      }
+      final Primitive result = VectorBatch.primitive(typeFactory, aggCall.type);
+      switch (aggCall.getAggregation().getKind()) {
+      case COUNT:
+        if (result == null) {
+          return false;
+        }
+        break;
+      case SUM:
+      case SUM0:
+      case MIN:
+      case MAX:
+        if (aggCall.getArgList().size() != 1 || result == null) {
+          return false;
+        }
+        final RelDataType argType = inputTypes.get(aggCall.getArgList().get(0));
+        final Primitive arg = VectorBatch.primitive(typeFactory, argType);
+        if (!SqlTypeUtil.isNumeric(argType)
+            || arg == null
+            || ColumnVector.storage(arg) != ColumnVector.storage(result)) {
+          return false;
+        }
+        break;
+      default:
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public Enumerable<VectorBatch> execute(VectorContext context) {
+    final Enumerable<VectorBatch> input = context.batches(getInput());
+    final List<@Nullable Primitive> primitives =
+        VectorBatch.primitives(VectorContext.typeFactory(this), getRowType());
+    return new AbstractEnumerable<VectorBatch>() {
+      @Override public Enumerator<VectorBatch> enumerator() {
+        final Grouper grouper = new Grouper();
+        try (Enumerator<VectorBatch> batches = input.enumerator()) {
+          while (batches.moveNext()) {
+            grouper.add(batches.current());
+          }
+        }
+        return Linq4j.enumerator(grouper.result(primitives));
+      }
+    };
+  }
+
+  /** Hash table of groups and their accumulators. */
+  private class Grouper {
+    final int[] keys = groupSet.toArray();
+    final Map<@Nullable Object, Integer> groups = new HashMap<>();
+    final List<@Nullable Object> groupKeys = new ArrayList<>();
+    final List<Accumulator> accumulators = new ArrayList<>();
+
+    Grouper() {
+      for (AggregateCall aggCall : aggCalls) {
+        accumulators.add(new Accumulator(aggCall));
+      }
+    }
+
+    void add(VectorBatch batch) {
+      final int size = batch.size();
+      final int[] groupIds = new int[size];
+      for (int i = 0; i < size; i++) {
+        groupIds[i] = group(key(batch, i));
+      }
+      for (Accumulator accumulator : accumulators) {
+        accumulator.add(batch, groupIds);
+      }
+    }
+
+    /** Returns the key of a row: the value of its only key column, or a list
+     * of the values of its key columns. */
+    private @Nullable Object key(VectorBatch batch, int i) {
+      switch (keys.length) {
+      case 0:
+        return Collections.emptyList();
+      case 1:
+        return batch.column(keys[0]).getObject(i);
+      default:
+        final @Nullable Object[] values = new Object[keys.length];
+        for (int k = 0; k < keys.length; k++) {
+          values[k] = batch.column(keys[k]).getObject(i);
+        }
+        return Arrays.asList(values);
+      }
+    }
+
+    private int group(@Nullable Object key) {
+      Integer group = groups.get(key);
+      if (group == null) {
+        group = groupKeys.size();
+        groups.put(key, group);
+        groupKeys.add(key);
+        for (Accumulator accumulator : accumulators) {
+          accumulator.ensureCapacity(group + 1);
+        }
+      }
+      return group;
+    }
+
+    List<VectorBatch> result(List<@Nullable Primitive> primitives) {
+      if (keys.length == 0 && groupKeys.isEmpty()) {
+        // An aggregate without GROUP BY returns one row, even if its input
+        // is empty.
+        group(Collections.emptyList());
+      }
+      final List<VectorBatch> batches = new ArrayList<>();
+      final VectorBatch.Builder builder = new VectorBatch.Builder(primitives);
+      for (int g = 0; g < groupKeys.size(); g++) {
+        final @Nullable Object key = groupKeys.get(g);
+        if (keys.length == 1) {
+          builder.set(0, key);
+        } else {
+          for (int k = 0; k < keys.length; k++) {
+            builder.set(k, ((List<?>) castNonNull(key)).get(k));
+          }
+        }
+        for (int a = 0; a < accumulators.size(); a++) {
+          accumulators.get(a)
+              .write(builder.column(keys.length + a), builder.size(), g);
+        }
+        if (builder.add()) {
+          batches.add(builder.build());
+        }
+      }
+      if (builder.size() > 0) {
+        batches.add(builder.build());
+      }
+      return batches;
+    }
+  }
+
+  /** State of one aggregate function for each group. */
+  private static class Accumulator {
+    private final SqlKind kind;
+    private final List<Integer> args;
+    private final int filterArg;
+    private long[] longs = new long[16];
+    private double[] doubles = new double[16];
+    /** Whether any value has been added to each group. */
+    private boolean[] valued = new boolean[16];
+
+    Accumulator(AggregateCall aggCall) {
+      this.kind = aggCall.getAggregation().getKind();
+      this.args = aggCall.getArgList();
+      this.filterArg = aggCall.filterArg;
+    }
+
+    void ensureCapacity(int groupCount) {
+      if (groupCount > longs.length) {
+        final int n = Math.max(groupCount, longs.length * 2);
+        longs = Arrays.copyOf(longs, n);
+        doubles = Arrays.copyOf(doubles, n);
+        valued = Arrays.copyOf(valued, n);
+      }
+    }
+
+    void add(VectorBatch batch, int[] groupIds) {
+      final int size = batch.size();
+      final @Nullable ColumnVector filter =
+          filterArg < 0 ? null : batch.column(filterArg);
+      if (kind == SqlKind.COUNT) {
+        rows:
+        for (int i = 0; i < size; i++) {
+          if (filter != null && (filter.isNull(i) || filter.getLong(i) == 0)) {
+            continue;
+          }
+          for (int arg : args) {
+            if (batch.column(arg).isNull(i)) {
+              continue rows;
+            }
+          }
+          ++longs[groupIds[i]];
+        }
+        return;
+      }
+      final ColumnVector v = batch.column(args.get(0));
+      final boolean isLong = v.getStorage() == ColumnVector.Storage.LONG;
+      for (int i = 0; i < size; i++) {
+        if (v.isNull(i)
+            || filter != null && (filter.isNull(i) || filter.getLong(i) == 0)) {
+          continue;
+        }
+        final int g = groupIds[i];
+        final boolean first = !valued[g];
+        valued[g] = true;
+        if (isLong) {
+          final long x = v.getLong(i);
+          switch (kind) {
+          case MIN:
+            if (first || x < longs[g]) {
+              longs[g] = x;
+            }
+            break;
+          case MAX:
+            if (first || x > longs[g]) {
+              longs[g] = x;
+            }
+            break;
+          default:
+            longs[g] += x;
+          }
+        } else {
+          final double x = v.getDouble(i);
+          switch (kind) {
+          case MIN:
+            if (first || x < doubles[g]) {
+              doubles[g] = x;
+            }
+            break;
+          case MAX:
+            if (first || x > doubles[g]) {
+              doubles[g] = x;
+            }
+            break;
+          default:
+            doubles[g] += x;
+          }
+        }
+      }
+    }
+
+    /** Writes the value of a group to a column vector. */
+    void write(ColumnVector v, int row, int g) {
+      if (kind != SqlKind.COUNT && kind != SqlKind.SUM0 && !valued[g]) {
+        v.setNull(row);
+      } else if (v.getStorage() == ColumnVector.Storage.LONG) {
+        v.setLong(row, longs[g]);
+      } else {
+        v.setDouble(row, doubles[g]);
+      }
+    }
+  }
+}
@@ -0,0 +1,304 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeField;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Batch of rows held as one {@link ColumnVector} per column.
+ *
+ * <p>Relational expressions in {@link VectorConvention} pass batches of up
+ * to {@link #DEFAULT_SIZE} rows to each other, rather than one row at a
+ * time.
+ */
+public final class VectorBatch {
+  /** Maximum number of rows in a batch built by an operator. */
+  public static final int DEFAULT_SIZE = 1024;
+
+  private final ColumnVector[] columns;
+  private final int size;
+
+  /** Creates a VectorBatch.
+   *
+   * @param columns Columns; each has at least {@code size} values
+   * @param size Number of rows
+   */
+  public VectorBatch(ColumnVector[] columns, int size) {
+    this.columns = columns;
+    this.size = size;
+  }
+
+  /** Returns the number of rows. */
+  public int size() {
+    return size;
+  }
+
+  public int columnCount() {
+    return columns.length;
+  }
+
+  public ColumnVector column(int i) {
+    return columns[i];
+  }
+
+  /** Returns a batch with the same columns, but containing only the rows at
+   * the given positions. */
+  public VectorBatch select(int[] selection, int count) {
+    final ColumnVector[] vectors = new ColumnVector[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      vectors[i] = columns[i].gather(selection, count);
+    }
+    return new VectorBatch(vectors, count);
+  }
+
+  /** Returns a batch that contains the rows of this batch for which a
+   * {@code boolean} column vector is true. */
+  public VectorBatch filter(ColumnVector condition) {
+    final int[] selection = new int[size];
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (!condition.isNull(i) && condition.getLong(i) != 0) {
+        selection[count++] = i;
+      }
+    }
+    return count == size ? this : select(selection, count);
+  }
+
+  /** Returns row {@code i} as an array of boxed values. */
+  public @Nullable Object[] row(int i) {
+    final @Nullable Object[] row = new Object[columns.length];
+    for (int c = 0; c < columns.length; c++) {
+      row[c] = columns[c].getObject(i);
+    }
+    return row;
+  }
+
+  /** Returns the Java primitive type in which each field of a row type is
+   * represented, or null for a field that is represented as an object. */
+  public static List<@Nullable Primitive> primitives(
+      JavaTypeFactory typeFactory, RelDataType rowType) {
+    final List<@Nullable Primitive> list = new ArrayList<>();
+    for (RelDataTypeField field : rowType.getFieldList()) {
+      list.add(primitive(typeFactory, field.getType()));
+    }
+    return list;
+  }
+
+  /** Returns the Java primitive type in which values of a given type are
+   * represented, or null if they are represented as objects. */
+  public static @Nullable Primitive primitive(JavaTypeFactory typeFactory,
+      RelDataType type) {
+    final Primitive primitive =
+        Primitive.ofBoxOr(typeFactory.getJavaClass(type));
+    return ColumnVector.storage(primitive) == ColumnVector.Storage.OBJECT
+        ? null
+        : primitive;
+  }
+
+  /** Converts a sequence of rows into a sequence of batches.
+   *
+   * @param rows Rows; each row is an array with one element per field
+   * @param primitives Java primitive type of each field, per
+   *                   {@link #primitives(JavaTypeFactory, RelDataType)}
+   */
+  public static Enumerable<VectorBatch> fromRows(
+      Enumerable<@Nullable Object[]> rows,
+      List<@Nullable Primitive> primitives) {
+    return new AbstractEnumerable<VectorBatch>() {
+      @Override public Enumerator<VectorBatch> enumerator() {
+        final Enumerator<@Nullable Object[]> enumerator = rows.enumerator();
+        return new Enumerator<VectorBatch>() {
+          final Builder builder = new Builder(primitives);
+          @Nullable VectorBatch current;
+          boolean done;
+
+          @Override public VectorBatch current() {
+            if (current == null) {
+              throw new NoSuchElementException();
+            }
+            return current;
+          }
+
+          @Override public boolean moveNext() {
+            while (!done && enumerator.moveNext()) {
+              final @Nullable Object[] row = enumerator.current();
+              for (int i = 0; i < row.length; i++) {
+                builder.set(i, row[i]);
+              }
+              if (builder.add()) {
+                current = builder.build();
+                return true;
+              }
+            }
+            done = true;
+            if (builder.size() > 0) {
+              current = builder.build();
+              return true;
+            }
+            current = null;
+            return false;
+          }
+
+          @Override public void reset() {
+            enumerator.reset();
+            builder.clear();
+            current = null;
+            done = false;
+          }
+
+          @Override public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Converts a sequence of batches into a sequence of rows, each an array
+   * of boxed values. */
+  public static Enumerable<@Nullable Object[]> toRows(
+      Enumerable<VectorBatch> batches) {
+    return new AbstractEnumerable<@Nullable Object[]>() {
+      @Override public Enumerator<@Nullable Object[]> enumerator() {
+        final Enumerator<VectorBatch> enumerator = batches.enumerator();
+        return new Enumerator<@Nullable Object[]>() {
+          @Nullable VectorBatch batch;
+          int i;
+          @Nullable Object @Nullable [] current;
+
+          @Override public @Nullable Object[] current() {
+            if (current == null) {
+              throw new NoSuchElementException();
+            }
+            return current;
+          }
+
+          @Override public boolean moveNext() {
+            while (batch == null || i >= batch.size()) {
+              if (!enumerator.moveNext()) {
+                current = null;
+                return false;
+              }
+              batch = enumerator.current();
+              i = 0;
+            }
+            current = batch.row(i++);
+            return true;
+          }
+
+          @Override public void reset() {
+            enumerator.reset();
+            batch = null;
+            current = null;
+          }
+
+          @Override public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Builds batches one row at a time. */
+  public static class Builder {
+    private final List<@Nullable Primitive> primitives;
+    private final int capacity;
+    private ColumnVector[] columns;
+    private int size;
+
+    public Builder(List<@Nullable Primitive> primitives) {
+      this(primitives, DEFAULT_SIZE);
+    }
+
+    public Builder(List<@Nullable Primitive> primitives, int capacity) {
+      this.primitives = primitives;
+      this.capacity = capacity;
+      this.columns = newColumns();
+    }
+
+    private ColumnVector[] newColumns() {
+      final ColumnVector[] vectors = new ColumnVector[primitives.size()];
+      for (int i = 0; i < vectors.length; i++) {
+        vectors[i] = ColumnVector.create(primitives.get(i), capacity);
+      }
+      return vectors;
+    }
+
+    /** Returns the number of complete rows. */
+    public int size() {
+      return size;
+    }
+
+    /** Returns a column of the batch being built; the current row is
+     * {@link #size()}. */
+    public ColumnVector column(int i) {
+      return columns[i];
+    }
+
+    /** Sets a field of the current row from its boxed value. */
+    public void set(int column, @Nullable Object value) {
+      columns[column].set(size, value);
+    }
+
+    /** Sets fields of the current row, starting at {@code offset}, to the
+     * values of row {@code row} of a batch. */
+    public void copy(int offset, VectorBatch batch, int row) {
+      for (int c = 0; c < batch.columnCount(); c++) {
+        columns[offset + c].copy(size, batch.column(c), row);
+      }
+    }
+
+    /** Sets {@code count} fields of the current row, starting at
+     * {@code offset}, to null. */
+    public void setNulls(int offset, int count) {
+      for (int c = 0; c < count; c++) {
+        columns[offset + c].setNull(size);
+      }
+    }
+
+    /** Completes the current row; returns whether the batch is full. */
+    public boolean add() {
+      return ++size >= capacity;
+    }
+
+    /** Returns the batch, and starts a new one. */
+    public VectorBatch build() {
+      final VectorBatch batch = new VectorBatch(columns, size);
+      clear();
+      return batch;
+    }
+
+    /** Discards the rows added since the batch was started. */
+    public void clear() {
+      columns = newColumns();
+      size = 0;
+    }
+  }
+}
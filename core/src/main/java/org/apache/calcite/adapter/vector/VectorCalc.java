@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Calc;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexLocalRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexProgram;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Calc} in
+ * {@link VectorConvention vectorized convention}.
+ *
+ * <p>Combines {@link VectorFilter} and {@link VectorProject}: evaluates the
+ * condition of the program for a batch, then evaluates the projected
+ * expressions for the rows that pass. */
+public class VectorCalc extends Calc implements VectorRel {
+  public VectorCalc(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RexProgram program) {
+    super(cluster, traitSet, ImmutableList.of(), input, program);
+    assert getConvention() instanceof VectorConvention;
+  }
+
+  /** Creates a VectorCalc. */
+  public static VectorCalc create(RelNode input, RexProgram program) {
+    final RelOptCluster cluster = input.getCluster();
+    return new VectorCalc(cluster,
+        cluster.traitSetOf(VectorConvention.INSTANCE), input, program);
+  }
+
+  @Override public VectorCalc copy(RelTraitSet traitSet, RelNode child,
+      RexProgram program) {
+    return new VectorCalc(getCluster(), traitSet, child, program);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  /** Returns the condition of a program, expanded so that it does not
+   * contain {@link RexLocalRef}s, or null if it has no condition. */
+  static @Nullable RexNode condition(RexProgram program) {
+    final RexLocalRef condition = program.getCondition();
+    return condition == null ? null : program.expandLocalRef(condition);
+  }
+
+  /** Returns the projected expressions of a program, expanded so that they
+   * do not contain {@link RexLocalRef}s. */
+  static List<RexNode> projects(RexProgram program) {
+    final List<RexNode> list = new ArrayList<>();
+    for (RexLocalRef ref : program.getProjectList()) {
+      list.add(program.expandLocalRef(ref));
+    }
+    return list;
+  }
+
+  @Override public Enumerable<VectorBatch> execute(VectorContext context) {
+    final JavaTypeFactory typeFactory = VectorContext.typeFactory(this);
+    final @Nullable RexNode conditionNode = condition(program);
+    final @Nullable VectorExpression condition =
+        conditionNode == null
+            ? null
+            : VectorExpressions.compileStrict(typeFactory, conditionNode);
+    final List<VectorExpression> expressions =
+        VectorProject.compile(typeFactory, projects(program));
+    Enumerable<VectorBatch> batches = context.batches(getInput());
+    if (condition != null) {
+      batches = batches
+          .select(batch -> batch.filter(condition.evaluate(batch)))
+          .where(batch -> batch.size() > 0);
+    }
+    return batches.select(batch -> VectorProject.project(batch, expressions));
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.rel.RelNode;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Context for executing a tree of {@link VectorRel}s.
+ *
+ * <p>The leaves of the tree are {@link EnumerableToVectorConverter}s, whose
+ * inputs are implemented by generated code. Generated code for the
+ * {@link VectorToEnumerableConverter} at the root of the tree evaluates
+ * those inputs, and passes them to {@link #execute}.
+ */
+public class VectorContext {
+  private final DataContext root;
+  private final Map<RelNode, Enumerable<@Nullable Object[]>> sources =
+      new IdentityHashMap<>();
+
+  private VectorContext(DataContext root, VectorRel rel,
+      Enumerable<@Nullable Object[]>[] sources) {
+    this.root = root;
+    final List<EnumerableToVectorConverter> converters = sources(rel);
+    if (converters.size() != sources.length) {
+      throw new IllegalArgumentException("expected " + converters.size()
+          + " sources, got " + sources.length);
+    }
+    for (int i = 0; i < sources.length; i++) {
+      this.sources.put(converters.get(i), sources[i]);
+    }
+  }
+
+  /** Executes a tree of vectorized relational expressions, and returns its
+   * rows.
+   *
+   * @param root Data context
+   * @param rel Root of the tree
+   * @param sources Rows of each input, in the order returned by
+   *                {@link #sources(RelNode)}; each row is an array
+   */
+  public static Enumerable<@Nullable Object[]> execute(DataContext root,
+      VectorRel rel, Enumerable<@Nullable Object[]>[] sources) {
+    final VectorContext context = new VectorContext(root, rel, sources);
+    return VectorBatch.toRows(rel.execute(context));
+  }
+
+  /** Returns the converters at the leaves of a tree of vectorized relational
+   * expressions, in depth-first order. */
+  public static List<EnumerableToVectorConverter> sources(RelNode rel) {
+    final List<EnumerableToVectorConverter> list = new ArrayList<>();
+    addSources(rel, list);
+    return list;
+  }
+
+  private static void addSources(RelNode rel,
+      List<EnumerableToVectorConverter> list) {
+    if (rel instanceof EnumerableToVectorConverter) {
+      list.add((EnumerableToVectorConverter) rel);
+      return;
+    }
+    for (RelNode input : rel.getInputs()) {
+      addSources(input, list);
+    }
+  }
+
+  public DataContext getRoot() {
+    return root;
+  }
+
+  /** Returns the batches of an input, which must be a {@link VectorRel}. */
+  public Enumerable<VectorBatch> batches(RelNode input) {
+    return ((VectorRel) input).execute(this);
+  }
+
+  /** Returns the rows of the input of a converter. */
+  public Enumerable<@Nullable Object[]> source(
+      EnumerableToVectorConverter converter) {
+    return requireNonNull(sources.get(converter),
+        () -> "no source for " + converter);
+  }
+
+  /** Returns the type factory of a relational expression. The rules in
+   * {@link VectorRules} only create vectorized relational expressions in
+   * clusters whose type factory is a {@link JavaTypeFactory}. */
+  static JavaTypeFactory typeFactory(RelNode rel) {
+    return (JavaTypeFactory) rel.getCluster().getTypeFactory();
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTrait;
+import org.apache.calcite.plan.RelTraitDef;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Calling convention that returns results as an
+ * {@link org.apache.calcite.linq4j.Enumerable} of {@link VectorBatch}es.
+ *
+ * <p>The relational expression needs to implement {@link VectorRel}.
+ * Like {@link org.apache.calcite.interpreter.BindableConvention}, no code is
+ * generated; each operator processes a batch of rows per call.
+ */
+public enum VectorConvention implements Convention {
+  INSTANCE;
+
+  /** Cost of a vectorized node versus implementing an equivalent node in a
+   * "typical" calling convention. */
+  public static final double COST_MULTIPLIER = 0.5d;
+
+  /** Cost of a converter to or from this convention, relative to the cost
+   * of a typical converter. */
+  public static final double CONVERTER_COST_MULTIPLIER = 0.1d;
+
+  @Override public String toString() {
+    return getName();
+  }
+
+  @Override public Class getInterface() {
+    return VectorRel.class;
+  }
+
+  @Override public String getName() {
+    return "VECTOR";
+  }
+
+  @Override public @Nullable RelNode enforce(RelNode input, RelTraitSet required) {
+    return null;
+  }
+
+  @Override public RelTraitDef getTraitDef() {
+    return ConventionTraitDef.INSTANCE;
+  }
+
+  @Override public boolean satisfies(RelTrait trait) {
+    return this == trait;
+  }
+
+  @Override public void register(RelOptPlanner planner) {}
+
+  @Override public boolean canConvertConvention(Convention toConvention) {
+    return false;
+  }
+
+  @Override public boolean useAbstractConvertersForConversion(RelTraitSet fromTraits,
+      RelTraitSet toTraits) {
+    return false;
+  }
+}
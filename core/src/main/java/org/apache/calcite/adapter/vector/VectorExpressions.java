@@ -0,0 +1,507 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeUtil;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.IntPredicate;
+import java.util.function.LongBinaryOperator;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Compiles row expressions into {@link VectorExpression}s.
+ *
+ * <p>The supported expressions are input references; literals of boolean,
+ * exact and approximate numeric, and character types; {@code +}, {@code -}
+ * (binary and unary) and {@code *} of numeric values; comparisons of numeric
+ * values, or of strings; {@code AND}, {@code OR}, {@code NOT},
+ * {@code IS NULL} and {@code IS NOT NULL}; and {@code CAST} between numeric
+ * types. Numeric values must be represented as Java primitives, which
+ * excludes {@code DECIMAL}.
+ *
+ * <p>Every operand is evaluated for every row of the batch. Operators whose
+ * evaluation may fail, such as division, are not supported, because their
+ * operands may not be guarded by a condition as they would be when rows are
+ * evaluated one at a time.
+ */
+public class VectorExpressions {
+  private VectorExpressions() {}
+
+  /** Returns whether an expression can be compiled. */
+  public static boolean isSupported(JavaTypeFactory typeFactory, RexNode e) {
+    return compile(typeFactory, e) != null;
+  }
+
+  /** Returns whether every expression in a list can be compiled. */
+  public static boolean isSupported(JavaTypeFactory typeFactory,
+      List<? extends RexNode> list) {
+    for (RexNode e : list) {
+      if (!isSupported(typeFactory, e)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Compiles an expression, which must be supported. */
+  public static VectorExpression compileStrict(JavaTypeFactory typeFactory,
+      RexNode e) {
+    final VectorExpression expression = compile(typeFactory, e);
+    if (expression == null) {
+      throw new IllegalArgumentException("expression not supported: " + e);
+    }
+    return expression;
+  }
+
+  /** Compiles an expression, or returns null if it is not supported. */
+  public static @Nullable VectorExpression compile(JavaTypeFactory typeFactory,
+      RexNode e) {
+    final Primitive primitive = VectorBatch.primitive(typeFactory, e.getType());
+    switch (e.getKind()) {
+    case INPUT_REF:
+      final int index = ((RexInputRef) e).getIndex();
+      return batch -> batch.column(index);
+
+    case LITERAL:
+      return literal((RexLiteral) e, primitive);
+
+    case PLUS:
+    case MINUS:
+    case TIMES:
+      return arithmetic(typeFactory, (RexCall) e, primitive);
+
+    case MINUS_PREFIX:
+      return negate(typeFactory, (RexCall) e, primitive);
+
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      return comparison(typeFactory, (RexCall) e);
+
+    case AND:
+    case OR:
+      return logical(typeFactory, (RexCall) e);
+
+    case NOT:
+      return not(typeFactory, (RexCall) e);
+
+    case IS_NULL:
+    case IS_NOT_NULL:
+      return isNull(typeFactory, (RexCall) e);
+
+    case CAST:
+      return cast(typeFactory, (RexCall) e, primitive);
+
+    default:
+      return null;
+    }
+  }
+
+  private static @Nullable List<VectorExpression> compileOperands(
+      JavaTypeFactory typeFactory, RexCall call) {
+    final List<VectorExpression> list = new ArrayList<>();
+    for (RexNode operand : call.getOperands()) {
+      final VectorExpression e = compile(typeFactory, operand);
+      if (e == null) {
+        return null;
+      }
+      list.add(e);
+    }
+    return list;
+  }
+
+  private static ColumnVector.Storage storage(JavaTypeFactory typeFactory,
+      RexNode e) {
+    return ColumnVector.storage(
+        VectorBatch.primitive(typeFactory, e.getType()));
+  }
+
+  /** Returns whether an expression has a numeric type, and is represented as
+   * a Java primitive. */
+  private static boolean isNumeric(JavaTypeFactory typeFactory, RexNode e) {
+    return SqlTypeUtil.isNumeric(e.getType())
+        && VectorBatch.primitive(typeFactory, e.getType()) != null;
+  }
+
+  private static @Nullable VectorExpression literal(RexLiteral literal,
+      @Nullable Primitive primitive) {
+    final @Nullable Object value;
+    if (literal.isNull()) {
+      value = null;
+    } else {
+      // Not getTypeName(), which is DECIMAL for all exact numeric literals
+      switch (literal.getType().getSqlTypeName()) {
+      case BOOLEAN:
+        value = literal.getValueAs(Boolean.class);
+        break;
+      case TINYINT:
+      case SMALLINT:
+      case INTEGER:
+      case BIGINT:
+      case REAL:
+      case FLOAT:
+      case DOUBLE:
+        value = literal.getValueAs(Number.class);
+        break;
+      case CHAR:
+      case VARCHAR:
+        value = literal.getValueAs(String.class);
+        break;
+      default:
+        return null;
+      }
+    }
+    return new Constant(primitive, value);
+  }
+
+  private static @Nullable VectorExpression arithmetic(
+      JavaTypeFactory typeFactory, RexCall call, @Nullable Primitive primitive) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    if (operands == null
+        || operands.size() != 2
+        || !isNumeric(typeFactory, call)
+        || !isNumeric(typeFactory, call.operands.get(0))
+        || !isNumeric(typeFactory, call.operands.get(1))) {
+      return null;
+    }
+    final VectorExpression e0 = operands.get(0);
+    final VectorExpression e1 = operands.get(1);
+    if (ColumnVector.storage(primitive) == ColumnVector.Storage.LONG) {
+      if (storage(typeFactory, call.operands.get(0)) != ColumnVector.Storage.LONG
+          || storage(typeFactory, call.operands.get(1))
+          != ColumnVector.Storage.LONG) {
+        return null;
+      }
+      final LongBinaryOperator op;
+      switch (call.getKind()) {
+      case PLUS:
+        op = (a, b) -> a + b;
+        break;
+      case MINUS:
+        op = (a, b) -> a - b;
+        break;
+      default:
+        op = (a, b) -> a * b;
+        break;
+      }
+      return batch -> {
+        final ColumnVector v0 = e0.evaluate(batch);
+        final ColumnVector v1 = e1.evaluate(batch);
+        final int size = batch.size();
+        final ColumnVector v = ColumnVector.create(primitive, size);
+        for (int i = 0; i < size; i++) {
+          if (v0.isNull(i) || v1.isNull(i)) {
+            v.setNull(i);
+          } else {
+            v.setLong(i, op.applyAsLong(v0.getLong(i), v1.getLong(i)));
+          }
+        }
+        return v;
+      };
+    } else {
+      final DoubleBinaryOperator op;
+      switch (call.getKind()) {
+      case PLUS:
+        op = (a, b) -> a + b;
+        break;
+      case MINUS:
+        op = (a, b) -> a - b;
+        break;
+      default:
+        op = (a, b) -> a * b;
+        break;
+      }
+      return batch -> {
+        final ColumnVector v0 = e0.evaluate(batch);
+        final ColumnVector v1 = e1.evaluate(batch);
+        final int size = batch.size();
+        final ColumnVector v = ColumnVector.create(primitive, size);
+        for (int i = 0; i < size; i++) {
+          if (v0.isNull(i) || v1.isNull(i)) {
+            v.setNull(i);
+          } else {
+            v.setDouble(i, op.applyAsDouble(v0.getDouble(i), v1.getDouble(i)));
+          }
+        }
+        return v;
+      };
+    }
+  }
+
+  private static @Nullable VectorExpression negate(JavaTypeFactory typeFactory,
+      RexCall call, @Nullable Primitive primitive) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    if (operands == null
+        || !isNumeric(typeFactory, call)
+        || storage(typeFactory, call.operands.get(0))
+        != ColumnVector.storage(primitive)) {
+      return null;
+    }
+    final VectorExpression e0 = operands.get(0);
+    final boolean isLong =
+        ColumnVector.storage(primitive) == ColumnVector.Storage.LONG;
+    return batch -> {
+      final ColumnVector v0 = e0.evaluate(batch);
+      final int size = batch.size();
+      final ColumnVector v = ColumnVector.create(primitive, size);
+      for (int i = 0; i < size; i++) {
+        if (v0.isNull(i)) {
+          v.setNull(i);
+        } else if (isLong) {
+          v.setLong(i, -v0.getLong(i));
+        } else {
+          v.setDouble(i, -v0.getDouble(i));
+        }
+      }
+      return v;
+    };
+  }
+
+  private static @Nullable VectorExpression comparison(
+      JavaTypeFactory typeFactory, RexCall call) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    if (operands == null) {
+      return null;
+    }
+    final RexNode o0 = call.operands.get(0);
+    final RexNode o1 = call.operands.get(1);
+    final ColumnVector.Storage s0 = storage(typeFactory, o0);
+    final ColumnVector.Storage s1 = storage(typeFactory, o1);
+    final Comparer comparer;
+    if (s0 == ColumnVector.Storage.LONG && s1 == ColumnVector.Storage.LONG) {
+      comparer = (v0, v1, i) -> Long.compare(v0.getLong(i), v1.getLong(i));
+    } else if (isNumeric(typeFactory, o0) && isNumeric(typeFactory, o1)) {
+      comparer = (v0, v1, i) ->
+          Double.compare(v0.getDouble(i), v1.getDouble(i));
+    } else if (typeFactory.getJavaClass(o0.getType()) == String.class
+        && typeFactory.getJavaClass(o1.getType()) == String.class) {
+      comparer = (v0, v1, i) ->
+          ((String) castNonNull(v0.getObject(i)))
+              .compareTo((String) castNonNull(v1.getObject(i)));
+    } else {
+      return null;
+    }
+    final IntPredicate predicate;
+    switch (call.getKind()) {
+    case EQUALS:
+      predicate = c -> c == 0;
+      break;
+    case NOT_EQUALS:
+      predicate = c -> c != 0;
+      break;
+    case LESS_THAN:
+      predicate = c -> c < 0;
+      break;
+    case LESS_THAN_OR_EQUAL:
+      predicate = c -> c <= 0;
+      break;
+    case GREATER_THAN:
+      predicate = c -> c > 0;
+      break;
+    default:
+      predicate = c -> c >= 0;
+      break;
+    }
+    final VectorExpression e0 = operands.get(0);
+    final VectorExpression e1 = operands.get(1);
+    return batch -> {
+      final ColumnVector v0 = e0.evaluate(batch);
+      final ColumnVector v1 = e1.evaluate(batch);
+      final int size = batch.size();
+      final ColumnVector v = ColumnVector.create(Primitive.BOOLEAN, size);
+      for (int i = 0; i < size; i++) {
+        if (v0.isNull(i) || v1.isNull(i)) {
+          v.setNull(i);
+        } else {
+          v.setLong(i, predicate.test(comparer.compare(v0, v1, i)) ? 1 : 0);
+        }
+      }
+      return v;
+    };
+  }
+
+  /** Implements {@code AND} and {@code OR} with three-valued logic. */
+  private static @Nullable VectorExpression logical(JavaTypeFactory typeFactory,
+      RexCall call) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    if (operands == null) {
+      return null;
+    }
+    // For AND, false dominates; for OR, true dominates.
+    final long dominant = call.getKind() == SqlKind.AND ? 0 : 1;
+    return batch -> {
+      final int size = batch.size();
+      final ColumnVector v = ColumnVector.create(Primitive.BOOLEAN, size);
+      final boolean[] unknown = new boolean[size];
+      final boolean[] decided = new boolean[size];
+      for (VectorExpression operand : operands) {
+        final ColumnVector v0 = operand.evaluate(batch);
+        for (int i = 0; i < size; i++) {
+          if (decided[i]) {
+            continue;
+          }
+          if (v0.isNull(i)) {
+            unknown[i] = true;
+          } else if (v0.getLong(i) == dominant) {
+            decided[i] = true;
+          }
+        }
+      }
+      for (int i = 0; i < size; i++) {
+        if (decided[i]) {
+          v.setLong(i, dominant);
+        } else if (unknown[i]) {
+          v.setNull(i);
+        } else {
+          v.setLong(i, 1 - dominant);
+        }
+      }
+      return v;
+    };
+  }
+
+  private static @Nullable VectorExpression not(JavaTypeFactory typeFactory,
+      RexCall call) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    if (operands == null) {
+      return null;
+    }
+    final VectorExpression e0 = operands.get(0);
+    return batch -> {
+      final ColumnVector v0 = e0.evaluate(batch);
+      final int size = batch.size();
+      final ColumnVector v = ColumnVector.create(Primitive.BOOLEAN, size);
+      for (int i = 0; i < size; i++) {
+        if (v0.isNull(i)) {
+          v.setNull(i);
+        } else {
+          v.setLong(i, v0.getLong(i) == 0 ? 1 : 0);
+        }
+      }
+      return v;
+    };
+  }
+
+  private static @Nullable VectorExpression isNull(JavaTypeFactory typeFactory,
+      RexCall call) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    if (operands == null) {
+      return null;
+    }
+    final VectorExpression e0 = operands.get(0);
+    final boolean negate = call.getKind() == SqlKind.IS_NOT_NULL;
+    return batch -> {
+      final ColumnVector v0 = e0.evaluate(batch);
+      final int size = batch.size();
+      final ColumnVector v = ColumnVector.create(Primitive.BOOLEAN, size);
+      for (int i = 0; i < size; i++) {
+        v.setLong(i, v0.isNull(i) != negate ? 1 : 0);
+      }
+      return v;
+    };
+  }
+
+  /** Implements {@code CAST} from one numeric type to another, except from
+   * an approximate to an exact type. */
+  private static @Nullable VectorExpression cast(JavaTypeFactory typeFactory,
+      RexCall call, @Nullable Primitive primitive) {
+    final List<VectorExpression> operands = compileOperands(typeFactory, call);
+    final RexNode operand = call.operands.get(0);
+    if (operands == null
+        || !isNumeric(typeFactory, call)
+        || !isNumeric(typeFactory, operand)) {
+      return null;
+    }
+    final ColumnVector.Storage from = storage(typeFactory, operand);
+    final ColumnVector.Storage to = ColumnVector.storage(primitive);
+    if (from == ColumnVector.Storage.DOUBLE
+        && to == ColumnVector.Storage.LONG) {
+      return null;
+    }
+    final VectorExpression e0 = operands.get(0);
+    if (VectorBatch.primitive(typeFactory, operand.getType()) == primitive) {
+      // Only nullability changes; the vector can be used as is.
+      return e0;
+    }
+    return batch -> {
+      final ColumnVector v0 = e0.evaluate(batch);
+      final int size = batch.size();
+      final ColumnVector v = ColumnVector.create(primitive, size);
+      for (int i = 0; i < size; i++) {
+        if (v0.isNull(i)) {
+          v.setNull(i);
+        } else if (to == ColumnVector.Storage.LONG) {
+          v.setLong(i, v0.getLong(i));
+        } else {
+          v.setDouble(i, v0.getDouble(i));
+        }
+      }
+      return v;
+    };
+  }
+
+  /** Compares the values of two column vectors in a given row. */
+  @FunctionalInterface
+  private interface Comparer {
+    int compare(ColumnVector v0, ColumnVector v1, int i);
+  }
+
+  /** Expression that has the same value in every row. Keeps the column
+   * vector it created for the largest batch so far, and re-uses it for
+   * batches that are no larger. */
+  private static class Constant implements VectorExpression {
+    private final @Nullable Primitive primitive;
+    private final @Nullable Object value;
+    private @Nullable ColumnVector vector;
+    private int capacity;
+
+    Constant(@Nullable Primitive primitive, @Nullable Object value) {
+      this.primitive = primitive;
+      this.value = value;
+    }
+
+    @Override public ColumnVector evaluate(VectorBatch batch) {
+      final int size = batch.size();
+      ColumnVector v = vector;
+      if (v == null || size > capacity) {
+        v = ColumnVector.create(primitive, size);
+        for (int i = 0; i < size; i++) {
+          v.set(i, value);
+        }
+        vector = v;
+        capacity = size;
+      }
+      return v;
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexNode;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Filter} in
+ * {@link VectorConvention vectorized convention}.
+ *
+ * <p>Evaluates the condition for each batch, and returns a batch containing
+ * the rows for which the condition is true. */
+public class VectorFilter extends Filter implements VectorRel {
+  public VectorFilter(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, RexNode condition) {
+    super(cluster, traitSet, input, condition);
+    assert getConvention() instanceof VectorConvention;
+  }
+
+  /** Creates a VectorFilter. */
+  public static VectorFilter create(RelNode input, RexNode condition) {
+    final RelOptCluster cluster = input.getCluster();
+    return new VectorFilter(cluster,
+        cluster.traitSetOf(VectorConvention.INSTANCE), input, condition);
+  }
+
+  @Override public VectorFilter copy(RelTraitSet traitSet, RelNode input,
+      RexNode condition) {
+    return new VectorFilter(getCluster(), traitSet, input, condition);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<VectorBatch> execute(VectorContext context) {
+    final VectorExpression condition =
+        VectorExpressions.compileStrict(VectorContext.typeFactory(this),
+            getCondition());
+    return context.batches(getInput())
+        .select(batch -> batch.filter(condition.evaluate(batch)))
+        .where(batch -> batch.size() > 0);
+  }
+}
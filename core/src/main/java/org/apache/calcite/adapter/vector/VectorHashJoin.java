@@ -0,0 +1,364 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.CorrelationId;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexNode;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import static java.util.Objects.requireNonNull;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Join} in
+ * {@link VectorConvention vectorized convention}.
+ *
+ * <p>Builds a hash table from the batches of its right input, then probes it
+ * with each batch of its left input. The hash table references rows of the
+ * build batches, rather than copying them; the values of matching rows are
+ * copied, column by column, into the output batches.
+ *
+ * <p>Supports inner and left joins whose condition is a conjunction of
+ * equalities between fields that are held in the same kind of column vector
+ * storage; see {@link #isSupported(Join)}. For example, an {@code INTEGER}
+ * key may be joined to a {@code BIGINT} key, because both are compared as
+ * {@code long} values. */
+public class VectorHashJoin extends Join implements VectorRel {
+  public VectorHashJoin(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode left, RelNode right, RexNode condition,
+      Set<CorrelationId> variablesSet, JoinRelType joinType) {
+    super(cluster, traitSet, ImmutableList.of(), left, right, condition,
+        variablesSet, joinType);
+    assert getConvention() instanceof VectorConvention;
+  }
+
+  /** Creates a VectorHashJoin. */
+  public static VectorHashJoin create(RelNode left, RelNode right,
+      RexNode condition, Set<CorrelationId> variablesSet,
+      JoinRelType joinType) {
+    final RelOptCluster cluster = left.getCluster();
+    return new VectorHashJoin(cluster,
+        cluster.traitSetOf(VectorConvention.INSTANCE), left, right, condition,
+        variablesSet, joinType);
+  }
+
+  @Override public VectorHashJoin copy(RelTraitSet traitSet,
+      RexNode condition, RelNode left, RelNode right, JoinRelType joinType,
+      boolean semiJoinDone) {
+    return new VectorHashJoin(getCluster(), traitSet, left, right, condition,
+        variablesSet, joinType);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  /** Returns whether a join can be implemented by a
+   * {@link VectorHashJoin}. */
+  public static boolean isSupported(Join join) {
+    switch (join.getJoinType()) {
+    case INNER:
+    case LEFT:
+      break;
+    default:
+      return false;
+    }
+    final JoinInfo info = join.analyzeCondition();
+    if (!info.isEqui() || info.leftKeys.isEmpty()) {
+      return false;
+    }
+    final JavaTypeFactory typeFactory = VectorContext.typeFactory(join);
+    for (int i = 0; i < info.leftKeys.size(); i++) {
+      final RelDataType leftType =
+          join.getLeft().getRowType().getFieldList()
+              .get(info.leftKeys.get(i)).getType();
+      final RelDataType rightType =
+          join.getRight().getRowType().getFieldList()
+              .get(info.rightKeys.get(i)).getType();
+      final Primitive leftPrimitive =
+          VectorBatch.primitive(typeFactory, leftType);
+      final Primitive rightPrimitive =
+          VectorBatch.primitive(typeFactory, rightType);
+      if (ColumnVector.storage(leftPrimitive)
+          != ColumnVector.storage(rightPrimitive)
+          || leftPrimitive == null
+          && typeFactory.getJavaClass(leftType)
+          != typeFactory.getJavaClass(rightType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override public Enumerable<VectorBatch> execute(VectorContext context) {
+    final JoinInfo info = analyzeCondition();
+    final int[] leftKeys = info.leftKeys.toIntArray();
+    final int[] rightKeys = info.rightKeys.toIntArray();
+    final int leftCount = left.getRowType().getFieldCount();
+    final int rightCount = right.getRowType().getFieldCount();
+    final boolean generateNullsOnRight = joinType == JoinRelType.LEFT;
+    final List<@Nullable Primitive> primitives =
+        VectorBatch.primitives(VectorContext.typeFactory(this), getRowType());
+    for (int i = 0; i < leftKeys.length; i++) {
+      // Keys are compared using the storage of the build column
+      final ColumnVector.Storage leftStorage =
+          ColumnVector.storage(primitives.get(leftKeys[i]));
+      final ColumnVector.Storage rightStorage =
+          ColumnVector.storage(primitives.get(leftCount + rightKeys[i]));
+      checkArgument(leftStorage == rightStorage,
+          "key %s has storage %s on left, %s on right", i, leftStorage,
+          rightStorage);
+    }
+    final Enumerable<VectorBatch> lefts = context.batches(left);
+    final Enumerable<VectorBatch> rights = context.batches(right);
+    return new AbstractEnumerable<VectorBatch>() {
+      @Override public Enumerator<VectorBatch> enumerator() {
+        final HashTable table = new HashTable(rightKeys);
+        try (Enumerator<VectorBatch> batches = rights.enumerator()) {
+          while (batches.moveNext()) {
+            table.add(batches.current());
+          }
+        }
+        final VectorBatch.Builder builder = new VectorBatch.Builder(primitives);
+        return lefts
+            .selectMany(batch ->
+                Linq4j.asEnumerable(
+                    table.probe(batch, leftKeys, builder, leftCount,
+                        rightCount, generateNullsOnRight)))
+            .enumerator();
+      }
+    };
+  }
+
+  /** Returns whether any key column of a row is null; such a row cannot
+   * match. */
+  private static boolean hasNullKey(VectorBatch batch, int[] keys, int i) {
+    for (int key : keys) {
+      if (batch.column(key).isNull(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the hash code of the key of a row, computed from the values in
+   * the column vectors, without boxing primitive values. */
+  private static int hash(VectorBatch batch, int[] keys, int i) {
+    int h = 0;
+    for (int key : keys) {
+      final ColumnVector column = batch.column(key);
+      final int h2;
+      switch (column.getStorage()) {
+      case LONG:
+        h2 = Long.hashCode(column.getLong(i));
+        break;
+      case DOUBLE:
+        h2 = Long.hashCode(bits(column.getDouble(i)));
+        break;
+      default:
+        h2 = requireNonNull(column.getObject(i)).hashCode();
+      }
+      h = h * 31 + h2;
+    }
+    return h ^ (h >>> 16);
+  }
+
+  /** Returns whether the keys of two rows, neither of which has a null key
+   * column, are equal. */
+  private static boolean keyEquals(VectorBatch batch0, int[] keys0, int i0,
+      VectorBatch batch1, int[] keys1, int i1) {
+    for (int k = 0; k < keys0.length; k++) {
+      final ColumnVector column0 = batch0.column(keys0[k]);
+      final ColumnVector column1 = batch1.column(keys1[k]);
+      switch (column0.getStorage()) {
+      case LONG:
+        if (column0.getLong(i0) != column1.getLong(i1)) {
+          return false;
+        }
+        break;
+      case DOUBLE:
+        if (bits(column0.getDouble(i0)) != bits(column1.getDouble(i1))) {
+          return false;
+        }
+        break;
+      default:
+        if (!requireNonNull(column0.getObject(i0))
+            .equals(column1.getObject(i1))) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Returns the bits of a {@code double} key value; 0.0 and -0.0 are
+   * equal. */
+  private static long bits(double d) {
+    return d == 0D ? 0L : Double.doubleToLongBits(d);
+  }
+
+  /** Hash table of the rows of the build input.
+   *
+   * <p>The table uses open addressing. Each slot of {@link #heads} holds the
+   * index of the most recently added row with a given key, or -1;
+   * {@link #next} links each row to the previous row with the same key. Keys
+   * are hashed and compared by reading the column vectors of the build and
+   * probe batches; values of primitive columns are never boxed. */
+  private static class HashTable {
+    private final int[] keys;
+    private final List<VectorBatch> batches = new ArrayList<>();
+    private int[] heads = newHeads(64);
+    private int keyCount;
+    private int[] next = new int[64];
+    private int[] rowBatch = new int[64];
+    private int[] rowIndex = new int[64];
+    private int[] rowHash = new int[64];
+    private int rowCount;
+
+    HashTable(int[] keys) {
+      this.keys = keys;
+    }
+
+    private static int[] newHeads(int size) {
+      final int[] heads = new int[size];
+      Arrays.fill(heads, -1);
+      return heads;
+    }
+
+    void add(VectorBatch batch) {
+      final int b = batches.size();
+      batches.add(batch);
+      for (int i = 0; i < batch.size(); i++) {
+        if (hasNullKey(batch, keys, i)) {
+          continue;
+        }
+        if (rowCount == next.length) {
+          next = Arrays.copyOf(next, rowCount * 2);
+          rowBatch = Arrays.copyOf(rowBatch, rowCount * 2);
+          rowIndex = Arrays.copyOf(rowIndex, rowCount * 2);
+          rowHash = Arrays.copyOf(rowHash, rowCount * 2);
+        }
+        final int h = hash(batch, keys, i);
+        rowBatch[rowCount] = b;
+        rowIndex[rowCount] = i;
+        rowHash[rowCount] = h;
+        final int slot = slot(batch, keys, i, h);
+        next[rowCount] = heads[slot];
+        if (heads[slot] < 0) {
+          ++keyCount;
+        }
+        heads[slot] = rowCount;
+        ++rowCount;
+        if (keyCount * 2 > heads.length) {
+          rehash();
+        }
+      }
+    }
+
+    /** Returns the slot that holds, or would hold, the key of row {@code i}
+     * of a batch. */
+    private int slot(VectorBatch batch, int[] batchKeys, int i, int h) {
+      final int mask = heads.length - 1;
+      for (int slot = h & mask;; slot = (slot + 1) & mask) {
+        final int r = heads[slot];
+        if (r < 0
+            || rowHash[r] == h
+            && keyEquals(batches.get(rowBatch[r]), keys, rowIndex[r],
+                batch, batchKeys, i)) {
+          return slot;
+        }
+      }
+    }
+
+    private void rehash() {
+      final int[] oldHeads = heads;
+      heads = newHeads(oldHeads.length * 2);
+      final int mask = heads.length - 1;
+      for (int r : oldHeads) {
+        if (r >= 0) {
+          int slot = rowHash[r] & mask;
+          while (heads[slot] >= 0) {
+            slot = (slot + 1) & mask;
+          }
+          heads[slot] = r;
+        }
+      }
+    }
+
+    /** Joins a batch of the probe input, and returns the output batches. */
+    List<VectorBatch> probe(VectorBatch batch, int[] probeKeys,
+        VectorBatch.Builder builder, int leftCount, int rightCount,
+        boolean generateNullsOnRight) {
+      final List<VectorBatch> list = new ArrayList<>();
+      for (int i = 0; i < batch.size(); i++) {
+        final int head = hasNullKey(batch, probeKeys, i)
+            ? -1
+            : heads[slot(batch, probeKeys, i, hash(batch, probeKeys, i))];
+        if (head < 0) {
+          if (generateNullsOnRight) {
+            builder.copy(0, batch, i);
+            builder.setNulls(leftCount, rightCount);
+            if (builder.add()) {
+              list.add(builder.build());
+            }
+          }
+          continue;
+        }
+        for (int r = head; r >= 0; r = next[r]) {
+          builder.copy(0, batch, i);
+          builder.copy(leftCount, batches.get(rowBatch[r]), rowIndex[r]);
+          if (builder.add()) {
+            list.add(builder.build());
+          }
+        }
+      }
+      if (builder.size() > 0) {
+        list.add(builder.build());
+      }
+      return list;
+    }
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexNode;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Implementation of {@link org.apache.calcite.rel.core.Project} in
+ * {@link VectorConvention vectorized convention}.
+ *
+ * <p>Evaluates each expression for a whole batch, and returns a batch whose
+ * columns are the results; a column that is a reference to an input field is
+ * not copied. */
+public class VectorProject extends Project implements VectorRel {
+  public VectorProject(RelOptCluster cluster, RelTraitSet traitSet,
+      RelNode input, List<? extends RexNode> projects, RelDataType rowType) {
+    super(cluster, traitSet, ImmutableList.of(), input, projects, rowType,
+        ImmutableSet.of());
+    assert getConvention() instanceof VectorConvention;
+  }
+
+  /** Creates a VectorProject. */
+  public static VectorProject create(RelNode input,
+      List<? extends RexNode> projects, RelDataType rowType) {
+    final RelOptCluster cluster = input.getCluster();
+    return new VectorProject(cluster,
+        cluster.traitSetOf(VectorConvention.INSTANCE), input, projects,
+        rowType);
+  }
+
+  @Override public VectorProject copy(RelTraitSet traitSet, RelNode input,
+      List<RexNode> projects, RelDataType rowType) {
+    return new VectorProject(getCluster(), traitSet, input, projects,
+        rowType);
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.COST_MULTIPLIER);
+  }
+
+  @Override public Enumerable<VectorBatch> execute(VectorContext context) {
+    final List<VectorExpression> expressions =
+        compile(VectorContext.typeFactory(this), getProjects());
+    return context.batches(getInput())
+        .select(batch -> project(batch, expressions));
+  }
+
+  /** Compiles a list of expressions, each of which must be supported. */
+  static List<VectorExpression> compile(JavaTypeFactory typeFactory,
+      List<? extends RexNode> nodes) {
+    final List<VectorExpression> list = new ArrayList<>();
+    for (RexNode node : nodes) {
+      list.add(VectorExpressions.compileStrict(typeFactory, node));
+    }
+    return list;
+  }
+
+  /** Evaluates a list of expressions for a batch, and returns a batch with
+   * one column per expression. */
+  static VectorBatch project(VectorBatch batch,
+      List<VectorExpression> expressions) {
+    final ColumnVector[] columns = new ColumnVector[expressions.size()];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = expressions.get(i).evaluate(batch);
+    }
+    return new VectorBatch(columns, batch.size());
+  }
+}
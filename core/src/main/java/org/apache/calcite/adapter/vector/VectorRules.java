@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.core.Aggregate;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.logical.LogicalAggregate;
+import org.apache.calcite.rel.logical.LogicalCalc;
+import org.apache.calcite.rel.logical.LogicalFilter;
+import org.apache.calcite.rel.logical.LogicalJoin;
+import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.logical.LogicalTableScan;
+import org.apache.calcite.rex.RexNode;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Rules and relational operators for the
+ * {@link VectorConvention vectorized calling convention}.
+ *
+ * <p>The rules are not registered by default; they are registered if the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#VECTORIZE}
+ * connection property is true.
+ */
+public class VectorRules {
+  private VectorRules() {
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to
+   * {@link VectorConvention vectorized convention}. */
+  public static final RelOptRule VECTOR_FILTER_RULE =
+      VectorFilterRule.DEFAULT_CONFIG.toRule(VectorFilterRule.class);
+
+  /** Rule that converts a {@link LogicalProject} to
+   * {@link VectorConvention vectorized convention}. */
+  public static final RelOptRule VECTOR_PROJECT_RULE =
+      VectorProjectRule.DEFAULT_CONFIG.toRule(VectorProjectRule.class);
+
+  /** Rule that converts a {@link LogicalCalc} to
+   * {@link VectorConvention vectorized convention}. */
+  public static final RelOptRule VECTOR_CALC_RULE =
+      VectorCalcRule.DEFAULT_CONFIG.toRule(VectorCalcRule.class);
+
+  /** Rule that converts a {@link LogicalAggregate} to
+   * {@link VectorConvention vectorized convention}. */
+  public static final RelOptRule VECTOR_AGGREGATE_RULE =
+      VectorAggregateRule.DEFAULT_CONFIG.toRule(VectorAggregateRule.class);
+
+  /** Rule that converts a {@link LogicalJoin} to
+   * {@link VectorConvention vectorized convention}. */
+  public static final RelOptRule VECTOR_HASH_JOIN_RULE =
+      VectorHashJoinRule.DEFAULT_CONFIG.toRule(VectorHashJoinRule.class);
+
+  /** Rule that converts a {@link LogicalTableScan} of a
+   * {@link VectorScannableTable} to
+   * {@link VectorConvention vectorized convention}. */
+  public static final RelOptRule VECTOR_TABLE_SCAN_RULE =
+      VectorTableScanRule.DEFAULT_CONFIG.toRule(VectorTableScanRule.class);
+
+  /** Rule that converts a relational expression from
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention
+   * enumerable} to vectorized convention. */
+  public static final RelOptRule FROM_ENUMERABLE =
+      EnumerableToVectorConverter.EnumerableToVectorConverterRule
+          .DEFAULT_CONFIG
+          .toRule(EnumerableToVectorConverter.EnumerableToVectorConverterRule.class);
+
+  /** Rule that converts a relational expression from vectorized to
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableConvention
+   * enumerable} convention. */
+  public static final RelOptRule TO_ENUMERABLE =
+      VectorToEnumerableConverter.VectorToEnumerableConverterRule
+          .DEFAULT_CONFIG
+          .toRule(VectorToEnumerableConverter.VectorToEnumerableConverterRule.class);
+
+  /** All rules for vectorized convention. */
+  public static final ImmutableList<RelOptRule> RULES =
+      ImmutableList.of(VECTOR_FILTER_RULE,
+          VECTOR_PROJECT_RULE,
+          VECTOR_CALC_RULE,
+          VECTOR_AGGREGATE_RULE,
+          VECTOR_HASH_JOIN_RULE,
+          VECTOR_TABLE_SCAN_RULE,
+          FROM_ENUMERABLE,
+          TO_ENUMERABLE);
+
+  /** Returns whether a relational expression and its inputs have row types
+   * that batches can hold: they must have at least one field, and the type
+   * factory must know the Java representation of each field. */
+  public static boolean canVectorize(RelNode rel) {
+    if (!(rel.getCluster().getTypeFactory() instanceof JavaTypeFactory)
+        || rel.getRowType().getFieldCount() == 0) {
+      return false;
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (input.getRowType().getFieldCount() == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isSupported(RelNode rel, @Nullable RexNode e) {
+    return e == null
+        || VectorExpressions.isSupported(VectorContext.typeFactory(rel), e);
+  }
+
+  /** Rule that converts a {@link LogicalFilter} to a {@link VectorFilter}.
+   *
+   * @see #VECTOR_FILTER_RULE */
+  public static class VectorFilterRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalFilter.class,
+            f -> canVectorize(f) && isSupported(f, f.getCondition()),
+            Convention.NONE, VectorConvention.INSTANCE, "VectorFilterRule")
+        .withRuleFactory(VectorFilterRule::new);
+
+    /** Called from the Config. */
+    protected VectorFilterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalFilter filter = (LogicalFilter) rel;
+      return VectorFilter.create(
+          convert(filter.getInput(),
+              filter.getInput().getTraitSet()
+                  .replace(VectorConvention.INSTANCE)),
+          filter.getCondition());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalProject} to a {@link VectorProject}.
+   *
+   * @see #VECTOR_PROJECT_RULE */
+  public static class VectorProjectRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalProject.class,
+            p -> canVectorize(p)
+                && VectorExpressions.isSupported(VectorContext.typeFactory(p),
+                    p.getProjects()),
+            Convention.NONE, VectorConvention.INSTANCE, "VectorProjectRule")
+        .withRuleFactory(VectorProjectRule::new);
+
+    /** Called from the Config. */
+    protected VectorProjectRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalProject project = (LogicalProject) rel;
+      return VectorProject.create(
+          convert(project.getInput(),
+              project.getInput().getTraitSet()
+                  .replace(VectorConvention.INSTANCE)),
+          project.getProjects(), project.getRowType());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalCalc} to a {@link VectorCalc}.
+   *
+   * @see #VECTOR_CALC_RULE */
+  public static class VectorCalcRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalCalc.class,
+            c -> canVectorize(c)
+                && isSupported(c, VectorCalc.condition(c.getProgram()))
+                && VectorExpressions.isSupported(VectorContext.typeFactory(c),
+                    VectorCalc.projects(c.getProgram())),
+            Convention.NONE, VectorConvention.INSTANCE, "VectorCalcRule")
+        .withRuleFactory(VectorCalcRule::new);
+
+    /** Called from the Config. */
+    protected VectorCalcRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalCalc calc = (LogicalCalc) rel;
+      return VectorCalc.create(
+          convert(calc.getInput(),
+              calc.getInput().getTraitSet()
+                  .replace(VectorConvention.INSTANCE)),
+          calc.getProgram());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalAggregate} to a
+   * {@link VectorAggregate}.
+   *
+   * @see #VECTOR_AGGREGATE_RULE */
+  public static class VectorAggregateRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalAggregate.class,
+            a -> canVectorize(a) && VectorAggregate.isSupported(a),
+            Convention.NONE, VectorConvention.INSTANCE, "VectorAggregateRule")
+        .withRuleFactory(VectorAggregateRule::new);
+
+    /** Called from the Config. */
+    protected VectorAggregateRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final Aggregate agg = (Aggregate) rel;
+      return VectorAggregate.create(
+          convert(agg.getInput(),
+              agg.getInput().getTraitSet()
+                  .replace(VectorConvention.INSTANCE)),
+          agg.getGroupSet(), agg.getGroupSets(), agg.getAggCallList());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalJoin} to a {@link VectorHashJoin}.
+   *
+   * @see #VECTOR_HASH_JOIN_RULE */
+  public static class VectorHashJoinRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalJoin.class,
+            j -> canVectorize(j) && VectorHashJoin.isSupported(j),
+            Convention.NONE, VectorConvention.INSTANCE, "VectorHashJoinRule")
+        .withRuleFactory(VectorHashJoinRule::new);
+
+    /** Called from the Config. */
+    protected VectorHashJoinRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final Join join = (Join) rel;
+      return VectorHashJoin.create(
+          convert(join.getLeft(),
+              join.getLeft().getTraitSet().replace(VectorConvention.INSTANCE)),
+          convert(join.getRight(),
+              join.getRight().getTraitSet().replace(VectorConvention.INSTANCE)),
+          join.getCondition(), join.getVariablesSet(), join.getJoinType());
+    }
+  }
+
+  /** Rule that converts a {@link LogicalTableScan} of a
+   * {@link VectorScannableTable} to a {@link VectorTableScan}.
+   *
+   * @see #VECTOR_TABLE_SCAN_RULE */
+  public static class VectorTableScanRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(LogicalTableScan.class,
+            s -> canVectorize(s)
+                && s.getTable().unwrap(VectorScannableTable.class) != null,
+            Convention.NONE, VectorConvention.INSTANCE, "VectorTableScanRule")
+        .withRuleFactory(VectorTableScanRule::new);
+
+    /** Called from the Config. */
+    protected VectorTableScanRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      final LogicalTableScan scan = (LogicalTableScan) rel;
+      return VectorTableScan.create(scan.getCluster(), scan.getTable());
+    }
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.schema.Table;
+
+/**
+ * Table that can be scanned as batches of column vectors, without
+ * materializing rows.
+ *
+ * <p>An adapter whose data is already held in columns (for example, Apache
+ * Arrow) can implement this interface so that {@link VectorTableScan} reads
+ * it.
+ *
+ * <p>Each field of the table is held as described in
+ * {@link VectorBatch#primitive}.
+ */
+public interface VectorScannableTable extends Table {
+  /** Returns the contents of this table as batches. */
+  Enumerable<VectorBatch> scanBatches(DataContext root);
+}
@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.adapter.enumerable.JavaRowFormat;
+import org.apache.calcite.adapter.enumerable.PhysType;
+import org.apache.calcite.adapter.enumerable.PhysTypeImpl;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.tree.BlockBuilder;
+import org.apache.calcite.linq4j.tree.Expression;
+import org.apache.calcite.linq4j.tree.Expressions;
+import org.apache.calcite.plan.ConventionTraitDef;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.convert.ConverterImpl;
+import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.util.BuiltInMethod;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relational expression that converts the batches of a vectorized input
+ * into rows.
+ *
+ * <p>The generated code evaluates the enumerable input of each
+ * {@link EnumerableToVectorConverter} among the descendants of this
+ * converter, and passes them, with the tree of {@link VectorRel}s, to
+ * {@link VectorContext#execute}.
+ */
+public class VectorToEnumerableConverter extends ConverterImpl
+    implements EnumerableRel {
+  protected VectorToEnumerableConverter(RelOptCluster cluster,
+      RelTraitSet traitSet, RelNode input) {
+    super(cluster, ConventionTraitDef.INSTANCE, traitSet, input);
+  }
+
+  /** Creates a VectorToEnumerableConverter. */
+  public static VectorToEnumerableConverter create(RelNode input) {
+    return new VectorToEnumerableConverter(input.getCluster(),
+        input.getTraitSet().replace(EnumerableConvention.INSTANCE), input);
+  }
+
+  @Override public VectorToEnumerableConverter copy(RelTraitSet traitSet,
+      List<RelNode> inputs) {
+    return new VectorToEnumerableConverter(getCluster(), traitSet,
+        sole(inputs));
+  }
+
+  @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+      RelMetadataQuery mq) {
+    final RelOptCost cost = super.computeSelfCost(planner, mq);
+    if (cost == null) {
+      return null;
+    }
+    return cost.multiplyBy(VectorConvention.CONVERTER_COST_MULTIPLIER);
+  }
+
+  @Override public Result implement(EnumerableRelImplementor implementor,
+      Prefer pref) {
+    final BlockBuilder builder = new BlockBuilder();
+    final List<Expression> sources = new ArrayList<>();
+    for (EnumerableToVectorConverter converter
+        : VectorContext.sources(getInput())) {
+      final EnumerableRel source = (EnumerableRel) converter.getInput();
+      final Result result = source.implement(implementor, Prefer.ARRAY);
+      final Expression source_ =
+          builder.append("source" + sources.size(), result.block);
+      sources.add(result.physType.convertTo(source_, JavaRowFormat.ARRAY));
+    }
+    final PhysType physType =
+        PhysTypeImpl.of(implementor.getTypeFactory(), getRowType(),
+            JavaRowFormat.ARRAY);
+    final Expression rows_ =
+        builder.append("rows",
+            Expressions.call(BuiltInMethod.VECTOR_EXECUTE.method,
+                implementor.getRootExpression(),
+                implementor.stash((VectorRel) getInput(), VectorRel.class),
+                Expressions.newArrayInit(Enumerable.class, sources)));
+    builder.add(
+        getRowType().getFieldCount() == 1
+            ? Expressions.call(BuiltInMethod.SLICE0.method, rows_)
+            : rows_);
+    return implementor.result(physType, builder.toBlock());
+  }
+
+  /**
+   * Rule that converts a vectorized relational expression to enumerable
+   * convention.
+   *
+   * @see VectorRules#TO_ENUMERABLE
+   */
+  public static class VectorToEnumerableConverterRule extends ConverterRule {
+    /** Default configuration. */
+    public static final Config DEFAULT_CONFIG = Config.INSTANCE
+        .withConversion(RelNode.class, VectorConvention.INSTANCE,
+            EnumerableConvention.INSTANCE, "VectorToEnumerableConverterRule")
+        .withRuleFactory(VectorToEnumerableConverterRule::new);
+
+    /** Called from the Config. */
+    protected VectorToEnumerableConverterRule(Config config) {
+      super(config);
+    }
+
+    @Override public RelNode convert(RelNode rel) {
+      return create(rel);
+    }
+  }
+}
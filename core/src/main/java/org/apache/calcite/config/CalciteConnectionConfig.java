@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.config;
 
+import org.apache.calcite.adapter.enumerable.BindableCompiler;
 import org.apache.calcite.avatica.ConnectionConfig;
 import org.apache.calcite.avatica.util.Casing;
 import org.apache.calcite.avatica.util.Quoting;
@@ -111,6 +112,80 @@ public interface CalciteConnectionConfig extends ConnectionConfig {
   /** Returns the value of {@link CalciteConnectionProperty#TOPDOWN_OPT}. */
   boolean topDownOpt();
 
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#SPILL_MEMORY_BUDGET}. */
+  long spillMemoryBudget();
+
+  /** Returns the value of {@link CalciteConnectionProperty#SPILL_DIRECTORY}. */
+  @Nullable String spillDirectory();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PRIMITIVE_HASH_AGGREGATE}. */
+  boolean primitiveHashAggregate();
+
+  /** Returns the value of {@link CalciteConnectionProperty#VECTORIZE}. */
+  boolean vectorize();
+
+  /** Returns the value of {@link CalciteConnectionProperty#PARALLELISM}. */
+  int parallelism();
+
+  /** Returns the value of {@link CalciteConnectionProperty#PLAN_CACHE_SIZE}. */
+  int planCacheSize();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#ADAPTIVE_JOIN_THRESHOLD}. */
+  int adaptiveJoinThreshold();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#RUNTIME_FILTER_MAX_KEYS}. */
+  int runtimeFilterMaxKeys();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#QUERY_MEMORY_LIMIT}. */
+  long queryMemoryLimit();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_PARALLELISM}. */
+  int plannerParallelism();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_TIME_BUDGET}. */
+  long plannerTimeBudget();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_RULE_FIRE_BUDGET}. */
+  long plannerRuleFireBudget();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#PLANNER_MEMO_BUDGET}. */
+  int plannerMemoBudget();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#SUB_PLAN_CACHE_SIZE}. */
+  int subPlanCacheSize();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#METADATA_CACHE_SIZE}. */
+  int metadataCacheSize();
+
+  /** Returns the value of {@link CalciteConnectionProperty#FUSE_OPERATORS}. */
+  boolean fuseOperators();
+
+  /** Returns the value of {@link CalciteConnectionProperty#COMPILER}. */
+  BindableCompiler compiler();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#TIERED_COMPILATION}. */
+  boolean tieredCompilation();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#HOIST_LITERALS}. */
+  boolean hoistLiterals();
+
+  /** Returns the value of
+   * {@link CalciteConnectionProperty#OFF_HEAP_ROWS}. */
+  boolean offHeapRows();
+
   /** Returns the value of {@link CalciteConnectionProperty#META_TABLE_FACTORY},
    * or a default meta table factory if not set. If
    * {@code defaultMetaTableFactory} is not null, the result is never null. */
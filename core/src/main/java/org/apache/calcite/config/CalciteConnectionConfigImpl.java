@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.config;
 
+import org.apache.calcite.adapter.enumerable.BindableCompiler;
 import org.apache.calcite.avatica.ConnectionConfigImpl;
 import org.apache.calcite.avatica.util.Casing;
 import org.apache.calcite.avatica.util.Quoting;
@@ -215,6 +216,106 @@ public boolean isSet(CalciteConnectionProperty property) {
         .getBoolean();
   }
 
+  @Override public long spillMemoryBudget() {
+    return CalciteConnectionProperty.SPILL_MEMORY_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public @Nullable String spillDirectory() {
+    return CalciteConnectionProperty.SPILL_DIRECTORY.wrap(properties)
+        .getString();
+  }
+
+  @Override public boolean primitiveHashAggregate() {
+    return CalciteConnectionProperty.PRIMITIVE_HASH_AGGREGATE.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public boolean vectorize() {
+    return CalciteConnectionProperty.VECTORIZE.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public int parallelism() {
+    return CalciteConnectionProperty.PARALLELISM.wrap(properties)
+        .getInt();
+  }
+
+  @Override public int planCacheSize() {
+    return CalciteConnectionProperty.PLAN_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  @Override public int adaptiveJoinThreshold() {
+    return CalciteConnectionProperty.ADAPTIVE_JOIN_THRESHOLD.wrap(properties)
+        .getInt();
+  }
+
+  @Override public int runtimeFilterMaxKeys() {
+    return CalciteConnectionProperty.RUNTIME_FILTER_MAX_KEYS.wrap(properties)
+        .getInt();
+  }
+
+  @Override public long queryMemoryLimit() {
+    return CalciteConnectionProperty.QUERY_MEMORY_LIMIT.wrap(properties)
+        .getLong();
+  }
+
+  @Override public int plannerParallelism() {
+    return CalciteConnectionProperty.PLANNER_PARALLELISM.wrap(properties)
+        .getInt();
+  }
+
+  @Override public long plannerTimeBudget() {
+    return CalciteConnectionProperty.PLANNER_TIME_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public long plannerRuleFireBudget() {
+    return CalciteConnectionProperty.PLANNER_RULE_FIRE_BUDGET.wrap(properties)
+        .getLong();
+  }
+
+  @Override public int plannerMemoBudget() {
+    return CalciteConnectionProperty.PLANNER_MEMO_BUDGET.wrap(properties)
+        .getInt();
+  }
+
+  @Override public int subPlanCacheSize() {
+    return CalciteConnectionProperty.SUB_PLAN_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  @Override public int metadataCacheSize() {
+    return CalciteConnectionProperty.METADATA_CACHE_SIZE.wrap(properties)
+        .getInt();
+  }
+
+  @Override public boolean fuseOperators() {
+    return CalciteConnectionProperty.FUSE_OPERATORS.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public BindableCompiler compiler() {
+    return CalciteConnectionProperty.COMPILER.wrap(properties)
+        .getEnum(BindableCompiler.class);
+  }
+
+  @Override public boolean tieredCompilation() {
+    return CalciteConnectionProperty.TIERED_COMPILATION.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public boolean hoistLiterals() {
+    return CalciteConnectionProperty.HOIST_LITERALS.wrap(properties)
+        .getBoolean();
+  }
+
+  @Override public boolean offHeapRows() {
+    return CalciteConnectionProperty.OFF_HEAP_ROWS.wrap(properties)
+        .getBoolean();
+  }
+
   @Override public <T> @PolyNull T metaTableFactory(
       Class<T> metaTableFactoryClass,
       @PolyNull T defaultMetaTableFactory) {
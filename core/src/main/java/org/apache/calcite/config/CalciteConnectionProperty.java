@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.config;
 
+import org.apache.calcite.adapter.enumerable.BindableCompiler;
 import org.apache.calcite.avatica.ConnectionProperty;
 import org.apache.calcite.avatica.util.Casing;
 import org.apache.calcite.avatica.util.Quoting;
@@ -186,7 +187,139 @@ public enum CalciteConnectionProperty implements ConnectionProperty {
   LENIENT_OPERATOR_LOOKUP("lenientOperatorLookup", Type.BOOLEAN, false, false),
 
   /** Whether to enable top-down optimization in Volcano planner. */
-  TOPDOWN_OPT("topDownOpt", Type.BOOLEAN, CalciteSystemProperty.TOPDOWN_OPT.value(), false);
+  TOPDOWN_OPT("topDownOpt", Type.BOOLEAN, CalciteSystemProperty.TOPDOWN_OPT.value(), false),
+
+  /** Number of bytes of rows that the operators of a statement, such as hash
+   * joins and sorts, may together hold in memory before they spill rows to
+   * temporary files. If 0 (the default), operators never spill. */
+  SPILL_MEMORY_BUDGET("spillMemoryBudget", Type.NUMBER, 0L, false),
+
+  /** Directory in which operators create temporary files when they spill.
+   * If not specified, the system temporary directory is used. */
+  SPILL_DIRECTORY("spillDirectory", Type.STRING, null, false),
+
+  /** Whether {@code EnumerableAggregate} may group rows using a hash table of
+   * primitive values, if all of its keys and arguments are exact integers
+   * and all of its aggregate functions are {@code COUNT}, {@code SUM},
+   * {@code SUM0}, {@code MIN} or {@code MAX}. Groups are returned in a
+   * different order than by the default implementation. */
+  PRIMITIVE_HASH_AGGREGATE("primitiveHashAggregate", Type.BOOLEAN, false,
+      false),
+
+  /** Whether the planner may implement filters, projections, aggregates and
+   * joins in vectorized convention, which processes a batch of rows at a
+   * time. Rows may be returned in a different order than by the default
+   * implementation. */
+  VECTORIZE("vectorize", Type.BOOLEAN, false, false),
+
+  /** Number of threads on which a statement may scan, filter, project and
+   * partially aggregate the partitions of a
+   * {@link org.apache.calcite.schema.PartitionedScannableTable} or
+   * {@link org.apache.calcite.schema.PartitionedFilterableTable}. If 1 (the
+   * default), statements run on a single thread. Rows may be returned in a
+   * different order than by the default implementation. */
+  PARALLELISM("parallelism", Type.NUMBER, 1, false),
+
+  /** Maximum number of prepared plans that a connection keeps, so that it
+   * can execute a query that differs from a previous one only in its literal
+   * values without parsing, validating, optimizing and generating code
+   * again. If 0 (the default), plans are not cached. */
+  PLAN_CACHE_SIZE("planCacheSize", Type.NUMBER, 0, false),
+
+  /** Maximum number of rows in the build input of a hash join for which the
+   * join, having read its build input, uses a nested loop rather than a hash
+   * table. If greater than 0, hash joins choose their algorithm at run time,
+   * and record it in
+   * {@link org.apache.calcite.runtime.RuntimeStatistics}. If 0 (the
+   * default), hash joins always use a hash table. */
+  ADAPTIVE_JOIN_THRESHOLD("adaptiveJoinThreshold", Type.NUMBER, 0, false),
+
+  /** Maximum number of rows in the build input of an inner or right hash
+   * join for which the join builds a filter on its keys (a Bloom filter and
+   * a range) for table scans on its probe side to apply. If 0 (the default),
+   * hash joins do not build runtime filters. */
+  RUNTIME_FILTER_MAX_KEYS("runtimeFilterMaxKeys", Type.NUMBER, 0, false),
+
+  /** Number of bytes of rows that the operators of a statement, such as hash
+   * joins, aggregates, sorts and windows, may together hold in memory. If
+   * they need more, the statement fails, unless the operator can spill (see
+   * {@link #SPILL_MEMORY_BUDGET}), in which case it spills. The statement's
+   * peak memory use is available via
+   * {@link org.apache.calcite.jdbc.CalciteStatement#getMemoryTracker()}. If 0
+   * (the default), memory use is not tracked. */
+  QUERY_MEMORY_LIMIT("queryMemoryLimit", Type.NUMBER, 0L, false),
+
+  /** Number of threads on which the Volcano planner fires rule matches.
+   * If greater than 1 (the default is 1), and top-down optimization is not
+   * enabled, the planner fires batches of rule matches concurrently, and
+   * registers the expressions they produce in a deterministic order.
+   *
+   * @see org.apache.calcite.plan.volcano.VolcanoPlanner#setParallelism(int) */
+  PLANNER_PARALLELISM("plannerParallelism", Type.NUMBER, 1, false),
+
+  /** Maximum number of milliseconds that the Volcano planner may spend
+   * optimizing a statement. When it has used up its budget, it stops firing
+   * rules, and returns the cheapest complete plan that it has found so far.
+   * The default, 0, means no limit.
+   *
+   * @see org.apache.calcite.plan.volcano.VolcanoPlanner#setBudget */
+  PLANNER_TIME_BUDGET("plannerTimeBudget", Type.NUMBER, 0L, false),
+
+  /** Maximum number of rule matches that the Volcano planner may fire while
+   * optimizing a statement. The default, 0, means no limit.
+   *
+   * @see #PLANNER_TIME_BUDGET */
+  PLANNER_RULE_FIRE_BUDGET("plannerRuleFireBudget", Type.NUMBER, 0L, false),
+
+  /** Maximum number of relational expressions that the Volcano planner may
+   * register while optimizing a statement. The default, 0, means no limit.
+   *
+   * @see #PLANNER_TIME_BUDGET */
+  PLANNER_MEMO_BUDGET("plannerMemoBudget", Type.NUMBER, 0, false),
+
+  /** Maximum number of optimized sub-plans that a connection keeps, so that
+   * a query that contains the same join subtree as a previous query can use
+   * that query's plan for the subtree, rather than optimizing it again. If 0
+   * (the default), sub-plans are not cached.
+   *
+   * @see #PLAN_CACHE_SIZE */
+  SUB_PLAN_CACHE_SIZE("subPlanCacheSize", Type.NUMBER, 0, false),
+
+  /** Maximum number of metadata values (such as row counts and predicates)
+   * that a connection keeps and shares between the statements that it
+   * prepares. Only values for trees that do not depend on the state of a
+   * planner are shared. If 0 (the default), values are not shared. */
+  METADATA_CACHE_SIZE("metadataCacheSize", Type.NUMBER, 0, false),
+
+  /** Whether {@code EnumerableAggregate} may generate a single loop that
+   * evaluates the condition and expressions of its input {@code Calc} and
+   * adds to the accumulators, without creating the Calc's output rows. */
+  FUSE_OPERATORS("fuseOperators", Type.BOOLEAN, false, false),
+
+  /** Compiler that turns the code generated for an enumerable plan into a
+   * class; see {@link BindableCompiler}. Default is Janino. */
+  COMPILER("compiler", Type.ENUM, BindableCompiler.JANINO, false),
+
+  /** Whether a statement may run in the interpreter while the code generated
+   * for its plan is compiled in the background. Executions that start after
+   * compilation has finished use the compiled code. Only plans of scans,
+   * filters, projections, sorts, unions, aggregates and equi-joins that
+   * return more than one column are interpreted. */
+  TIERED_COMPILATION("tieredCompilation", Type.BOOLEAN, false, false),
+
+  /** Whether literals are removed from the code generated for a statement
+   * and supplied when it executes. Statements that differ only in the values
+   * of their literals then generate the same code, and the code is compiled
+   * once and cached. */
+  HOIST_LITERALS("hoistLiterals", Type.BOOLEAN, false, false),
+
+  /** Whether hash joins and recursive unions hold the rows of their hash
+   * tables outside the Java heap, in a compact binary format. It reduces the
+   * memory they use and the work of the garbage collector, at the cost of
+   * decoding each row when it is read. Applies only if the rows can be
+   * encoded, and if the join does not spill or choose its algorithm at run
+   * time. */
+  OFF_HEAP_ROWS("offHeapRows", Type.BOOLEAN, false, false);
 
   private final String camelName;
   private final Type type;
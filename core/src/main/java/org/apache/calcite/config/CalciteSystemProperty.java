@@ -390,6 +390,22 @@
   public static final CalciteSystemProperty<Integer> BINDABLE_CACHE_CONCURRENCY_LEVEL =
       intProperty("calcite.bindable.cache.concurrencyLevel", 1, v -> v >= 1);
 
+  /**
+   * Directory in which to store the compiled classes of Bindable objects, so
+   * that they can be loaded, rather than compiled again, by later processes.
+   *
+   * <p>Each entry is keyed by a hash of the generated source code. The
+   * directory is created if it does not exist, and may be shared by several
+   * processes. Entries are never removed; clear the directory when you
+   * deploy a new build of Calcite.
+   *
+   * <p>The default value is null, which means that compiled classes are not
+   * stored.
+   */
+  public static final CalciteSystemProperty<@Nullable String> BINDABLE_CACHE_DIRECTORY =
+      new CalciteSystemProperty<>("calcite.bindable.cache.directory",
+          Function.<@Nullable String>identity());
+
   /**
    * The maximum number of items in a function-level cache.
    *
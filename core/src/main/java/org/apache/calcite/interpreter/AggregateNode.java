@@ -101,11 +101,14 @@ public AggregateNode(Compiler compiler, Aggregate rel) {
   }
 
   @Override public void run() throws InterruptedException {
-    Row r;
-    while ((r = source.receive()) != null) {
+    final List<Row> rows = new ArrayList<>(Source.BATCH_SIZE);
+    while (source.receiveBatch(rows, Source.BATCH_SIZE) > 0) {
       for (Grouping group : groups) {
-        group.send(r);
+        for (Row row : rows) {
+          group.send(row);
+        }
       }
+      rows.clear();
     }
 
     for (Grouping group : groups) {
@@ -364,30 +367,26 @@ private ScalarAccumulator(ScalarAccumulatorDef def, Object[] values) {
    */
   private class Grouping {
     private final ImmutableBitSet grouping;
+    private final int[] keyFields;
     private final Map<Row, AccumulatorList> accumulators = new HashMap<>();
 
     private Grouping(ImmutableBitSet grouping) {
       this.grouping = grouping;
+      this.keyFields = grouping.toArray();
     }
 
     public void send(Row row) {
-      // TODO: fix the size of this row.
-      RowBuilder builder = Row.newBuilder(grouping.cardinality());
-      int j = 0;
-      for (Integer i : grouping) {
-        builder.set(j++, row.getObject(i));
+      final @Nullable Object[] keyValues = new Object[keyFields.length];
+      for (int j = 0; j < keyFields.length; j++) {
+        keyValues[j] = row.getObject(keyFields[j]);
       }
-      Row key = builder.build();
-
-      if (!accumulators.containsKey(key)) {
+      accumulators.computeIfAbsent(new Row(keyValues), key -> {
         AccumulatorList list = new AccumulatorList();
         for (AccumulatorFactory factory : accumulatorFactories) {
           list.add(factory.get());
         }
-        accumulators.put(key, list);
-      }
-
-      accumulators.get(key).send(row);
+        return list;
+      }).send(row);
     }
 
     public void end(Sink sink) throws InterruptedException {
@@ -397,9 +396,10 @@ public void end(Sink sink) throws InterruptedException {
 
         RowBuilder rb = Row.newBuilder(outputRowLength);
         int index = 0;
+        int keyIndex = 0;
         for (Integer groupPos : unionGroups) {
           if (grouping.get(groupPos)) {
-            rb.set(index, key.getObject(index));
+            rb.set(index, key.getObject(keyIndex++));
           }
           // need to set false when not part of grouping set.
 
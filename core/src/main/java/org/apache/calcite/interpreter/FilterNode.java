@@ -20,6 +20,9 @@
 
 import com.google.common.collect.ImmutableList;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Filter}.
@@ -37,13 +40,19 @@ public FilterNode(Compiler compiler, Filter rel) {
   }
 
   @Override public void run() throws InterruptedException {
-    Row row;
-    while ((row = source.receive()) != null) {
-      context.values = row.getValues();
-      Boolean b = (Boolean) condition.execute(context);
-      if (b != null && b) {
-        sink.send(row);
+    final List<Row> rows = new ArrayList<>(Source.BATCH_SIZE);
+    final List<Row> outRows = new ArrayList<>(Source.BATCH_SIZE);
+    while (source.receiveBatch(rows, Source.BATCH_SIZE) > 0) {
+      for (Row row : rows) {
+        context.values = row.getValues();
+        Boolean b = (Boolean) condition.execute(context);
+        if (b != null && b) {
+          outRows.add(row);
+        }
       }
+      sink.sendBatch(outRows);
+      rows.clear();
+      outRows.clear();
     }
   }
 }
@@ -62,6 +62,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static java.util.Objects.requireNonNull;
 
@@ -80,16 +81,37 @@ public class Interpreter extends AbstractEnumerable<@Nullable Object[]>
 
   /** Creates an Interpreter. */
   public Interpreter(DataContext dataContext, RelNode rootRel) {
+    this(dataContext, rootRel.getCluster(), optimize(rootRel),
+        new JaninoRexCompiler(rootRel.getCluster().getRexBuilder()));
+  }
+
+  /** Creates an Interpreter for a plan that has been prepared by
+   * {@link #prepare(RelNode)}. */
+  public Interpreter(DataContext dataContext, Prepared prepared) {
+    this(dataContext, prepared.rel.getCluster(), prepared.rel,
+        prepared.scalarCompiler);
+  }
+
+  private Interpreter(DataContext dataContext, RelOptCluster cluster,
+      RelNode rel, ScalarCompiler scalarCompiler) {
     this.dataContext = requireNonNull(dataContext, "dataContext");
-    final RelNode rel = optimize(rootRel);
     final CompilerImpl compiler =
-        new Nodes.CoreCompiler(this, rootRel.getCluster());
+        new Nodes.CoreCompiler(this, cluster, scalarCompiler);
     @SuppressWarnings("method.invocation.invalid")
     Pair<RelNode, Map<RelNode, NodeInfo>> pair = compiler.visitRoot(rel);
     this.rootRel = pair.left;
     this.nodes = ImmutableMap.copyOf(pair.right);
   }
 
+  /** Prepares a plan so that it can be executed many times, each time by a
+   * new Interpreter, without optimizing it or compiling the code for its
+   * expressions each time. */
+  public static Prepared prepare(RelNode rootRel) {
+    return new Prepared(optimize(rootRel),
+        new CachingScalarCompiler(
+            new JaninoRexCompiler(rootRel.getCluster().getRexBuilder())));
+  }
+
   private static RelNode optimize(RelNode rootRel) {
     final HepProgram hepProgram = new HepProgramBuilder()
         .addRuleInstance(CoreRules.CALC_SPLIT)
@@ -173,22 +195,40 @@ void close() {
    */
   private static class EnumeratorSource implements Source {
     private final Enumerator<Row> enumerator;
+    /** Whether the enumerator has been exhausted or closed. */
+    private boolean done;
 
     EnumeratorSource(final Enumerator<Row> enumerator) {
       this.enumerator = requireNonNull(enumerator, "enumerator");
     }
 
     @Override public @Nullable Row receive() {
-      if (enumerator.moveNext()) {
+      if (!done && enumerator.moveNext()) {
         return enumerator.current();
       }
       // close the enumerator once we have gone through everything
-      enumerator.close();
+      close();
       return null;
     }
 
+    @Override public int receiveBatch(List<Row> rows, int maxRowCount) {
+      int n = 0;
+      while (n < maxRowCount && !done) {
+        if (!enumerator.moveNext()) {
+          close();
+          break;
+        }
+        rows.add(enumerator.current());
+        ++n;
+      }
+      return n;
+    }
+
     @Override public void close() {
-      enumerator.close();
+      if (!done) {
+        done = true;
+        enumerator.close();
+      }
     }
   }
 
@@ -204,6 +244,10 @@ private ListSink(ArrayDeque<Row> list) {
       list.add(row);
     }
 
+    @Override public void sendBatch(List<Row> rows) {
+      list.addAll(rows);
+    }
+
     @Override public void end() {
     }
 
@@ -240,6 +284,23 @@ private static class ListSource implements Source {
       }
     }
 
+    @Override public int receiveBatch(List<Row> rows, int maxRowCount) {
+      Iterator<Row> iterator = this.iterator;
+      if (iterator == null) {
+        iterator = list.iterator();
+        this.iterator = iterator;
+      }
+      int n = 0;
+      while (n < maxRowCount && iterator.hasNext()) {
+        rows.add(iterator.next());
+        ++n;
+      }
+      if (n == 0) {
+        this.iterator = null;
+      }
+      return n;
+    }
+
     @Override public void close() {
       // noop
     }
@@ -259,6 +320,12 @@ private DuplicatingSink(List<ArrayDeque<Row>> queues) {
       }
     }
 
+    @Override public void sendBatch(List<Row> rows) {
+      for (ArrayDeque<Row> queue : queues) {
+        queue.addAll(rows);
+      }
+    }
+
     @Override public void end() {
     }
 
@@ -304,8 +371,14 @@ static class CompilerImpl extends RelVisitor
     private static final String VISIT_METHOD_NAME = "visit";
 
     CompilerImpl(@UnknownInitialization Interpreter interpreter, RelOptCluster cluster) {
+      this(interpreter, cluster,
+          new JaninoRexCompiler(cluster.getRexBuilder()));
+    }
+
+    CompilerImpl(@UnknownInitialization Interpreter interpreter,
+        RelOptCluster cluster, ScalarCompiler scalarCompiler) {
       this.interpreter = interpreter;
-      this.scalarCompiler = new JaninoRexCompiler(cluster.getRexBuilder());
+      this.scalarCompiler = scalarCompiler;
     }
 
     /** Visits the tree, starting from the root {@code p}. */
@@ -496,4 +569,41 @@ static class Edge extends Pair<@Nullable RelNode, Integer> {
   interface ScalarCompiler {
     Scalar.Producer compile(List<RexNode> nodes, RelDataType inputRowType);
   }
+
+  /** Plan that has been optimized for the interpreter, together with the
+   * code that has been compiled for its expressions.
+   *
+   * <p>It is safe to create several interpreters from the same Prepared
+   * concurrently.
+   *
+   * @see #prepare(RelNode) */
+  public static class Prepared {
+    final RelNode rel;
+    final ScalarCompiler scalarCompiler;
+
+    private Prepared(RelNode rel, ScalarCompiler scalarCompiler) {
+      this.rel = requireNonNull(rel, "rel");
+      this.scalarCompiler = requireNonNull(scalarCompiler, "scalarCompiler");
+    }
+  }
+
+  /** Scalar compiler that remembers the code that it has compiled for each
+   * list of expressions and input row type. */
+  private static class CachingScalarCompiler implements ScalarCompiler {
+    private final ScalarCompiler compiler;
+    private final Map<Pair<List<RexNode>, RelDataType>, Scalar.Producer>
+        producers = new ConcurrentHashMap<>();
+
+    CachingScalarCompiler(ScalarCompiler compiler) {
+      this.compiler = compiler;
+    }
+
+    @Override public Scalar.Producer compile(List<RexNode> nodes,
+        RelDataType inputRowType) {
+      final Pair<List<RexNode>, RelDataType> key =
+          Pair.of(ImmutableList.copyOf(nodes), inputRowType);
+      return producers.computeIfAbsent(key,
+          k -> compiler.compile(k.left, k.right));
+    }
+  }
 }
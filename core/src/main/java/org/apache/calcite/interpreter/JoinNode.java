@@ -16,16 +16,28 @@
  */
 package org.apache.calcite.interpreter;
 
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.JoinInfo;
 import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.SqlTypeUtil;
 
 import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.util.Objects.requireNonNull;
@@ -33,6 +45,12 @@
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Join}.
+ *
+ * <p>If the join condition has equi-join keys whose values can be compared
+ * using {@link Object#equals(Object)}, the node reads the inner input into a
+ * hash table on those keys, and evaluates the condition only for inner rows
+ * whose keys are equal to those of the outer row. Otherwise it evaluates the
+ * condition for every pair of rows (a nested loop join).
  */
 public class JoinNode implements Node {
   private final Source leftSource;
@@ -41,17 +59,87 @@ public class JoinNode implements Node {
   private final Join rel;
   private final Scalar condition;
   private final Context context;
+  /** Key fields of the outer input, or null if the join is not hashed. */
+  private final int @Nullable [] outerKeys;
+  /** Key fields of the inner input, or null if the join is not hashed. */
+  private final int @Nullable [] innerKeys;
 
   public JoinNode(Compiler compiler, Join rel) {
     this.leftSource = compiler.source(rel, 0);
     this.rightSource = compiler.source(rel, 1);
     this.sink = compiler.sink(rel);
     this.condition =
-        compiler.compile(ImmutableList.of(rel.getCondition()),
+        compiler.compile(
+            ImmutableList.of(
+                expandDistinctFrom(rel.getCluster().getRexBuilder(),
+                    rel.getCondition())),
             compiler.combinedRowType(rel.getInputs()));
     this.rel = rel;
     this.context = compiler.createContext();
 
+    final JoinInfo joinInfo = rel.analyzeCondition();
+    if (isHashable(rel, joinInfo)) {
+      final int[] leftKeys = joinInfo.leftKeys.toIntArray();
+      final int[] rightKeys = joinInfo.rightKeys.toIntArray();
+      final boolean swap = rel.getJoinType() == JoinRelType.RIGHT;
+      this.outerKeys = swap ? rightKeys : leftKeys;
+      this.innerKeys = swap ? leftKeys : rightKeys;
+    } else {
+      this.outerKeys = null;
+      this.innerKeys = null;
+    }
+  }
+
+  /** Returns whether the interpreter evaluates a join using a hash table,
+   * rather than a nested loop. */
+  public static boolean isHashable(Join rel) {
+    return isHashable(rel, rel.analyzeCondition());
+  }
+
+  /** Returns whether the join has equi-join keys, and whether the values of
+   * each pair of keys are equal if and only if they are equal according to
+   * {@link Object#equals(Object)}. That is not the case for values of
+   * different types, or of DECIMAL or approximate numeric types (for
+   * example, {@code 1.0} and {@code 1.00} are equal decimals). */
+  private static boolean isHashable(Join rel, JoinInfo joinInfo) {
+    if (joinInfo.leftKeys.isEmpty()) {
+      return false;
+    }
+    final List<RelDataType> leftTypes =
+        RelOptUtil.getFieldTypeList(rel.getLeft().getRowType());
+    final List<RelDataType> rightTypes =
+        RelOptUtil.getFieldTypeList(rel.getRight().getRowType());
+    for (int i = 0; i < joinInfo.leftKeys.size(); i++) {
+      final RelDataType leftType = leftTypes.get(joinInfo.leftKeys.get(i));
+      final RelDataType rightType = rightTypes.get(joinInfo.rightKeys.get(i));
+      if (!SqlTypeUtil.equalSansNullability(leftType, rightType)
+          || SqlTypeUtil.isDecimal(leftType)
+          || SqlTypeUtil.isApproximateNumeric(leftType)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Expands {@code IS DISTINCT FROM} and {@code IS NOT DISTINCT FROM},
+   * which the compiler cannot translate, into comparisons and null
+   * tests. */
+  private static RexNode expandDistinctFrom(RexBuilder rexBuilder,
+      RexNode condition) {
+    return condition.accept(new RexShuttle() {
+      @Override public RexNode visitCall(RexCall call) {
+        final RexNode e = super.visitCall(call);
+        switch (e.getKind()) {
+        case IS_DISTINCT_FROM:
+        case IS_NOT_DISTINCT_FROM:
+          final RexCall c = (RexCall) e;
+          return RelOptUtil.isDistinctFrom(rexBuilder, c.operands.get(0),
+              c.operands.get(1), c.getKind() == SqlKind.IS_NOT_DISTINCT_FROM);
+        default:
+          return e;
+        }
+      }
+    });
   }
 
   @Override public void close() {
@@ -73,26 +161,39 @@ public JoinNode(Compiler compiler, Join rel) {
       innerSource = leftSource;
     }
 
-    // row from outer source
-    Row outerRow = null;
     // rows from inner source
-    List<Row> innerRows = null;
-    Set<Row> matchRowSet = new HashSet<>();
-    while ((outerRow = outerSource.receive()) != null) {
-      if (innerRows == null) {
-        innerRows = new ArrayList<Row>();
-        Row innerRow = null;
-        while ((innerRow = innerSource.receive()) != null) {
-          innerRows.add(innerRow);
+    final List<Row> innerRows = new ArrayList<>();
+    while (innerSource.receiveBatch(innerRows, Source.BATCH_SIZE) > 0) {
+      // keep reading
+    }
+    // inner rows by key, if the join is hashed
+    final @Nullable Map<Row, List<Row>> innerRowsByKey =
+        innerKeys == null ? null : index(innerRows, innerKeys);
+
+    // inner rows that have matched an outer row; identity matters, because
+    // the inner input may contain duplicate rows
+    final Set<Row> matchRowSet =
+        Collections.newSetFromMap(new IdentityHashMap<>());
+    final List<Row> outerRows = new ArrayList<>(Source.BATCH_SIZE);
+    while (outerSource.receiveBatch(outerRows, Source.BATCH_SIZE) > 0) {
+      for (Row outerRow : outerRows) {
+        final List<Row> candidateRows;
+        if (innerRowsByKey == null) {
+          candidateRows = innerRows;
+        } else {
+          candidateRows =
+              innerRowsByKey.getOrDefault(
+                  key(outerRow, requireNonNull(outerKeys, "outerKeys")),
+                  ImmutableList.of());
         }
+        matchRowSet.addAll(doJoin(outerRow, candidateRows, rel.getJoinType()));
       }
-      matchRowSet.addAll(doJoin(outerRow, innerRows, rel.getJoinType()));
+      outerRows.clear();
     }
     if (rel.getJoinType() == JoinRelType.FULL) {
       // send un-match rows for full join on right source
       List<Row> empty = new ArrayList<>();
-      // TODO: CALCITE-4308, JointNode in Interpreter might fail with NPE for FULL join
-      for (Row row : requireNonNull(innerRows, "innerRows")) {
+      for (Row row : innerRows) {
         if (matchRowSet.contains(row)) {
           continue;
         }
@@ -101,8 +202,32 @@ public JoinNode(Compiler compiler, Join rel) {
     }
   }
 
+  /** Builds a hash table of rows by their key.
+   *
+   * <p>Rows whose key contains nulls are included; whether they match is
+   * determined by the join condition, which may use
+   * {@code IS NOT DISTINCT FROM}. */
+  private static Map<Row, List<Row>> index(List<Row> rows, int[] keys) {
+    final Map<Row, List<Row>> map = new HashMap<>();
+    for (Row row : rows) {
+      map.computeIfAbsent(key(row, keys), k -> new ArrayList<>(1)).add(row);
+    }
+    return map;
+  }
+
+  private static Row key(Row row, int[] keys) {
+    final @Nullable Object[] values = new Object[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      values[i] = row.getObject(keys[i]);
+    }
+    return new Row(values);
+  }
+
   /**
    * Execution of the join action, returns the matched rows for the outer source row.
+   *
+   * <p>{@code innerRows} are the inner rows that may match; if the join is
+   * hashed, only those with the same key as the outer row.
    */
   private List<Row> doJoin(Row outerRow, List<Row> innerRows,
       JoinRelType joinRelType) throws InterruptedException {
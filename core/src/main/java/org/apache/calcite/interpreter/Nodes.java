@@ -50,6 +50,11 @@ public static class CoreCompiler extends Interpreter.CompilerImpl {
       super(interpreter, cluster);
     }
 
+    CoreCompiler(@UnknownInitialization Interpreter interpreter,
+        RelOptCluster cluster, Interpreter.ScalarCompiler scalarCompiler) {
+      super(interpreter, cluster, scalarCompiler);
+    }
+
     public void visit(Aggregate agg) {
       node = new AggregateNode(this, agg);
     }
@@ -18,6 +18,9 @@
 
 import org.apache.calcite.rel.core.Project;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Interpreter node that implements a
  * {@link org.apache.calcite.rel.core.Project}.
@@ -36,12 +39,18 @@ public ProjectNode(Compiler compiler, Project rel) {
   }
 
   @Override public void run() throws InterruptedException {
-    Row row;
-    while ((row = source.receive()) != null) {
-      context.values = row.getValues();
-      Object[] values = new Object[projectCount];
-      scalar.execute(context, values);
-      sink.send(new Row(values));
+    final List<Row> rows = new ArrayList<>(Source.BATCH_SIZE);
+    final List<Row> outRows = new ArrayList<>(Source.BATCH_SIZE);
+    while (source.receiveBatch(rows, Source.BATCH_SIZE) > 0) {
+      for (Row row : rows) {
+        context.values = row.getValues();
+        Object[] values = new Object[projectCount];
+        scalar.execute(context, values);
+        outRows.add(new Row(values));
+      }
+      sink.sendBatch(outRows);
+      rows.clear();
+      outRows.clear();
     }
   }
 }
@@ -18,6 +18,8 @@
 
 import org.apache.calcite.linq4j.Enumerable;
 
+import java.util.List;
+
 /**
  * Sink to which to send rows.
  *
@@ -26,6 +28,16 @@
 public interface Sink {
   void send(Row row) throws InterruptedException;
 
+  /** Sends a batch of rows.
+   *
+   * <p>The sink must not retain the list, which the caller may re-use; the
+   * default implementation calls {@link #send(Row)} for each row. */
+  default void sendBatch(List<Row> rows) throws InterruptedException {
+    for (Row row : rows) {
+      send(row);
+    }
+  }
+
   void end() throws InterruptedException;
 
   /** This method is temporary. It will be removed without notice. */
@@ -18,14 +18,38 @@
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.List;
+
 /**
  * Source of rows.
  *
  * <p>Corresponds to an input of a relational expression.
  */
 public interface Source extends AutoCloseable {
+  /** Number of rows that a node typically reads from a source, using
+   * {@link #receiveBatch(List, int)}, at a time. */
+  int BATCH_SIZE = 1024;
+
   /** Reads a row. Null means end of data. */
   @Nullable Row receive();
 
+  /** Reads up to {@code maxRowCount} rows, appending them to a list, and
+   * returns the number of rows read. Zero means end of data.
+   *
+   * <p>The default implementation calls {@link #receive()} repeatedly;
+   * sources that hold their rows in a collection should override it. */
+  default int receiveBatch(List<Row> rows, int maxRowCount) {
+    int n = 0;
+    while (n < maxRowCount) {
+      final Row row = receive();
+      if (row == null) {
+        break;
+      }
+      rows.add(row);
+      ++n;
+    }
+    return n;
+  }
+
   @Override void close();
 }
@@ -45,11 +45,18 @@
 import org.apache.calcite.materialize.MaterializationService;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.prepare.CalciteCatalogReader;
+import org.apache.calcite.prepare.PlanCache;
+import org.apache.calcite.prepare.SubPlanCache;
+import org.apache.calcite.rel.metadata.SharedRelMetadataCache;
 import org.apache.calcite.rel.type.DelegatingTypeSystem;
 import org.apache.calcite.rel.type.RelDataTypeSystem;
 import org.apache.calcite.rel.type.TimeFrameSet;
 import org.apache.calcite.rel.type.TimeFrames;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.MemoryTracker;
+import org.apache.calcite.runtime.RuntimeFilter;
+import org.apache.calcite.runtime.RuntimeStatistics;
+import org.apache.calcite.runtime.SpillManager;
 import org.apache.calcite.schema.SchemaPlus;
 import org.apache.calcite.schema.SchemaVersion;
 import org.apache.calcite.schema.Schemas;
@@ -108,6 +115,9 @@
   final CalciteSchema rootSchema;
   final Supplier<CalcitePrepare> prepareFactory;
   final CalciteServer server = new CalciteServerImpl();
+  final @Nullable PlanCache planCache;
+  final @Nullable SubPlanCache subPlanCache;
+  final @Nullable SharedRelMetadataCache metadataCache;
 
   // must be package-protected
   static final Trojan TROJAN = createTrojan();
@@ -163,6 +173,16 @@ protected CalciteConnectionImpl(Driver driver, AvaticaFactory factory,
     this.properties.put(InternalProperty.UNQUOTED_CASING, cfg.unquotedCasing());
     this.properties.put(InternalProperty.QUOTED_CASING, cfg.quotedCasing());
     this.properties.put(InternalProperty.QUOTING, cfg.quoting());
+    this.planCache =
+        cfg.planCacheSize() > 0 ? new PlanCache(cfg.planCacheSize()) : null;
+    this.subPlanCache =
+        cfg.subPlanCacheSize() > 0
+            ? new SubPlanCache(cfg.subPlanCacheSize())
+            : null;
+    this.metadataCache =
+        cfg.metadataCacheSize() > 0
+            ? new SharedRelMetadataCache(cfg.metadataCacheSize())
+            : null;
   }
 
   CalciteMetaImpl meta() {
@@ -256,6 +276,30 @@ <T> CalcitePrepare.CalciteSignature<T> parseQuery(
     return ((CalciteServerStatementImpl) serverStatement).cancelFlag;
   }
 
+  /** Returns the spill manager of the most recent execution of a statement,
+   * or null if spilling was not enabled. */
+  @Nullable SpillManager getSpillManager(Meta.StatementHandle handle)
+      throws NoSuchStatementException {
+    final CalciteServerStatement serverStatement = server.getStatement(handle);
+    return ((CalciteServerStatementImpl) serverStatement).spillManager;
+  }
+
+  /** Returns the memory tracker of the most recent execution of a
+   * statement, or null if memory was not tracked. */
+  @Nullable MemoryTracker getMemoryTracker(Meta.StatementHandle handle)
+      throws NoSuchStatementException {
+    final CalciteServerStatement serverStatement = server.getStatement(handle);
+    return ((CalciteServerStatementImpl) serverStatement).memoryTracker;
+  }
+
+  /** Returns the runtime statistics of the most recent execution of a
+   * statement, or null if it has not been executed. */
+  @Nullable RuntimeStatistics getRuntimeStatistics(
+      Meta.StatementHandle handle) throws NoSuchStatementException {
+    final CalciteServerStatement serverStatement = server.getStatement(handle);
+    return ((CalciteServerStatementImpl) serverStatement).runtimeStatistics;
+  }
+
   // CalciteConnection methods
 
   @Override public SchemaPlus getRootSchema() {
@@ -331,6 +375,38 @@ public <T> Enumerable<T> enumerable(Meta.StatementHandle handle,
     if (queryTimeout > 0 && queryTimeout < Integer.MAX_VALUE / 1000) {
       map.put(DataContext.Variable.TIMEOUT.camelName, queryTimeout * 1000L);
     }
+    final CalciteServerStatementImpl serverStatement;
+    try {
+      serverStatement =
+          (CalciteServerStatementImpl) server.getStatement(handle);
+    } catch (NoSuchStatementException e) {
+      throw new RuntimeException(e);
+    }
+    final long queryMemoryLimit = config().queryMemoryLimit();
+    final MemoryTracker memoryTracker;
+    if (queryMemoryLimit > 0) {
+      memoryTracker = new MemoryTracker(queryMemoryLimit);
+      map.put(DataContext.Variable.MEMORY_TRACKER.camelName, memoryTracker);
+    } else {
+      memoryTracker = null;
+    }
+    serverStatement.memoryTracker = memoryTracker;
+    final long spillMemoryBudget = config().spillMemoryBudget();
+    if (spillMemoryBudget > 0) {
+      final SpillManager spillManager =
+          new SpillManager(spillMemoryBudget, config().spillDirectory(),
+              memoryTracker);
+      map.put(DataContext.Variable.SPILL_MANAGER.camelName, spillManager);
+      serverStatement.spillManager = spillManager;
+    }
+    if (config().runtimeFilterMaxKeys() > 0) {
+      map.put(DataContext.Variable.RUNTIME_FILTERS.camelName,
+          RuntimeFilter.createRegistry());
+    }
+    final RuntimeStatistics runtimeStatistics = new RuntimeStatistics();
+    map.put(DataContext.Variable.RUNTIME_STATISTICS.camelName,
+        runtimeStatistics);
+    serverStatement.runtimeStatistics = runtimeStatistics;
     final DataContext dataContext = createDataContext(map, signature.rootSchema);
     return signature.enumerable(dataContext);
   }
@@ -587,6 +663,18 @@ static class ContextImpl implements CalcitePrepare.Context {
       return runner;
     }
 
+    @Override public @Nullable PlanCache getPlanCache() {
+      return connection.planCache;
+    }
+
+    @Override public @Nullable SubPlanCache getSubPlanCache() {
+      return connection.subPlanCache;
+    }
+
+    @Override public @Nullable SharedRelMetadataCache getMetadataCache() {
+      return connection.metadataCache;
+    }
+
     @Override public CalcitePrepare.SparkHandler spark() {
       final boolean enable = config().spark();
       return CalcitePrepare.Dummy.getSparkHandler(enable);
@@ -600,6 +688,9 @@ static class ContextImpl implements CalcitePrepare.Context {
     private @Nullable Iterator<Object> iterator;
     private Meta.@Nullable Signature signature;
     private final AtomicBoolean cancelFlag = new AtomicBoolean();
+    private @Nullable SpillManager spillManager;
+    private @Nullable MemoryTracker memoryTracker;
+    private @Nullable RuntimeStatistics runtimeStatistics;
 
     CalciteServerStatementImpl(CalciteConnectionImpl connection) {
       this.connection = requireNonNull(connection, "connection");
@@ -30,9 +30,12 @@
 import org.apache.calcite.plan.RelOptPlanner;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.prepare.CalcitePrepareImpl;
+import org.apache.calcite.prepare.PlanCache;
+import org.apache.calcite.prepare.SubPlanCache;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.rel.metadata.SharedRelMetadataCache;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rex.RexNode;
@@ -135,6 +138,24 @@ interface Context {
 
     /** Gets a runner; it can execute a relational expression. */
     RelRunner getRelRunner();
+
+    /** Returns the cache of prepared plans, or null if plans are not
+     * cached. */
+    default @Nullable PlanCache getPlanCache() {
+      return null;
+    }
+
+    /** Returns the cache of optimized sub-plans, or null if sub-plans are
+     * not cached. */
+    default @Nullable SubPlanCache getSubPlanCache() {
+      return null;
+    }
+
+    /** Returns the cache of metadata values shared by the statements of a
+     * connection, or null if values are not shared. */
+    default @Nullable SharedRelMetadataCache getMetadataCache() {
+      return null;
+    }
   }
 
   /** Callback to register Spark as the main engine. */
@@ -376,6 +397,17 @@ public Enumerable<T> enumerable(DataContext dataContext) {
     public List<RelCollation> getCollationList() {
       return collationList;
     }
+
+    /** Creates a copy of this signature, with the same plan, for a statement
+     * with different SQL, parameters and internal parameters. */
+    public CalciteSignature<T> copy(@Nullable String sql,
+        List<AvaticaParameter> parameterList,
+        Map<String, Object> internalParameters,
+        @Nullable CalciteSchema rootSchema) {
+      return new CalciteSignature<>(sql, parameterList, internalParameters,
+          rowType, columns, cursorFactory, rootSchema, collationList,
+          maxRowCount, bindable, statementType);
+    }
   }
 
   /** A union type of the three possible ways of expressing a query: as a SQL
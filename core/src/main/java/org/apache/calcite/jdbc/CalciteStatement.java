@@ -20,6 +20,9 @@
 import org.apache.calcite.avatica.Meta;
 import org.apache.calcite.avatica.NoSuchStatementException;
 import org.apache.calcite.linq4j.Queryable;
+import org.apache.calcite.runtime.MemoryTracker;
+import org.apache.calcite.runtime.RuntimeStatistics;
+import org.apache.calcite.runtime.SpillManager;
 import org.apache.calcite.server.CalciteServerStatement;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -65,6 +68,46 @@ public abstract class CalciteStatement extends AvaticaStatement {
     return (CalciteConnectionImpl) connection;
   }
 
+  /** Returns the spill manager of the most recent execution of this
+   * statement, from which you can find out how much data its operators wrote
+   * to disk; or null if spilling was not enabled.
+   *
+   * @see org.apache.calcite.config.CalciteConnectionProperty#SPILL_MEMORY_BUDGET
+   */
+  public @Nullable SpillManager getSpillManager() {
+    try {
+      return getConnection().getSpillManager(handle);
+    } catch (NoSuchStatementException e) {
+      throw new AssertionError("invalid statement", e);
+    }
+  }
+
+  /** Returns the memory tracker of the most recent execution of this
+   * statement, from which you can find out how much memory its operators
+   * used at their peak; or null if memory was not tracked.
+   *
+   * @see org.apache.calcite.config.CalciteConnectionProperty#QUERY_MEMORY_LIMIT
+   */
+  public @Nullable MemoryTracker getMemoryTracker() {
+    try {
+      return getConnection().getMemoryTracker(handle);
+    } catch (NoSuchStatementException e) {
+      throw new AssertionError("invalid statement", e);
+    }
+  }
+
+  /** Returns the counters that the operators of the most recent execution
+   * of this statement incremented as they ran, for example to record which
+   * strategy each adaptive join chose; or null if this statement has not
+   * been executed. */
+  public @Nullable RuntimeStatistics getRuntimeStatistics() {
+    try {
+      return getConnection().getRuntimeStatistics(handle);
+    } catch (NoSuchStatementException e) {
+      throw new AssertionError("invalid statement", e);
+    }
+  }
+
   protected <T> CalcitePrepare.CalciteSignature<T> prepare(
       Queryable<T> queryable) {
     final CalciteConnectionImpl calciteConnection = getConnection();
@@ -82,4 +82,11 @@ public void addListener(RelOptListener listener) {
       listener.relDiscarded(event);
     }
   }
+
+  // implement RelOptListener
+  @Override public void budgetExhausted(BudgetExhaustedEvent event) {
+    for (RelOptListener listener : listeners) {
+      listener.budgetExhausted(event);
+    }
+  }
 }
@@ -25,6 +25,7 @@
 import org.apache.calcite.rel.metadata.RelMetadataProvider;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.metadata.RelMetadataQueryBase;
+import org.apache.calcite.rel.metadata.SharedRelMetadataCache;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexNode;
@@ -35,6 +36,9 @@
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 
@@ -62,6 +66,26 @@ public class RelOptCluster {
   private final RelTraitSet emptyTraitSet;
   private @Nullable RelMetadataQuery mq;
   private Supplier<RelMetadataQuery> mqSupplier;
+  /** Thread that called {@link #setMetadataQueryPerThread(boolean)}; null if
+   * not enabled. */
+  private volatile @Nullable Thread mqOwner;
+  /** Metadata provider of {@link #mqOwner}. */
+  private @Nullable JaninoRelMetadataProvider mqOwnerProvider;
+  /** Metadata query of each thread other than {@link #mqOwner}, while
+   * per-thread queries are enabled. */
+  private final Map<Thread, RelMetadataQuery> threadMqs =
+      new ConcurrentHashMap<>();
+  /** Metadata queries that threads used while per-thread queries were last
+   * enabled. Retained, rather than keyed by thread, so that the values they
+   * have cached can be used by whichever threads run next, and so that
+   * threads that have since ended are not kept alive. */
+  private final Queue<RelMetadataQuery> idleMqs =
+      new ConcurrentLinkedQueue<>();
+  /** Number of values computed by metadata queries that have been
+   * discarded. */
+  private long discardedComputeCount;
+  /** Metadata cache shared with other clusters, or null. */
+  private @Nullable SharedRelMetadataCache sharedMetadataCache;
 
   //~ Constructors -----------------------------------------------------------
 
@@ -195,12 +219,137 @@ public void setMetadataQuerySupplier(
    * for example if you are in a {@link RelOptRule#onMatch(RelOptRuleCall)}
    * method, then use {@link RelOptRuleCall#getMetadataQuery()} instead. */
   public RelMetadataQuery getMetadataQuery() {
+    final Thread owner = this.mqOwner;
+    if (owner != null && Thread.currentThread() != owner) {
+      return threadMqs.computeIfAbsent(Thread.currentThread(), thread -> {
+        final RelMetadataQuery idleMq = idleMqs.poll();
+        return idleMq != null ? idleMq : createThreadMetadataQuery();
+      });
+    }
     if (mq == null) {
       mq = castNonNull(mqSupplier).get();
+      if (sharedMetadataCache != null) {
+        mq.setSharedCache(sharedMetadataCache);
+      }
     }
     return mq;
   }
 
+  /**
+   * Sets a cache of metadata values that the metadata queries of this cluster
+   * share with other clusters.
+   *
+   * <p>Clusters that share a cache should read the same schema, and use the
+   * same metadata provider. Values for trees that contain a planner's
+   * placeholders (such as RelSubset) are keyed on the placeholders' state, so
+   * they are not used after the planner has changed that state.
+   *
+   * @see SharedRelMetadataCache
+   */
+  public void setSharedMetadataCache(
+      @Nullable SharedRelMetadataCache sharedMetadataCache) {
+    this.sharedMetadataCache = sharedMetadataCache;
+    if (mq != null) {
+      mq.setSharedCache(sharedMetadataCache);
+    }
+  }
+
+  /** Returns the cache of metadata values that this cluster shares with
+   * other clusters, or null. */
+  public @Nullable SharedRelMetadataCache getSharedMetadataCache() {
+    return sharedMetadataCache;
+  }
+
+  /**
+   * Enables or disables a separate {@link RelMetadataQuery} for each thread.
+   *
+   * <p>A planner that fires rules on several threads enables this while they
+   * run, because a RelMetadataQuery caches results and is not thread-safe.
+   * While it is enabled, {@link #getMetadataQuery()} returns the usual
+   * instance on the thread that enabled it, and on each other thread an
+   * instance created by the {@link #getMetadataQuerySupplier() supplier}.
+   *
+   * <p>Disabling it does not discard the other threads' instances; when it
+   * is next enabled, threads reuse them, and the values that they cached. At
+   * most one instance is retained for each thread that ran at the same time,
+   * however many threads run over time. Call
+   * {@link #clearMetadataCache(RelNode)} when a relational expression's
+   * metadata changes, and {@link #invalidateMetadataQuery()} to discard all
+   * instances.
+   */
+  public void setMetadataQueryPerThread(boolean perThread) {
+    if (!perThread) {
+      mqOwner = null;
+      idleMqs.addAll(threadMqs.values());
+      threadMqs.clear();
+      return;
+    }
+    mqOwnerProvider = RelMetadataQueryBase.THREAD_PROVIDERS.get();
+    mqOwner = Thread.currentThread();
+  }
+
+  private RelMetadataQuery createThreadMetadataQuery() {
+    // The supplier may need the metadata provider of the owner thread.
+    final JaninoRelMetadataProvider previous =
+        RelMetadataQueryBase.THREAD_PROVIDERS.get();
+    RelMetadataQueryBase.THREAD_PROVIDERS.set(mqOwnerProvider);
+    try {
+      final RelMetadataQuery threadQuery = castNonNull(mqSupplier).get();
+      threadQuery.setSharedCache(sharedMetadataCache);
+      return threadQuery;
+    } finally {
+      RelMetadataQueryBase.THREAD_PROVIDERS.set(previous);
+    }
+  }
+
+  /**
+   * Removes the cached metadata values of a relational expression from the
+   * current {@link RelMetadataQuery} and from those of other threads.
+   *
+   * <p>If called, while per-thread instances are enabled, on a thread other
+   * than the one that enabled them, removes the values only from that
+   * thread's instance.
+   *
+   * @param rel Relational expression whose cached metadata should be removed
+   * @return whether any values were removed
+   */
+  public boolean clearMetadataCache(RelNode rel) {
+    final Thread owner = this.mqOwner;
+    if (owner != null && Thread.currentThread() != owner) {
+      return getMetadataQuery().clearCache(rel);
+    }
+    boolean cleared = false;
+    if (mq != null) {
+      cleared = mq.clearCache(rel);
+    }
+    for (RelMetadataQuery threadQuery : threadMqs.values()) {
+      cleared |= threadQuery.clearCache(rel);
+    }
+    for (RelMetadataQuery idleQuery : idleMqs) {
+      cleared |= idleQuery.clearCache(rel);
+    }
+    return cleared;
+  }
+
+  /**
+   * Returns the number of metadata values that the handlers of this
+   * cluster's {@link RelMetadataQuery} instances, on all threads, have
+   * computed rather than found in a cache, since the cluster was created.
+   */
+  public long getMetadataComputeCount() {
+    long count = discardedComputeCount;
+    if (mq != null) {
+      count += mq.getComputeCount();
+    }
+    for (RelMetadataQuery threadQuery : threadMqs.values()) {
+      count += threadQuery.getComputeCount();
+    }
+    for (RelMetadataQuery idleQuery : idleMqs) {
+      count += idleQuery.getComputeCount();
+    }
+    return count;
+  }
+
   /**
    * Returns the supplier of RelMetadataQuery.
    */
@@ -213,7 +362,10 @@ public Supplier<RelMetadataQuery> getMetadataQuerySupplier() {
    * invalid. Typically invoked from {@link RelOptRuleCall#transformTo}.
    */
   public void invalidateMetadataQuery() {
+    discardedComputeCount = getMetadataComputeCount();
     mq = null;
+    threadMqs.clear();
+    idleMqs.clear();
   }
 
   /**
@@ -81,6 +81,18 @@ public interface RelOptListener extends EventListener {
    */
   void relChosen(RelChosenEvent event);
 
+  /**
+   * Notifies this listener that the planner has used up its planning budget,
+   * and will stop firing rules and return the cheapest plan that it has found
+   * so far.
+   *
+   * <p>The default implementation does nothing.
+   *
+   * @param event details about the event
+   */
+  default void budgetExhausted(BudgetExhaustedEvent event) {
+  }
+
   //~ Inner Classes ----------------------------------------------------------
 
   /**
@@ -184,4 +196,40 @@ public RuleProductionEvent(
       super(eventSource, rel, ruleCall, before);
     }
   }
+
+  /** Event indicating that the planner has used up its planning budget. The
+   * relational expression is the root of the plan. */
+  class BudgetExhaustedEvent extends RelEvent {
+    private final long elapsedMillis;
+    private final long ruleFireCount;
+    private final int relCount;
+
+    public BudgetExhaustedEvent(
+        Object eventSource,
+        RelNode rel,
+        long elapsedMillis,
+        long ruleFireCount,
+        int relCount) {
+      super(eventSource, rel);
+      this.elapsedMillis = elapsedMillis;
+      this.ruleFireCount = ruleFireCount;
+      this.relCount = relCount;
+    }
+
+    /** Returns the number of milliseconds that the planner had spent. */
+    public long getElapsedMillis() {
+      return elapsedMillis;
+    }
+
+    /** Returns the number of rule matches that the planner had fired. */
+    public long getRuleFireCount() {
+      return ruleFireCount;
+    }
+
+    /** Returns the number of relational expressions that the planner had
+     * registered. */
+    public int getRelCount() {
+      return relCount;
+    }
+  }
 }
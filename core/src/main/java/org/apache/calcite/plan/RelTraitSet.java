@@ -28,9 +28,9 @@
 
 import java.util.AbstractList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
@@ -706,7 +706,9 @@ public RelTraitSet simplify() {
 
   /** Cache of trait sets. */
   private static class Cache {
-    final Map<RelTraitSet, RelTraitSet> map = new HashMap<>();
+    /** Concurrent, because a planner may fire rules, and so create trait
+     * sets, on several threads. */
+    final Map<RelTraitSet, RelTraitSet> map = new ConcurrentHashMap<>();
 
     Cache() {
     }
@@ -48,5 +48,24 @@ public enum HepMatchOrder {
    * {@link #ARBITRARY} in cases such as
    * {@link org.apache.calcite.rel.core.Union} with large fan-out.
    */
-  DEPTH_FIRST
+  DEPTH_FIRST,
+
+  /**
+   * Match using a work list of vertices.
+   *
+   * <p>Initially every vertex is on the work list. After a transformation,
+   * only the vertices that it affected are put back on the list: the new
+   * vertex, any vertices created beneath it, their inputs, and their ancestors
+   * up to the depth of the deepest operand tree among the rules being
+   * applied. Rules are indexed by the class of their root operand, so a
+   * vertex is matched only against rules that could apply to it.
+   *
+   * <p>It reaches a fixed point after far fewer match attempts than
+   * {@link #ARBITRARY} on large trees. Rules whose
+   * {@link org.apache.calcite.plan.RelOptRule#matches} method looks further
+   * below the matched relational expressions than their operands (for
+   * example, using metadata) may not be re-examined when a distant
+   * descendant changes.
+   */
+  WORKLIST
 }
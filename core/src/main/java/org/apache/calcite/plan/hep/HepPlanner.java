@@ -59,6 +59,7 @@
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -102,6 +103,10 @@ public class HepPlanner extends AbstractRelOptPlanner {
 
   private final boolean noDag;
 
+  /** If not null, the list to which {@link #addRelToGraph} adds the vertices
+   * that it creates; used by {@link HepMatchOrder#WORKLIST}. */
+  private @Nullable List<HepRelVertex> addedVertices;
+
   /**
    * Query graph, with edges directed from parent to child. This is a
    * single-rooted DAG, possibly with additional roots corresponding to
@@ -402,6 +407,11 @@ private void applyRules(HepProgram.State programState,
 
     LOGGER.trace("Applying rule set {}", rules);
 
+    if (programState.matchOrder == HepMatchOrder.WORKLIST) {
+      applyRulesFromWorkList(programState, rules, forceConversions);
+      return;
+    }
+
     final boolean fullRestartAfterTransformation =
         programState.matchOrder != HepMatchOrder.ARBITRARY
             && programState.matchOrder != HepMatchOrder.DEPTH_FIRST;
@@ -449,6 +459,117 @@ private void applyRules(HepProgram.State programState,
     } while (!fixedPoint);
   }
 
+  /** Applies rules until fixed point, re-examining only the vertices that
+   * were affected by each transformation.
+   *
+   * @see HepMatchOrder#WORKLIST */
+  private void applyRulesFromWorkList(HepProgram.State programState,
+      Collection<RelOptRule> rules, boolean forceConversions) {
+    // Index the rules by the class of their root operand. The list of rules
+    // that can match a given class of RelNode is computed on first use.
+    final Map<Class<?>, List<RelOptRule>> rulesByClass = new HashMap<>();
+    int ancestorDepth = 1;
+    for (RelOptRule rule : rules) {
+      ancestorDepth = Math.max(ancestorDepth, operandDepth(rule.getOperand()) - 1);
+    }
+
+    collectGarbage();
+    final Deque<HepRelVertex> workList = new ArrayDeque<>();
+    final Set<HepRelVertex> onWorkList = new HashSet<>();
+    for (HepRelVertex vertex
+        : DepthFirstIterator.of(graph, requireNonNull(root, "root"))) {
+      workList.add(vertex);
+      onWorkList.add(vertex);
+    }
+
+    final List<HepRelVertex> addedVertices = new ArrayList<>();
+    int nMatches = 0;
+    while (!workList.isEmpty()) {
+      final HepRelVertex vertex = workList.remove();
+      onWorkList.remove(vertex);
+      // Make sure there's no garbage; rules can't deal with firing on
+      // garbage. This is a no-op unless there has been a transformation.
+      collectGarbage();
+      if (!graph.vertexSet().contains(vertex)) {
+        continue;
+      }
+      final List<RelOptRule> candidateRules =
+          rulesByClass.computeIfAbsent(vertex.getCurrentRel().getClass(),
+              c -> {
+                final List<RelOptRule> list = new ArrayList<>();
+                for (RelOptRule rule : rules) {
+                  if (rule.getOperand().getMatchedClass().isAssignableFrom(c)) {
+                    list.add(rule);
+                  }
+                }
+                return list;
+              });
+      for (RelOptRule rule : candidateRules) {
+        this.addedVertices = addedVertices;
+        final HepRelVertex newVertex;
+        try {
+          newVertex = applyRule(rule, vertex, forceConversions);
+        } finally {
+          this.addedVertices = null;
+        }
+        if (newVertex == null || newVertex == vertex) {
+          addedVertices.clear();
+          continue;
+        }
+        ++nMatches;
+        if (nMatches >= programState.matchLimit) {
+          return;
+        }
+
+        // Re-examine the new vertex first, then the vertices beneath it that
+        // were created by the transformation, and the inputs of those
+        // vertices (which now have a new parent, and so may now need a
+        // converter or be a common sub-expression). Then re-examine the
+        // ancestors of the new vertex, because rules with deeper operands may
+        // now match them.
+        final Set<HepRelVertex> affected = new LinkedHashSet<>();
+        affected.add(newVertex);
+        for (HepRelVertex added : addedVertices) {
+          affected.add(added);
+          for (RelNode input : added.getCurrentRel().getInputs()) {
+            affected.add((HepRelVertex) input);
+          }
+        }
+        addedVertices.clear();
+        List<HepRelVertex> level = ImmutableList.of(newVertex);
+        for (int i = 0; i < ancestorDepth && !level.isEmpty(); i++) {
+          final List<HepRelVertex> parents = new ArrayList<>();
+          for (HepRelVertex v : level) {
+            for (HepRelVertex parent : Graphs.predecessorListOf(graph, v)) {
+              if (affected.add(parent)) {
+                parents.add(parent);
+              }
+            }
+          }
+          level = parents;
+        }
+        final List<HepRelVertex> toAdd = new ArrayList<>(affected);
+        Collections.reverse(toAdd);
+        for (HepRelVertex v : toAdd) {
+          if (onWorkList.add(v)) {
+            workList.addFirst(v);
+          }
+        }
+        break;
+      }
+    }
+  }
+
+  /** Returns the height of an operand tree; 1 if the operand has no
+   * children. */
+  private static int operandDepth(RelOptRuleOperand operand) {
+    int depth = 0;
+    for (RelOptRuleOperand child : operand.getChildOperands()) {
+      depth = Math.max(depth, operandDepth(child));
+    }
+    return depth + 1;
+  }
+
   private Iterator<HepRelVertex> getGraphIterator(
       HepProgram.State programState, HepRelVertex start) {
     // Make sure there's no garbage, because topological sort
@@ -464,6 +585,7 @@ private Iterator<HepRelVertex> getGraphIterator(
     switch (requireNonNull(programState.matchOrder, "programState.matchOrder")) {
     case ARBITRARY:
     case DEPTH_FIRST:
+    case WORKLIST:
       return DepthFirstIterator.of(graph, start).iterator();
 
     case TOP_DOWN:
@@ -837,6 +959,9 @@ private HepRelVertex addRelToGraph(
     HepRelVertex newVertex = new HepRelVertex(rel);
     graph.addVertex(newVertex);
     updateVertex(newVertex, rel);
+    if (addedVertices != null) {
+      addedVertices.add(newVertex);
+    }
 
     for (RelNode input : rel.getInputs()) {
       graph.addEdge(newVertex, (HepRelVertex) input);
@@ -16,11 +16,21 @@
  */
 package org.apache.calcite.plan.volcano;
 
+import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.util.trace.CalciteTrace;
 
+import com.google.common.util.concurrent.Futures;
+
 import org.slf4j.Logger;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static java.util.Objects.requireNonNull;
 
 /***
@@ -29,11 +39,33 @@
  *
  * <p>The planner iterates over the rule matches presented
  * by the rule queue until the rule queue becomes empty.
+ *
+ * <p>If the planner's {@link VolcanoPlanner#getParallelism() parallelism}
+ * is greater than 1, the driver pops a batch of matches at a time, fires
+ * them concurrently while the state of the planner is frozen, then
+ * registers the expressions they produced in the order that the matches
+ * were popped.
  */
 class IterativeRuleDriver implements RuleDriver {
 
   private static final Logger LOGGER = CalciteTrace.getPlannerTracer();
 
+  /** Number of rule matches per thread in each batch. */
+  private static final int BATCH_SIZE_PER_THREAD = 8;
+
+  private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+  /** Pool of threads on which rules are fired, shared by all planners.
+   * Threads are created on demand, and are daemons, so that they do not
+   * prevent the JVM from exiting. */
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(r -> {
+        final Thread thread =
+            new Thread(r, "calcite-planner-" + THREAD_ID.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
   private final VolcanoPlanner planner;
   private final IterativeRuleQueue ruleQueue;
 
@@ -47,9 +79,16 @@ class IterativeRuleDriver implements RuleDriver {
   }
 
   @Override public void drive() {
+    if (planner.getParallelism() > 1) {
+      driveParallel(planner.getParallelism());
+      return;
+    }
     while (true) {
       requireNonNull(planner.root, "RelSubset must not be null at this point");
       LOGGER.debug("Best cost before rule match: {}", planner.root.bestCost);
+      if (planner.isBudgetExhausted()) {
+        break;
+      }
 
       VolcanoRuleMatch match = ruleQueue.popMatch();
       if (match == null) {
@@ -72,6 +111,89 @@ class IterativeRuleDriver implements RuleDriver {
 
   }
 
+  private void driveParallel(int parallelism) {
+    final List<VolcanoRuleMatch> batch = new ArrayList<>();
+    while (true) {
+      requireNonNull(planner.root, "RelSubset must not be null at this point");
+      LOGGER.debug("Best cost before rule batch: {}", planner.root.bestCost);
+      if (planner.isBudgetExhausted()) {
+        break;
+      }
+
+      batch.clear();
+      while (batch.size() < parallelism * BATCH_SIZE_PER_THREAD) {
+        final VolcanoRuleMatch match = ruleQueue.popMatch();
+        if (match == null) {
+          break;
+        }
+        batch.add(match);
+      }
+      if (batch.isEmpty()) {
+        break;
+      }
+
+      try {
+        planner.checkCancel();
+        final boolean[] speculated =
+            speculate(planner.root.getCluster(), batch, parallelism);
+        for (int i = 0; i < batch.size(); i++) {
+          final VolcanoRuleMatch match = batch.get(i);
+          if (speculated[i]) {
+            match.replay();
+          } else {
+            // The rule needed to modify the planner, or the match could not
+            // fire. Fire it in the usual way.
+            match.onMatch();
+          }
+          planner.canonize();
+        }
+      } catch (VolcanoTimeoutException e) {
+        LOGGER.warn("Volcano planning times out, cancels the subsequent optimization.");
+        planner.canonize();
+        break;
+      }
+    }
+  }
+
+  /** Fires each match in a batch speculatively, on up to
+   * {@code parallelism} threads (including the current thread), and
+   * returns whether each succeeded. */
+  private boolean[] speculate(RelOptCluster cluster,
+      List<VolcanoRuleMatch> batch, int parallelism) {
+    final boolean[] canFire = new boolean[batch.size()];
+    for (int i = 0; i < batch.size(); i++) {
+      canFire[i] = batch.get(i).canFire();
+    }
+    final boolean[] succeeded = new boolean[batch.size()];
+    final AtomicInteger next = new AtomicInteger();
+    final Runnable worker = () -> {
+      for (;;) {
+        final int i = next.getAndIncrement();
+        if (i >= batch.size()) {
+          return;
+        }
+        succeeded[i] = canFire[i] && batch.get(i).speculate();
+      }
+    };
+    final List<Future<?>> futures = new ArrayList<>();
+    cluster.setMetadataQueryPerThread(true);
+    planner.speculating = true;
+    try {
+      for (int i = 1; i < parallelism && i < batch.size(); i++) {
+        futures.add(EXECUTOR.submit(worker));
+      }
+      try {
+        worker.run();
+      } finally {
+        futures.forEach(Futures::getUnchecked);
+      }
+    } finally {
+      planner.speculating = false;
+      cluster.setMetadataQueryPerThread(false);
+    }
+    return succeeded;
+  }
+
   @Override public void onProduce(RelNode rel, RelSubset subset) {
   }
 
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelDigest;
+import org.apache.calcite.rel.RelNode;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Hash table that holds the unique registered relational expression for each
+ * {@link RelDigest}; the planner uses it to hash-cons relational
+ * expressions.
+ *
+ * <p>It replaces a {@code HashMap<RelDigest, RelNode>}. Because each entry's
+ * key is the digest of its value, the table stores only the relational
+ * expression and the hash code that its digest had when it was added, in two
+ * parallel arrays with open addressing and linear probing. That costs about
+ * 16 bytes per expression, compared to about 48 bytes for a
+ * {@code HashMap} entry.
+ *
+ * <p>The digest of a relational expression includes the identities of its
+ * input subsets, and so changes when a subset is merged into another.
+ * As with a {@code HashMap}, the caller must remove an expression before
+ * changing its inputs, and add it again afterwards.
+ */
+final class RelDigestTable {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private @Nullable RelNode[] rels;
+  private int[] hashes;
+  private int size;
+
+  RelDigestTable() {
+    rels = new RelNode[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+  }
+
+  /** Returns the number of relational expressions in this table. */
+  int size() {
+    return size;
+  }
+
+  /** Removes all relational expressions. */
+  void clear() {
+    Arrays.fill(rels, null);
+    size = 0;
+  }
+
+  /** Returns the relational expression whose digest is equal to
+   * {@code digest}, or null. */
+  @Nullable RelNode get(RelDigest digest) {
+    final int i = find(digest, spread(digest.hashCode()));
+    return i < 0 ? null : rels[i];
+  }
+
+  /** Adds a relational expression, unless there is already an expression
+   * with an equal digest, in which case returns that expression. */
+  @Nullable RelNode putIfAbsent(RelNode rel) {
+    final RelDigest digest = rel.getRelDigest();
+    final int hash = spread(digest.hashCode());
+    final int i = find(digest, hash);
+    if (i >= 0) {
+      return rels[i];
+    }
+    if ((size + 1) * 2 > rels.length) {
+      resize(rels.length * 2);
+    }
+    insert(rel, hash);
+    ++size;
+    return null;
+  }
+
+  /** Removes the relational expression whose digest is equal to
+   * {@code digest}, and returns it; or returns null if there is no such
+   * expression. */
+  @Nullable RelNode remove(RelDigest digest) {
+    int i = find(digest, spread(digest.hashCode()));
+    if (i < 0) {
+      return null;
+    }
+    final RelNode removed = rels[i];
+    rels[i] = null;
+    --size;
+    // Move back later entries in the same cluster, so that every entry can
+    // still be reached from its home slot without crossing an empty slot.
+    final int mask = rels.length - 1;
+    int j = i;
+    for (;;) {
+      j = (j + 1) & mask;
+      final RelNode rel = rels[j];
+      if (rel == null) {
+        return removed;
+      }
+      final int home = hashes[j] & mask;
+      if (((j - home) & mask) >= ((j - i) & mask)) {
+        rels[i] = rel;
+        hashes[i] = hashes[j];
+        rels[j] = null;
+        i = j;
+      }
+    }
+  }
+
+  /** Returns the slot of the relational expression whose digest is equal to
+   * {@code digest}, or -1. */
+  private int find(RelDigest digest, int hash) {
+    final int mask = rels.length - 1;
+    for (int i = hash & mask;; i = (i + 1) & mask) {
+      final RelNode rel = rels[i];
+      if (rel == null) {
+        return -1;
+      }
+      if (hashes[i] == hash) {
+        final RelDigest digest2 = rel.getRelDigest();
+        if (digest2 == digest || digest.equals(digest2)) {
+          return i;
+        }
+      }
+    }
+  }
+
+  private void insert(RelNode rel, int hash) {
+    final int mask = rels.length - 1;
+    int i = hash & mask;
+    while (rels[i] != null) {
+      i = (i + 1) & mask;
+    }
+    rels[i] = rel;
+    hashes[i] = hash;
+  }
+
+  private void resize(int capacity) {
+    final @Nullable RelNode[] oldRels = rels;
+    final int[] oldHashes = hashes;
+    rels = new RelNode[capacity];
+    hashes = new int[capacity];
+    for (int i = 0; i < oldRels.length; i++) {
+      final RelNode rel = oldRels[i];
+      if (rel != null) {
+        insert(rel, oldHashes[i]);
+      }
+    }
+  }
+
+  /** Spreads the high bits of a hash code into the low bits, which are used
+   * to choose a slot. */
+  private static int spread(int h) {
+    return h ^ (h >>> 16);
+  }
+}
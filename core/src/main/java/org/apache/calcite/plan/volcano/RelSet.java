@@ -31,6 +31,7 @@
 import org.apache.calcite.util.trace.CalciteTrace;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -86,7 +87,7 @@ class RelSet {
    * Records conversions / enforcements that have happened on the
    * pair of derived and required traitset.
    */
-  final Set<Pair<RelTraitSet, RelTraitSet>> conversions = new HashSet<>();
+  private @Nullable Set<Pair<RelTraitSet, RelTraitSet>> conversions;
 
   /**
    * Variables that are set by relational expressions in this set
@@ -112,8 +113,8 @@ class RelSet {
       Set<CorrelationId> variablesPropagated,
       Set<CorrelationId> variablesUsed) {
     this.id = id;
-    this.variablesPropagated = variablesPropagated;
-    this.variablesUsed = variablesUsed;
+    this.variablesPropagated = ImmutableSet.copyOf(variablesPropagated);
+    this.variablesUsed = ImmutableSet.copyOf(variablesUsed);
   }
 
   //~ Methods ----------------------------------------------------------------
@@ -217,6 +218,9 @@ void addConverters(RelSubset subset, boolean required,
         continue;
       }
 
+      if (conversions == null) {
+        conversions = new HashSet<>();
+      }
       if (!conversions.add(Pair.of(from.getTraitSet(), to.getTraitSet()))) {
         continue;
       }
@@ -264,6 +268,10 @@ RelSubset getOrCreateSubset(
     boolean needsConverter = false;
     final VolcanoPlanner planner = (VolcanoPlanner) cluster.getPlanner();
     RelSubset subset = getSubset(traits);
+    if (subset == null
+        || (required ? !subset.isRequired() : !subset.isDelivered())) {
+      planner.checkNotSpeculating();
+    }
 
     if (subset == null) {
       needsConverter = true;
@@ -327,6 +335,7 @@ void addInternal(RelNode rel) {
 
       VolcanoPlanner planner =
           (VolcanoPlanner) rel.getCluster().getPlanner();
+      planner.onMembershipChanged(this);
       if (planner.getListener() != null) {
         postEquivalenceEvent(planner, rel);
       }
@@ -227,6 +227,16 @@ boolean isEnforceDisabled() {
     return set.rel;
   }
 
+  /** Returns the timestamp of this subset's metadata. It increases when the
+   * best expression of this subset changes, or when a relational expression
+   * is added to its set; metadata values computed for this subset before then
+   * may no longer be valid.
+   *
+   * @see org.apache.calcite.rel.metadata.SharedRelMetadataCache */
+  public long getMetadataTimestamp() {
+    return timestamp;
+  }
+
   @API(since = "1.27", status = API.Status.INTERNAL)
   public RelNode getBestOrOriginal() {
     RelNode result = getBest();
@@ -22,6 +22,7 @@
 import org.apache.calcite.rel.PhysicalNode;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.convert.ConverterRule;
+import org.apache.calcite.rel.metadata.RelMdUtil;
 import org.apache.calcite.util.Pair;
 import org.apache.calcite.util.trace.CalciteTrace;
 
@@ -104,6 +105,10 @@ class TopDownRuleDriver implements RuleDriver {
     try {
       // Iterates until the root is fully optimized.
       while (!tasks.isEmpty()) {
+        if (planner.isBudgetExhausted()) {
+          tasks.clear();
+          break;
+        }
         Task task = tasks.pop();
         description.log(task);
         task.perform();
@@ -440,7 +445,7 @@ private class EnsureGroupExplored implements Task {
       input.setExplored();
       for (RelSubset subset : input.getSet().subsets) {
         // Clear the LB cache as exploring state has changed.
-        input.getCluster().getMetadataQuery().clearCache(subset);
+        RelMdUtil.clearCache(subset);
       }
     }
 
@@ -26,6 +26,7 @@
 import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptCostFactory;
 import org.apache.calcite.plan.RelOptLattice;
+import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
 import org.apache.calcite.plan.RelOptMaterializations;
 import org.apache.calcite.plan.RelOptPlanner;
@@ -81,6 +82,7 @@
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -116,11 +118,10 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
   final List<RelSet> allSets = new ArrayList<>();
 
   /**
-   * Canonical map from {@link String digest} to the unique
+   * Canonical map from {@link RelDigest digest} to the unique
    * {@link RelNode relational expression} with that digest.
    */
-  private final Map<RelDigest, RelNode> mapDigestToRel =
-      new HashMap<>();
+  private final RelDigestTable mapDigestToRel = new RelDigestTable();
 
   /**
    * Map each registered expression ({@link RelNode}) to its equivalence set
@@ -205,6 +206,42 @@ public class VolcanoPlanner extends AbstractRelOptPlanner {
    */
   final Set<RelSubset> explorationRoots = new HashSet<>();
 
+  /**
+   * Number of threads on which to fire rule matches; see
+   * {@link #setParallelism(int)}.
+   */
+  private int parallelism = 1;
+
+  /**
+   * Whether rule matches are being fired concurrently, during which the
+   * state of the planner must not change.
+   */
+  volatile boolean speculating;
+
+  /** Maximum number of milliseconds to spend in {@link #findBestExp()};
+   * 0 means no limit. See {@link #setBudget(long, long, int)}. */
+  private long budgetMillis;
+
+  /** Maximum number of rule matches to fire in {@link #findBestExp()};
+   * 0 means no limit. */
+  private long budgetRuleFires;
+
+  /** Maximum number of relational expressions to register; 0 means no
+   * limit. */
+  private int budgetRelCount;
+
+  /** Value of {@link System#nanoTime()} when {@link #findBestExp()} was
+   * called. */
+  private long startNanos;
+
+  /** Number of rule matches fired since {@link #findBestExp()} was
+   * called. */
+  long ruleFireCount;
+
+  /** Whether the planner has used up its budget, and is to stop firing
+   * rules. */
+  private boolean budgetExhausted;
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -267,6 +304,118 @@ public void setTopDownOpt(boolean value) {
     initRuleQueue();
   }
 
+  /**
+   * Sets the number of threads on which to fire rule matches. The default is
+   * 1.
+   *
+   * <p>If greater than 1, and top-down optimization is not enabled, the
+   * planner pops a batch of matches from the rule queue and fires them
+   * concurrently, while the state of the planner is frozen; it then
+   * registers the expressions that they produced, on the current thread, in
+   * the order that the matches were popped. A rule that tries to modify the
+   * planner during this phase (for example, by calling
+   * {@link #changeTraits} to create a subset, or {@link #prune}) is
+   * abandoned, and fired again in its turn on the current thread. For a
+   * given parallelism, the resulting plan is deterministic.
+   *
+   * <p>Rules must not modify state other than via the planner, and must
+   * obtain metadata via
+   * {@link org.apache.calcite.plan.RelOptCluster#getMetadataQuery()} (or
+   * {@link org.apache.calcite.plan.RelOptRuleCall#getMetadataQuery()}),
+   * which gives each thread its own {@link RelMetadataQuery}.
+   */
+  public void setParallelism(int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive: "
+          + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /** Returns the number of relational expressions registered in this
+   * planner. */
+  public int getRelCount() {
+    return mapRel2Subset.size();
+  }
+
+  /** Returns the number of threads on which to fire rule matches. */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets the budget for {@link #findBestExp()}. A value of 0 means no limit.
+   *
+   * <p>Unlike {@link #setCancelFlag cancellation}, which aborts planning, the
+   * budget stops the planner firing rules once it has been used up, and
+   * {@link #findBestExp()} returns the cheapest plan that it has found so
+   * far. If the planner has not yet found a complete plan when the budget is
+   * used up, it continues until it has found one.
+   *
+   * <p>When the budget is used up, the planner sends a
+   * {@link RelOptListener.BudgetExhaustedEvent} to its listener.
+   *
+   * @param maxMillis     Maximum number of milliseconds to spend planning
+   * @param maxRuleFires  Maximum number of rule matches to fire
+   * @param maxRelCount   Maximum number of relational expressions to register
+   */
+  public void setBudget(long maxMillis, long maxRuleFires, int maxRelCount) {
+    if (maxMillis < 0 || maxRuleFires < 0 || maxRelCount < 0) {
+      throw new IllegalArgumentException("budget must not be negative");
+    }
+    this.budgetMillis = maxMillis;
+    this.budgetRuleFires = maxRuleFires;
+    this.budgetRelCount = maxRelCount;
+  }
+
+  /** Returns whether the planner has used up its budget, and so should stop
+   * firing rules.
+   *
+   * <p>Returns false if the planner has not yet found a complete plan, even
+   * if it is over budget. The first time that it returns true, notifies the
+   * listener. */
+  boolean isBudgetExhausted() {
+    if (budgetExhausted) {
+      return true;
+    }
+    if (budgetMillis == 0 && budgetRuleFires == 0 && budgetRelCount == 0) {
+      return false;
+    }
+    final long elapsedMillis =
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    final int relCount = mapRel2Subset.size();
+    if (!(budgetMillis > 0 && elapsedMillis >= budgetMillis
+        || budgetRuleFires > 0 && ruleFireCount >= budgetRuleFires
+        || budgetRelCount > 0 && relCount >= budgetRelCount)) {
+      return false;
+    }
+    final RelSubset root = this.root;
+    if (root == null || root.best == null) {
+      // Over budget, but there is no complete plan yet. Keep going.
+      return false;
+    }
+    budgetExhausted = true;
+    LOGGER.debug("Planner budget exhausted after {} ms, {} rule fires, "
+            + "{} rels; best cost {}",
+        elapsedMillis, ruleFireCount, relCount, root.bestCost);
+    final RelOptListener listener = getListener();
+    if (listener != null) {
+      listener.budgetExhausted(
+          new RelOptListener.BudgetExhaustedEvent(this, root, elapsedMillis,
+              ruleFireCount, relCount));
+    }
+    return true;
+  }
+
+  /** Throws if rule matches are being fired concurrently, and so the
+   * state of the planner must not change. The rule that called will be fired
+   * again later, on the planner's thread. */
+  void checkNotSpeculating() {
+    if (speculating) {
+      VolcanoRuleCall.abortSpeculation();
+    }
+  }
+
   // implement RelOptPlanner
   @Override public boolean isRegistered(RelNode rel) {
     return mapRel2Subset.get(rel) != null;
@@ -522,6 +671,9 @@ protected void registerMaterializations() {
     ensureRootConverters();
     registerMaterializations();
 
+    startNanos = System.nanoTime();
+    ruleFireCount = 0;
+    budgetExhausted = false;
     ruleDriver.drive();
 
     if (LOGGER.isTraceEnabled()) {
@@ -582,6 +734,7 @@ void ensureRootConverters() {
       RelNode rel,
       @Nullable RelNode equivRel) {
     assert !isRegistered(rel) : "pre: isRegistered(rel)";
+    checkNotSpeculating();
     final RelSet set;
     if (equivRel == null) {
       set = null;
@@ -607,6 +760,7 @@ void ensureRootConverters() {
       if (equivRel != null) {
         final RelSubset equivSubset = getSubsetNonNull(equivRel);
         if (subset.set != equivSubset.set) {
+          checkNotSpeculating();
           merge(equivSubset.set, subset.set);
         }
       }
@@ -687,6 +841,9 @@ public void registerAbstractRelationalRules() {
   }
 
   @Override public void registerSchema(RelOptSchema schema) {
+    if (!registeredSchemas.contains(schema)) {
+      checkNotSpeculating();
+    }
     if (registeredSchemas.add(schema)) {
       try {
         schema.registerRules(this);
@@ -773,6 +930,54 @@ public RelSubset getSubsetNonNull(RelNode rel) {
     return requireNonNull(getSubset(rel), () -> "Subset is not found for " + rel);
   }
 
+  /**
+   * Returns the cheapest plan that the planner has found for an expression
+   * that is equivalent to a given relational expression and has the given
+   * traits; or null if there is no such plan.
+   *
+   * <p>{@code rel} and its inputs need not be registered; each is looked up
+   * by digest, after its inputs have been looked up. Thus, after
+   * {@link #findBestExp()}, the caller can find the plan for any subtree of
+   * the tree that it passed to {@link #setRoot(RelNode)}.
+   */
+  public @Nullable RelNode findCheapestPlan(RelNode rel, RelTraitSet traits) {
+    final RelSubset subset = findSubset(rel);
+    if (subset == null) {
+      return null;
+    }
+    final RelSubset subset2 = subset.set.getSubset(traits);
+    if (subset2 == null || subset2.best == null) {
+      return null;
+    }
+    return subset2.buildCheapestPlan(this);
+  }
+
+  /** Returns the subset that contains an expression that is structurally
+   * equal to a given relational expression, or null. */
+  private @Nullable RelSubset findSubset(RelNode rel) {
+    final RelSubset subset = getSubset(rel);
+    if (subset != null) {
+      return canonize(subset);
+    }
+    final List<RelNode> inputs = new ArrayList<>();
+    for (RelNode input : rel.getInputs()) {
+      final RelSubset inputSubset = findSubset(input);
+      if (inputSubset == null) {
+        return null;
+      }
+      inputs.add(inputSubset);
+    }
+    final RelNode rel2 = inputs.equals(rel.getInputs())
+        ? rel
+        : rel.copy(rel.getTraitSet(), inputs);
+    final RelNode equivRel = mapDigestToRel.get(rel2.getRelDigest());
+    if (equivRel == null) {
+      return null;
+    }
+    final RelSubset equivSubset = getSubset(equivRel);
+    return equivSubset == null ? null : canonize(equivSubset);
+  }
+
   public @Nullable RelSubset getSubset(RelNode rel, RelTraitSet traits) {
     if ((rel instanceof RelSubset) && rel.getTraitSet().equals(traits)) {
       return (RelSubset) rel;
@@ -840,6 +1045,7 @@ public RelSubset getSubsetNonNull(RelNode rel) {
   }
 
   @Override public void prune(RelNode rel) {
+    checkNotSpeculating();
     prunedNodes.add(rel);
   }
 
@@ -900,16 +1106,15 @@ void rename(RelNode rel) {
     if (fixUpInputs(rel)) {
       final RelDigest newDigest = rel.getRelDigest();
       LOGGER.trace("Rename #{} from '{}' to '{}'", rel.getId(), oldDigest, newDigest);
-      final RelNode equivRel = mapDigestToRel.put(newDigest, rel);
+      final RelNode equivRel = mapDigestToRel.putIfAbsent(rel);
       if (equivRel != null) {
         assert equivRel != rel;
 
-        // There's already an equivalent with the same name, and we
-        // just knocked it out. Put it back, and forget about 'rel'.
+        // There's already an equivalent with the same name. Keep it, and
+        // forget about 'rel'.
         LOGGER.trace("After renaming rel#{} it is now equivalent to rel#{}",
             rel.getId(), equivRel.getId());
 
-        mapDigestToRel.put(newDigest, equivRel);
         checkPruned(equivRel, rel);
 
         RelSubset equivRelSubset = getSubsetNonNull(equivRel);
@@ -947,6 +1152,47 @@ void rename(RelNode rel) {
     }
   }
 
+  /**
+   * Called when a relational expression has been added to a set. Increments
+   * the {@link RelSubset#getMetadataTimestamp() metadata timestamp} of the
+   * set's subsets, whose metadata may depend on the set's members, and
+   * removes their cached metadata; then does the same for the relational
+   * expressions that use those subsets as inputs, and for their sets, and so
+   * on up to the root.
+   *
+   * <p>Does not go above a set none of whose subsets has cached metadata,
+   * because no relational expression can have computed metadata from those
+   * subsets since their metadata was last removed.
+   *
+   * @param set Set to which a relational expression has been added
+   */
+  void onMembershipChanged(RelSet set) {
+    final Set<RelSet> visited = new HashSet<>();
+    final Deque<RelSet> queue = new ArrayDeque<>();
+    queue.add(set);
+    while (!queue.isEmpty()) {
+      final RelSet s = queue.remove();
+      if (!visited.add(s)) {
+        continue;
+      }
+      boolean cleared = false;
+      for (RelSubset subset : s.subsets) {
+        subset.timestamp++;
+        cleared |= RelMdUtil.clearCache(subset);
+      }
+      if (!cleared) {
+        continue;
+      }
+      for (RelNode parent : s.parents) {
+        RelMdUtil.clearCache(parent);
+        final RelSet parentSet = getSet(parent);
+        if (parentSet != null) {
+          queue.add(parentSet);
+        }
+      }
+    }
+  }
+
   /**
    * Checks whether a relexp has made any subset cheaper, and if it so,
    * propagate new cost to parent rel nodes.
@@ -1009,10 +1255,10 @@ void propagateCostImprovements(RelNode rel) {
         subset.bestCost = cost;
         subset.best = relNode;
         // since best was changed, cached metadata for this subset should be removed
-        mq.clearCache(subset);
+        RelMdUtil.clearCache(subset);
 
         for (RelNode parent : subset.getParents()) {
-          mq.clearCache(parent);
+          RelMdUtil.clearCache(parent);
           RelOptCost newCost = getCostOrInfinite(parent, mq);
           RelOptCost existingCost = propagateRels.get(parent);
           if (existingCost == null || newCost.isLt(existingCost)) {
@@ -1385,7 +1631,7 @@ private RelSubset registerImpl(
     final int subsetBeforeCount = set.subsets.size();
     RelSubset subset = addRelToSet(rel, set);
 
-    final RelNode xx = mapDigestToRel.putIfAbsent(digest, rel);
+    final RelNode xx = mapDigestToRel.putIfAbsent(rel);
 
     LOGGER.trace("Register {} in {}", rel, subset);
 
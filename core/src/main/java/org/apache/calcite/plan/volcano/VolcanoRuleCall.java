@@ -25,6 +25,8 @@
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.rules.SubstitutionRule;
 import org.apache.calcite.rel.rules.TransformationRule;
+import org.apache.calcite.util.ControlFlowException;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -59,6 +61,19 @@ public class VolcanoRuleCall extends RelOptRuleCall {
    */
   private @Nullable List<RelNode> generatedRelList;
 
+  /** The call that the current thread is firing speculatively, if any. */
+  private static final ThreadLocal<@Nullable VolcanoRuleCall> SPECULATIVE_CALL =
+      new ThreadLocal<>();
+
+  /** Expressions, and their explicit equivalences, that this call produced
+   * while it was fired speculatively; null if the call is not being fired
+   * speculatively. */
+  private @Nullable List<Pair<RelNode, Map<RelNode, RelNode>>> transformations;
+
+  /** Whether the rule tried to modify the planner while it was fired
+   * speculatively. */
+  private boolean speculationFailed;
+
   //~ Constructors -----------------------------------------------------------
 
   /**
@@ -106,6 +121,17 @@ protected VolcanoRuleCall(
     }
 
     rel = handler.propagate(rels[0], rel);
+    if (transformations != null) {
+      // Fired speculatively. Register the expression later.
+      transformations.add(Pair.of(rel, ImmutableMap.copyOf(equiv)));
+      return;
+    }
+    register(rel, equiv);
+  }
+
+  /** Registers an expression produced by this call, and its explicit
+   * equivalences. */
+  private void register(RelNode rel, Map<RelNode, RelNode> equiv) {
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Transform to: rel#{} via {}{}", rel.getId(), getRule(),
           equiv.isEmpty() ? "" : " with equivalences " + equiv);
@@ -165,85 +191,147 @@ protected void onMatch() {
     assert getRule().matches(this);
     volcanoPlanner.checkCancel();
     try {
-      if (volcanoPlanner.isRuleExcluded(getRule())) {
-        LOGGER.debug("Rule [{}] not fired due to exclusion filter", getRule());
-        return;
-      }
-
-      if (isRuleExcluded()) {
-        LOGGER.debug("Rule [{}] not fired due to exclusion hint", getRule());
-        return;
+      if (canFire()) {
+        fire(() -> getRule().onMatch(this));
       }
+    } catch (Exception e) {
+      throw new RuntimeException("Error while applying rule " + getRule()
+          + ", args " + Arrays.toString(rels), e);
+    }
+  }
 
-      for (int i = 0; i < rels.length; i++) {
-        RelNode rel = rels[i];
-        RelSubset subset = volcanoPlanner.getSubset(rel);
+  /** Returns whether this call can still fire: its rule is not excluded,
+   * and none of its operands has been pruned or belongs to a set that has
+   * been merged into another. */
+  boolean canFire() {
+    if (volcanoPlanner.isRuleExcluded(getRule())) {
+      LOGGER.debug("Rule [{}] not fired due to exclusion filter", getRule());
+      return false;
+    }
 
-        if (subset == null) {
-          LOGGER.debug(
-              "Rule [{}] not fired because operand #{} ({}) has no subset",
-              getRule(), i, rel);
-          return;
-        }
+    if (isRuleExcluded()) {
+      LOGGER.debug("Rule [{}] not fired due to exclusion hint", getRule());
+      return false;
+    }
 
-        if ((subset.set.equivalentSet != null)
-            // When rename RelNode via VolcanoPlanner#rename(RelNode rel),
-            // we may remove rel from its subset: "subset.set.rels.remove(rel)".
-            // Skip rule match when the rel has been removed from set.
-            || (subset != rel && !subset.contains(rel))) {
-          LOGGER.debug(
-              "Rule [{}] not fired because operand #{} ({}) belongs to obsolete set",
-              getRule(), i, rel);
-          return;
-        }
+    for (int i = 0; i < rels.length; i++) {
+      RelNode rel = rels[i];
+      RelSubset subset = volcanoPlanner.getSubset(rel);
 
-        if (volcanoPlanner.prunedNodes.contains(rel)) {
-          LOGGER.debug("Rule [{}] not fired because operand #{} ({}) has importance=0",
-              getRule(), i, rel);
-          return;
-        }
+      if (subset == null) {
+        LOGGER.debug(
+            "Rule [{}] not fired because operand #{} ({}) has no subset",
+            getRule(), i, rel);
+        return false;
       }
 
-      if (volcanoPlanner.getListener() != null) {
-        RelOptListener.RuleAttemptedEvent event =
-            new RelOptListener.RuleAttemptedEvent(
-                volcanoPlanner,
-                rels[0],
-                this,
-                true);
-        volcanoPlanner.getListener().ruleAttempted(event);
+      if ((subset.set.equivalentSet != null)
+          // When rename RelNode via VolcanoPlanner#rename(RelNode rel),
+          // we may remove rel from its subset: "subset.set.rels.remove(rel)".
+          // Skip rule match when the rel has been removed from set.
+          || (subset != rel && !subset.contains(rel))) {
+        LOGGER.debug(
+            "Rule [{}] not fired because operand #{} ({}) belongs to obsolete set",
+            getRule(), i, rel);
+        return false;
       }
 
-      if (LOGGER.isDebugEnabled()) {
-        this.generatedRelList = new ArrayList<>();
+      if (volcanoPlanner.prunedNodes.contains(rel)) {
+        LOGGER.debug("Rule [{}] not fired because operand #{} ({}) has importance=0",
+            getRule(), i, rel);
+        return false;
       }
+    }
+    return true;
+  }
 
-      volcanoPlanner.ruleCallStack.push(this);
-      try {
-        getRule().onMatch(this);
-      } finally {
-        volcanoPlanner.ruleCallStack.pop();
-      }
+  /** Fires this call, notifying the listener before and after. */
+  private void fire(Runnable action) {
+    if (volcanoPlanner.getListener() != null) {
+      RelOptListener.RuleAttemptedEvent event =
+          new RelOptListener.RuleAttemptedEvent(
+              volcanoPlanner,
+              rels[0],
+              this,
+              true);
+      volcanoPlanner.getListener().ruleAttempted(event);
+    }
 
-      if (generatedRelList != null) {
-        if (generatedRelList.isEmpty()) {
-          LOGGER.debug("call#{} generated 0 successors.", id);
-        } else {
-          LOGGER.debug(
-              "call#{} generated {} successors: {}",
-              id, generatedRelList.size(), generatedRelList);
-        }
-        this.generatedRelList = null;
+    if (LOGGER.isDebugEnabled()) {
+      this.generatedRelList = new ArrayList<>();
+    }
+
+    ++volcanoPlanner.ruleFireCount;
+    volcanoPlanner.ruleCallStack.push(this);
+    try {
+      action.run();
+    } finally {
+      volcanoPlanner.ruleCallStack.pop();
+    }
+
+    if (generatedRelList != null) {
+      if (generatedRelList.isEmpty()) {
+        LOGGER.debug("call#{} generated 0 successors.", id);
+      } else {
+        LOGGER.debug(
+            "call#{} generated {} successors: {}",
+            id, generatedRelList.size(), generatedRelList);
       }
+      this.generatedRelList = null;
+    }
 
-      if (volcanoPlanner.getListener() != null) {
-        RelOptListener.RuleAttemptedEvent event =
-            new RelOptListener.RuleAttemptedEvent(
-                volcanoPlanner,
-                rels[0],
-                this,
-                false);
-        volcanoPlanner.getListener().ruleAttempted(event);
+    if (volcanoPlanner.getListener() != null) {
+      RelOptListener.RuleAttemptedEvent event =
+          new RelOptListener.RuleAttemptedEvent(
+              volcanoPlanner,
+              rels[0],
+              this,
+              false);
+      volcanoPlanner.getListener().ruleAttempted(event);
+    }
+  }
+
+  /**
+   * Fires the rule speculatively, on a thread other than the planner's, while
+   * the state of the planner is frozen.
+   *
+   * <p>The expressions that the rule produces are recorded, and
+   * {@link #replay()} registers them later on the planner's thread. Returns
+   * false if the rule tried to modify the planner, or failed; the caller must
+   * then fire it again using {@link #onMatch()}.
+   */
+  boolean speculate() {
+    transformations = new ArrayList<>();
+    speculationFailed = false;
+    SPECULATIVE_CALL.set(this);
+    try {
+      getRule().onMatch(this);
+    } catch (RuntimeException | AssertionError e) {
+      // Includes SpeculationFailedException. If the rule failed for some
+      // other reason, it will fail again when it is fired on the planner's
+      // thread, and report the error there.
+      speculationFailed = true;
+    } finally {
+      SPECULATIVE_CALL.remove();
+    }
+    if (speculationFailed) {
+      transformations = null;
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Registers the expressions that the rule produced when it was fired by
+   * {@link #speculate()}, provided that the call can still fire.
+   */
+  void replay() {
+    final List<Pair<RelNode, Map<RelNode, RelNode>>> transformations =
+        requireNonNull(this.transformations, "transformations");
+    this.transformations = null;
+    try {
+      if (canFire()) {
+        fire(() -> transformations.forEach(p -> register(p.left, p.right)));
       }
     } catch (Exception e) {
       throw new RuntimeException("Error while applying rule " + getRule()
@@ -251,6 +339,25 @@ protected void onMatch() {
     }
   }
 
+  /** Called by the planner when a rule that is being fired speculatively
+   * tries to modify the planner's state. Throws, and marks the call as
+   * failed even if the rule catches the exception. */
+  static void abortSpeculation() {
+    final VolcanoRuleCall call = SPECULATIVE_CALL.get();
+    if (call != null) {
+      call.speculationFailed = true;
+    }
+    throw SpeculationFailedException.INSTANCE;
+  }
+
+  /** Thrown when a rule that is being fired speculatively tries to modify the
+   * planner's state. */
+  static class SpeculationFailedException extends ControlFlowException {
+    @SuppressWarnings("ThrowableInstanceNeverThrown")
+    static final SpeculationFailedException INSTANCE =
+        new SpeculationFailedException();
+  }
+
   /**
    * Applies this rule, with a given relational expression in the first slot.
    */
@@ -24,6 +24,7 @@
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.adapter.enumerable.RexToLixTranslator;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.adapter.vector.VectorRules;
 import org.apache.calcite.avatica.AvaticaParameter;
 import org.apache.calcite.avatica.ColumnMetaData;
 import org.apache.calcite.avatica.Meta;
@@ -69,6 +70,7 @@
 import org.apache.calcite.rel.core.Project;
 import org.apache.calcite.rel.core.Sort;
 import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.metadata.SharedRelMetadataCache;
 import org.apache.calcite.rel.type.RelDataType;
 import org.apache.calcite.rel.type.RelDataTypeFactory;
 import org.apache.calcite.rel.type.RelDataTypeField;
@@ -130,6 +132,7 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
@@ -411,7 +414,10 @@ protected SqlRexConvertletTable createConvertletTable() {
   /** Factory method for cluster. */
   protected RelOptCluster createCluster(RelOptPlanner planner,
       RexBuilder rexBuilder) {
-    return RelOptCluster.create(planner, rexBuilder);
+    final RelOptCluster cluster = RelOptCluster.create(planner, rexBuilder);
+    cluster.setSharedMetadataCache(
+        planner.getContext().unwrap(SharedRelMetadataCache.class));
+    return cluster;
   }
 
   /** Creates a collection of planner factories.
@@ -445,7 +451,10 @@ protected RelOptPlanner createPlanner(
       org.apache.calcite.plan.@Nullable Context externalContext,
       @Nullable RelOptCostFactory costFactory) {
     if (externalContext == null) {
-      externalContext = Contexts.of(prepareContext.config());
+      externalContext =
+          Contexts.of(prepareContext.config(),
+              prepareContext.getSubPlanCache(),
+              prepareContext.getMetadataCache());
     }
     final VolcanoPlanner planner =
         new VolcanoPlanner(costFactory, externalContext);
@@ -455,9 +464,16 @@ protected RelOptPlanner createPlanner(
       planner.addRelTraitDef(RelCollationTraitDef.INSTANCE);
     }
     planner.setTopDownOpt(prepareContext.config().topDownOpt());
+    planner.setParallelism(prepareContext.config().plannerParallelism());
+    planner.setBudget(prepareContext.config().plannerTimeBudget(),
+        prepareContext.config().plannerRuleFireBudget(),
+        prepareContext.config().plannerMemoBudget());
     RelOptUtil.registerDefaultRules(planner,
         prepareContext.config().materializationsEnabled(),
         enableBindable);
+    if (prepareContext.config().vectorize()) {
+      VectorRules.RULES.forEach(planner::addRule);
+    }
 
     final CalcitePrepare.SparkHandler spark = prepareContext.spark();
     if (spark.enabled()) {
@@ -500,6 +516,10 @@ <T> CalciteSignature<T> prepare_(
     if (SIMPLE_SQLS.contains(query.sql)) {
       return simplePrepare(context, castNonNull(query.sql));
     }
+    final PlanCache planCache = context.getPlanCache();
+    if (planCache != null && query.sql != null) {
+      return planCache.prepare(this, context, query, elementType, maxRowCount);
+    }
     final JavaTypeFactory typeFactory = context.getTypeFactory();
     CalciteCatalogReader catalogReader =
         new CalciteCatalogReader(
@@ -507,6 +527,27 @@ <T> CalciteSignature<T> prepare_(
             context.getDefaultSchemaPath(),
             typeFactory,
             context.config());
+    return prepare_(context, query, elementType, maxRowCount, catalogReader,
+        null, null);
+  }
+
+  /** Prepares a statement using a given catalog reader.
+   *
+   * @param sqlNode Parse tree of the statement, or null to parse
+   *   {@code query.sql}
+   * @param validated Called after the statement has been validated and
+   *   before it is converted to relational algebra, or null; if not null,
+   *   parameters that do not occur in the SQL string may have been added to
+   *   the parse tree, and are not returned in the signature
+   */
+  <T> CalciteSignature<T> prepare_(
+      Context context,
+      Query<T> query,
+      Type elementType,
+      long maxRowCount,
+      CalciteCatalogReader catalogReader,
+      @Nullable SqlNode sqlNode,
+      @Nullable Consumer<SqlValidator> validated) {
     final List<Function1<Context, RelOptPlanner>> plannerFactories =
         createPlannerFactories();
     if (plannerFactories.isEmpty()) {
@@ -522,7 +563,7 @@ <T> CalciteSignature<T> prepare_(
         CalcitePreparingStmt preparingStmt =
             getPreparingStmt(context, elementType, catalogReader, planner);
         return prepare2_(context, query, elementType, maxRowCount,
-            catalogReader, preparingStmt);
+            catalogReader, preparingStmt, sqlNode, validated);
       } catch (RelOptPlanner.CannotPlanException e) {
         exception = e;
       }
@@ -617,40 +658,47 @@ private static Meta.StatementType getStatementType(Prepare.PreparedResult prepar
     }
   }
 
+  /** Parses a SQL statement using the parser settings of a context. */
+  SqlNode parseStmt(Context context, String sql) {
+    final CalciteConnectionConfig config = context.config();
+    SqlParser.Config parserConfig = parserConfig()
+        .withQuotedCasing(config.quotedCasing())
+        .withUnquotedCasing(config.unquotedCasing())
+        .withQuoting(config.quoting())
+        .withConformance(config.conformance())
+        .withCaseSensitive(config.caseSensitive());
+    final SqlParserImplFactory parserFactory =
+        config.parserFactory(SqlParserImplFactory.class, null);
+    if (parserFactory != null) {
+      parserConfig = parserConfig.withParserFactory(parserFactory);
+    }
+    SqlParser parser = createParser(sql,  parserConfig);
+    try {
+      return parser.parseStmt();
+    } catch (SqlParseException e) {
+      throw new RuntimeException(
+          "parse failed: " + e.getMessage(), e);
+    }
+  }
+
   <T> CalciteSignature<T> prepare2_(
       Context context,
       Query<T> query,
       Type elementType,
       long maxRowCount,
       CalciteCatalogReader catalogReader,
-      CalcitePreparingStmt preparingStmt) {
+      CalcitePreparingStmt preparingStmt,
+      @Nullable SqlNode parsedNode,
+      @Nullable Consumer<SqlValidator> validated) {
     final JavaTypeFactory typeFactory = context.getTypeFactory();
 
     final RelDataType x;
     final Prepare.PreparedResult preparedResult;
     final Meta.StatementType statementType;
     if (query.sql != null) {
-      final CalciteConnectionConfig config = context.config();
-      SqlParser.Config parserConfig = parserConfig()
-          .withQuotedCasing(config.quotedCasing())
-          .withUnquotedCasing(config.unquotedCasing())
-          .withQuoting(config.quoting())
-          .withConformance(config.conformance())
-          .withCaseSensitive(config.caseSensitive());
-      final SqlParserImplFactory parserFactory =
-          config.parserFactory(SqlParserImplFactory.class, null);
-      if (parserFactory != null) {
-        parserConfig = parserConfig.withParserFactory(parserFactory);
-      }
-      SqlParser parser = createParser(query.sql,  parserConfig);
-      SqlNode sqlNode;
-      try {
-        sqlNode = parser.parseStmt();
-        statementType = getStatementType(sqlNode.getKind());
-      } catch (SqlParseException e) {
-        throw new RuntimeException(
-            "parse failed: " + e.getMessage(), e);
-      }
+      SqlNode sqlNode =
+          parsedNode != null ? parsedNode : parseStmt(context, query.sql);
+      statementType = getStatementType(sqlNode.getKind());
 
       Hook.PARSE_TREE.run(new Object[] {query.sql, sqlNode});
 
@@ -669,8 +717,15 @@ <T> CalciteSignature<T> prepare2_(
           preparingStmt.createSqlValidator(catalogReader,
               UnaryOperator.identity());
 
-      preparedResult =
-          preparingStmt.prepareSql(sqlNode, Object.class, validator, true);
+      if (validated != null) {
+        sqlNode = validator.validate(sqlNode);
+        validated.accept(validator);
+        preparedResult =
+            preparingStmt.prepareSql(sqlNode, Object.class, validator, false);
+      } else {
+        preparedResult =
+            preparingStmt.prepareSql(sqlNode, Object.class, validator, true);
+      }
       switch (sqlNode.getKind()) {
       case INSERT:
       case DELETE:
@@ -696,7 +751,10 @@ <T> CalciteSignature<T> prepare2_(
     }
 
     final List<AvaticaParameter> parameters = new ArrayList<>();
-    final RelDataType parameterRowType = preparedResult.getParameterRowType();
+    // Parameters that replaced literals are not visible to the user.
+    final RelDataType parameterRowType = validated == null
+        ? preparedResult.getParameterRowType()
+        : typeFactory.builder().build();
     for (RelDataTypeField field : parameterRowType.getFieldList()) {
       RelDataType type = field.getType();
       parameters.add(
@@ -1186,6 +1244,18 @@ protected SqlValidator createSqlValidator(CatalogReader catalogReader,
           CatalogReader.THREAD_LOCAL.set(catalogReader);
           final SqlConformance conformance = context.config().conformance();
           internalParameters.put("_conformance", conformance);
+          if (context.config().spillMemoryBudget() > 0) {
+            internalParameters.put("_spill", true);
+          }
+          if (context.config().queryMemoryLimit() > 0) {
+            internalParameters.put("_trackMemory", true);
+          }
+          if (context.config().hoistLiterals()) {
+            internalParameters.put("_hoistLiterals", true);
+          }
+          if (context.config().offHeapRows()) {
+            internalParameters.put("_offHeap", true);
+          }
           bindable =
               EnumerableInterpretable.toBindable(internalParameters,
                   context.spark(), enumerable,
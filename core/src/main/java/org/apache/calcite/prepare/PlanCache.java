@@ -0,0 +1,569 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.avatica.AvaticaParameter;
+import org.apache.calcite.config.CalciteConnectionConfig;
+import org.apache.calcite.jdbc.CalcitePrepare.CalciteSignature;
+import org.apache.calcite.jdbc.CalcitePrepare.Context;
+import org.apache.calcite.jdbc.CalcitePrepare.Query;
+import org.apache.calcite.jdbc.CalciteSchema;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlBasicCall;
+import org.apache.calcite.sql.SqlCall;
+import org.apache.calcite.sql.SqlCharStringLiteral;
+import org.apache.calcite.sql.SqlDynamicParam;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.SqlLiteral;
+import org.apache.calcite.sql.SqlNode;
+import org.apache.calcite.sql.SqlNodeList;
+import org.apache.calcite.sql.SqlNumericLiteral;
+import org.apache.calcite.sql.dialect.CalciteSqlDialect;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.sql.util.SqlBasicVisitor;
+import org.apache.calcite.sql.validate.SqlNameMatcher;
+import org.apache.calcite.util.ControlFlowException;
+import org.apache.calcite.util.Util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of prepared statements, so that a statement that differs from a
+ * previous one only in the values of its literals can be executed without
+ * being parsed, validated, optimized and compiled again.
+ *
+ * <p>Before a query is prepared, literals that are compared to an
+ * expression (using {@code =}, {@code <>}, {@code <}, {@code BETWEEN},
+ * {@code IN}, {@code LIKE} and so forth) or that are operands of arithmetic
+ * are replaced with dynamic parameters. The cache key is the SQL of the
+ * resulting parse tree. When the plan is used, each literal value is
+ * converted to the type that the validator inferred for its parameter; if a
+ * value cannot be converted exactly (for example, if {@code 1.5} is compared
+ * to an {@code INTEGER} column), the statement is prepared with its
+ * literals, and cached under its own SQL. A query that already contains
+ * dynamic parameters is cached under its own SQL.
+ *
+ * <p>An entry is discarded if any of the tables that the statement uses has
+ * been replaced or removed. Tables are compared by identity, so a schema
+ * that creates a new {@link Table} object each time it is asked will defeat
+ * the cache. Changes to functions and types are not detected; call
+ * {@link #invalidateAll()}.
+ *
+ * <p>DDL, DML and {@code EXPLAIN} statements are not cached.
+ *
+ * <p>The cache belongs to a connection, whose properties do not change, and
+ * is enabled by setting
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#PLAN_CACHE_SIZE}.
+ * When the cache is full, the least recently used entries are evicted.
+ */
+public class PlanCache {
+  /** Entry for a parse tree whose literals cannot be replaced with
+   * parameters. */
+  private static final Entry LITERAL =
+      new Entry(null, ImmutableMap.of(), ImmutableList.of());
+
+  private final Cache<Key, Entry> cache;
+
+  /** Creates a PlanCache that holds up to {@code maximumSize} plans. */
+  public PlanCache(int maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .build();
+  }
+
+  /** Returns the number of entries in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Removes all entries from the cache. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Prepares a SQL statement, using a cached plan if possible. */
+  <T> CalciteSignature<T> prepare(CalcitePrepareImpl prepare,
+      Context context, Query<T> query, Type elementType, long maxRowCount) {
+    final String sql = requireNonNull(query.sql, "sql");
+    final List<String> schemaPath = context.getDefaultSchemaPath();
+    final Key exactKey =
+        new Key(sql, false, schemaPath, elementType, maxRowCount);
+    final Entry exactEntry = get(context, exactKey);
+    if (exactEntry != null) {
+      final CalciteSignature<?> signature =
+          requireNonNull(exactEntry.signature);
+      return exactEntry.bind(sql, signature.parameters, ImmutableList.of(),
+          context);
+    }
+
+    SqlNode sqlNode = prepare.parseStmt(context, sql);
+    if (!sqlNode.isA(SqlKind.QUERY)) {
+      return prepare.prepare_(context, query, elementType, maxRowCount,
+          new RecordingCatalogReader(context), sqlNode, null);
+    }
+    if (!containsDynamicParam(sqlNode)) {
+      final Parameterizer parameterizer =
+          new Parameterizer(
+              castNonNull(Prepare.THREAD_INSUBQUERY_THRESHOLD.get()));
+      sqlNode.accept(parameterizer);
+      if (!parameterizer.literals.isEmpty()) {
+        final Key key =
+            new Key(sqlNode.toSqlString(CalciteSqlDialect.DEFAULT).getSql(),
+                true, schemaPath, elementType, maxRowCount);
+        Entry entry = get(context, key);
+        if (entry == null) {
+          entry = prepareParameterized(prepare, context, query, elementType,
+              maxRowCount, sqlNode, parameterizer);
+          cache.put(key, entry);
+        }
+        if (entry != LITERAL) {
+          final List<Object> values =
+              parameterizer.values(entry.parameterTypes,
+                  context.getTypeFactory());
+          if (values != null) {
+            return entry.bind(sql, ImmutableList.of(), values, context);
+          }
+        }
+        // The parse tree now contains parameters; parse the SQL again.
+        sqlNode = prepare.parseStmt(context, sql);
+      }
+    }
+
+    final RecordingCatalogReader catalogReader =
+        new RecordingCatalogReader(context);
+    final CalciteSignature<T> signature =
+        prepare.prepare_(context, query, elementType, maxRowCount,
+            catalogReader, sqlNode, null);
+    cache.put(exactKey,
+        new Entry(signature, catalogReader.tables(), ImmutableList.of()));
+    return signature;
+  }
+
+  /** Prepares a statement whose literals have been replaced with parameters.
+   * Returns {@link #LITERAL} if the statement cannot be prepared, or if its
+   * literals do not fit the types inferred for the parameters. */
+  private static Entry prepareParameterized(CalcitePrepareImpl prepare,
+      Context context, Query<?> query, Type elementType, long maxRowCount,
+      SqlNode sqlNode, Parameterizer parameterizer) {
+    final RecordingCatalogReader catalogReader =
+        new RecordingCatalogReader(context);
+    final List<RelDataType> parameterTypes = new ArrayList<>();
+    final CalciteSignature<?> signature;
+    try {
+      signature =
+          prepare.prepare_(context, query, elementType, maxRowCount,
+              catalogReader, sqlNode, validator -> {
+                parameterTypes.clear();
+                for (SqlDynamicParam param : parameterizer.params) {
+                  final RelDataType type =
+                      validator.getValidatedNodeTypeIfKnown(param);
+                  if (type == null) {
+                    throw new NotParameterizableException();
+                  }
+                  parameterTypes.add(type);
+                }
+                if (parameterizer.values(parameterTypes,
+                    context.getTypeFactory()) == null) {
+                  throw new NotParameterizableException();
+                }
+              });
+    } catch (RuntimeException e) {
+      // The statement may have failed because parameters are not valid
+      // everywhere that literals are (for example, in an expression that
+      // must match a GROUP BY expression). If the statement is invalid with
+      // literals, preparing it again will throw.
+      return LITERAL;
+    }
+    return new Entry(signature, catalogReader.tables(),
+        ImmutableList.copyOf(parameterTypes));
+  }
+
+  /** Returns the entry for a key, or null if there is no entry or if the
+   * entry is no longer valid. */
+  private @Nullable Entry get(Context context, Key key) {
+    final Entry entry = cache.getIfPresent(key);
+    if (entry == null) {
+      return null;
+    }
+    if (!entry.tables.isEmpty()) {
+      final CalciteCatalogReader catalogReader =
+          new CalciteCatalogReader(context.getRootSchema(), ImmutableList.of(),
+              context.getTypeFactory(), context.config());
+      for (Map.Entry<List<String>, Table> e : entry.tables.entrySet()) {
+        final Prepare.PreparingTable table =
+            catalogReader.getTable(e.getKey());
+        if (table == null || table.unwrap(Table.class) != e.getValue()) {
+          cache.invalidate(key);
+          return null;
+        }
+      }
+    }
+    return entry;
+  }
+
+  private static boolean containsDynamicParam(SqlNode sqlNode) {
+    try {
+      sqlNode.accept(
+          new SqlBasicVisitor<Void>() {
+            @Override public Void visit(SqlDynamicParam param) {
+              throw Util.FoundOne.NULL;
+            }
+          });
+      return false;
+    } catch (Util.FoundOne e) {
+      return true;
+    }
+  }
+
+  /** Key of a cache entry. */
+  private static class Key {
+    final String sql;
+    final boolean parameterized;
+    final List<String> schemaPath;
+    final Type elementType;
+    final long maxRowCount;
+
+    Key(String sql, boolean parameterized, List<String> schemaPath,
+        Type elementType, long maxRowCount) {
+      this.sql = sql;
+      this.parameterized = parameterized;
+      this.schemaPath = ImmutableList.copyOf(schemaPath);
+      this.elementType = elementType;
+      this.maxRowCount = maxRowCount;
+    }
+
+    @Override public int hashCode() {
+      return Objects.hash(sql, parameterized, schemaPath, elementType,
+          maxRowCount);
+    }
+
+    @Override public boolean equals(@Nullable Object obj) {
+      return obj == this
+          || obj instanceof Key
+          && sql.equals(((Key) obj).sql)
+          && parameterized == ((Key) obj).parameterized
+          && schemaPath.equals(((Key) obj).schemaPath)
+          && elementType.equals(((Key) obj).elementType)
+          && maxRowCount == ((Key) obj).maxRowCount;
+    }
+  }
+
+  /** Cache entry: a prepared statement, the tables it uses, and the types of
+   * the parameters that replaced its literals. */
+  private static class Entry {
+    final @Nullable CalciteSignature<?> signature;
+    final ImmutableMap<List<String>, Table> tables;
+    final ImmutableList<RelDataType> parameterTypes;
+
+    Entry(@Nullable CalciteSignature<?> signature,
+        ImmutableMap<List<String>, Table> tables,
+        ImmutableList<RelDataType> parameterTypes) {
+      this.signature = signature;
+      this.tables = tables;
+      this.parameterTypes = parameterTypes;
+    }
+
+    /** Creates a signature for a statement that uses this entry's plan,
+     * binding the parameters that replaced literals to given values. */
+    @SuppressWarnings("unchecked")
+    <T> CalciteSignature<T> bind(String sql,
+        List<AvaticaParameter> parameters,
+        List<Object> values, Context context) {
+      final CalciteSignature<T> signature =
+          (CalciteSignature<T>) requireNonNull(this.signature);
+      final Map<String, Object> internalParameters =
+          new LinkedHashMap<>(signature.internalParameters);
+      for (int i = 0; i < values.size(); i++) {
+        internalParameters.put("?" + i, values.get(i));
+      }
+      return signature.copy(sql, parameters, internalParameters,
+          context.getRootSchema());
+    }
+  }
+
+  /** Visitor that replaces, in place, literals that are operands of
+   * comparisons and arithmetic with dynamic parameters. */
+  private static class Parameterizer extends SqlBasicVisitor<Void> {
+    private final int inSubQueryThreshold;
+    final List<SqlLiteral> literals = new ArrayList<>();
+    final List<SqlDynamicParam> params = new ArrayList<>();
+    /** For each parameter, whether the type of the literal must be the same
+     * as the type of the parameter; true for operands of arithmetic, whose
+     * result type depends on the types of the operands. */
+    final List<Boolean> sameTypes = new ArrayList<>();
+
+    Parameterizer(int inSubQueryThreshold) {
+      this.inSubQueryThreshold = inSubQueryThreshold;
+    }
+
+    @Override public Void visit(SqlCall call) {
+      if (call instanceof SqlBasicCall) {
+        final SqlBasicCall basicCall = (SqlBasicCall) call;
+        switch (call.getKind()) {
+        case EQUALS:
+        case NOT_EQUALS:
+        case LESS_THAN:
+        case LESS_THAN_OR_EQUAL:
+        case GREATER_THAN:
+        case GREATER_THAN_OR_EQUAL:
+        case IS_DISTINCT_FROM:
+        case IS_NOT_DISTINCT_FROM:
+          visitBinary(basicCall, false);
+          return null;
+        case PLUS:
+        case MINUS:
+        case TIMES:
+        case DIVIDE:
+          visitBinary(basicCall, true);
+          return null;
+        case BETWEEN:
+        case LIKE:
+          // Replace the bounds of BETWEEN and the pattern of LIKE, but not
+          // the escape character of LIKE.
+          final int count = call.getKind() == SqlKind.LIKE ? 2 : 3;
+          for (int i = 0; i < call.operandCount(); i++) {
+            visitOperand(basicCall, i,
+                i > 0 && i < count && !isLiteral(call.operand(0)), false);
+          }
+          return null;
+        case IN:
+        case NOT_IN:
+          if (call.operandCount() == 2
+              && call.operand(1) instanceof SqlNodeList
+              && ((SqlNodeList) call.operand(1)).size() < inSubQueryThreshold
+              && !isLiteral(call.operand(0))) {
+            call.operand(0).accept(this);
+            final SqlNodeList list = call.operand(1);
+            for (int i = 0; i < list.size(); i++) {
+              final SqlNode node = list.get(i);
+              if (canReplace(node)) {
+                list.set(i, replace((SqlLiteral) node, false));
+              } else {
+                node.accept(this);
+              }
+            }
+            return null;
+          }
+          break;
+        default:
+          break;
+        }
+      }
+      return super.visit(call);
+    }
+
+    private void visitBinary(SqlBasicCall call, boolean sameType) {
+      if (call.operandCount() != 2) {
+        super.visit(call);
+        return;
+      }
+      visitOperand(call, 0, !isLiteral(call.operand(1)), sameType);
+      visitOperand(call, 1, !isLiteral(call.operand(0)), sameType);
+    }
+
+    private void visitOperand(SqlBasicCall call, int i, boolean replace,
+        boolean sameType) {
+      final SqlNode operand = call.operand(i);
+      if (operand == null) {
+        return;
+      }
+      if (replace && canReplace(operand)) {
+        call.setOperand(i, replace((SqlLiteral) operand, sameType));
+      } else {
+        operand.accept(this);
+      }
+    }
+
+    private SqlDynamicParam replace(SqlLiteral literal, boolean sameType) {
+      final SqlDynamicParam param =
+          new SqlDynamicParam(params.size(), literal.getParserPosition());
+      literals.add(literal);
+      params.add(param);
+      sameTypes.add(sameType);
+      return param;
+    }
+
+    private static boolean isLiteral(@Nullable SqlNode node) {
+      return node instanceof SqlLiteral || node instanceof SqlDynamicParam;
+    }
+
+    private static boolean canReplace(SqlNode node) {
+      if (node instanceof SqlNumericLiteral) {
+        return true;
+      }
+      if (node instanceof SqlCharStringLiteral) {
+        final SqlCharStringLiteral literal = (SqlCharStringLiteral) node;
+        return literal.getNlsString().getCharsetName() == null
+            && literal.getNlsString().getCollation() == null;
+      }
+      return false;
+    }
+
+    /** Converts the literals to the types of their parameters; returns
+     * null if any literal cannot be converted exactly. */
+    @Nullable List<Object> values(List<RelDataType> types,
+        RelDataTypeFactory typeFactory) {
+      if (types.size() != literals.size()) {
+        return null;
+      }
+      final List<Object> values = new ArrayList<>();
+      for (int i = 0; i < literals.size(); i++) {
+        final SqlLiteral literal = literals.get(i);
+        final RelDataType type = types.get(i);
+        if (sameTypes.get(i)
+            && !sameType(literal.createSqlType(typeFactory), type)) {
+          return null;
+        }
+        final Object value = value(literal, type);
+        if (value == null) {
+          return null;
+        }
+        values.add(value);
+      }
+      return values;
+    }
+
+    /** Returns whether two types have the same SQL type name and, if they
+     * are {@code DECIMAL}, the same precision and scale. A type created from
+     * a Java {@code int} field has the same type name as an {@code INTEGER}
+     * literal but not the same precision. */
+    private static boolean sameType(RelDataType type1, RelDataType type2) {
+      return type1.getSqlTypeName() == type2.getSqlTypeName()
+          && (type1.getSqlTypeName() != SqlTypeName.DECIMAL
+              || type1.getPrecision() == type2.getPrecision()
+              && type1.getScale() == type2.getScale());
+    }
+
+    /** Converts a literal to a value of a given type, or returns null if the
+     * literal would not have exactly the same value. */
+    private static @Nullable Object value(SqlLiteral literal,
+        RelDataType type) {
+      if (literal instanceof SqlNumericLiteral) {
+        final BigDecimal v = literal.getValueAs(BigDecimal.class);
+        try {
+          switch (type.getSqlTypeName()) {
+          case TINYINT:
+            return v.byteValueExact();
+          case SMALLINT:
+            return v.shortValueExact();
+          case INTEGER:
+            return v.intValueExact();
+          case BIGINT:
+            return v.longValueExact();
+          case DECIMAL:
+            final BigDecimal d =
+                v.setScale(type.getScale(), RoundingMode.UNNECESSARY);
+            return d.precision() <= type.getPrecision() ? d : null;
+          case FLOAT:
+          case DOUBLE:
+            // REAL is not allowed: a literal compared to a REAL is converted
+            // to DOUBLE, not to REAL.
+            return v.doubleValue();
+          default:
+            return null;
+          }
+        } catch (ArithmeticException e) {
+          return null;
+        }
+      }
+      final String s = literal.getValueAs(String.class);
+      switch (type.getSqlTypeName()) {
+      case CHAR:
+        return s.length() == type.getPrecision() ? s : null;
+      case VARCHAR:
+        // Trailing spaces are significant in a VARCHAR, but not in a CHAR
+        // literal.
+        return !s.endsWith(" ")
+            && (type.getPrecision() == RelDataType.PRECISION_NOT_SPECIFIED
+                || s.length() <= type.getPrecision())
+            ? s : null;
+      default:
+        return null;
+      }
+    }
+  }
+
+  /** Thrown when the literals of a statement cannot be replaced with
+   * parameters. */
+  private static class NotParameterizableException
+      extends ControlFlowException {
+  }
+
+  /** Catalog reader that records the tables it has resolved. Views are
+   * expanded using a reader created by {@link #withSchemaPath}, so the
+   * tables that a view uses are recorded too. */
+  private static class RecordingCatalogReader extends CalciteCatalogReader {
+    private final Map<List<String>, Table> tables;
+
+    RecordingCatalogReader(Context context) {
+      super(context.getRootSchema(), context.getDefaultSchemaPath(),
+          context.getTypeFactory(), context.config());
+      this.tables = new LinkedHashMap<>();
+    }
+
+    private RecordingCatalogReader(CalciteSchema rootSchema,
+        SqlNameMatcher nameMatcher, List<List<String>> schemaPaths,
+        RelDataTypeFactory typeFactory, CalciteConnectionConfig config,
+        Map<List<String>, Table> tables) {
+      super(rootSchema, nameMatcher, schemaPaths, typeFactory, config);
+      this.tables = tables;
+    }
+
+    ImmutableMap<List<String>, Table> tables() {
+      return ImmutableMap.copyOf(tables);
+    }
+
+    @Override public CalciteCatalogReader withSchemaPath(
+        List<String> schemaPath) {
+      return new RecordingCatalogReader(rootSchema, nameMatcher,
+          ImmutableList.of(schemaPath, ImmutableList.of()), typeFactory,
+          config, tables);
+    }
+
+    @Override public Prepare.@Nullable PreparingTable getTable(
+        List<String> names) {
+      final Prepare.PreparingTable table = super.getTable(names);
+      if (table != null) {
+        final Table t = table.unwrap(Table.class);
+        if (t != null) {
+          tables.put(ImmutableList.copyOf(table.getQualifiedName()), t);
+        }
+      }
+      return table;
+    }
+  }
+}
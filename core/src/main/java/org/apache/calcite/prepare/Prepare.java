@@ -17,6 +17,7 @@
 package org.apache.calcite.prepare;
 
 import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.EnumerableParallelizer;
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.Meta;
 import org.apache.calcite.jdbc.CalcitePrepare;
@@ -174,9 +175,12 @@ protected RelRoot optimize(RelRoot root,
     final RelTraitSet desiredTraits = getDesiredRootTraitSet(root);
 
     final Program program = getProgram();
-    final RelNode rootRel4 =
+    final RelNode rootRel3 =
         program.run(planner, root.rel, desiredTraits, materializationList,
             latticeList);
+    final RelNode rootRel4 =
+        EnumerableParallelizer.parallelize(rootRel3,
+            context.config().parallelism());
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug("Plan after physical tweaks:\n{}",
           RelOptUtil.toString(rootRel4, SqlExplainLevel.ALL_ATTRIBUTES));
@@ -0,0 +1,356 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.adapter.enumerable.EnumerableConvention;
+import org.apache.calcite.adapter.enumerable.EnumerableRel;
+import org.apache.calcite.adapter.enumerable.EnumerableRelImplementor;
+import org.apache.calcite.plan.Convention;
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
+import org.apache.calcite.plan.RelOptCostImpl;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRules;
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.plan.RelTraitSet;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.plan.volcano.VolcanoPlanner;
+import org.apache.calcite.rel.AbstractRelNode;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rel.core.Correlate;
+import org.apache.calcite.rel.core.Join;
+import org.apache.calcite.rel.core.TableScan;
+import org.apache.calcite.rel.core.Values;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexCorrelVariable;
+import org.apache.calcite.rex.RexDynamicParam;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexSubQuery;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.tools.Programs;
+import org.apache.calcite.util.Util;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache of optimized sub-plans, so that a query that contains the same
+ * logical subtree as a previous query can use the plan that was chosen for
+ * that subtree, rather than optimizing it again.
+ *
+ * <p>Before the Volcano planner runs, each subtree of the logical plan that
+ * contains a join is looked up, largest first. The key is the digest of the
+ * subtree, its row type, and the traits of the cached plan (currently,
+ * {@link EnumerableConvention} without collation). If there is an entry,
+ * the subtree is replaced by a leaf whose cost and row count are those of the
+ * cached plan, and which generates code by implementing the cached plan.
+ * The leaf's digest, and its output in EXPLAIN, include the cached plan, so
+ * leaves for different cached plans are never considered equivalent.
+ * After the planner has run, the cheapest plan for each subtree that
+ * contains a join is added to the cache.
+ *
+ * <p>Subtrees that contain dynamic parameters, correlation variables or
+ * sub-queries are not cached, because their meaning depends on the
+ * enclosing query. Nor are subtrees that read from anything other than
+ * tables and {@link Values}.
+ *
+ * <p>An entry is discarded if any of the tables that the subtree uses has
+ * been replaced or removed. Tables are compared by identity, as in
+ * {@link PlanCache}.
+ *
+ * <p>A subtree that is replaced is not optimized together with the rest of
+ * the query; for example, a filter will not be pushed into it. Each entry
+ * retains the planner that produced it, so entries are softly referenced,
+ * and may be discarded if memory is short.
+ *
+ * <p>The cache belongs to a connection, and is enabled by setting
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#SUB_PLAN_CACHE_SIZE}.
+ * When the cache is full, the least recently used entries are evicted.
+ */
+public class SubPlanCache {
+  private final Cache<String, Entry> cache;
+
+  /** Creates a SubPlanCache that holds up to {@code maximumSize} plans. */
+  public SubPlanCache(int maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .softValues()
+        .build();
+  }
+
+  /** Returns the number of entries in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Removes all entries from the cache. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Replaces each subtree of a logical plan that has a cached plan with a
+   * relational expression that executes the cached plan. */
+  public RelNode substitute(RelNode rel) {
+    final Map<List<String>, Table> tables = new HashMap<>();
+    if (isCacheable(rel, tables)) {
+      final RelTraitSet traitSet = traitSet(rel);
+      final String key = key(rel, traitSet);
+      final Entry entry = cache.getIfPresent(key);
+      if (entry != null) {
+        if (entry.isValid(tables)) {
+          return new CachedSubPlan(rel.getCluster(), traitSet,
+              rel.getRowType(), entry);
+        }
+        cache.invalidate(key);
+      }
+    }
+    final List<RelNode> inputs = new ArrayList<>();
+    boolean changed = false;
+    for (RelNode input : rel.getInputs()) {
+      final RelNode input2 = substitute(input);
+      changed |= input2 != input;
+      inputs.add(input2);
+    }
+    return changed ? rel.copy(rel.getTraitSet(), inputs) : rel;
+  }
+
+  /** Adds to the cache the plan that a planner chose for each subtree of a
+   * logical plan that contains a join.
+   *
+   * @param rel     Logical plan that was the planner's root
+   * @param planner Planner, after {@link VolcanoPlanner#findBestExp()}
+   */
+  public void store(RelNode rel, VolcanoPlanner planner) {
+    final Map<List<String>, Table> tables = new HashMap<>();
+    if (isCacheable(rel, tables)) {
+      final RelTraitSet traitSet = traitSet(rel);
+      final String key = key(rel, traitSet);
+      if (cache.getIfPresent(key) == null) {
+        final RelNode plan = planner.findCheapestPlan(rel, traitSet);
+        if (plan instanceof EnumerableRel) {
+          final RelMetadataQuery mq = rel.getCluster().getMetadataQuery();
+          final RelOptCost cost = planner.getCost(plan, mq);
+          final Double rowCount = mq.getRowCount(plan);
+          final RelNode plan2 = toCalc(plan);
+          if (cost != null && !cost.isInfinite() && rowCount != null
+              && plan2 instanceof EnumerableRel) {
+            final String explain =
+                RelOptUtil.toString(plan2, SqlExplainLevel.DIGEST_ATTRIBUTES)
+                    .trim();
+            cache.put(key,
+                new Entry((EnumerableRel) plan2, explain, cost, rowCount,
+                    ImmutableMap.copyOf(tables)));
+          }
+        }
+      }
+    }
+    for (RelNode input : rel.getInputs()) {
+      store(input, planner);
+    }
+  }
+
+  /** Converts the projects and filters in a plan to
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableCalc}, which is
+   * what {@link Programs#calc} does to the rest of the query after the
+   * Volcano planner has run. A {@link CachedSubPlan} is a leaf, so that
+   * program never reaches the plan inside it, and
+   * {@link org.apache.calcite.adapter.enumerable.EnumerableProject} cannot
+   * generate code. */
+  private static RelNode toCalc(RelNode plan) {
+    final HepProgramBuilder builder = HepProgram.builder();
+    for (RelOptRule rule : RelOptRules.CALC_RULES) {
+      builder.addRuleInstance(rule);
+    }
+    final HepPlanner hepPlanner =
+        new HepPlanner(builder.build(), null, true, null,
+            RelOptCostImpl.FACTORY);
+    hepPlanner.setRoot(plan);
+    return hepPlanner.findBestExp();
+  }
+
+  private static RelTraitSet traitSet(RelNode rel) {
+    return rel.getCluster().traitSetOf(EnumerableConvention.INSTANCE);
+  }
+
+  private static String key(RelNode rel, RelTraitSet traitSet) {
+    return RelOptUtil.toString(rel, SqlExplainLevel.DIGEST_ATTRIBUTES)
+        + rel.getRowType().getFullTypeString()
+        + "\n" + traitSet;
+  }
+
+  /** Returns whether a subtree can be cached: it contains a join, and all of
+   * its relational expressions are logical and have no expressions whose
+   * meaning depends on the enclosing query. Populates {@code tables} with
+   * the tables that the subtree reads. */
+  private static boolean isCacheable(RelNode rel,
+      Map<List<String>, Table> tables) {
+    final int[] joinCount = {0};
+    return isCacheable(rel, tables, joinCount) && joinCount[0] > 0;
+  }
+
+  private static boolean isCacheable(RelNode rel,
+      Map<List<String>, Table> tables, int[] joinCount) {
+    if (rel.getConvention() != Convention.NONE
+        || rel instanceof Correlate
+        || !rel.getVariablesSet().isEmpty()) {
+      return false;
+    }
+    if (rel instanceof Join) {
+      ++joinCount[0];
+    }
+    if (rel instanceof TableScan) {
+      final RelOptTable relOptTable = rel.getTable();
+      final Table table =
+          relOptTable == null ? null : relOptTable.unwrap(Table.class);
+      if (relOptTable == null || table == null) {
+        return false;
+      }
+      tables.put(relOptTable.getQualifiedName(), table);
+    } else if (rel.getInputs().isEmpty() && !(rel instanceof Values)) {
+      return false;
+    }
+    try {
+      rel.accept(QueryDependentFinder.INSTANCE);
+    } catch (Util.FoundOne e) {
+      return false;
+    }
+    for (RelNode input : rel.getInputs()) {
+      if (!isCacheable(input, tables, joinCount)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Cached plan. */
+  private static class Entry {
+    final EnumerableRel plan;
+    /** Explanation of {@link #plan}; part of the digest of a
+     * {@link CachedSubPlan} that uses this entry. */
+    final String explain;
+    final RelOptCost cost;
+    final double rowCount;
+    final ImmutableMap<List<String>, Table> tables;
+
+    Entry(EnumerableRel plan, String explain, RelOptCost cost, double rowCount,
+        ImmutableMap<List<String>, Table> tables) {
+      this.plan = plan;
+      this.explain = explain;
+      this.cost = cost;
+      this.rowCount = rowCount;
+      this.tables = tables;
+    }
+
+    /** Returns whether the subtree still reads the same tables as when the
+     * plan was cached. */
+    boolean isValid(Map<List<String>, Table> tables) {
+      if (tables.size() != this.tables.size()) {
+        return false;
+      }
+      for (Map.Entry<List<String>, Table> e : tables.entrySet()) {
+        if (this.tables.get(e.getKey()) != e.getValue()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Shuttle that throws {@link Util.FoundOne} if it finds an expression
+   * whose meaning depends on the enclosing query. */
+  private static class QueryDependentFinder extends RexShuttle {
+    static final QueryDependentFinder INSTANCE = new QueryDependentFinder();
+
+    @Override public RexNode visitDynamicParam(RexDynamicParam dynamicParam) {
+      throw Util.FoundOne.NULL;
+    }
+
+    @Override public RexNode visitCorrelVariable(RexCorrelVariable variable) {
+      throw Util.FoundOne.NULL;
+    }
+
+    @Override public RexNode visitSubQuery(RexSubQuery subQuery) {
+      throw Util.FoundOne.NULL;
+    }
+  }
+
+  /** Relational expression that executes a plan that was optimized for a
+   * previous query.
+   *
+   * <p>It is a leaf, so the planner does not explore the subtree that it
+   * replaced. Its cost is the cumulative cost of the cached plan. Its digest
+   * contains the explanation of the cached plan, so that the planner does
+   * not merge two leaves that execute different plans. */
+  static class CachedSubPlan extends AbstractRelNode implements EnumerableRel {
+    private final RelDataType subPlanRowType;
+    private final Entry entry;
+
+    CachedSubPlan(RelOptCluster cluster, RelTraitSet traitSet,
+        RelDataType rowType, Entry entry) {
+      super(cluster, traitSet);
+      this.subPlanRowType = rowType;
+      this.entry = entry;
+    }
+
+    @Override protected RelDataType deriveRowType() {
+      return subPlanRowType;
+    }
+
+    @Override public RelNode copy(RelTraitSet traitSet, List<RelNode> inputs) {
+      assert inputs.isEmpty();
+      return new CachedSubPlan(getCluster(), traitSet, getRowType(), entry);
+    }
+
+    @Override public double estimateRowCount(RelMetadataQuery mq) {
+      return entry.rowCount;
+    }
+
+    @Override public @Nullable RelOptCost computeSelfCost(RelOptPlanner planner,
+        RelMetadataQuery mq) {
+      return planner.getCostFactory().makeCost(entry.cost.getRows(),
+          entry.cost.getCpu(), entry.cost.getIo());
+    }
+
+    @Override public RelWriter explainTerms(RelWriter pw) {
+      return super.explainTerms(pw)
+          .item("plan", entry.explain)
+          .item("rowCount", entry.rowCount)
+          .item("cost", entry.cost);
+    }
+
+    @Override public Result implement(EnumerableRelImplementor implementor,
+        Prefer pref) {
+      return entry.plan.implement(implementor, pref);
+    }
+  }
+}
@@ -33,6 +33,7 @@
 import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.util.Bug;
 import org.apache.calcite.util.ImmutableBitSet;
 import org.apache.calcite.util.NumberUtil;
@@ -93,9 +94,57 @@ protected RelMdDistinctRowCount() {}
     if (handler != null) {
       return handler.getDistinctRowCount(scan, mq, groupKey, predicate);
     }
+    final Double distinctRowCount =
+        getDistinctRowCountFromStatistics(scan, mq, groupKey, predicate);
+    if (distinctRowCount != null) {
+      return distinctRowCount;
+    }
     return getDistinctRowCount((RelNode) scan, mq, groupKey, predicate);
   }
 
+  /** Estimates the number of distinct values of a set of columns of a table
+   * scan from the columns' statistics, or returns null if any of the columns
+   * has no distinct count, or if the columns are a key.
+   *
+   * <p>Assumes that the columns are independent, so the number of
+   * combinations is the product of the columns' distinct counts (counting
+   * null as a value if the column has nulls), but no more than the number of
+   * rows. */
+  private static @Nullable Double getDistinctRowCountFromStatistics(
+      TableScan scan, RelMetadataQuery mq, ImmutableBitSet groupKey,
+      @Nullable RexNode predicate) {
+    if (groupKey.isEmpty()
+        || RelMdUtil.areColumnsDefinitelyUnique(mq, scan, groupKey)) {
+      return null;
+    }
+    double distinctCount = 1d;
+    for (int ordinal : groupKey) {
+      final ColumnStatistic stat = RelMdUtil.getColumnStatistic(scan, ordinal);
+      final Double columnDistinctCount =
+          stat == null ? null : stat.getDistinctCount();
+      if (stat == null || columnDistinctCount == null) {
+        return null;
+      }
+      final Double nullFraction = stat.getNullFraction();
+      distinctCount *=
+          columnDistinctCount
+              + (nullFraction != null && nullFraction > 0d ? 1d : 0d);
+    }
+    final Double rowCount = mq.getRowCount(scan);
+    if (rowCount == null) {
+      return null;
+    }
+    distinctCount = Math.min(distinctCount, rowCount);
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return distinctCount;
+    }
+    final Double selectivity = mq.getSelectivity(scan, predicate);
+    if (selectivity == null) {
+      return null;
+    }
+    return RelMdUtil.numDistinctVals(distinctCount, rowCount * selectivity);
+  }
+
   public @Nullable Double getDistinctRowCount(Union rel, RelMetadataQuery mq,
       ImmutableBitSet groupKey, @Nullable RexNode predicate) {
     double rowCount = 0.0;
@@ -28,12 +28,23 @@
 import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexLiteral;
 import org.apache.calcite.rex.RexLocalRef;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.rex.RexProgram;
+import org.apache.calcite.rex.RexUnknownAs;
 import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.sql.SqlKind;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Sarg;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -62,13 +73,249 @@ protected RelMdSelectivity() {
   }
 
   public @Nullable Double getSelectivity(TableScan scan, RelMetadataQuery mq,
-      RexNode predicate) {
+      @Nullable RexNode predicate) {
     final BuiltInMetadata.Selectivity.Handler handler =
         scan.getTable().unwrap(BuiltInMetadata.Selectivity.Handler.class);
     if (handler != null) {
       return handler.getSelectivity(scan, mq, predicate);
     }
-    return getSelectivity((RelNode) scan, mq, predicate);
+    if (predicate == null || predicate.isAlwaysTrue()) {
+      return getSelectivity((RelNode) scan, mq, predicate);
+    }
+
+    // Estimate each conjunct that compares a column with a literal using
+    // the column's statistics; guess the others.
+    final List<RexNode> conjunctions = RelOptUtil.conjunctions(predicate);
+    final List<RexNode> notEstimated = new ArrayList<>();
+    double selectivity = 1d;
+    for (RexNode pred : conjunctions) {
+      final Double s = estimateSelectivity(scan, mq, pred);
+      if (s == null) {
+        notEstimated.add(pred);
+      } else {
+        selectivity *= s;
+      }
+    }
+    if (notEstimated.size() == conjunctions.size()) {
+      return getSelectivity((RelNode) scan, mq, predicate);
+    }
+    final RexNode pred =
+        RexUtil.composeConjunction(scan.getCluster().getRexBuilder(),
+            notEstimated, true);
+    return selectivity * RelMdUtil.guessSelectivity(pred);
+  }
+
+  /** Estimates the selectivity of a predicate on a table scan from the
+   * statistics of the column that it references, or returns null if the
+   * predicate is not a comparison between a column and a literal, or the
+   * column has insufficient statistics.
+   *
+   * <p>The result is at least the selectivity of one row. */
+  private static @Nullable Double estimateSelectivity(TableScan scan,
+      RelMetadataQuery mq, RexNode predicate) {
+    if (!(predicate instanceof RexCall)) {
+      return null;
+    }
+    final RexCall call = (RexCall) predicate;
+    final Double s;
+    switch (call.getKind()) {
+    case IS_NULL:
+    case IS_NOT_NULL:
+      s = nullSelectivity(scan, call.operands.get(0),
+          call.getKind() == SqlKind.IS_NULL);
+      break;
+    case SEARCH:
+      s = searchSelectivity(scan, call.operands.get(0), call.operands.get(1));
+      break;
+    case EQUALS:
+    case NOT_EQUALS:
+    case LESS_THAN:
+    case LESS_THAN_OR_EQUAL:
+    case GREATER_THAN:
+    case GREATER_THAN_OR_EQUAL:
+      if (call.operands.get(0) instanceof RexLiteral) {
+        s = comparisonSelectivity(scan, call.getKind().reverse(),
+            call.operands.get(1), call.operands.get(0));
+      } else {
+        s = comparisonSelectivity(scan, call.getKind(),
+            call.operands.get(0), call.operands.get(1));
+      }
+      break;
+    default:
+      return null;
+    }
+    if (s == null) {
+      return null;
+    }
+    final Double rowCount = mq.getRowCount(scan);
+    final double min = rowCount == null ? 0d : 1d / Math.max(1d, rowCount);
+    return Math.max(min, Math.min(1d, s));
+  }
+
+  private static @Nullable ColumnStatistic columnStatistic(TableScan scan,
+      RexNode operand) {
+    if (!(operand instanceof RexInputRef)) {
+      return null;
+    }
+    return RelMdUtil.getColumnStatistic(scan,
+        ((RexInputRef) operand).getIndex());
+  }
+
+  /** Returns the selectivity of "IS NULL" or "IS NOT NULL". */
+  private static @Nullable Double nullSelectivity(TableScan scan,
+      RexNode operand, boolean isNull) {
+    final ColumnStatistic stat = columnStatistic(scan, operand);
+    final Double nullFraction = stat == null ? null : stat.getNullFraction();
+    if (nullFraction == null) {
+      return null;
+    }
+    return isNull ? nullFraction : 1d - nullFraction;
+  }
+
+  /** Returns the selectivity of a comparison between a column and a
+   * literal. */
+  private static @Nullable Double comparisonSelectivity(TableScan scan,
+      SqlKind kind, RexNode operand, RexNode literal) {
+    final ColumnStatistic stat = columnStatistic(scan, operand);
+    if (stat == null || !(literal instanceof RexLiteral)) {
+      return null;
+    }
+    final Comparable value = ((RexLiteral) literal).getValue4();
+    if (value == null) {
+      return null;
+    }
+    final Double f;
+    switch (kind) {
+    case EQUALS:
+      f = pointFraction(stat, value);
+      break;
+    case NOT_EQUALS:
+      final Double point = pointFraction(stat, value);
+      f = point == null ? null : 1d - point;
+      break;
+    case LESS_THAN:
+      f = rangeFraction(stat, null, false, value, false);
+      break;
+    case LESS_THAN_OR_EQUAL:
+      f = rangeFraction(stat, null, false, value, true);
+      break;
+    case GREATER_THAN:
+      f = rangeFraction(stat, value, false, null, false);
+      break;
+    case GREATER_THAN_OR_EQUAL:
+      f = rangeFraction(stat, value, true, null, false);
+      break;
+    default:
+      return null;
+    }
+    return f == null ? null : f * nonNullFraction(stat);
+  }
+
+  /** Returns the selectivity of "SEARCH(column, sarg)". */
+  private static @Nullable Double searchSelectivity(TableScan scan,
+      RexNode operand, RexNode literal) {
+    final ColumnStatistic stat = columnStatistic(scan, operand);
+    if (stat == null || !(literal instanceof RexLiteral)) {
+      return null;
+    }
+    final Sarg<?> sarg = ((RexLiteral) literal).getValueAs(Sarg.class);
+    if (sarg == null) {
+      return null;
+    }
+    double f = 0d;
+    for (Range<?> range : sarg.rangeSet.asRanges()) {
+      final Double rf;
+      if (isPoint(range)) {
+        rf = pointFraction(stat, range.lowerEndpoint());
+      } else {
+        rf =
+            rangeFraction(stat,
+                range.hasLowerBound() ? range.lowerEndpoint() : null,
+                range.hasLowerBound()
+                    && range.lowerBoundType() == BoundType.CLOSED,
+                range.hasUpperBound() ? range.upperEndpoint() : null,
+                range.hasUpperBound()
+                    && range.upperBoundType() == BoundType.CLOSED);
+      }
+      if (rf == null) {
+        return null;
+      }
+      f += rf;
+    }
+    f = Math.min(1d, f) * nonNullFraction(stat);
+    if (sarg.nullAs == RexUnknownAs.TRUE) {
+      final Double nullFraction = stat.getNullFraction();
+      f += nullFraction == null ? 0d : nullFraction;
+    }
+    return f;
+  }
+
+  private static boolean isPoint(Range<?> range) {
+    return range.hasLowerBound()
+        && range.hasUpperBound()
+        && range.lowerBoundType() == BoundType.CLOSED
+        && range.upperBoundType() == BoundType.CLOSED
+        && range.lowerEndpoint().equals(range.upperEndpoint());
+  }
+
+  private static double nonNullFraction(ColumnStatistic stat) {
+    final Double nullFraction = stat.getNullFraction();
+    return nullFraction == null ? 1d : 1d - nullFraction;
+  }
+
+  /** Returns the fraction of non-null values of a column that are equal to a
+   * given value, or null if not known.
+   *
+   * <p>Assumes that values are uniformly distributed over the distinct
+   * values, unless the histogram shows that the value is frequent, or is out
+   * of range. */
+  private static @Nullable Double pointFraction(ColumnStatistic stat,
+      Comparable value) {
+    final Histogram histogram = stat.getHistogram();
+    Double f = null;
+    if (histogram != null) {
+      final Double below = histogram.fractionBelow(value, false);
+      final Double atOrBelow = histogram.fractionBelow(value, true);
+      if (below != null && atOrBelow != null) {
+        if (atOrBelow == 0d || below == 1d) {
+          return 0d;
+        }
+        f = atOrBelow - below;
+      }
+    }
+    final Double distinctCount = stat.getDistinctCount();
+    if (distinctCount != null && distinctCount > 0d) {
+      final double uniform = 1d / distinctCount;
+      return f == null ? uniform : Math.max(f, uniform);
+    }
+    return f == null || f == 0d ? null : f;
+  }
+
+  /** Returns the fraction of non-null values of a column that are in a
+   * range, or null if not known.
+   *
+   * @param lower       Lower bound, or null if unbounded
+   * @param lowerClosed Whether the range includes the lower bound
+   * @param upper       Upper bound, or null if unbounded
+   * @param upperClosed Whether the range includes the upper bound
+   */
+  private static @Nullable Double rangeFraction(ColumnStatistic stat,
+      @Nullable Object lower, boolean lowerClosed,
+      @Nullable Object upper, boolean upperClosed) {
+    final Histogram histogram = stat.getHistogram();
+    if (histogram == null) {
+      return null;
+    }
+    final Double hi =
+        upper == null ? Double.valueOf(1d)
+            : histogram.fractionBelow(upper, upperClosed);
+    final Double lo =
+        lower == null ? Double.valueOf(0d)
+            : histogram.fractionBelow(lower, !lowerClosed);
+    if (hi == null || lo == null) {
+      return null;
+    }
+    return Math.max(0d, hi - lo);
   }
 
   public @Nullable Double getSelectivity(Union rel, RelMetadataQuery mq,
@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.plan.RelOptTable;
 import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelNode;
@@ -25,6 +26,7 @@
 import org.apache.calcite.rel.core.JoinRelType;
 import org.apache.calcite.rel.core.Minus;
 import org.apache.calcite.rel.core.Project;
+import org.apache.calcite.rel.core.TableScan;
 import org.apache.calcite.rel.core.Union;
 import org.apache.calcite.rex.RexBuilder;
 import org.apache.calcite.rex.RexCall;
@@ -36,6 +38,7 @@
 import org.apache.calcite.rex.RexProgram;
 import org.apache.calcite.rex.RexUtil;
 import org.apache.calcite.rex.RexVisitorImpl;
+import org.apache.calcite.schema.ColumnStatistic;
 import org.apache.calcite.sql.SqlBasicFunction;
 import org.apache.calcite.sql.SqlFunction;
 import org.apache.calcite.sql.SqlFunctionCategory;
@@ -1092,13 +1095,35 @@ private static boolean isNonNegative(@Nullable Double result, boolean fail) {
     return true;
   }
 
+  /**
+   * Returns statistics about a column of the table that a scan reads, or null
+   * if not known.
+   *
+   * <p>Returns null if the scan's row type is not the table's; for example,
+   * if the scan projects some of the table's columns.
+   *
+   * @param scan    Table scan
+   * @param ordinal Ordinal of the column in the scan's row type
+   */
+  public static @Nullable ColumnStatistic getColumnStatistic(TableScan scan,
+      int ordinal) {
+    final RelOptTable table = scan.getTable();
+    if (!scan.getRowType().getFieldNames()
+        .equals(table.getRowType().getFieldNames())) {
+      return null;
+    }
+    return table.getColumnStatistic(ordinal);
+  }
+
   /**
    * Removes cached metadata values for specified RelNode.
    *
    * @param rel RelNode whose cached metadata should be removed
    * @return true if cache for the provided RelNode was not empty
+   *
+   * @see org.apache.calcite.plan.RelOptCluster#clearMetadataCache(RelNode)
    */
   public static boolean clearCache(RelNode rel) {
-    return rel.getCluster().getMetadataQuery().clearCache(rel);
+    return rel.getCluster().clearMetadataCache(rel);
   }
 }
@@ -16,7 +16,9 @@
  */
 package org.apache.calcite.rel.metadata;
 
+import org.apache.calcite.plan.volcano.RelSubset;
 import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.util.Pair;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.Table;
@@ -24,6 +26,7 @@
 import org.checkerframework.checker.nullness.qual.Nullable;
 
 import java.lang.reflect.Proxy;
+import java.util.IdentityHashMap;
 import java.util.Map;
 import java.util.function.Supplier;
 
@@ -69,6 +72,19 @@ public class RelMetadataQueryBase {
   /** Set of active metadata queries, and cache of previous results. */
   public final Table<RelNode, Object, Object> map = HashBasedTable.create();
 
+  /** Cache shared with other metadata queries, or null. */
+  private @Nullable SharedRelMetadataCache sharedCache;
+
+  /** For each relational expression, the part of its key in
+   * {@link #sharedCache}, or {@link NullSentinel#INSTANCE} if its values
+   * cannot be shared. An entry is removed when the values of its relational
+   * expression are removed from {@link #map}; see {@link #clearCache}. */
+  private final Map<RelNode, Object> sharedRelKeys = new IdentityHashMap<>();
+
+  /** Number of values that handlers have computed, rather than found in a
+   * cache. */
+  private long computeCount;
+
   private final @Nullable MetadataHandlerProvider metadataHandlerProvider;
 
   @Deprecated // to be removed before 2.0
@@ -134,6 +150,87 @@ protected <MH extends MetadataHandler<?>> MH handler(Class<MH> handlerClass) {
     return getMetadataHandlerProvider().handler(handlerClass);
   }
 
+  /** Sets the cache that this query shares with other queries, possibly of
+   * other clusters. */
+  public void setSharedCache(@Nullable SharedRelMetadataCache sharedCache) {
+    this.sharedCache = sharedCache;
+  }
+
+  /** Returns the cache that this query shares with other queries, or
+   * null. */
+  public @Nullable SharedRelMetadataCache getSharedCache() {
+    return sharedCache;
+  }
+
+  /** Returns the key under which a metadata value is held in the shared
+   * cache, or null if there is no shared cache or values for {@code rel}
+   * cannot be shared. Called by generated metadata handlers.
+   *
+   * @param rel Relational expression
+   * @param key Key of the value in {@link #map}
+   */
+  public @Nullable Object sharedKey(RelNode rel, Object key) {
+    if (sharedCache == null) {
+      return null;
+    }
+    final Object relKey = sharedRelKey(rel);
+    return relKey == null ? null : Pair.of(relKey, key);
+  }
+
+  private @Nullable Object sharedRelKey(RelNode rel) {
+    if (rel instanceof RelSubset) {
+      // The key of a subset is cheap to compute, and changes as planning
+      // proceeds, so do not remember it.
+      return SharedRelMetadataCache.relKey(rel, this::sharedRelKey);
+    }
+    Object relKey = sharedRelKeys.get(rel);
+    if (relKey == NullSentinel.ACTIVE) {
+      return null; // cycle
+    }
+    if (relKey == null) {
+      sharedRelKeys.put(rel, NullSentinel.ACTIVE);
+      relKey = SharedRelMetadataCache.relKey(rel, this::sharedRelKey);
+      if (relKey == null) {
+        relKey = NullSentinel.INSTANCE;
+      }
+      sharedRelKeys.put(rel, relKey);
+    }
+    return relKey == NullSentinel.INSTANCE ? null : relKey;
+  }
+
+  /** Returns a value from the shared cache, or null. Called by generated
+   * metadata handlers.
+   *
+   * @param sharedKey Key returned by {@link #sharedKey(RelNode, Object)}
+   */
+  public @Nullable Object getShared(Object sharedKey) {
+    return sharedCache == null ? null : sharedCache.get(sharedKey);
+  }
+
+  /** Adds a value to the shared cache. Called by generated metadata
+   * handlers.
+   *
+   * @param sharedKey Key returned by {@link #sharedKey(RelNode, Object)}
+   * @param value     Value, or {@link NullSentinel#INSTANCE}
+   */
+  public void putShared(Object sharedKey, Object value) {
+    if (sharedCache != null) {
+      sharedCache.put(sharedKey, value);
+    }
+  }
+
+  /** Records that a handler is computing a value because it was not in a
+   * cache. Called by generated metadata handlers. */
+  public void countCompute() {
+    ++computeCount;
+  }
+
+  /** Returns the number of values that the handlers of this query have
+   * computed, rather than found in a cache. */
+  public long getComputeCount() {
+    return computeCount;
+  }
+
   /**
    * Removes cached metadata values for specified RelNode.
    *
@@ -141,6 +238,7 @@ protected <MH extends MetadataHandler<?>> MH handler(Class<MH> handlerClass) {
    * @return true if cache for the provided RelNode was not empty
    */
   public boolean clearCache(RelNode rel) {
+    sharedRelKeys.remove(rel);
     Map<Object, Object> row = map.row(rel);
     if (row.isEmpty()) {
       return false;
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.plan.RelOptTable;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.plan.volcano.RelSubset;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.RelWriter;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.sql.SqlExplainLevel;
+import org.apache.calcite.util.Pair;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Cache of metadata values that can be shared by the
+ * {@link RelMetadataQuery} instances of several clusters, and by several
+ * threads.
+ *
+ * <p>A {@link RelMetadataQuery} caches values only until it is invalidated,
+ * which a planner does after each rule call, and only for the relational
+ * expressions of its own cluster. This cache holds values keyed by the
+ * structure of the tree that a relational expression roots, so an identical
+ * tree built by another query, in another cluster, will find them.
+ *
+ * <p>A tree may contain a planner's placeholders:
+ *
+ * <ul>
+ * <li>A {@link HepRelVertex} is keyed by the structure of its current
+ *     relational expression, so values survive the invalidation of a
+ *     {@link RelMetadataQuery} after each rule call of a
+ *     {@link org.apache.calcite.plan.hep.HepPlanner}, and are shared with
+ *     identical trees in other Hep planners.
+ * <li>A {@link RelSubset} is keyed by its identity and by its
+ *     {@link RelSubset#getMetadataTimestamp() metadata timestamp}, which
+ *     the planner increments when the subset's best expression changes or
+ *     an expression is added to its set. Values are shared between the
+ *     threads of a planner that fires rules concurrently, and are not used
+ *     after the subset has changed.
+ * </ul>
+ *
+ * <p>The key also contains the {@link Table} objects that the tree reads,
+ * compared by identity, so values computed against a previous snapshot of a
+ * schema whose tables have since been replaced are not used.
+ *
+ * <p>Values are shared only between queries that use the same metadata
+ * handlers; that is, clusters whose metadata providers are equal.
+ *
+ * <p>Some kinds of metadata are never shared; see
+ * {@link #isShared(Method)}. Cost metadata depends on the cost factory of the
+ * planner that requests it, and node-type metadata contains the relational
+ * expressions of the query that computed it, which would be kept alive by, and
+ * returned to, the queries of other clusters.
+ *
+ * <p>The cache is bounded; when it is full, the least recently used entries
+ * are evicted. Each entry retains:
+ *
+ * <ul>
+ * <li>the key of its tree, which contains the attributes, as strings, and
+ *     the row type of each relational expression in the tree, but not the
+ *     relational expressions themselves;
+ * <li>the {@link Table} objects that the tree reads;
+ * <li>the arguments of the metadata call, such as {@link RexNode} predicates
+ *     and column bit sets;
+ * <li>the metadata value, such as a row count, a list of collations, or
+ *     predicates and column origins, which may refer to {@link RexNode}s and
+ *     {@link RelOptTable}s of the query that computed it.
+ * </ul>
+ *
+ * @see org.apache.calcite.plan.RelOptCluster#setSharedMetadataCache
+ */
+public class SharedRelMetadataCache {
+  /** Handlers whose values are never shared. */
+  private static final Set<Class<?>> UNSHARED_HANDLERS =
+      ImmutableSet.of(BuiltInMetadata.CumulativeCost.Handler.class,
+          BuiltInMetadata.NonCumulativeCost.Handler.class,
+          BuiltInMetadata.LowerBoundCost.Handler.class,
+          BuiltInMetadata.NodeTypes.Handler.class);
+
+  private final Cache<Object, Object> cache;
+
+  /** Creates a SharedRelMetadataCache that holds up to
+   * {@code maximumSize} values. */
+  public SharedRelMetadataCache(long maximumSize) {
+    this.cache = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  /** Returns the number of values in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Returns statistics about lookups: the number of hits and misses, and
+   * the number of values evicted. */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /** Removes all values from the cache. */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  /** Returns the value for a key, or null. The value may be
+   * {@link NullSentinel#INSTANCE}, meaning that the metadata value is
+   * null. */
+  @Nullable Object get(Object key) {
+    return cache.getIfPresent(key);
+  }
+
+  /** Adds a value. */
+  void put(Object key, Object value) {
+    cache.put(key, value);
+  }
+
+  /** Returns whether values of a metadata method may be held in a shared
+   * cache. Called when generating metadata handlers.
+   *
+   * <p>Returns false for cost metadata ({@link BuiltInMetadata.CumulativeCost},
+   * {@link BuiltInMetadata.NonCumulativeCost},
+   * {@link BuiltInMetadata.LowerBoundCost}), whose value depends on the
+   * planner's cost factory, and for {@link BuiltInMetadata.NodeTypes}, whose
+   * value contains the relational expressions of one cluster.
+   *
+   * @param method Method of a metadata handler interface
+   */
+  public static boolean isShared(Method method) {
+    return !UNSHARED_HANDLERS.contains(method.getDeclaringClass());
+  }
+
+  /** Returns the part of the key that identifies a relational expression, or
+   * null if values for {@code rel} cannot be shared.
+   *
+   * @param rel      Relational expression
+   * @param inputKey Returns the key of an input, or null
+   */
+  static @Nullable Object relKey(RelNode rel,
+      Function<RelNode, @Nullable Object> inputKey) {
+    if (rel instanceof RelSubset) {
+      final RelSubset subset = (RelSubset) rel;
+      return ImmutableList.of(RelSubset.class, subset.getId(),
+          subset.getMetadataTimestamp());
+    }
+    if (rel instanceof HepRelVertex) {
+      final Object key = inputKey.apply(((HepRelVertex) rel).getCurrentRel());
+      return key == null ? null : Pair.of(HepRelVertex.class, key);
+    }
+    final KeyWriter writer = new KeyWriter();
+    rel.explain(writer);
+    final List<Object> key = new ArrayList<>();
+    key.add(writer.buf.toString());
+    key.add(rel.getRowType());
+    for (RelNode input : writer.inputs) {
+      final Object k = inputKey.apply(input);
+      if (k == null) {
+        return null;
+      }
+      key.add(k);
+    }
+    final RelOptTable relOptTable = rel.getTable();
+    if (relOptTable != null) {
+      final Table table = relOptTable.unwrap(Table.class);
+      key.add(table != null ? table : relOptTable);
+    }
+    return ImmutableList.copyOf(key);
+  }
+
+  /** Writer that records the attributes of a relational expression, in the
+   * same form as its digest, except that inputs are written as "#". */
+  private static class KeyWriter implements RelWriter {
+    final StringBuilder buf = new StringBuilder();
+    final List<RelNode> inputs = new ArrayList<>();
+    private int itemCount;
+
+    @Override public void explain(RelNode rel,
+        List<Pair<String, @Nullable Object>> valueList) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override public SqlExplainLevel getDetailLevel() {
+      return SqlExplainLevel.DIGEST_ATTRIBUTES;
+    }
+
+    @Override public RelWriter item(String term, @Nullable Object value) {
+      buf.append(itemCount++ == 0 ? "" : ",").append(term).append('=');
+      if (value instanceof RelNode) {
+        inputs.add((RelNode) value);
+        buf.append('#');
+      } else {
+        buf.append(value);
+      }
+      return this;
+    }
+
+    @Override public RelWriter done(RelNode node) {
+      buf.insert(0, node.getRelTypeName() + "." + node.getTraitSet() + "(")
+          .append(')');
+      return this;
+    }
+  }
+}
@@ -23,6 +23,7 @@
 import org.apache.calcite.rel.metadata.DelegatingMetadataRel;
 import org.apache.calcite.rel.metadata.NullSentinel;
 import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rel.metadata.SharedRelMetadataCache;
 import org.apache.calcite.rex.RexNode;
 import org.apache.calcite.runtime.FlatLists;
 
@@ -83,10 +84,29 @@ static void cachedMethod(StringBuilder buff, Method method, int methodIndex) {
         .append("      return (")
         .append(method.getReturnType().getName())
         .append(") v;\n")
-        .append("    }\n")
-        .append("    mq.map.put(r, key,")
+        .append("    }\n");
+    final boolean shared = SharedRelMetadataCache.isShared(method);
+    if (shared) {
+      buff.append("    final Object sharedKey = mq.sharedKey(r, key);\n")
+          .append("    if (sharedKey != null) {\n")
+          .append("      final Object s = mq.getShared(sharedKey);\n")
+          .append("      if (s != null) {\n")
+          .append("        mq.map.put(r, key, s);\n")
+          .append("        if (s == ")
+          .append(NullSentinel.class.getName())
+          .append(".INSTANCE) {\n")
+          .append("          return null;\n")
+          .append("        }\n")
+          .append("        return (")
+          .append(method.getReturnType().getName())
+          .append(") s;\n")
+          .append("      }\n")
+          .append("    }\n");
+    }
+    buff.append("    mq.map.put(r, key,")
         .append(NullSentinel.class.getName())
         .append(".ACTIVE);\n")
+        .append("    mq.countCompute();\n")
         .append("    try {\n")
         .append("      final ")
         .append(method.getReturnType().getName())
@@ -97,8 +117,15 @@ static void cachedMethod(StringBuilder buff, Method method, int methodIndex) {
         .append(");\n")
         .append("      mq.map.put(r, key, ")
         .append(NullSentinel.class.getName())
-        .append(".mask(x));\n")
-        .append("      return x;\n")
+        .append(".mask(x));\n");
+    if (shared) {
+      buff.append("      if (sharedKey != null) {\n")
+          .append("        mq.putShared(sharedKey, ")
+          .append(NullSentinel.class.getName())
+          .append(".mask(x));\n")
+          .append("      }\n");
+    }
+    buff.append("      return x;\n")
         .append("    } catch (")
         .append(Exception.class.getName())
         .append(" e) {\n")
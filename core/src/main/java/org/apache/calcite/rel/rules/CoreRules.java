@@ -657,6 +657,16 @@ private CoreRules() {}
   public static final MultiJoinOptimizeBushyRule MULTI_JOIN_OPTIMIZE_BUSHY =
       MultiJoinOptimizeBushyRule.Config.DEFAULT.toRule();
 
+  /** Rule that finds the optimal ordering for join operators by dynamic
+   * programming (the DPhyp algorithm), falling back to the greedy algorithm
+   * of {@link #MULTI_JOIN_OPTIMIZE} for joins with many inputs.
+   *
+   * <p>It is triggered by the pattern {@link MultiJoin}.
+   *
+   * @see #MULTI_JOIN_OPTIMIZE_BUSHY */
+  public static final MultiJoinOptimizeDphypRule MULTI_JOIN_OPTIMIZE_DPHYP =
+      MultiJoinOptimizeDphypRule.Config.DEFAULT.toRule();
+
   /** Rule that matches a {@link LogicalJoin} whose inputs are both a
    * {@link MultiJoin} with intervening {@link LogicalProject}s,
    * and pulls the Projects up above the Join. */
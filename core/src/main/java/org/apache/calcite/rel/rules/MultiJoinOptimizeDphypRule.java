@@ -0,0 +1,464 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.rules;
+
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.plan.RelRule;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.metadata.RelMdUtil;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexInputRef;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexPermuteInputsShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.ImmutableBitSet;
+import org.apache.calcite.util.Pair;
+import org.apache.calcite.util.Util;
+import org.apache.calcite.util.mapping.Mappings;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.immutables.value.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Planner rule that finds the optimal ordering for the inputs of a
+ * {@link MultiJoin} by dynamic programming.
+ *
+ * <p>It is triggered by the pattern {@link MultiJoin}.
+ *
+ * <p>Unlike {@link LoptOptimizeJoinRule}
+ * ({@link CoreRules#MULTI_JOIN_OPTIMIZE}), which is greedy, and
+ * {@link MultiJoinOptimizeBushyRule}
+ * ({@link CoreRules#MULTI_JOIN_OPTIMIZE_BUSHY}), which is heuristic, this rule
+ * considers every bushy join tree that does not contain a cross product, and
+ * chooses the one that minimizes the sum of the row counts of its joins.
+ * Row counts of the inputs come from {@link RelMetadataQuery#getRowCount};
+ * the selectivity of an equi-join condition {@code a = b} is
+ * {@code 1 / max(ndv(a), ndv(b))}, using
+ * {@link RelMetadataQuery#getDistinctRowCount}.
+ *
+ * <p>The enumeration is the DPhyp algorithm of Moerkotte and Neumann,
+ * "Dynamic Programming Strikes Back" (SIGMOD 2008), which visits each pair of
+ * connected sub-graphs once, and so is efficient for the chain, star and
+ * snowflake graphs typical of real queries. A condition that references more
+ * than two inputs is treated as a hyper-edge.
+ *
+ * <p>The number of plans grows exponentially with the number of inputs. If
+ * the join has more than {@link Config#maxFactorCount()} inputs, has outer
+ * joins, or its graph is not connected, the rule falls back to the greedy
+ * algorithm of {@link LoptOptimizeJoinRule}.
+ *
+ * @see CoreRules#MULTI_JOIN_OPTIMIZE_DPHYP
+ */
+@Value.Enclosing
+public class MultiJoinOptimizeDphypRule
+    extends RelRule<MultiJoinOptimizeDphypRule.Config>
+    implements TransformationRule {
+
+  /** Largest value allowed for {@link Config#maxFactorCount()}. */
+  public static final int MAX_FACTOR_COUNT = 20;
+
+  /** Rule that orders the inputs of joins that this rule cannot. */
+  private final LoptOptimizeJoinRule fallbackRule;
+
+  /** Creates a MultiJoinOptimizeDphypRule. */
+  protected MultiJoinOptimizeDphypRule(Config config) {
+    super(config);
+    checkArgument(config.maxFactorCount() >= 2
+            && config.maxFactorCount() <= MAX_FACTOR_COUNT,
+        "maxFactorCount must be between 2 and %s: %s", MAX_FACTOR_COUNT,
+        config.maxFactorCount());
+    this.fallbackRule = LoptOptimizeJoinRule.Config.DEFAULT
+        .withRelBuilderFactory(config.relBuilderFactory())
+        .as(LoptOptimizeJoinRule.Config.class)
+        .toRule();
+  }
+
+  @Override public void onMatch(RelOptRuleCall call) {
+    final MultiJoin multiJoinRel = call.rel(0);
+    final LoptMultiJoin multiJoin = new LoptMultiJoin(multiJoinRel);
+    final int n = multiJoin.getNumJoinFactors();
+    if (n > config.maxFactorCount() || hasOuterJoins(multiJoin)) {
+      fallbackRule.onMatch(call);
+      return;
+    }
+
+    final RelMetadataQuery mq = call.getMetadataQuery();
+    final JoinEnumerator enumerator = new JoinEnumerator(n);
+    for (int i = 0; i < n; i++) {
+      enumerator.addLeaf(i, mq.getRowCount(multiJoin.getJoinFactor(i)));
+    }
+    final List<RexNode> residualConditions = new ArrayList<>();
+    for (RexNode condition : multiJoin.getJoinFilters()) {
+      final ImmutableBitSet factors =
+          multiJoin.getFactorsRefByJoinFilter(condition);
+      if (factors.cardinality() < 2) {
+        residualConditions.add(condition);
+      } else {
+        enumerator.addCondition(condition, factors,
+            selectivity(multiJoin, mq, condition));
+      }
+    }
+
+    final Plan best = enumerator.solve();
+    if (best == null) {
+      // The join graph is not connected. DPhyp does not consider cross
+      // products, so fall back to the greedy algorithm.
+      fallbackRule.onMatch(call);
+      return;
+    }
+
+    final RelBuilder relBuilder = call.builder();
+    final RexBuilder rexBuilder = multiJoinRel.getCluster().getRexBuilder();
+    final Pair<RelNode, Mappings.TargetMapping> top =
+        build(multiJoin, enumerator.conditions, best, relBuilder, rexBuilder);
+    relBuilder.push(top.left);
+    if (!residualConditions.isEmpty()) {
+      final RexNode condition =
+          RexUtil.composeConjunction(rexBuilder, residualConditions);
+      relBuilder.filter(
+          condition.accept(new RexPermuteInputsShuttle(top.right, top.left)));
+    }
+    relBuilder.project(relBuilder.fields(top.right),
+        multiJoinRel.getRowType().getFieldNames());
+    final RexNode postJoinFilter = multiJoinRel.getPostJoinFilter();
+    if (postJoinFilter != null) {
+      relBuilder.filter(postJoinFilter);
+    }
+    call.transformTo(relBuilder.build());
+  }
+
+  private static boolean hasOuterJoins(LoptMultiJoin multiJoin) {
+    if (multiJoin.getMultiJoinRel().isFullOuterJoin()) {
+      return true;
+    }
+    for (int i = 0; i < multiJoin.getNumJoinFactors(); i++) {
+      final ImmutableBitSet outerJoinFactors =
+          multiJoin.getOuterJoinFactors(i);
+      if (outerJoinFactors != null && !outerJoinFactors.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Estimates the selectivity of a join condition. If the condition is an
+   * equality between columns of two inputs, uses the number of distinct
+   * values of each column. */
+  private static double selectivity(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, RexNode condition) {
+    if (condition.getKind() == SqlKind.EQUALS) {
+      final List<RexNode> operands = ((RexCall) condition).getOperands();
+      if (operands.get(0) instanceof RexInputRef
+          && operands.get(1) instanceof RexInputRef) {
+        final Double ndv0 =
+            distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(0));
+        final Double ndv1 =
+            distinctRowCount(multiJoin, mq, (RexInputRef) operands.get(1));
+        if (ndv0 != null && ndv1 != null) {
+          return 1D / Math.max(1D, Math.max(ndv0, ndv1));
+        }
+      }
+    }
+    return RelMdUtil.guessSelectivity(condition);
+  }
+
+  private static @Nullable Double distinctRowCount(LoptMultiJoin multiJoin,
+      RelMetadataQuery mq, RexInputRef ref) {
+    final int factor = multiJoin.findRef(ref.getIndex());
+    final int column = ref.getIndex() - multiJoin.getJoinStart(factor);
+    return mq.getDistinctRowCount(multiJoin.getJoinFactor(factor),
+        ImmutableBitSet.of(column), null);
+  }
+
+  /** Converts a plan into a tree of joins, and returns the tree and the
+   * mapping from the fields of the {@link MultiJoin} to the fields of the
+   * tree. */
+  private static Pair<RelNode, Mappings.TargetMapping> build(
+      LoptMultiJoin multiJoin, List<Condition> conditions, Plan plan,
+      RelBuilder relBuilder, RexBuilder rexBuilder) {
+    if (plan.left == null || plan.right == null) {
+      final int factor = Long.numberOfTrailingZeros(plan.factors);
+      final RelNode rel = multiJoin.getJoinFactor(factor);
+      final Mappings.TargetMapping mapping =
+          Mappings.offsetSource(
+              Mappings.createIdentity(rel.getRowType().getFieldCount()),
+              multiJoin.getJoinStart(factor),
+              multiJoin.getNumTotalFields());
+      return Pair.of(rel, mapping);
+    }
+    final Pair<RelNode, Mappings.TargetMapping> left =
+        build(multiJoin, conditions, plan.left, relBuilder, rexBuilder);
+    final Pair<RelNode, Mappings.TargetMapping> right =
+        build(multiJoin, conditions, plan.right, relBuilder, rexBuilder);
+    final Mappings.TargetMapping mapping =
+        Mappings.merge(left.right,
+            Mappings.offsetTarget(right.right,
+                left.left.getRowType().getFieldCount()));
+    final List<RexNode> joinConditions = new ArrayList<>();
+    for (Condition condition : conditions) {
+      if (condition.appliesTo(plan.left.factors, plan.right.factors)) {
+        joinConditions.add(condition.condition);
+      }
+    }
+    final RexNode condition =
+        RexUtil.composeConjunction(rexBuilder, joinConditions);
+    final RelNode join = relBuilder.push(left.left)
+        .push(right.left)
+        .join(JoinRelType.INNER,
+            condition.accept(
+                new RexPermuteInputsShuttle(mapping, left.left, right.left)))
+        .build();
+    return Pair.of(join, mapping);
+  }
+
+  /** Join condition, with the set of inputs it references and its
+   * estimated selectivity. */
+  private static class Condition {
+    final RexNode condition;
+    final long factors;
+    final double selectivity;
+
+    Condition(RexNode condition, long factors, double selectivity) {
+      this.condition = condition;
+      this.factors = factors;
+      this.selectivity = selectivity;
+    }
+
+    /** Returns whether this condition is evaluated by a join of two
+     * disjoint sets of inputs; that is, it references inputs on both
+     * sides, and no other inputs. */
+    boolean appliesTo(long left, long right) {
+      return (factors & ~(left | right)) == 0
+          && (factors & ~left) != 0
+          && (factors & ~right) != 0;
+    }
+  }
+
+  /** Optimal plan for a set of inputs. A plan with no children is an
+   * input. */
+  private static class Plan {
+    final long factors;
+    final @Nullable Plan left;
+    final @Nullable Plan right;
+    final double rowCount;
+    /** Sum of the row counts of the joins in this plan. */
+    final double cost;
+
+    Plan(long factors, @Nullable Plan left, @Nullable Plan right,
+        double rowCount, double cost) {
+      this.factors = factors;
+      this.left = left;
+      this.right = right;
+      this.rowCount = rowCount;
+      this.cost = cost;
+    }
+
+    @Override public String toString() {
+      return left == null
+          ? "Plan(factor: " + Long.numberOfTrailingZeros(factors)
+              + ", rowCount: " + Util.human(rowCount) + ")"
+          : "Plan(factors: " + Long.toBinaryString(factors)
+              + ", rowCount: " + Util.human(rowCount)
+              + ", cost: " + Util.human(cost) + ")";
+    }
+  }
+
+  /** Enumerates join trees using the DPhyp algorithm.
+   *
+   * <p>Sets of inputs are represented as bit masks. Each join condition
+   * between inputs {@code F} contributes a hyper-edge {@code (u, v)} from
+   * {@code u = {min(F)}} to {@code v = F - u}, and the reverse edge; if
+   * {@code F} has two elements, these are simple edges. */
+  private static class JoinEnumerator {
+    private final int n;
+    private final @Nullable Plan[] table;
+    final List<Condition> conditions = new ArrayList<>();
+    private final List<long[]> edges = new ArrayList<>();
+
+    JoinEnumerator(int n) {
+      checkArgument(n <= MAX_FACTOR_COUNT, "too many inputs: %s", n);
+      this.n = n;
+      this.table = new Plan[1 << n];
+    }
+
+    void addLeaf(int i, @Nullable Double rowCount) {
+      final double r = rowCount == null ? 1D : Math.max(rowCount, 1D);
+      table[1 << i] = new Plan(1L << i, null, null, r, 0D);
+    }
+
+    void addCondition(RexNode condition, ImmutableBitSet factors,
+        double selectivity) {
+      long mask = 0;
+      for (int i : factors) {
+        mask |= 1L << i;
+      }
+      conditions.add(new Condition(condition, mask, selectivity));
+      final long u = Long.lowestOneBit(mask);
+      final long v = mask & ~u;
+      edges.add(new long[] {u, v});
+      edges.add(new long[] {v, u});
+    }
+
+    /** Returns the optimal plan for all inputs, or null if the join graph is
+     * not connected. */
+    @Nullable Plan solve() {
+      for (int i = n - 1; i >= 0; i--) {
+        final long v = 1L << i;
+        emitCsg(v);
+        enumerateCsgRec(v, (v << 1) - 1);
+      }
+      return table[(1 << n) - 1];
+    }
+
+    /** Returns the neighborhood of {@code s}, excluding {@code x}: the
+     * minimal input of each hyper-edge that leads from {@code s} to inputs
+     * not in {@code s} or {@code x}. */
+    private long neighborhood(long s, long x) {
+      final long excluded = s | x;
+      long neighbors = 0;
+      for (long[] edge : edges) {
+        if ((edge[0] & ~s) == 0 && (edge[1] & excluded) == 0) {
+          neighbors |= Long.lowestOneBit(edge[1]);
+        }
+      }
+      return neighbors;
+    }
+
+    /** Returns whether there is an edge between two disjoint sets. */
+    private boolean connected(long s1, long s2) {
+      for (long[] edge : edges) {
+        if ((edge[0] & ~s1) == 0 && (edge[1] & ~s2) == 0) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private void enumerateCsgRec(long s1, long x) {
+      final long neighbors = neighborhood(s1, x);
+      if (neighbors == 0) {
+        return;
+      }
+      // Enumerate the non-empty subsets of neighbors in increasing order.
+      for (long sub = neighbors & -neighbors; sub != 0;
+           sub = (sub - neighbors) & neighbors) {
+        if (table[(int) (s1 | sub)] != null) {
+          emitCsg(s1 | sub);
+        }
+      }
+      final long x2 = x | neighbors;
+      for (long sub = neighbors & -neighbors; sub != 0;
+           sub = (sub - neighbors) & neighbors) {
+        enumerateCsgRec(s1 | sub, x2);
+      }
+    }
+
+    private void emitCsg(long s1) {
+      final long lowest = Long.lowestOneBit(s1);
+      final long x = s1 | (lowest | (lowest - 1));
+      final long neighbors = neighborhood(s1, x);
+      for (int i = 63 - Long.numberOfLeadingZeros(neighbors); i >= 0; i--) {
+        final long s2 = 1L << i;
+        if ((neighbors & s2) == 0) {
+          continue;
+        }
+        if (connected(s1, s2)) {
+          emitCsgCmp(s1, s2);
+        }
+        enumerateCmpRec(s1, s2, x | (neighbors & (s2 | (s2 - 1))));
+      }
+    }
+
+    private void enumerateCmpRec(long s1, long s2, long x) {
+      final long neighbors = neighborhood(s2, x);
+      if (neighbors == 0) {
+        return;
+      }
+      for (long sub = neighbors & -neighbors; sub != 0;
+           sub = (sub - neighbors) & neighbors) {
+        final long s = s2 | sub;
+        if (table[(int) s] != null && connected(s1, s)) {
+          emitCsgCmp(s1, s);
+        }
+      }
+      final long x2 = x | neighbors;
+      for (long sub = neighbors & -neighbors; sub != 0;
+           sub = (sub - neighbors) & neighbors) {
+        enumerateCmpRec(s1, s2 | sub, x2);
+      }
+    }
+
+    /** Considers joining the optimal plans for two disjoint, connected
+     * sets of inputs. */
+    private void emitCsgCmp(long s1, long s2) {
+      final Plan p1 = requireNonNull(table[(int) s1]);
+      final Plan p2 = requireNonNull(table[(int) s2]);
+      double selectivity = 1D;
+      for (Condition condition : conditions) {
+        if (condition.appliesTo(s1, s2)) {
+          selectivity *= condition.selectivity;
+        }
+      }
+      final double rowCount =
+          Math.max(p1.rowCount * p2.rowCount * selectivity, 1D);
+      final double cost = rowCount + p1.cost + p2.cost;
+      final int s = (int) (s1 | s2);
+      final Plan existing = table[s];
+      if (existing == null || cost < existing.cost) {
+        // Put the larger input on the left, so that a hash join builds its
+        // hash table from the smaller input.
+        table[s] = p1.rowCount >= p2.rowCount
+            ? new Plan(s1 | s2, p1, p2, rowCount, cost)
+            : new Plan(s1 | s2, p2, p1, rowCount, cost);
+      }
+    }
+  }
+
+  /** Rule configuration. */
+  @Value.Immutable
+  public interface Config extends RelRule.Config {
+    Config DEFAULT = ImmutableMultiJoinOptimizeDphypRule.Config.of()
+        .withOperandSupplier(b -> b.operand(MultiJoin.class).anyInputs());
+
+    @Override default MultiJoinOptimizeDphypRule toRule() {
+      return new MultiJoinOptimizeDphypRule(this);
+    }
+
+    /** Largest number of inputs for which the rule enumerates join orders;
+     * for joins with more inputs, it uses the greedy algorithm of
+     * {@link LoptOptimizeJoinRule}. Default 12; must be at most
+     * {@link #MAX_FACTOR_COUNT}. */
+    @Value.Default default int maxFactorCount() {
+      return 12;
+    }
+
+    /** Sets {@link #maxFactorCount()}. */
+    Config withMaxFactorCount(int maxFactorCount);
+  }
+}
@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Equi-join that chooses its algorithm at run time, after it has seen how
+ * many rows its build (inner) input has.
+ *
+ * <p>The planner chooses a hash join based on row-count estimates, which
+ * are often wrong for tables without statistics. This join reads up to
+ * {@code nestedLoopThreshold + 1} rows of the build input before it
+ * decides:
+ *
+ * <ul>
+ *   <li>If the build input has at most {@code nestedLoopThreshold} rows, it
+ *   compares each probe (outer) row with each build row
+ *   ({@link Strategy#NESTED_LOOP}); for very small build inputs, this is
+ *   cheaper than building and probing a hash table.
+ *   <li>Otherwise, it builds a hash table ({@link Strategy#HASH}).
+ *   <li>If the statement has a {@link SpillManager} and the build input does
+ *   not fit into its memory budget, it partitions both inputs to disk
+ *   ({@link Strategy#PARTITIONED_HASH}), as {@link SpillableHashJoin}.
+ * </ul>
+ *
+ * <p>Each time the join is executed, it increments the counter for the
+ * strategy it chose in the statement's {@link RuntimeStatistics}.
+ */
+public class AdaptiveHashJoin {
+  private AdaptiveHashJoin() {
+  }
+
+  /** Algorithm that an adaptive join chose. */
+  public enum Strategy {
+    /** Compare each probe row with each build row. */
+    NESTED_LOOP,
+    /** Build an in-memory hash table. */
+    HASH,
+    /** Partition both inputs to disk and join each pair of partitions. */
+    PARTITIONED_HASH;
+
+    /** Name of the counter in {@link RuntimeStatistics} that records how
+     * many times an adaptive join chose this strategy; for example
+     * "adaptiveJoin.nestedLoop". */
+    public final String counterName =
+        "adaptiveJoin."
+            + CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_CAMEL, name());
+  }
+
+  /**
+   * Correlates the elements of two sequences based on matching keys,
+   * choosing the algorithm once the size of the inner sequence is known.
+   *
+   * <p>The arguments are as
+   * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)},
+   * plus:
+   *
+   * @param root Data context
+   * @param nestedLoopThreshold Maximum number of rows in the inner sequence
+   *                            for which to use a nested-loop join
+   * @param spillable Whether the rows of both inputs can be written to disk
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      DataContext root, Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate,
+      int nestedLoopThreshold, boolean spillable) {
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        final List<TInner> innerList = new ArrayList<>();
+        final Enumerator<TInner> inners = inner.enumerator();
+        boolean small = false;
+        try {
+          for (;;) {
+            if (!inners.moveNext()) {
+              small = true;
+              break;
+            }
+            innerList.add(inners.current());
+            if (innerList.size() > nestedLoopThreshold) {
+              break;
+            }
+          }
+        } finally {
+          if (small) {
+            inners.close();
+          }
+        }
+        if (small) {
+          record(root, Strategy.NESTED_LOOP);
+          return new NestedLoopEnumerator<>(outer.enumerator(), innerList,
+              outerKeySelector, innerKeySelector, resultSelector, comparer,
+              generateNullsOnLeft, generateNullsOnRight, predicate);
+        }
+        final Enumerable<TInner> rest = new ResumedEnumerable<>(inner,
+            innerList, inners);
+        final SpillManager spillManager =
+            spillable ? SpillManager.of(root) : null;
+        if (spillManager == null) {
+          record(root, Strategy.HASH);
+          return EnumerableDefaults.hashJoin(outer, rest, outerKeySelector,
+              innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+              generateNullsOnRight, predicate).enumerator();
+        }
+        final boolean[] spilled = {false};
+        final Enumerator<TResult> enumerator =
+            SpillableHashJoin.hashJoin(spillManager, outer, rest,
+                outerKeySelector, innerKeySelector, resultSelector, comparer,
+                generateNullsOnLeft, generateNullsOnRight, predicate,
+                () -> spilled[0] = true).enumerator();
+        record(root,
+            spilled[0] ? Strategy.PARTITIONED_HASH : Strategy.HASH);
+        return enumerator;
+      }
+    };
+  }
+
+  private static void record(DataContext root, Strategy strategy) {
+    RuntimeStatistics.add(root, strategy.counterName, 1);
+  }
+
+  /** Enumerable whose first enumerator returns rows that have already been
+   * read from an enumerator of a source, followed by the rest of that
+   * enumerator's rows.
+   *
+   * <p>Later enumerators, and the first enumerator after
+   * {@link Enumerator#reset()}, read the source again from the start.
+   *
+   * @param <E> Element type */
+  private static class ResumedEnumerable<E> extends AbstractEnumerable<E> {
+    private final Enumerable<E> source;
+    private final List<E> list;
+    /** Enumerator of the source from which the rows in {@link #list} were
+     * read; null once it has been handed to an enumerator. */
+    private @Nullable Enumerator<E> resumed;
+
+    ResumedEnumerable(Enumerable<E> source, List<E> list,
+        Enumerator<E> resumed) {
+      this.source = source;
+      this.list = list;
+      this.resumed = resumed;
+    }
+
+    @Override public Enumerator<E> enumerator() {
+      final Enumerator<E> enumerator = resumed;
+      if (enumerator == null) {
+        return source.enumerator();
+      }
+      resumed = null;
+      return new ResumedEnumerator<>(source, list, enumerator);
+    }
+  }
+
+  /** Enumerator returned by {@link ResumedEnumerable}.
+   *
+   * @param <E> Element type */
+  private static class ResumedEnumerator<E> implements Enumerator<E> {
+    private final Enumerable<E> source;
+    private List<E> list;
+    private Enumerator<E> enumerator;
+    private int i = -1;
+
+    ResumedEnumerator(Enumerable<E> source, List<E> list,
+        Enumerator<E> enumerator) {
+      this.source = source;
+      this.list = list;
+      this.enumerator = enumerator;
+    }
+
+    @Override public E current() {
+      return i < list.size() ? list.get(i) : enumerator.current();
+    }
+
+    @Override public boolean moveNext() {
+      if (i < list.size()) {
+        ++i;
+      }
+      return i < list.size() || enumerator.moveNext();
+    }
+
+    @Override public void reset() {
+      // The rows that were read ahead are also returned by a new enumerator
+      // of the source, so forget them.
+      enumerator.close();
+      enumerator = source.enumerator();
+      list = ImmutableList.of();
+      i = -1;
+    }
+
+    @Override public void close() {
+      enumerator.close();
+    }
+  }
+
+  /** Enumerator that joins each outer row to a list of inner rows by
+   * comparing keys.
+   *
+   * @param <TSource> Element type of the outer (probe) input
+   * @param <TInner> Element type of the inner (build) input
+   * @param <TKey> Key type
+   * @param <TResult> Result type */
+  private static class NestedLoopEnumerator<TSource, TInner, TKey, TResult>
+      implements Enumerator<TResult> {
+    private final Enumerator<TSource> outers;
+    private final List<TInner> innerList;
+    private final List<@Nullable TKey> innerKeys = new ArrayList<>();
+    private final Function1<TSource, TKey> outerKeySelector;
+    private final Function2<TSource, TInner, TResult> resultSelector;
+    private final @Nullable EqualityComparer<TKey> comparer;
+    private final boolean generateNullsOnRight;
+    private final @Nullable Predicate2<TSource, TInner> predicate;
+    /** Whether each inner row has matched, if the join generates nulls on
+     * the left; otherwise null. */
+    private final boolean @Nullable [] innerMatched;
+
+    private @Nullable TSource outer;
+    private @Nullable TKey outerKey;
+    private boolean outerMatched;
+    /** Index of the inner row to be compared with the current outer row;
+     * or -1 if the next outer row is needed. */
+    private int innerIndex = -1;
+    /** Index of the unmatched inner row to be returned, once all outer rows
+     * have been read; or -1 if outer rows remain. */
+    private int unmatchedIndex = -1;
+    private @Nullable TResult current;
+
+    NestedLoopEnumerator(Enumerator<TSource> outers, List<TInner> innerList,
+        Function1<TSource, TKey> outerKeySelector,
+        Function1<TInner, TKey> innerKeySelector,
+        Function2<TSource, TInner, TResult> resultSelector,
+        @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+        boolean generateNullsOnRight,
+        @Nullable Predicate2<TSource, TInner> predicate) {
+      this.outers = outers;
+      this.innerList = innerList;
+      for (TInner inner : innerList) {
+        innerKeys.add(inner == null ? null : innerKeySelector.apply(inner));
+      }
+      this.outerKeySelector = outerKeySelector;
+      this.resultSelector = resultSelector;
+      this.comparer = comparer;
+      this.generateNullsOnRight = generateNullsOnRight;
+      this.predicate = predicate;
+      this.innerMatched =
+          generateNullsOnLeft ? new boolean[innerList.size()] : null;
+    }
+
+    @Override public TResult current() {
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      if (unmatchedIndex >= 0) {
+        return nextUnmatched();
+      }
+      for (;;) {
+        if (innerIndex >= 0) {
+          final TSource outer = castNonNull(this.outer);
+          while (innerIndex < innerList.size()) {
+            final int i = innerIndex++;
+            if (matches(outer, i)) {
+              outerMatched = true;
+              if (innerMatched != null) {
+                innerMatched[i] = true;
+              }
+              current = resultSelector.apply(outer, innerList.get(i));
+              return true;
+            }
+          }
+          innerIndex = -1;
+          if (!outerMatched && generateNullsOnRight) {
+            current = resultSelector.apply(outer, castNonNull(null));
+            return true;
+          }
+        }
+        if (!outers.moveNext()) {
+          unmatchedIndex = 0;
+          return nextUnmatched();
+        }
+        outer = outers.current();
+        outerKey = outer == null ? null : outerKeySelector.apply(outer);
+        outerMatched = false;
+        innerIndex = 0;
+      }
+    }
+
+    private boolean matches(TSource outer, int i) {
+      final TKey innerKey = innerKeys.get(i);
+      if (outerKey == null || innerKey == null) {
+        return false;
+      }
+      final boolean equal = comparer == null
+          ? outerKey.equals(innerKey)
+          : comparer.equal(outerKey, innerKey);
+      return equal
+          && (predicate == null || predicate.apply(outer, innerList.get(i)));
+    }
+
+    /** Returns the next inner row that did not match any outer row, if the
+     * join generates nulls on the left. */
+    private boolean nextUnmatched() {
+      if (innerMatched == null) {
+        return false;
+      }
+      while (unmatchedIndex < innerList.size()) {
+        final int i = unmatchedIndex++;
+        if (!innerMatched[i]) {
+          current = resultSelector.apply(castNonNull(null), innerList.get(i));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override public void reset() {
+      outers.reset();
+      if (innerMatched != null) {
+        Arrays.fill(innerMatched, false);
+      }
+      outer = null;
+      outerKey = null;
+      innerIndex = -1;
+      unmatchedIndex = -1;
+      current = null;
+    }
+
+    @Override public void close() {
+      outers.close();
+    }
+  }
+}
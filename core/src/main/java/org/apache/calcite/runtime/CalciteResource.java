@@ -1138,4 +1138,7 @@ ExInst<RuntimeException> multipleCapturingGroupsForRegexpFunctions(String value,
 
   @BaseMessage("ASOF JOIN does not support correlated subqueries")
   ExInst<CalciteException> asofCannotBeCorrelated();
+
+  @BaseMessage("Query exceeded its memory limit of {0,number,#} bytes while {1} was reserving another {2,number,#} bytes")
+  ExInst<CalciteException> queryMemoryLimitExceeded(long limit, String operator, long byteCount);
 }
@@ -20,7 +20,9 @@
 import org.apache.calcite.linq4j.AbstractEnumerable;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
 import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
@@ -52,6 +54,14 @@ public static <E> Enumerable<E> slice0(Enumerable<E[]> enumerable) {
     return enumerable.select(elements -> elements[0]);
   }
 
+  /** Converts a map from group keys to accumulators into an enumerable over
+   * the rows that {@code resultSelector} creates from each group. */
+  public static <K, A, R> Enumerable<R> groups(Map<K, A> groups,
+      Function2<K, A, R> resultSelector) {
+    return Linq4j.asEnumerable(groups.entrySet())
+        .select(entry -> resultSelector.apply(entry.getKey(), entry.getValue()));
+  }
+
   /** Converts an {@link Enumerable} over object arrays into an
    * {@link Enumerable} over {@link Row} objects. */
   public static Enumerable<Row> toRow(final Enumerable<@Nullable Object[]> enumerable) {
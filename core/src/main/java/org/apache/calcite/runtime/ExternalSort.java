@@ -0,0 +1,450 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Sort that writes sorted runs to disk if its input does not fit into the
+ * memory budget of the statement, then merges them.
+ *
+ * <p>The sort reads its input into memory, reserving memory from the
+ * statement's {@link SpillManager}. If it reads the whole input without
+ * exceeding the memory budget, it sorts in memory, exactly as
+ * {@link EnumerableDefaults#orderBy} would. Otherwise, each time the budget
+ * is exhausted, it sorts the rows in memory, writes them to a
+ * {@link SpillFile} (a "run"), and releases their memory. At the end of the
+ * input it merges the runs, and the rows still in memory, using a priority
+ * queue. If there are more than {@link #MERGE_FAN_IN} runs, it first merges
+ * groups of runs into longer runs, so that it never has too many files open.
+ *
+ * <p>The sort is stable: rows with equal keys are returned in the order that
+ * they were read, as they are by {@link EnumerableDefaults#orderBy}.
+ *
+ * <p>Each run holds at least {@link #MIN_RUN_BYTES} bytes of rows (or the
+ * statement's whole memory budget, if that is smaller), even if other
+ * operators hold the budget and the sort has to exceed it; otherwise the
+ * sort would write one run per row. The budget includes the limit of the
+ * statement's {@link MemoryTracker}, so a sort never exceeds that limit
+ * merely to make a run longer.
+ *
+ * <p>If the sort has a fetch (a {@code LIMIT} clause), each run holds at most
+ * offset + fetch rows, because no later row can be among the first
+ * offset + fetch rows of the result. For small values of offset + fetch, the
+ * rows fit into memory and the sort never writes a run.
+ */
+public class ExternalSort {
+  /** Maximum number of runs merged at a time. */
+  static final int MERGE_FAN_IN = 64;
+
+  /** Estimated number of bytes of overhead per buffered row, in addition to
+   * the row itself. */
+  private static final int ENTRY_OVERHEAD = 16;
+
+  /** Minimum number of bytes of rows that the sort buffers before it writes a
+   * run, even if that exceeds the memory budget. */
+  static final long MIN_RUN_BYTES = 1L << 20;
+
+  private ExternalSort() {}
+
+  /**
+   * Sorts the elements of a sequence, spilling to disk if they do not fit
+   * into memory.
+   *
+   * <p>If spilling is not enabled for the current statement (that is,
+   * {@link SpillManager#of(DataContext)} returns null), this method is
+   * equivalent to
+   * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator)}.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(DataContext root,
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator) {
+    final SpillManager spillManager = SpillManager.of(root);
+    if (spillManager == null) {
+      return EnumerableDefaults.orderBy(source, keySelector, comparator);
+    }
+    return sort(spillManager, source, keySelector, comparator, 0, -1);
+  }
+
+  /**
+   * Sorts the elements of a sequence and returns a range of them, spilling
+   * to disk if they do not fit into memory.
+   *
+   * <p>If spilling is not enabled for the current statement (that is,
+   * {@link SpillManager#of(DataContext)} returns null), this method is
+   * equivalent to
+   * {@link EnumerableDefaults#orderBy(Enumerable, Function1, Comparator, int, int)}.
+   *
+   * @param offset how many rows are skipped from the sorted output.
+   *               Must be greater than or equal to 0.
+   * @param fetch how many rows are retrieved. Must be greater than or equal
+   *              to 0.
+   */
+  public static <TSource, TKey> Enumerable<TSource> orderBy(DataContext root,
+      Enumerable<TSource> source, Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator, int offset, int fetch) {
+    final SpillManager spillManager = SpillManager.of(root);
+    if (spillManager == null) {
+      return EnumerableDefaults.orderBy(source, keySelector,
+          comparatorOrNatural(comparator), offset, fetch);
+    }
+    return sort(spillManager, source, keySelector, comparator, offset, fetch);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <TKey> Comparator<TKey> comparatorOrNatural(
+      @Nullable Comparator<TKey> comparator) {
+    return comparator != null
+        ? comparator
+        : (Comparator<TKey>) (Comparator) Comparator.naturalOrder();
+  }
+
+  /** Sorts; if {@code fetch} is negative, returns all rows. */
+  private static <TSource, TKey> Enumerable<TSource> sort(
+      SpillManager spillManager, Enumerable<TSource> source,
+      Function1<TSource, TKey> keySelector,
+      @Nullable Comparator<TKey> comparator0, int offset, int fetch) {
+    final Comparator<TKey> comparator = comparatorOrNatural(comparator0);
+    return new AbstractEnumerable<TSource>() {
+      @Override public Enumerator<TSource> enumerator() {
+        if (fetch == 0) {
+          return Linq4j.emptyEnumerator();
+        }
+        return new Sorter<>(spillManager, keySelector, comparator, offset,
+            fetch).sort(source);
+      }
+    };
+  }
+
+  /** Row and its sort key.
+   *
+   * @param <TSource> Row type
+   * @param <TKey> Key type */
+  private static class Keyed<TSource, TKey> {
+    final TKey key;
+    final TSource row;
+
+    Keyed(TKey key, TSource row) {
+      this.key = key;
+      this.row = row;
+    }
+  }
+
+  /** State of one execution of a sort.
+   *
+   * @param <TSource> Row type
+   * @param <TKey> Key type */
+  private static class Sorter<TSource, TKey> {
+    private final SpillManager spillManager;
+    private final Function1<TSource, TKey> keySelector;
+    private final Comparator<TKey> comparator;
+    private final int offset;
+    private final int fetch;
+    /** Maximum number of rows that a run needs to hold. */
+    private final long needed;
+    /** Minimum number of bytes of rows in a run. */
+    private final long minRunBytes;
+    /** Number of bytes that the buffer must hold before the sort next tries
+     * to compact or spill it. */
+    private long spillThreshold;
+    private final List<SpillFile> runs = new ArrayList<>();
+
+    Sorter(SpillManager spillManager, Function1<TSource, TKey> keySelector,
+        Comparator<TKey> comparator, int offset, int fetch) {
+      this.spillManager = spillManager;
+      this.keySelector = keySelector;
+      this.comparator = comparator;
+      this.offset = offset;
+      this.fetch = fetch;
+      this.needed = fetch < 0 ? Long.MAX_VALUE : offset + (long) fetch;
+      this.minRunBytes = Math.min(MIN_RUN_BYTES, spillManager.memoryBudget());
+      this.spillThreshold = minRunBytes;
+    }
+
+    Enumerator<TSource> sort(Enumerable<TSource> source) {
+      final List<TSource> buffer = new ArrayList<>();
+      final SpillManager.Reservation reservation =
+          spillManager.reserve("EnumerableSort");
+      try {
+        try (Enumerator<TSource> os = source.enumerator()) {
+          while (os.moveNext()) {
+            final TSource row = os.current();
+            final long size = SpillFile.estimateSize(row) + ENTRY_OVERHEAD;
+            if (!reservation.tryAdd(size)) {
+              if (reservation.getByteCount() + size > spillThreshold) {
+                compactOrSpill(buffer, reservation);
+              }
+              if (!reservation.tryAdd(size)) {
+                reservation.add(size);
+              }
+            }
+            buffer.add(row);
+          }
+        }
+        if (runs.isEmpty()) {
+          // Everything fit into memory. Use the same algorithm as a sort
+          // that cannot spill.
+          final Enumerable<TSource> rows = Linq4j.asEnumerable(buffer);
+          final Enumerator<TSource> enumerator =
+              (fetch < 0
+                  ? EnumerableDefaults.orderBy(rows, keySelector, comparator)
+                  : EnumerableDefaults.orderBy(rows, keySelector, comparator,
+                      offset, fetch))
+                  .enumerator();
+          return new DelegatingEnumerator<TSource>(enumerator) {
+            @Override public void close() {
+              super.close();
+              reservation.close();
+            }
+          };
+        }
+        final List<Keyed<TSource, TKey>> lastRun = sortBuffer(buffer);
+        while (runs.size() > MERGE_FAN_IN) {
+          mergeRuns();
+        }
+        final List<Enumerator<TSource>> inputs = new ArrayList<>();
+        for (SpillFile run : runs) {
+          inputs.add(run.<TSource>read().enumerator());
+        }
+        inputs.add(Linq4j.transform(Linq4j.enumerator(lastRun), k -> k.row));
+        return new MergeEnumerator(inputs, offset, needed) {
+          @Override public void close() {
+            super.close();
+            closeRuns();
+            reservation.close();
+          }
+        };
+      } catch (RuntimeException | Error e) {
+        closeRuns();
+        reservation.close();
+        throw e;
+      }
+    }
+
+    /** Called when the memory budget is exhausted. Sorts the buffer and
+     * discards rows that cannot be returned; if that does not free enough
+     * memory, writes the buffer to a run. */
+    private void compactOrSpill(List<TSource> buffer,
+        SpillManager.Reservation reservation) {
+      if (buffer.isEmpty()) {
+        return;
+      }
+      final List<Keyed<TSource, TKey>> sorted = sortBuffer(buffer);
+      buffer.clear();
+      if (fetch >= 0) {
+        // If the rows that may still be returned occupy at most half of the
+        // budget, keep them in memory; there is room to read more rows.
+        long size = 0;
+        for (Keyed<TSource, TKey> keyed : sorted) {
+          size += SpillFile.estimateSize(keyed.row) + ENTRY_OVERHEAD;
+        }
+        if (size <= spillManager.memoryBudget() / 2) {
+          for (Keyed<TSource, TKey> keyed : sorted) {
+            buffer.add(keyed.row);
+          }
+          reservation.release(reservation.getByteCount() - size);
+          // Do not compact again until the buffer has doubled in size.
+          spillThreshold = Math.max(minRunBytes, 2 * size);
+          return;
+        }
+      }
+      spill(sorted);
+      reservation.close();
+      spillThreshold = minRunBytes;
+    }
+
+    /** Returns the rows of a buffer, sorted stably by key, and truncated to
+     * the rows that may be returned. */
+    private List<Keyed<TSource, TKey>> sortBuffer(List<TSource> buffer) {
+      final List<Keyed<TSource, TKey>> keyedList =
+          new ArrayList<>(buffer.size());
+      for (TSource row : buffer) {
+        keyedList.add(new Keyed<>(keySelector.apply(row), row));
+      }
+      // List.sort is stable
+      keyedList.sort((k0, k1) -> comparator.compare(k0.key, k1.key));
+      if (keyedList.size() > needed) {
+        return keyedList.subList(0, (int) needed);
+      }
+      return keyedList;
+    }
+
+    /** Writes sorted rows to a new run. */
+    private void spill(List<Keyed<TSource, TKey>> sorted) {
+      final SpillFile run = spillManager.createFile("sort");
+      runs.add(run);
+      for (Keyed<TSource, TKey> keyed : sorted) {
+        run.write(keyed.row);
+      }
+      run.finish();
+      spillManager.recordPartitions(1);
+    }
+
+    /** Merges consecutive groups of {@link #MERGE_FAN_IN} runs into single
+     * runs. Merging consecutive runs preserves stability. */
+    private void mergeRuns() {
+      final List<SpillFile> oldRuns = new ArrayList<>(runs);
+      runs.clear();
+      for (int i = 0; i < oldRuns.size(); i += MERGE_FAN_IN) {
+        final List<SpillFile> group =
+            oldRuns.subList(i, Math.min(i + MERGE_FAN_IN, oldRuns.size()));
+        if (group.size() == 1) {
+          runs.add(group.get(0));
+          continue;
+        }
+        final List<Enumerator<TSource>> inputs = new ArrayList<>();
+        for (SpillFile run : group) {
+          inputs.add(run.<TSource>read().enumerator());
+        }
+        final SpillFile merged = spillManager.createFile("sort");
+        runs.add(merged);
+        try (MergeEnumerator enumerator =
+                 new MergeEnumerator(inputs, 0, needed)) {
+          while (enumerator.moveNext()) {
+            merged.write(enumerator.current());
+          }
+        }
+        merged.finish();
+        for (SpillFile run : group) {
+          run.close();
+        }
+      }
+    }
+
+    private void closeRuns() {
+      for (SpillFile run : runs) {
+        run.close();
+      }
+      runs.clear();
+    }
+
+    /** Enumerator that merges sorted inputs, skips {@code offset} rows and
+     * returns at most {@code limit - offset} rows. If two inputs have rows
+     * with equal keys, returns the row from the earlier input first.
+     *
+     * <p>{@link #reset()} resets the inputs, and so re-reads the runs. */
+    private class MergeEnumerator implements Enumerator<TSource> {
+      private final List<Enumerator<TSource>> inputs;
+      private final PriorityQueue<Head> queue;
+      private final long offset;
+      private final long limit;
+      private long toSkip;
+      private long remaining;
+      private @Nullable TSource current;
+
+      MergeEnumerator(List<Enumerator<TSource>> inputs, long offset,
+          long limit) {
+        this.inputs = inputs;
+        this.queue =
+            new PriorityQueue<>(Math.max(1, inputs.size()), (h0, h1) -> {
+              final int c = comparator.compare(h0.key, h1.key);
+              return c != 0 ? c : Integer.compare(h0.ordinal, h1.ordinal);
+            });
+        this.offset = offset;
+        this.limit = limit;
+        start();
+      }
+
+      private void start() {
+        for (int i = 0; i < inputs.size(); i++) {
+          advance(i);
+        }
+        toSkip = offset;
+        remaining = limit - offset;
+      }
+
+      /** Reads the next row of input {@code i}, if any, into the queue. */
+      private void advance(int i) {
+        final Enumerator<TSource> input = inputs.get(i);
+        if (input.moveNext()) {
+          final TSource row = input.current();
+          queue.add(new Head(keySelector.apply(row), row, i));
+        }
+      }
+
+      @Override public TSource current() {
+        return castNonNull(current);
+      }
+
+      @Override public boolean moveNext() {
+        for (;;) {
+          if (remaining <= 0) {
+            current = null;
+            return false;
+          }
+          final Head head = queue.poll();
+          if (head == null) {
+            current = null;
+            return false;
+          }
+          advance(head.ordinal);
+          if (toSkip > 0) {
+            --toSkip;
+            continue;
+          }
+          --remaining;
+          current = head.row;
+          return true;
+        }
+      }
+
+      @Override public void reset() {
+        queue.clear();
+        current = null;
+        for (Enumerator<TSource> input : inputs) {
+          input.reset();
+        }
+        start();
+      }
+
+      @Override public void close() {
+        for (Enumerator<TSource> input : inputs) {
+          input.close();
+        }
+      }
+
+      /** Current row of an input. */
+      private class Head {
+        final TKey key;
+        final TSource row;
+        final int ordinal;
+
+        Head(TKey key, TSource row, int ordinal) {
+          this.key = key;
+          this.row = row;
+          this.ordinal = ordinal;
+        }
+      }
+    }
+  }
+}
@@ -66,6 +66,12 @@ public enum Hook {
    * Janino. */
   JAVA_PLAN,
 
+  /** Called with a {@link Holder} of the {@link java.util.concurrent.Executor}
+   * that will compile generated code in the background, if
+   * {@link org.apache.calcite.config.CalciteConnectionProperty#TIERED_COMPILATION}
+   * is enabled. Use this to delay compilation in tests. */
+  COMPILE_EXECUTOR,
+
   /** Called before SqlToRelConverter is built. */
   SQL2REL_CONVERTER_CONFIG_BUILDER,
 
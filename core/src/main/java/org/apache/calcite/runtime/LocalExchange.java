@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.QueryProvider;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs several copies of a fragment of a plan, each on its own thread and
+ * reading its own partition of the input tables, and returns the union of
+ * their rows.
+ *
+ * <p>Each copy of the fragment is given a {@link DataContext} whose
+ * {@link DataContext.Variable#PARTITION} and
+ * {@link DataContext.Variable#PARTITION_COUNT} variables identify its
+ * partition; other variables are those of the statement's data context.
+ *
+ * <p>Worker threads pass rows to the consuming thread in chunks of
+ * {@link #CHUNK_SIZE} via a bounded queue, so a worker stops producing rows
+ * if the consumer falls behind. Rows are returned in no particular order.
+ * If a worker fails, the consumer throws its exception; if the consumer
+ * closes its enumerator early, or the statement is canceled, the workers
+ * stop.
+ */
+public class LocalExchange {
+  /** Number of rows that a worker passes to the consumer at a time. */
+  static final int CHUNK_SIZE = 256;
+
+  /** Number of chunks per worker that may wait in the queue. */
+  private static final int CHUNKS_PER_WORKER = 4;
+
+  /** How long a worker waits for space in the queue before it checks whether
+   * it has been canceled. */
+  private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+  /** Marks the end of a worker's rows. */
+  private static final Object END = new Object();
+
+  private static final AtomicInteger THREAD_ID = new AtomicInteger();
+
+  /** Pool of worker threads, shared by all statements. Threads are created on
+   * demand, and are daemons, so that they do not prevent the JVM from
+   * exiting. */
+  private static final ExecutorService EXECUTOR =
+      Executors.newCachedThreadPool(r -> {
+        final Thread thread =
+            new Thread(r, "calcite-exchange-" + THREAD_ID.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+
+  private LocalExchange() {
+  }
+
+  /** Returns an enumerable that runs {@code parallelism} copies of a
+   * fragment in parallel and returns all of their rows.
+   *
+   * @param root Data context of the statement
+   * @param fragment Function that, given the data context of a partition,
+   *                 returns the rows of the fragment for that partition
+   * @param parallelism Number of partitions, and therefore of threads
+   * @param <T> Row type
+   */
+  public static <T> Enumerable<T> gather(DataContext root,
+      Function1<DataContext, Enumerable<T>> fragment, int parallelism) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("parallelism must be positive: "
+          + parallelism);
+    }
+    if (parallelism == 1) {
+      return fragment.apply(new PartitionDataContext(root, 0, 1));
+    }
+    return new AbstractEnumerable<T>() {
+      @Override public Enumerator<T> enumerator() {
+        return new GatherEnumerator<>(root, fragment, parallelism);
+      }
+    };
+  }
+
+  /** Enumerator that starts the workers on the first call to
+   * {@link #moveNext()} and reads the chunks that they produce.
+   *
+   * @param <T> Row type */
+  private static class GatherEnumerator<T> implements Enumerator<T> {
+    private final DataContext root;
+    private final Function1<DataContext, Enumerable<T>> fragment;
+    private final int parallelism;
+    private final @Nullable AtomicBoolean statementCancelFlag;
+
+    private @Nullable Run run;
+    private List<T> chunk = new ArrayList<>();
+    private int i;
+    private @Nullable T current;
+
+    GatherEnumerator(DataContext root,
+        Function1<DataContext, Enumerable<T>> fragment, int parallelism) {
+      this.root = root;
+      this.fragment = fragment;
+      this.parallelism = parallelism;
+      this.statementCancelFlag = DataContext.Variable.CANCEL_FLAG.get(root);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public T current() {
+      if (i == 0) {
+        throw new NoSuchElementException();
+      }
+      return (T) current;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public boolean moveNext() {
+      Run run = this.run;
+      if (run == null) {
+        run = this.run = new Run();
+      }
+      for (;;) {
+        if (i < chunk.size()) {
+          current = chunk.get(i++);
+          return true;
+        }
+        if (run.ended == parallelism) {
+          return false;
+        }
+        final Object o;
+        try {
+          o = run.queue.take();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          close();
+          throw Util.toUnchecked(e);
+        }
+        if (o == END) {
+          ++run.ended;
+        } else if (o instanceof Throwable) {
+          close();
+          throw Util.throwAsRuntime((Throwable) o);
+        } else {
+          chunk = (List<T>) o;
+          i = 0;
+        }
+      }
+    }
+
+    @Override public void reset() {
+      close();
+    }
+
+    @Override public void close() {
+      final Run run = this.run;
+      if (run != null) {
+        run.cancel.set(true);
+        run.queue.clear();
+        for (Future<?> future : run.futures) {
+          future.cancel(true);
+        }
+        this.run = null;
+      }
+      chunk = new ArrayList<>();
+      i = 0;
+      current = null;
+    }
+
+    /** Execution of the workers. Each call to {@link #moveNext()} after
+     * {@link #reset()} starts a new run. */
+    private class Run {
+      final BlockingQueue<Object> queue =
+          new ArrayBlockingQueue<>(parallelism * CHUNKS_PER_WORKER);
+      final AtomicBoolean cancel = new AtomicBoolean();
+      final List<Future<?>> futures = new ArrayList<>();
+      int ended;
+
+      Run() {
+        for (int p = 0; p < parallelism; p++) {
+          final int partition = p;
+          futures.add(EXECUTOR.submit(() -> produce(partition)));
+        }
+      }
+
+      private boolean canceled() {
+        return cancel.get()
+            || statementCancelFlag != null && statementCancelFlag.get();
+      }
+
+      /** Reads the rows of one partition and passes them to the queue. */
+      private void produce(int partition) {
+        try {
+          final DataContext dataContext =
+              new PartitionDataContext(root, partition, parallelism);
+          List<T> rows = new ArrayList<>(CHUNK_SIZE);
+          try (Enumerator<T> enumerator =
+                   fragment.apply(dataContext).enumerator()) {
+            while (!canceled() && enumerator.moveNext()) {
+              rows.add(enumerator.current());
+              if (rows.size() == CHUNK_SIZE) {
+                offer(rows);
+                rows = new ArrayList<>(CHUNK_SIZE);
+              }
+            }
+          }
+          if (!rows.isEmpty()) {
+            offer(rows);
+          }
+          offer(END);
+        } catch (Throwable e) {
+          try {
+            offer(e);
+          } catch (InterruptedException e2) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+
+      /** Adds an element to the queue, waiting for space unless the run is
+       * canceled. */
+      private void offer(Object o) throws InterruptedException {
+        while (!cancel.get()) {
+          if (queue.offer(o, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /** Data context for one partition of a parallel fragment. */
+  private static class PartitionDataContext implements DataContext {
+    private final DataContext parent;
+    private final int partition;
+    private final int partitionCount;
+
+    PartitionDataContext(DataContext parent, int partition,
+        int partitionCount) {
+      this.parent = parent;
+      this.partition = partition;
+      this.partitionCount = partitionCount;
+    }
+
+    @Override public @Nullable SchemaPlus getRootSchema() {
+      return parent.getRootSchema();
+    }
+
+    @Override public JavaTypeFactory getTypeFactory() {
+      return parent.getTypeFactory();
+    }
+
+    @Override public QueryProvider getQueryProvider() {
+      return parent.getQueryProvider();
+    }
+
+    @Override public @Nullable Object get(String name) {
+      if (name.equals(Variable.PARTITION.camelName)) {
+        return partition;
+      }
+      if (name.equals(Variable.PARTITION_COUNT.camelName)) {
+        return partitionCount;
+      }
+      return parent.get(name);
+    }
+  }
+}
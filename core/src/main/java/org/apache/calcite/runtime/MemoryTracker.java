@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.calcite.util.Static.RESOURCE;
+
+/**
+ * Counts the memory that the operators of a statement use to hold rows, and
+ * fails the statement if they use more than its limit.
+ *
+ * <p>One instance is created for each execution of a statement, if the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#QUERY_MEMORY_LIMIT}
+ * connection property is positive. Generated code finds it via
+ * {@link DataContext.Variable#MEMORY_TRACKER}; clients call
+ * {@link org.apache.calcite.jdbc.CalciteStatement#getMemoryTracker()} to find
+ * out how much memory the statement used at its peak.
+ *
+ * <p>Operators that buffer all of their input, such as
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableHashJoin},
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSort} and
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableWindow}, wrap that
+ * input using {@link #track}, which reserves the estimated size of each row
+ * as it is read, and release the memory when their output is closed.
+ * Aggregates reserve the size of each group as they create it, using a
+ * {@link GroupTracker}. Operators
+ * that can spill reserve memory via their {@link SpillManager}, which also
+ * reserves it here; if the statement would exceed its limit, they spill
+ * rather than fail.
+ *
+ * <p>Sizes are estimated by {@link SpillFile#estimateSize(Object)}, so are
+ * approximate.
+ */
+public class MemoryTracker {
+  /** Estimated overhead, in bytes, of holding a row in a collection. */
+  private static final int ENTRY_OVERHEAD = 32;
+
+  private final long limit;
+  private final AtomicLong reservedByteCount = new AtomicLong();
+  private final AtomicLong peakByteCount = new AtomicLong();
+
+  /** Creates a MemoryTracker.
+   *
+   * @param limit Number of bytes of rows that the operators of the statement
+   *              may hold in memory; must be positive
+   */
+  public MemoryTracker(long limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive: " + limit);
+    }
+    this.limit = limit;
+  }
+
+  /** Returns the memory tracker of a data context, or null if memory is not
+   * tracked for the current statement. */
+  public static @Nullable MemoryTracker of(DataContext root) {
+    final Object o = root.get(DataContext.Variable.MEMORY_TRACKER.camelName);
+    return o instanceof MemoryTracker ? (MemoryTracker) o : null;
+  }
+
+  /** Returns the number of bytes of rows that the operators of the statement
+   * may hold in memory. */
+  public long getLimit() {
+    return limit;
+  }
+
+  /** Returns the number of bytes currently reserved by the operators of this
+   * statement. */
+  public long getReservedByteCount() {
+    return reservedByteCount.get();
+  }
+
+  /** Returns the largest number of bytes that the operators of this
+   * statement have held at any one time. */
+  public long getPeakByteCount() {
+    return peakByteCount.get();
+  }
+
+  /** Creates an empty reservation for an operator. */
+  public Reservation reserve(String operator) {
+    return new Reservation(operator);
+  }
+
+  /** Returns an enumerable that reserves memory for each row that it reads
+   * from {@code input}, and holds the memory until
+   * {@link #release(Enumerable, Enumerable)} releases it. An operator that
+   * buffers its input calls this method on its input.
+   *
+   * <p>If the data context has no memory tracker, returns {@code input}. */
+  public static <E> Enumerable<E> track(DataContext root, String operator,
+      Enumerable<E> input) {
+    final MemoryTracker tracker = of(root);
+    if (tracker == null) {
+      return input;
+    }
+    return new TrackedEnumerable<>(tracker, operator, input, false);
+  }
+
+  /** Returns an enumerable that returns the rows of {@code output}, and when
+   * its enumerator is closed, releases the memory reserved by
+   * {@code tracked}, which was created by
+   * {@link #track(DataContext, String, Enumerable)}. */
+  public static <E> Enumerable<E> release(Enumerable<E> output,
+      Enumerable<?> tracked) {
+    if (!(tracked instanceof TrackedEnumerable)) {
+      return output;
+    }
+    final TrackedEnumerable<?> trackedEnumerable =
+        (TrackedEnumerable<?>) tracked;
+    return new AbstractEnumerable<E>() {
+      @Override public Enumerator<E> enumerator() {
+        return new ForwardingEnumerator<E>(output.enumerator()) {
+          @Override public void close() {
+            try {
+              super.close();
+            } finally {
+              trackedEnumerable.releaseAll();
+            }
+          }
+        };
+      }
+    };
+  }
+
+  /** Returns an enumerable that reserves memory for each row that it returns,
+   * and releases it when its enumerator is closed. An operator that builds
+   * all of its output before it returns the first row, such as a hash
+   * aggregate, calls this method on its output.
+   *
+   * <p>If the data context has no memory tracker, returns {@code output}. */
+  public static <E> Enumerable<E> trackOutput(DataContext root,
+      String operator, Enumerable<E> output) {
+    final MemoryTracker tracker = of(root);
+    if (tracker == null) {
+      return output;
+    }
+    return new TrackedEnumerable<>(tracker, operator, output, true);
+  }
+
+  /** Returns a tracker that reserves memory for each group that an
+   * aggregate creates, and releases it when the aggregate's output is
+   * closed.
+   *
+   * <p>If the data context has no memory tracker, the tracker reserves
+   * nothing. */
+  public static GroupTracker trackGroups(DataContext root, String operator) {
+    final MemoryTracker tracker = of(root);
+    return tracker == null
+        ? GroupTracker.NONE
+        : new GroupTracker(tracker.reserve(operator));
+  }
+
+  private void add(String operator, long n) {
+    final long reserved = reservedByteCount.addAndGet(n);
+    if (reserved > limit) {
+      reservedByteCount.addAndGet(-n);
+      throw RESOURCE.queryMemoryLimitExceeded(limit, operator, n).ex();
+    }
+    peakByteCount.accumulateAndGet(reserved, Math::max);
+  }
+
+  private boolean tryAdd(long n) {
+    for (;;) {
+      final long reserved = reservedByteCount.get();
+      if (reserved + n > limit) {
+        return false;
+      }
+      if (reservedByteCount.compareAndSet(reserved, reserved + n)) {
+        peakByteCount.accumulateAndGet(reserved + n, Math::max);
+        return true;
+      }
+    }
+  }
+
+  @Override public String toString() {
+    return "MemoryTracker(limit: " + limit
+        + ", reserved: " + reservedByteCount
+        + ", peak: " + peakByteCount + ")";
+  }
+
+  /** Memory reserved by one operator against the limit of the statement.
+   *
+   * <p>Closing a reservation releases all of the memory it holds. */
+  public class Reservation implements AutoCloseable {
+    private final String operator;
+    private long byteCount;
+
+    private Reservation(String operator) {
+      this.operator = operator;
+    }
+
+    /** Tries to reserve another {@code n} bytes. Returns false, and reserves
+     * nothing, if that would exceed the limit of the statement. */
+    public boolean tryAdd(long n) {
+      if (!MemoryTracker.this.tryAdd(n)) {
+        return false;
+      }
+      byteCount += n;
+      return true;
+    }
+
+    /** Reserves another {@code n} bytes.
+     *
+     * @throws CalciteException if that would exceed the limit of the
+     * statement */
+    public void add(long n) {
+      MemoryTracker.this.add(operator, n);
+      byteCount += n;
+    }
+
+    /** Releases {@code n} of the bytes held by this reservation. */
+    public void release(long n) {
+      final long released = Math.min(n, byteCount);
+      reservedByteCount.addAndGet(-released);
+      byteCount -= released;
+    }
+
+    /** Returns the number of bytes held by this reservation. */
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    @Override public void close() {
+      release(byteCount);
+    }
+  }
+
+  /** Reserves memory for the groups of an aggregate as the aggregate creates
+   * them, so that a statement whose groups do not fit fails while the groups
+   * are being built, not after.
+   *
+   * <p>An aggregate that maintains its own groups calls
+   * {@link #add(Object, Object)} when it creates a group. An aggregate whose
+   * groups are maintained by a library method, such as
+   * {@link org.apache.calcite.linq4j.EnumerableDefaults#groupBy}, wraps its key
+   * selector using {@link #keySelector(Function1)} and its accumulator
+   * initializer using {@link #accumulatorInitializer(Function0)}; the method
+   * calls the initializer once for each new group, immediately after it has
+   * computed the group's key.
+   *
+   * <p>The memory is released when the enumerator of the aggregate's output,
+   * wrapped using {@link #release(Enumerable)}, is closed. */
+  public static class GroupTracker {
+    /** Tracker that reserves nothing. */
+    public static final GroupTracker NONE = new GroupTracker(null);
+
+    private final @Nullable Reservation reservation;
+    /** Key most recently computed by a key selector. */
+    private @Nullable Object lastKey;
+
+    private GroupTracker(@Nullable Reservation reservation) {
+      this.reservation = reservation;
+    }
+
+    /** Reserves memory for a new group.
+     *
+     * @throws CalciteException if that would exceed the limit of the
+     * statement */
+    public void add(@Nullable Object key, @Nullable Object accumulator) {
+      if (reservation != null) {
+        reservation.add(SpillFile.estimateSize(key)
+            + SpillFile.estimateSize(accumulator) + ENTRY_OVERHEAD);
+      }
+    }
+
+    /** Reserves a given number of bytes for new groups; used by aggregates
+     * that hold groups in arrays of primitives. */
+    public void add(long byteCount) {
+      if (reservation != null) {
+        reservation.add(byteCount);
+      }
+    }
+
+    /** Returns a key selector that remembers each key it computes. */
+    public <T, K> Function1<T, K> keySelector(Function1<T, K> keySelector) {
+      if (reservation == null) {
+        return keySelector;
+      }
+      return row -> {
+        final K key = keySelector.apply(row);
+        lastKey = key;
+        return key;
+      };
+    }
+
+    /** Returns a list of key selectors, each of which remembers each key it
+     * computes. */
+    public <T, K> List<Function1<T, K>> keySelectors(
+        List<Function1<T, K>> keySelectors) {
+      final List<Function1<T, K>> list = new ArrayList<>();
+      for (Function1<T, K> keySelector : keySelectors) {
+        list.add(keySelector(keySelector));
+      }
+      return list;
+    }
+
+    /** Returns an accumulator initializer that reserves memory for the key
+     * most recently computed and for the new accumulator. */
+    public <A> Function0<A> accumulatorInitializer(Function0<A> initializer) {
+      if (reservation == null) {
+        return initializer;
+      }
+      return () -> {
+        final A accumulator = initializer.apply();
+        add(lastKey, accumulator);
+        return accumulator;
+      };
+    }
+
+    /** Returns an enumerable that returns the rows of an aggregate's output,
+     * and releases the memory reserved for the groups when its enumerator is
+     * closed. */
+    public <E> Enumerable<E> release(Enumerable<E> output) {
+      final Reservation reservation = this.reservation;
+      if (reservation == null) {
+        return output;
+      }
+      return new AbstractEnumerable<E>() {
+        @Override public Enumerator<E> enumerator() {
+          return new ForwardingEnumerator<E>(output.enumerator()) {
+            @Override public void close() {
+              try {
+                super.close();
+              } finally {
+                reservation.close();
+              }
+            }
+          };
+        }
+      };
+    }
+  }
+
+  /** Enumerable that reserves memory for each row it returns.
+   *
+   * @param <E> Element type */
+  private static class TrackedEnumerable<E> extends AbstractEnumerable<E> {
+    private final MemoryTracker tracker;
+    private final String operator;
+    private final Enumerable<E> input;
+    /** Whether to release the memory when each enumerator is closed, rather
+     * than when {@link #releaseAll()} is called. */
+    private final boolean releaseOnClose;
+    private final List<Reservation> reservations = new ArrayList<>();
+
+    TrackedEnumerable(MemoryTracker tracker, String operator,
+        Enumerable<E> input, boolean releaseOnClose) {
+      this.tracker = tracker;
+      this.operator = operator;
+      this.input = input;
+      this.releaseOnClose = releaseOnClose;
+    }
+
+    @Override public Enumerator<E> enumerator() {
+      final Reservation reservation = tracker.reserve(operator);
+      if (!releaseOnClose) {
+        synchronized (reservations) {
+          reservations.add(reservation);
+        }
+      }
+      return new ForwardingEnumerator<E>(input.enumerator()) {
+        @Override public boolean moveNext() {
+          if (!super.moveNext()) {
+            return false;
+          }
+          reservation.add(SpillFile.estimateSize(current()) + ENTRY_OVERHEAD);
+          return true;
+        }
+
+        @Override public void close() {
+          try {
+            super.close();
+          } finally {
+            if (releaseOnClose) {
+              reservation.close();
+            }
+          }
+        }
+      };
+    }
+
+    /** Releases the memory reserved by all enumerators. */
+    void releaseAll() {
+      synchronized (reservations) {
+        reservations.forEach(Reservation::close);
+        reservations.clear();
+      }
+    }
+  }
+
+  /** Enumerator that forwards to another enumerator.
+   *
+   * @param <E> Element type */
+  private static class ForwardingEnumerator<E> implements Enumerator<E> {
+    private final Enumerator<E> enumerator;
+
+    ForwardingEnumerator(Enumerator<E> enumerator) {
+      this.enumerator = enumerator;
+    }
+
+    @Override public E current() {
+      return enumerator.current();
+    }
+
+    @Override public boolean moveNext() {
+      return enumerator.moveNext();
+    }
+
+    @Override public void reset() {
+      enumerator.reset();
+    }
+
+    @Override public void close() {
+      enumerator.close();
+    }
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Hash join whose build side is held outside the Java heap, in an
+ * {@link OffHeapHashTable}.
+ *
+ * <p>It returns the same rows as
+ * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)},
+ * but the rows of the build (inner) input are encoded into
+ * off-heap pages rather than held as objects, so that a large build side
+ * neither occupies the heap nor adds to the work of the garbage collector.
+ * Each build row is decoded each time that it matches a probe row.
+ */
+public class OffHeapHashJoin {
+  private OffHeapHashJoin() {
+  }
+
+  /**
+   * Correlates the elements of two sequences based on matching keys, holding
+   * the inner sequence off-heap.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate) {
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        final OffHeapHashTable<TKey, TInner> table =
+            new OffHeapHashTable<>(innerKeySelector, comparer);
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          while (inners.moveNext()) {
+            table.add(inners.current());
+          }
+        } catch (RuntimeException | Error e) {
+          table.close();
+          throw e;
+        }
+        return new JoinEnumerator<>(table, outer.enumerator(),
+            outerKeySelector, resultSelector, generateNullsOnLeft,
+            generateNullsOnRight, predicate);
+      }
+    };
+  }
+
+  /** Enumerator that probes an off-heap hash table with each row of the
+   * outer input.
+   *
+   * @param <TSource> Element type of the outer (probe) input
+   * @param <TInner> Element type of the inner (build) input
+   * @param <TKey> Key type
+   * @param <TResult> Result type
+   */
+  private static class JoinEnumerator<TSource, TInner, TKey, TResult>
+      implements Enumerator<TResult> {
+    private final OffHeapHashTable<TKey, TInner> table;
+    private final Enumerator<TSource> outers;
+    private final Function1<TSource, TKey> outerKeySelector;
+    private final Function2<TSource, TInner, TResult> resultSelector;
+    private final boolean generateNullsOnRight;
+    private final @Nullable Predicate2<TSource, TInner> predicate;
+
+    /** Build rows that have matched a probe row, if the join generates nulls
+     * on the left; otherwise null. */
+    private final @Nullable BitSet matched;
+
+    private @Nullable TSource outerRow;
+    /** Whether {@link #outerRow} has been read but not yet finished with. */
+    private boolean outerPending;
+    private boolean outerMatched;
+    /** Position of the next build row that may match {@link #outerRow}, or
+     * -1. */
+    private int innerIndex = -1;
+    /** Once the probe input is exhausted, the position from which to look
+     * for build rows that did not match; -1 before then. */
+    private int unmatchedIndex = -1;
+    private @Nullable TResult current;
+    private boolean hasCurrent;
+
+    JoinEnumerator(OffHeapHashTable<TKey, TInner> table,
+        Enumerator<TSource> outers,
+        Function1<TSource, TKey> outerKeySelector,
+        Function2<TSource, TInner, TResult> resultSelector,
+        boolean generateNullsOnLeft, boolean generateNullsOnRight,
+        @Nullable Predicate2<TSource, TInner> predicate) {
+      this.table = table;
+      this.outers = outers;
+      this.outerKeySelector = outerKeySelector;
+      this.resultSelector = resultSelector;
+      this.generateNullsOnRight = generateNullsOnRight;
+      this.predicate = predicate;
+      this.matched = generateNullsOnLeft ? new BitSet() : null;
+    }
+
+    @Override public TResult current() {
+      if (!hasCurrent) {
+        throw new NoSuchElementException();
+      }
+      return castNonNull(current);
+    }
+
+    @Override public boolean moveNext() {
+      hasCurrent = moveNext_();
+      return hasCurrent;
+    }
+
+    private boolean moveNext_() {
+      if (unmatchedIndex >= 0) {
+        return nextUnmatched();
+      }
+      for (;;) {
+        while (innerIndex >= 0) {
+          final int index = innerIndex;
+          innerIndex = table.next(index);
+          final TInner innerRow = table.row(index);
+          final TSource outerRow = castNonNull(this.outerRow);
+          if (predicate == null || predicate.apply(outerRow, innerRow)) {
+            outerMatched = true;
+            if (matched != null) {
+              matched.set(index);
+            }
+            current = resultSelector.apply(outerRow, innerRow);
+            return true;
+          }
+        }
+        if (outerPending) {
+          outerPending = false;
+          if (!outerMatched && generateNullsOnRight) {
+            current = resultSelector.apply(castNonNull(outerRow), null);
+            return true;
+          }
+        }
+        if (!outers.moveNext()) {
+          if (matched != null) {
+            unmatchedIndex = 0;
+            return nextUnmatched();
+          }
+          return false;
+        }
+        final TSource outerRow = outers.current();
+        this.outerRow = outerRow;
+        outerPending = true;
+        outerMatched = false;
+        final TKey key =
+            outerRow == null ? null : outerKeySelector.apply(outerRow);
+        innerIndex = table.first(key);
+      }
+    }
+
+    /** Returns the next build row that did not match any probe row, joined
+     * to nulls. */
+    private boolean nextUnmatched() {
+      final int index = castNonNull(matched).nextClearBit(unmatchedIndex);
+      if (index >= table.size()) {
+        return false;
+      }
+      unmatchedIndex = index + 1;
+      current = resultSelector.apply(null, table.row(index));
+      return true;
+    }
+
+    @Override public void reset() {
+      outers.reset();
+      outerRow = null;
+      outerPending = false;
+      innerIndex = -1;
+      unmatchedIndex = -1;
+      hasCurrent = false;
+      if (matched != null) {
+        matched.clear();
+      }
+    }
+
+    @Override public void close() {
+      outers.close();
+      table.close();
+    }
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function0;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.Predicate1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hash table whose rows are held outside the Java heap, in an
+ * {@link OffHeapRowStore}.
+ *
+ * <p>The table is a multimap from the key of each row, computed by a key
+ * selector, to the rows with that key. It holds, in arrays of primitives, the
+ * hash code of each distinct key and the positions of the rows that have it;
+ * and it holds each distinct key, encoded, in a second store. So the only
+ * objects that the garbage collector sees are a handful of arrays and the
+ * pages of the stores.
+ *
+ * <p>To find a key, the table encodes it, and compares the encoding with the
+ * stored encodings of keys that have the same hash code. It decodes a stored
+ * key only if the encodings differ but the keys may nevertheless be equal:
+ * if the table has a comparer, or if a key was encoded using Java
+ * serialization. It never decodes a row to find a key; each row is decoded
+ * only when {@link #row(int)} is called. If the key selector is
+ * {@link Functions#identitySelector()}, each row is its own key, and keys are
+ * not stored separately.
+ *
+ * <p>Rows whose key is null are stored, but cannot be found by key.
+ *
+ * <p>Use {@link #first(Object)} and {@link #next(int)} to iterate over the
+ * rows that have a given key, in the order that they were added:
+ *
+ * <blockquote><pre>
+ * for (int i = table.first(key); i &ge; 0; i = table.next(i)) {
+ *   V row = table.row(i);
+ * }</pre></blockquote>
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <K> Key type
+ * @param <V> Row type
+ */
+public class OffHeapHashTable<K, V> implements AutoCloseable {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private final OffHeapRowStore<V> rows;
+  /** Encoded key of each slot; the same store as {@link #rows} if each row
+   * is its own key. */
+  private final OffHeapRowStore<K> keys;
+  private final Function1<V, K> keySelector;
+  private final @Nullable EqualityComparer<K> comparer;
+
+  /** For each slot, the position of the first row whose key is in the slot,
+   * or -1 if the slot is empty. */
+  private int[] heads = emptySlots(INITIAL_CAPACITY);
+  /** For each slot, the position of the last row whose key is in the slot. */
+  private int[] tails = new int[INITIAL_CAPACITY];
+  /** For each slot, the hash code of its key. */
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  /** For each slot, the position of its key in {@link #keys}. */
+  private int[] keyPositions = new int[INITIAL_CAPACITY];
+  /** For each slot, whether its key was encoded without Java
+   * serialization. */
+  private boolean[] canonical = new boolean[INITIAL_CAPACITY];
+  /** For each row, the position of the next row with the same key, or -1. */
+  private int[] next = new int[INITIAL_CAPACITY];
+  private int keyCount;
+
+  /** Creates a hash table. */
+  @SuppressWarnings("unchecked")
+  public OffHeapHashTable(Function1<V, K> keySelector,
+      @Nullable EqualityComparer<K> comparer, int pageSize) {
+    this.rows = new OffHeapRowStore<>(pageSize);
+    this.keySelector = requireNonNull(keySelector, "keySelector");
+    this.comparer = comparer;
+    this.keys = keySelector == Functions.identitySelector()
+        ? (OffHeapRowStore<K>) rows
+        : new OffHeapRowStore<>(pageSize);
+  }
+
+  /** Creates a hash table with the default page size. */
+  public OffHeapHashTable(Function1<V, K> keySelector,
+      @Nullable EqualityComparer<K> comparer) {
+    this(keySelector, comparer, OffHeapRowStore.DEFAULT_PAGE_SIZE);
+  }
+
+  /** Returns a factory of filters that eliminate duplicate rows, holding
+   * the rows that they have seen off-heap; each filter returns whether a row
+   * has not been seen before.
+   *
+   * @see org.apache.calcite.linq4j.EnumerableDefaults#repeatUnion(org.apache.calcite.linq4j.Enumerable, org.apache.calcite.linq4j.Enumerable, int, Function0, Function0)
+   */
+  public static <E> Function0<Predicate1<E>> distinctFilter(
+      EqualityComparer<E> comparer) {
+    return () -> new DistinctFilter<>(comparer);
+  }
+
+  private static int[] emptySlots(int capacity) {
+    final int[] slots = new int[capacity];
+    Arrays.fill(slots, -1);
+    return slots;
+  }
+
+  /** Adds a row, and returns its position. */
+  public int add(V row) {
+    final K key = keySelector.apply(row);
+    if (key == null) {
+      return addRow(row);
+    }
+    final int hash = hash(key);
+    final int slot = find(key, hash);
+    final int index = addRow(row);
+    if (heads[slot] < 0) {
+      newKey(slot, hash, key, index);
+    } else {
+      next[tails[slot]] = index;
+      tails[slot] = index;
+    }
+    return index;
+  }
+
+  /** Adds a row if there is no row with the same key, and returns whether it
+   * was added. A row whose key is null is always added. */
+  public boolean addIfAbsent(V row) {
+    final K key = keySelector.apply(row);
+    if (key == null) {
+      addRow(row);
+      return true;
+    }
+    final int hash = hash(key);
+    final int slot = find(key, hash);
+    if (heads[slot] >= 0) {
+      return false;
+    }
+    newKey(slot, hash, key, addRow(row));
+    return true;
+  }
+
+  private int addRow(V row) {
+    final int index = rows.append(row);
+    if (index == next.length) {
+      next = Arrays.copyOf(next, index * 2);
+    }
+    next[index] = -1;
+    return index;
+  }
+
+  private void newKey(int slot, int hash, K key, int index) {
+    heads[slot] = index;
+    tails[slot] = index;
+    hashes[slot] = hash;
+    if (keys == rows) {
+      // The row, just appended, is the key
+      keyPositions[slot] = index;
+    } else {
+      keyPositions[slot] = keys.append(key);
+    }
+    canonical[slot] = keys.isEncodedCanonical();
+    if (++keyCount * 2 > heads.length) {
+      rehash();
+    }
+  }
+
+  /** Returns the position of the first row whose key is equal to a given
+   * key, or -1 if there is none. */
+  public int first(@Nullable K key) {
+    if (key == null) {
+      return -1;
+    }
+    return heads[find(key, hash(key))];
+  }
+
+  /** Returns the position of the next row with the same key as a given row,
+   * or -1 if there is none. */
+  public int next(int index) {
+    return next[index];
+  }
+
+  /** Returns the row at a given position. */
+  public V row(int index) {
+    return rows.get(index);
+  }
+
+  /** Returns the number of rows. */
+  public int size() {
+    return rows.size();
+  }
+
+  /** Returns the number of distinct non-null keys. */
+  public int keyCount() {
+    return keyCount;
+  }
+
+  /** Returns the number of bytes of off-heap memory that the rows and keys
+   * occupy. */
+  public long getAllocatedBytes() {
+    return keys == rows
+        ? rows.getAllocatedBytes()
+        : rows.getAllocatedBytes() + keys.getAllocatedBytes();
+  }
+
+  /** Removes all rows. */
+  public void clear() {
+    rows.clear();
+    keys.clear();
+    next = new int[INITIAL_CAPACITY];
+    keyCount = 0;
+    heads = emptySlots(INITIAL_CAPACITY);
+    tails = new int[INITIAL_CAPACITY];
+    hashes = new int[INITIAL_CAPACITY];
+    keyPositions = new int[INITIAL_CAPACITY];
+    canonical = new boolean[INITIAL_CAPACITY];
+  }
+
+  @Override public void close() {
+    clear();
+  }
+
+  /** Returns the slot that holds a key, or the empty slot where it would be
+   * added. */
+  private int find(K key, int hash) {
+    final int mask = heads.length - 1;
+    int slot = hash & mask;
+    boolean encoded = false;
+    for (;;) {
+      if (heads[slot] < 0) {
+        return slot;
+      }
+      if (hashes[slot] == hash) {
+        if (!encoded) {
+          keys.encode(key);
+          encoded = true;
+        }
+        if (keyEquals(slot, key)) {
+          return slot;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /** Returns whether the key of a slot is equal to a key that has just been
+   * encoded into {@link #keys}. */
+  private boolean keyEquals(int slot, K key) {
+    final int position = keyPositions[slot];
+    if (keys.encodedEquals(position)) {
+      return true;
+    }
+    if (comparer == null && canonical[slot] && keys.isEncodedCanonical()) {
+      // Neither key was encoded using Java serialization, so keys whose
+      // encodings differ are not equal.
+      return false;
+    }
+    return equal(keys.get(position), key);
+  }
+
+  private void rehash() {
+    final int[] oldHeads = heads;
+    final int[] oldTails = tails;
+    final int[] oldHashes = hashes;
+    final int[] oldKeyPositions = keyPositions;
+    final boolean[] oldCanonical = canonical;
+    heads = emptySlots(oldHeads.length * 2);
+    tails = new int[heads.length];
+    hashes = new int[heads.length];
+    keyPositions = new int[heads.length];
+    canonical = new boolean[heads.length];
+    final int mask = heads.length - 1;
+    for (int i = 0; i < oldHeads.length; i++) {
+      if (oldHeads[i] >= 0) {
+        int slot = oldHashes[i] & mask;
+        while (heads[slot] >= 0) {
+          slot = (slot + 1) & mask;
+        }
+        heads[slot] = oldHeads[i];
+        tails[slot] = oldTails[i];
+        hashes[slot] = oldHashes[i];
+        keyPositions[slot] = oldKeyPositions[i];
+        canonical[slot] = oldCanonical[i];
+      }
+    }
+  }
+
+  private boolean equal(K k0, K k1) {
+    return comparer == null ? Objects.equals(k0, k1) : comparer.equal(k0, k1);
+  }
+
+  private int hash(K key) {
+    int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+    // Scramble the bits (as in MurmurHash3's finalizer), because the slot is
+    // chosen using the low bits.
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+
+  /** Predicate that returns whether a row has not been seen before.
+   *
+   * @param <E> Row type */
+  private static class DistinctFilter<E> implements Predicate1<E>,
+      AutoCloseable {
+    private final OffHeapHashTable<E, E> table;
+    private boolean seenNull;
+
+    DistinctFilter(EqualityComparer<E> comparer) {
+      table = new OffHeapHashTable<>(Functions.identitySelector(), comparer);
+    }
+
+    @Override public boolean apply(E row) {
+      if (row == null) {
+        // The table would store every null row, so remember nulls here.
+        final boolean seen = seenNull;
+        seenNull = true;
+        return !seen;
+      }
+      return table.addIfAbsent(row);
+    }
+
+    @Override public void close() {
+      table.close();
+    }
+  }
+}
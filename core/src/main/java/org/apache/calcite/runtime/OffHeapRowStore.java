@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Append-only collection of rows that are held outside the Java heap.
+ *
+ * <p>Each row is encoded using the compact binary format of {@link RowCodec}
+ * and appended to a page, which is a direct {@link ByteBuffer}. Rows are
+ * identified by their position in the store, and are decoded each time they
+ * are read, so the only objects that the garbage collector sees are the
+ * pages and an array of the addresses of the rows. A row of boxed values
+ * typically occupies several times less memory in encoded form than as
+ * objects. Rows are read using a single reader per store, so reading a row
+ * allocates only the objects of the decoded row.
+ *
+ * <p>Pages are allocated as needed, and are released when the store is
+ * {@link #clear() cleared} or {@link #close() closed} and the garbage
+ * collector next reclaims them. Their total size is limited by the JVM's
+ * {@code -XX:MaxDirectMemorySize} setting, not by its heap size.
+ *
+ * <p>This class is not thread-safe.
+ *
+ * @param <E> Element type
+ *
+ * @see OffHeapHashTable
+ */
+public class OffHeapRowStore<E> extends AbstractCollection<E>
+    implements AutoCloseable {
+  /** Default size of a page, in bytes. */
+  public static final int DEFAULT_PAGE_SIZE = 1 << 20;
+
+  private final int pageSize;
+  private final RowCodec codec = new RowCodec("off-heap row store");
+  private final List<ByteBuffer> pages = new ArrayList<>();
+  private @Nullable ByteBuffer page;
+
+  /** Address of each row; the high 32 bits are the ordinal of the page, the
+   * low 32 bits the offset of the row within the page. */
+  private long[] addresses = new long[16];
+  private int size;
+  private long allocatedBytes;
+
+  /** Buffer into which each row is encoded before it is copied to a page. */
+  private final RowBuffer buffer = new RowBuffer();
+  private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+  /** Whether the value in {@link #buffer} was encoded without Java
+   * serialization. */
+  private boolean canonical;
+
+  /** Reader of rows; reused for each row that is read. */
+  private final PageInputStream reader = new PageInputStream();
+  private final DataInputStream readerIn = new DataInputStream(reader);
+
+  /** Creates a store with a given page size. */
+  public OffHeapRowStore(int pageSize) {
+    checkArgument(pageSize > 0, "pageSize must be positive");
+    this.pageSize = pageSize;
+  }
+
+  /** Creates a store with the default page size. */
+  public OffHeapRowStore() {
+    this(DEFAULT_PAGE_SIZE);
+  }
+
+  @Override public boolean add(E row) {
+    append(row);
+    return true;
+  }
+
+  /** Appends a row, and returns its position. */
+  public int append(E row) {
+    encode(row);
+    return appendEncoded();
+  }
+
+  /** Encodes a value into this store's buffer, without appending it. */
+  void encode(@Nullable Object value) {
+    buffer.reset();
+    final long serializedCount = codec.getSerializedCount();
+    try {
+      codec.write(bufferOut, value);
+      bufferOut.flush();
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+    canonical = codec.getSerializedCount() == serializedCount;
+  }
+
+  /** Returns whether the value most recently encoded was encoded without
+   * Java serialization, and therefore has the same encoding as every value
+   * that is equal to it; see {@link RowCodec#getSerializedCount()}. */
+  boolean isEncodedCanonical() {
+    return canonical;
+  }
+
+  /** Returns whether the encoding of the row at a given position is equal
+   * to the value most recently encoded. Does not decode the row. */
+  boolean encodedEquals(int index) {
+    checkElementIndex(index, size);
+    final long address = addresses[index];
+    final ByteBuffer page = pages.get((int) (address >>> 32));
+    final int offset = (int) address;
+    final int length = buffer.size();
+    if (offset + length > page.capacity()) {
+      // The row is shorter than the value; encodings are self-delimiting, so
+      // the row must be different.
+      return false;
+    }
+    final byte[] bytes = buffer.bytes();
+    for (int i = 0; i < length; i++) {
+      if (page.get(offset + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Appends the value most recently encoded, and returns its position. */
+  int appendEncoded() {
+    final int length = buffer.size();
+    ByteBuffer page = this.page;
+    if (page == null || page.remaining() < length) {
+      page = ByteBuffer.allocateDirect(Math.max(pageSize, length));
+      pages.add(page);
+      allocatedBytes += page.capacity();
+      this.page = page;
+    }
+    final long address = ((long) (pages.size() - 1) << 32) | page.position();
+    page.put(buffer.bytes(), 0, length);
+    if (size == addresses.length) {
+      addresses = Arrays.copyOf(addresses, size * 2);
+    }
+    addresses[size] = address;
+    return size++;
+  }
+
+  /** Returns the row at a given position. */
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    checkElementIndex(index, size);
+    final long address = addresses[index];
+    reader.seek(pages.get((int) (address >>> 32)), (int) address);
+    try {
+      return (E) codec.read(readerIn);
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+  }
+
+  @Override public int size() {
+    return size;
+  }
+
+  /** Returns the number of bytes of off-heap memory that this store has
+   * allocated. */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  @Override public Iterator<E> iterator() {
+    return new Iterator<E>() {
+      int i = 0;
+
+      @Override public boolean hasNext() {
+        return i < size;
+      }
+
+      @Override public E next() {
+        if (i >= size) {
+          throw new NoSuchElementException();
+        }
+        return get(i++);
+      }
+    };
+  }
+
+  /** Removes all rows, and releases the pages. */
+  @Override public void clear() {
+    pages.clear();
+    page = null;
+    addresses = new long[16];
+    size = 0;
+    allocatedBytes = 0;
+  }
+
+  @Override public void close() {
+    clear();
+  }
+
+  @Override public String toString() {
+    return "OffHeapRowStore(" + size + " rows, " + allocatedBytes + " bytes)";
+  }
+
+  /** Output stream that gives access to its buffer without copying it. */
+  private static class RowBuffer extends ByteArrayOutputStream {
+    RowBuffer() {
+      super(256);
+    }
+
+    byte[] bytes() {
+      return buf;
+    }
+  }
+
+  /** Input stream that reads from a page, starting at a given offset.
+   *
+   * <p>It uses absolute reads, so does not move the position of the page,
+   * which is where the next row will be appended. */
+  private static class PageInputStream extends InputStream {
+    private @Nullable ByteBuffer page;
+    private int offset;
+
+    void seek(ByteBuffer page, int offset) {
+      this.page = page;
+      this.offset = offset;
+    }
+
+    @Override public int read() {
+      final ByteBuffer page = requireNonNull(this.page, "page");
+      return offset < page.capacity() ? page.get(offset++) & 0xFF : -1;
+    }
+
+    @Override public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      final ByteBuffer page = requireNonNull(this.page, "page");
+      final int n = Math.min(len, page.capacity() - offset);
+      if (n <= 0) {
+        return -1;
+      }
+      for (int i = 0; i < n; i++) {
+        b[off + i] = page.get(offset++);
+      }
+      return n;
+    }
+  }
+}
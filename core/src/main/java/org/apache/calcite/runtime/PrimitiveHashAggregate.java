@@ -0,0 +1,347 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function;
+import org.apache.calcite.linq4j.function.Function1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Arrays;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+/**
+ * Hash table that groups rows by one or two integer keys and accumulates
+ * integer values in primitive arrays.
+ *
+ * <p>Generated code for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate} uses it,
+ * instead of {@link org.apache.calcite.linq4j.EnumerableDefaults#groupBy},
+ * when every key is an exact integer and every aggregate function is
+ * {@code COUNT}, {@code SUM}, {@code SUM0}, {@code MIN} or {@code MAX} of
+ * exact integers. Keys are widened to {@code long}; the table uses open
+ * addressing with linear probing, and does not allocate while adding a row to
+ * an existing group.
+ *
+ * <p>Each accumulator has a {@code long} value per group, and a flag that says
+ * whether any value has been added to it (so that, for instance, {@code MIN}
+ * of a group whose values are all null is null).
+ *
+ * <p>Groups are returned in the order in which their first row was read.
+ */
+public class PrimitiveHashAggregate {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final int keyCount;
+  private final int accumulatorCount;
+
+  /** Hash slots; each holds 1 + the index of a group, or 0 if empty. */
+  private int[] slots;
+  /** Keys of each group; {@code keyCount} values per group. */
+  private long[] keys;
+  /** Which keys of each group are null; bit {@code i} is key {@code i}. */
+  private byte[] keyNulls;
+  /** Value of each accumulator for each group. */
+  private final long[][] values;
+  /** Whether a value has been added to each accumulator for each group. */
+  private final boolean[][] valued;
+  private int groupCount;
+  private int capacity;
+  /** Reserves memory for the arrays as they grow. */
+  private final MemoryTracker.GroupTracker groups;
+
+  /** Group being read by a result selector. */
+  private int current = -1;
+
+  private PrimitiveHashAggregate(int keyCount, int accumulatorCount,
+      MemoryTracker.GroupTracker groups) {
+    if (keyCount < 1 || keyCount > 2) {
+      throw new IllegalArgumentException("keyCount must be 1 or 2: "
+          + keyCount);
+    }
+    this.keyCount = keyCount;
+    this.accumulatorCount = accumulatorCount;
+    this.groups = groups;
+    this.capacity = INITIAL_CAPACITY;
+    groups.add(INITIAL_CAPACITY * bytesPerGroup());
+    this.slots = new int[capacity * 2];
+    this.keys = new long[capacity * keyCount];
+    this.keyNulls = new byte[capacity];
+    this.values = new long[accumulatorCount][capacity];
+    this.valued = new boolean[accumulatorCount][capacity];
+  }
+
+  /**
+   * Groups the elements of a sequence and computes aggregates for each
+   * group.
+   *
+   * @param source Input rows
+   * @param keyCount Number of keys, 1 or 2
+   * @param accumulatorCount Number of accumulators
+   * @param adder Adds a row to the table; finds its group by calling
+   *              {@link #group(long, boolean)} or
+   *              {@link #group(long, boolean, long, boolean)}, then updates
+   *              the accumulators of that group
+   * @param resultSelector Converts the current group to an output row, by
+   *              calling {@link #key(int)}, {@link #value(int)} and so forth
+   */
+  public static <TSource, TResult> Enumerable<TResult> aggregate(
+      Enumerable<TSource> source, int keyCount, int accumulatorCount,
+      RowAdder adder,
+      Function1<PrimitiveHashAggregate, TResult> resultSelector) {
+    return aggregate(source, keyCount, accumulatorCount, adder,
+        resultSelector, MemoryTracker.GroupTracker.NONE);
+  }
+
+  /**
+   * Groups the elements of a sequence and computes aggregates for each
+   * group, reserving memory for the table's arrays as they grow.
+   *
+   * @param groups Tracker that reserves memory; its
+   *              {@link MemoryTracker.GroupTracker#release(Enumerable)}
+   *              method should be applied to the result
+   *
+   * @see #aggregate(Enumerable, int, int, RowAdder, Function1)
+   */
+  public static <TSource, TResult> Enumerable<TResult> aggregate(
+      Enumerable<TSource> source, int keyCount, int accumulatorCount,
+      RowAdder adder,
+      Function1<PrimitiveHashAggregate, TResult> resultSelector,
+      MemoryTracker.GroupTracker groups) {
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        final PrimitiveHashAggregate table =
+            new PrimitiveHashAggregate(keyCount, accumulatorCount, groups);
+        try (Enumerator<TSource> os = source.enumerator()) {
+          while (os.moveNext()) {
+            adder.add(table, os.current());
+          }
+        }
+        return table.enumerator(resultSelector);
+      }
+    };
+  }
+
+  /** Returns the index of the group with a given key, creating the group if
+   * it does not exist. */
+  public int group(long key0, boolean null0) {
+    final long k0 = null0 ? 0 : key0;
+    final int nulls = null0 ? 1 : 0;
+    int slot = hash(k0) & (slots.length - 1);
+    for (;;) {
+      final int g = slots[slot] - 1;
+      if (g < 0) {
+        return add(slot, k0, 0, nulls);
+      }
+      if (keys[g] == k0 && keyNulls[g] == nulls) {
+        return g;
+      }
+      slot = (slot + 1) & (slots.length - 1);
+    }
+  }
+
+  /** Returns the index of the group with a given pair of keys, creating the
+   * group if it does not exist. */
+  public int group(long key0, boolean null0, long key1, boolean null1) {
+    final long k0 = null0 ? 0 : key0;
+    final long k1 = null1 ? 0 : key1;
+    final int nulls = (null0 ? 1 : 0) | (null1 ? 2 : 0);
+    int slot = hash(k0, k1) & (slots.length - 1);
+    for (;;) {
+      final int g = slots[slot] - 1;
+      if (g < 0) {
+        return add(slot, k0, k1, nulls);
+      }
+      if (keys[g * 2] == k0
+          && keys[g * 2 + 1] == k1
+          && keyNulls[g] == nulls) {
+        return g;
+      }
+      slot = (slot + 1) & (slots.length - 1);
+    }
+  }
+
+  /** Scrambles the bits of a key (as in MurmurHash3's finalizer). */
+  private static int hash(long key) {
+    long h = key;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return (int) h;
+  }
+
+  private static int hash(long key0, long key1) {
+    return hash(key0 * 31 + hash(key1));
+  }
+
+  private int add(int slot, long key0, long key1, int nulls) {
+    if (groupCount == capacity) {
+      grow();
+      // The table has been rehashed; look for a free slot again.
+      return keyCount == 1
+          ? group(key0, nulls != 0)
+          : group(key0, (nulls & 1) != 0, key1, (nulls & 2) != 0);
+    }
+    final int g = groupCount++;
+    slots[slot] = g + 1;
+    if (keyCount == 1) {
+      keys[g] = key0;
+    } else {
+      keys[g * 2] = key0;
+      keys[g * 2 + 1] = key1;
+    }
+    keyNulls[g] = (byte) nulls;
+    return g;
+  }
+
+  /** Doubles the capacity, and rebuilds the hash slots. The slot array is
+   * always twice as long as the capacity, so the load factor is at most
+   * 0.5. */
+  private void grow() {
+    groups.add(capacity * bytesPerGroup());
+    capacity *= 2;
+    keys = Arrays.copyOf(keys, capacity * keyCount);
+    keyNulls = Arrays.copyOf(keyNulls, capacity);
+    for (int i = 0; i < accumulatorCount; i++) {
+      values[i] = Arrays.copyOf(values[i], capacity);
+      valued[i] = Arrays.copyOf(valued[i], capacity);
+    }
+    slots = new int[capacity * 2];
+    final int mask = slots.length - 1;
+    for (int g = 0; g < groupCount; g++) {
+      final int h = keyCount == 1
+          ? hash(keys[g])
+          : hash(keys[g * 2], keys[g * 2 + 1]);
+      int slot = h & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = g + 1;
+    }
+  }
+
+  /** Returns the number of bytes that the arrays occupy per unit of
+   * capacity. */
+  private long bytesPerGroup() {
+    // Two hash slots, the keys, the null flags of the keys, and a value and
+    // flag per accumulator
+    return 2 * Integer.BYTES + keyCount * Long.BYTES + 1
+        + accumulatorCount * (Long.BYTES + 1);
+  }
+
+  /** Adds a value to an accumulator of a group; used for {@code SUM},
+   * {@code SUM0} and {@code COUNT}. */
+  public void add(int accumulator, int group, long value) {
+    values[accumulator][group] += value;
+    valued[accumulator][group] = true;
+  }
+
+  /** Sets an accumulator of a group to the lesser of its current value
+   * and a given value. */
+  public void min(int accumulator, int group, long value) {
+    final long[] v = values[accumulator];
+    final boolean[] b = valued[accumulator];
+    if (!b[group] || value < v[group]) {
+      v[group] = value;
+      b[group] = true;
+    }
+  }
+
+  /** Sets an accumulator of a group to the greater of its current value
+   * and a given value. */
+  public void max(int accumulator, int group, long value) {
+    final long[] v = values[accumulator];
+    final boolean[] b = valued[accumulator];
+    if (!b[group] || value > v[group]) {
+      v[group] = value;
+      b[group] = true;
+    }
+  }
+
+  /** Returns the number of groups. */
+  public int size() {
+    return groupCount;
+  }
+
+  /** Returns the value of key {@code i} of the current group. */
+  public long key(int i) {
+    return keys[current * keyCount + i];
+  }
+
+  /** Returns whether key {@code i} of the current group is null. */
+  public boolean keyIsNull(int i) {
+    return (keyNulls[current] & (1 << i)) != 0;
+  }
+
+  /** Returns the value of an accumulator of the current group. */
+  public long value(int accumulator) {
+    return values[accumulator][current];
+  }
+
+  /** Returns whether any value has been added to an accumulator of the
+   * current group. */
+  public boolean hasValue(int accumulator) {
+    return valued[accumulator][current];
+  }
+
+  private <TResult> Enumerator<TResult> enumerator(
+      Function1<PrimitiveHashAggregate, TResult> resultSelector) {
+    return new Enumerator<TResult>() {
+      private int i = -1;
+      private @Nullable TResult result;
+
+      @Override public TResult current() {
+        return castNonNull(result);
+      }
+
+      @Override public boolean moveNext() {
+        if (i + 1 >= groupCount) {
+          result = null;
+          return false;
+        }
+        current = ++i;
+        result = resultSelector.apply(PrimitiveHashAggregate.this);
+        return true;
+      }
+
+      @Override public void reset() {
+        i = -1;
+        result = null;
+      }
+
+      @Override public void close() {
+      }
+    };
+  }
+
+  /** Adds a row to a {@link PrimitiveHashAggregate}. Generated code
+   * implements this interface.
+   *
+   * <p>The row parameter has type {@link Object}, rather than a type
+   * parameter, so that an implementation generated without generics still
+   * overrides {@link #add}. */
+  public interface RowAdder extends Function<Integer> {
+    /** Adds a row to the table, and returns the index of its group. */
+    int add(PrimitiveHashAggregate table, Object row);
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.avatica.util.ByteString;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compact binary encoding of rows, used by operators that hold rows outside
+ * the Java heap: in a {@link SpillFile} or an {@link OffHeapRowStore}.
+ *
+ * <p>Values of the types that Calcite uses to represent SQL values at run
+ * time ({@link Integer}, {@link Long}, {@link String}, {@link BigDecimal},
+ * {@link ByteString}, object arrays, lists and so forth) have a dedicated
+ * encoding; other values must be {@link Serializable} and are written using
+ * Java serialization.
+ *
+ * <p>A codec remembers the class loader of the first value that it writes
+ * using Java serialization, so it should be used to read only the values that
+ * it wrote.
+ */
+final class RowCodec {
+  private static final byte NULL = 0;
+  private static final byte TRUE = 1;
+  private static final byte FALSE = 2;
+  private static final byte BYTE = 3;
+  private static final byte SHORT = 4;
+  private static final byte INT = 5;
+  private static final byte LONG = 6;
+  private static final byte FLOAT = 7;
+  private static final byte DOUBLE = 8;
+  private static final byte STRING = 9;
+  private static final byte DECIMAL = 10;
+  private static final byte BINARY = 11;
+  private static final byte ARRAY = 12;
+  private static final byte LIST = 13;
+  private static final byte SERIALIZED = 14;
+
+  /** Description of where rows are stored, for error messages. */
+  private final Object source;
+
+  /** Class loader of the first value written using Java serialization. The
+   * classes of such values (for example synthetic row classes) may have been
+   * generated at run time, and are not visible to the default class loader. */
+  private @Nullable ClassLoader classLoader;
+
+  /** Number of values that have been written using Java serialization. */
+  private long serializedCount;
+
+  RowCodec(Object source) {
+    this.source = requireNonNull(source, "source");
+  }
+
+  /** Writes a value. */
+  void write(DataOutput out, @Nullable Object value) throws IOException {
+    if (value == null) {
+      out.writeByte(NULL);
+    } else if (value instanceof Boolean) {
+      out.writeByte((Boolean) value ? TRUE : FALSE);
+    } else if (value instanceof Integer) {
+      out.writeByte(INT);
+      out.writeInt((Integer) value);
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof String) {
+      out.writeByte(STRING);
+      writeBytes(out, ((String) value).getBytes(UTF_8));
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof BigDecimal) {
+      out.writeByte(DECIMAL);
+      out.writeInt(((BigDecimal) value).scale());
+      writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+    } else if (value instanceof Object[]) {
+      final Object[] values = (Object[]) value;
+      out.writeByte(ARRAY);
+      out.writeInt(values.length);
+      for (Object o : values) {
+        write(out, o);
+      }
+    } else if (value instanceof List) {
+      final List<?> values = (List<?>) value;
+      out.writeByte(LIST);
+      out.writeInt(values.size());
+      for (Object o : values) {
+        write(out, o);
+      }
+    } else if (value instanceof Short) {
+      out.writeByte(SHORT);
+      out.writeShort((Short) value);
+    } else if (value instanceof Byte) {
+      out.writeByte(BYTE);
+      out.writeByte((Byte) value);
+    } else if (value instanceof Float) {
+      out.writeByte(FLOAT);
+      out.writeFloat((Float) value);
+    } else if (value instanceof ByteString) {
+      out.writeByte(BINARY);
+      writeBytes(out, ((ByteString) value).getBytes());
+    } else if (value instanceof Serializable) {
+      if (classLoader == null) {
+        classLoader = value.getClass().getClassLoader();
+      }
+      final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+        oos.writeObject(value);
+      }
+      out.writeByte(SERIALIZED);
+      writeBytes(out, bytes.toByteArray());
+      ++serializedCount;
+    } else {
+      throw new IllegalArgumentException("cannot write value of "
+          + value.getClass());
+    }
+  }
+
+  /** Returns the number of values that this codec has written using Java
+   * serialization.
+   *
+   * <p>Two values that are written without Java serialization are equal
+   * (comparing arrays by their elements) if and only if their encodings are
+   * equal. A caller can compare this count before and after a call to
+   * {@link #write} to find out whether that holds for a value. */
+  long getSerializedCount() {
+    return serializedCount;
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes)
+      throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /** Reads a value. */
+  @Nullable Object read(DataInput in) throws IOException {
+    final byte tag = in.readByte();
+    switch (tag) {
+    case NULL:
+      return null;
+    case TRUE:
+      return Boolean.TRUE;
+    case FALSE:
+      return Boolean.FALSE;
+    case BYTE:
+      return in.readByte();
+    case SHORT:
+      return in.readShort();
+    case INT:
+      return in.readInt();
+    case LONG:
+      return in.readLong();
+    case FLOAT:
+      return in.readFloat();
+    case DOUBLE:
+      return in.readDouble();
+    case STRING:
+      return new String(readBytes(in), UTF_8);
+    case DECIMAL:
+      final int scale = in.readInt();
+      return new BigDecimal(new BigInteger(readBytes(in)), scale);
+    case BINARY:
+      return new ByteString(readBytes(in));
+    case ARRAY:
+      final @Nullable Object[] values = new Object[in.readInt()];
+      for (int i = 0; i < values.length; i++) {
+        values[i] = read(in);
+      }
+      return values;
+    case LIST:
+      final int size = in.readInt();
+      final List<@Nullable Object> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(read(in));
+      }
+      return list;
+    case SERIALIZED:
+      try (ObjectInputStream ois =
+               new LoaderObjectInputStream(
+                   new ByteArrayInputStream(readBytes(in)), classLoader)) {
+        return ois.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException(e);
+      }
+    default:
+      throw new IOException("corrupt " + source + "; tag " + tag);
+    }
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  /** Object input stream that resolves classes using a given class loader,
+   * then the default. */
+  private static class LoaderObjectInputStream extends ObjectInputStream {
+    private final @Nullable ClassLoader classLoader;
+
+    LoaderObjectInputStream(ByteArrayInputStream in,
+        @Nullable ClassLoader classLoader) throws IOException {
+      super(in);
+      this.classLoader = classLoader;
+    }
+
+    @Override protected Class<?> resolveClass(ObjectStreamClass desc)
+        throws IOException, ClassNotFoundException {
+      if (classLoader != null) {
+        try {
+          return Class.forName(desc.getName(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+          // fall through, and try the default class loader
+        }
+      }
+      return super.resolveClass(desc);
+    }
+  }
+}
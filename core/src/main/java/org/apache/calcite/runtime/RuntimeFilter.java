@@ -0,0 +1,443 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.ProjectableFilterableTable;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Filter on the values of a join key, built from the rows of the build side
+ * of a hash join and applied to the rows of a table scan on the probe side,
+ * so that the scan can discard rows that cannot match.
+ *
+ * <p>The filter consists of the minimum and maximum key, and a Bloom filter
+ * over the keys. Neither has false negatives: if a key occurs on the build
+ * side, {@link #mightContain} returns true. Null keys never match.
+ *
+ * <p>Keys must be integers or strings. Integers of different types are
+ * considered equal if they have the same value.
+ *
+ * <p>A hash join calls {@link #publish} to wrap its build input; when the
+ * build input has been read to the end, the filter is stored in the current
+ * statement's registry (see {@link DataContext.Variable#RUNTIME_FILTERS}),
+ * under an identifier that was assigned while generating code. The probe
+ * scan calls {@link #filter} or {@link #scan}, which look up the filter when
+ * the scan starts; by then, the hash join has read its build input. If there
+ * is no filter, for example because the build side had too many rows, the
+ * scan returns all rows.
+ */
+public class RuntimeFilter {
+  /** Name of the counter in {@link RuntimeStatistics} that records how many
+   * rows runtime filters removed from table scans. Does not include rows
+   * that a {@link FilterableTable} did not return because of the range
+   * filter passed to it. */
+  public static final String PRUNED_ROWS = "runtimeFilter.prunedRows";
+
+  /** Number of hash functions. With 8 bits per key, the false-positive rate
+   * is about 3%. */
+  private static final int HASH_COUNT = 3;
+
+  private final int keyCount;
+  private final Object min;
+  private final Object max;
+  private final long[] bits;
+  private final int mask;
+
+  private RuntimeFilter(List<Object> keys, Object min, Object max) {
+    this.keyCount = keys.size();
+    this.min = min;
+    this.max = max;
+    final int bitCount = Math.max(64,
+        Integer.highestOneBit(Math.max(1, keyCount * 8 - 1)) << 1);
+    this.bits = new long[bitCount / 64];
+    this.mask = bitCount - 1;
+    for (Object key : keys) {
+      final int hash1 = key.hashCode();
+      final int hash2 = mix(hash1);
+      for (int i = 0; i < HASH_COUNT; i++) {
+        final int bit = (hash1 + i * hash2) & mask;
+        bits[bit >>> 6] |= 1L << bit;
+      }
+    }
+  }
+
+  /** Creates a filter that accepts each of a list of keys, or returns null
+   * if the keys are not all integers or all strings. Null keys are
+   * ignored. */
+  static @Nullable RuntimeFilter of(List<?> keys) {
+    final List<Object> normalizedKeys = new ArrayList<>(keys.size());
+    @Nullable Comparable<Object> min = null;
+    @Nullable Comparable<Object> max = null;
+    for (Object key : keys) {
+      final Comparable<Object> k = normalize(key);
+      if (k == null) {
+        if (key != null) {
+          return null;
+        }
+        continue;
+      }
+      if (min != null && k.getClass() != min.getClass()) {
+        return null;
+      }
+      if (min == null || k.compareTo(min) < 0) {
+        min = k;
+      }
+      if (max == null || k.compareTo(max) > 0) {
+        max = k;
+      }
+      normalizedKeys.add(k);
+    }
+    if (min == null || max == null) {
+      // There are no keys. Use a filter that accepts nothing.
+      return new RuntimeFilter(normalizedKeys, 1L, 0L);
+    }
+    return new RuntimeFilter(normalizedKeys, min, max);
+  }
+
+  /** Converts a key to the representation used by the filter: integers to
+   * {@link Long}, strings unchanged; returns null if the key is null or of
+   * another type. */
+  @SuppressWarnings("unchecked")
+  private static @Nullable Comparable<Object> normalize(@Nullable Object key) {
+    if (key instanceof Long || key instanceof String) {
+      return (Comparable<Object>) key;
+    }
+    if (key instanceof Integer || key instanceof Short
+        || key instanceof Byte) {
+      return (Comparable) Long.valueOf(((Number) key).longValue());
+    }
+    return null;
+  }
+
+  private static int mix(int h) {
+    h *= 0x9E3779B9;
+    return (h ^ (h >>> 16)) | 1;
+  }
+
+  /** Returns the number of non-null keys on the build side. */
+  public int getKeyCount() {
+    return keyCount;
+  }
+
+  /** Returns whether a key might occur on the build side; false if it
+   * certainly does not. */
+  @SuppressWarnings("unchecked")
+  public boolean mightContain(@Nullable Object key) {
+    final Comparable<Object> k = normalize(key);
+    if (k == null || k.getClass() != min.getClass()) {
+      return false;
+    }
+    if (k.compareTo(min) < 0 || k.compareTo(max) > 0) {
+      return false;
+    }
+    final int hash1 = k.hashCode();
+    final int hash2 = mix(hash1);
+    for (int i = 0; i < HASH_COUNT; i++) {
+      final int bit = (hash1 + i * hash2) & mask;
+      if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Returns a condition that is true for rows whose column {@code ordinal}
+   * is in the range of the build-side keys; for example
+   * {@code AND(>=($2, 10), <=($2, 20))}. */
+  RexNode toRange(RexBuilder rexBuilder, RelDataType rowType, int ordinal) {
+    if (keyCount == 0) {
+      return rexBuilder.makeLiteral(false);
+    }
+    final RelDataType type = rowType.getFieldList().get(ordinal).getType();
+    final RexNode ref = rexBuilder.makeInputRef(type, ordinal);
+    final RexNode lower = literal(rexBuilder, type, min);
+    if (min.equals(max)) {
+      return rexBuilder.makeCall(SqlStdOperatorTable.EQUALS, ref, lower);
+    }
+    return rexBuilder.makeCall(SqlStdOperatorTable.AND,
+        rexBuilder.makeCall(SqlStdOperatorTable.GREATER_THAN_OR_EQUAL, ref,
+            lower),
+        rexBuilder.makeCall(SqlStdOperatorTable.LESS_THAN_OR_EQUAL, ref,
+            literal(rexBuilder, type, max)));
+  }
+
+  /** Returns a literal of the type of the probe-side column; or, if the value
+   * is an integer that does not fit into that type (because the join
+   * compares columns of different integer types), a BIGINT literal. */
+  private static RexNode literal(RexBuilder rexBuilder, RelDataType type,
+      Object value) {
+    if (value instanceof Long && !fits((Long) value, type)) {
+      return rexBuilder.makeBigintLiteral(BigDecimal.valueOf((Long) value));
+    }
+    return rexBuilder.makeLiteral(value, type);
+  }
+
+  /** Returns whether an integer value is in the range of an integer type. */
+  private static boolean fits(long value, RelDataType type) {
+    switch (type.getSqlTypeName()) {
+    case TINYINT:
+      return value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE;
+    case SMALLINT:
+      return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    case INTEGER:
+      return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    default:
+      return true;
+    }
+  }
+
+  /** Returns the registry of runtime filters of the current statement, or
+   * null if it does not support runtime filters. */
+  @SuppressWarnings("unchecked")
+  private static @Nullable ConcurrentMap<String, RuntimeFilter> registry(
+      DataContext root) {
+    final Object o = root.get(DataContext.Variable.RUNTIME_FILTERS.camelName);
+    return o instanceof ConcurrentMap
+        ? (ConcurrentMap<String, RuntimeFilter>) o
+        : null;
+  }
+
+  /** Creates a registry of runtime filters, to be stored in a data context
+   * as {@link DataContext.Variable#RUNTIME_FILTERS}. */
+  public static Map<String, RuntimeFilter> createRegistry() {
+    return new ConcurrentHashMap<>();
+  }
+
+  /** Returns the filter with a given identifier, or null if the build side
+   * has not published it. */
+  public static @Nullable RuntimeFilter get(DataContext root, String id) {
+    final Map<String, RuntimeFilter> registry = registry(root);
+    return registry == null ? null : registry.get(id);
+  }
+
+  /** Returns an enumerable that returns the rows of the build side of a hash
+   * join and, when it reaches the end, publishes a filter on their keys.
+   *
+   * @param root Data context
+   * @param id Identifier of filter
+   * @param input Build side
+   * @param keySelector Returns the key of each build row
+   * @param maxKeyCount Maximum number of keys; if the build side has more
+   *                    rows, no filter is published
+   */
+  public static <E> Enumerable<E> publish(DataContext root, String id,
+      Enumerable<E> input, Function1<E, @Nullable Object> keySelector,
+      int maxKeyCount) {
+    final ConcurrentMap<String, RuntimeFilter> registry = registry(root);
+    if (registry == null) {
+      return input;
+    }
+    return new AbstractEnumerable<E>() {
+      @Override public Enumerator<E> enumerator() {
+        // Remove the filter published by a previous execution of this join,
+        // for example as the right input of a correlate.
+        registry.remove(id);
+        final Enumerator<E> enumerator = input.enumerator();
+        return new Enumerator<E>() {
+          @Nullable List<@Nullable Object> keys = new ArrayList<>();
+
+          @Override public E current() {
+            return enumerator.current();
+          }
+
+          @Override public boolean moveNext() {
+            if (enumerator.moveNext()) {
+              final List<@Nullable Object> keys = this.keys;
+              if (keys != null) {
+                if (keys.size() < maxKeyCount) {
+                  keys.add(keySelector.apply(enumerator.current()));
+                } else {
+                  this.keys = null;
+                }
+              }
+              return true;
+            }
+            if (keys != null) {
+              final RuntimeFilter filter = of(keys);
+              if (filter != null) {
+                registry.put(id, filter);
+              }
+              keys = null;
+            }
+            return false;
+          }
+
+          @Override public void reset() {
+            enumerator.reset();
+            registry.remove(id);
+            keys = new ArrayList<>();
+          }
+
+          @Override public void close() {
+            enumerator.close();
+          }
+        };
+      }
+    };
+  }
+
+  /** Returns an enumerable that returns the rows of a probe-side scan that
+   * might match the build side of a hash join.
+   *
+   * @param root Data context
+   * @param id Identifier of filter
+   * @param input Rows of table scan
+   * @param keySelector Returns the key column of each row
+   */
+  public static <E> Enumerable<E> filter(DataContext root, String id,
+      Enumerable<E> input, Function1<E, @Nullable Object> keySelector) {
+    return new AbstractEnumerable<E>() {
+      @Override public Enumerator<E> enumerator() {
+        final RuntimeFilter filter = get(root, id);
+        if (filter == null) {
+          return input.enumerator();
+        }
+        return filter.apply(root, input.enumerator(), keySelector);
+      }
+    };
+  }
+
+  /** Returns an enumerable that scans a {@link FilterableTable}, passing it
+   * a range condition for each available runtime filter, and returns the
+   * rows that might match the build side of each hash join.
+   *
+   * @param root Data context
+   * @param table Table
+   * @param ids Identifiers of filters
+   * @param ordinals Ordinal of the column to which each filter applies
+   */
+  public static Enumerable<@Nullable Object[]> scan(DataContext root,
+      FilterableTable table, String[] ids, int[] ordinals) {
+    return new AbstractEnumerable<@Nullable Object[]>() {
+      @Override public Enumerator<@Nullable Object[]> enumerator() {
+        final RelDataType rowType = table.getRowType(root.getTypeFactory());
+        final Enumerable<@Nullable Object[]> input =
+            table.scan(root, ranges(root, rowType, ids, ordinals));
+        return apply(root, input, ids, ordinals);
+      }
+    };
+  }
+
+  /** As {@link #scan(DataContext, FilterableTable, String[], int[])}, but
+   * for a {@link ProjectableFilterableTable}. */
+  public static Enumerable<@Nullable Object[]> scan(DataContext root,
+      ProjectableFilterableTable table, String[] ids, int[] ordinals) {
+    return new AbstractEnumerable<@Nullable Object[]>() {
+      @Override public Enumerator<@Nullable Object[]> enumerator() {
+        final RelDataType rowType = table.getRowType(root.getTypeFactory());
+        final int[] projects = new int[rowType.getFieldCount()];
+        for (int i = 0; i < projects.length; i++) {
+          projects[i] = i;
+        }
+        final Enumerable<@Nullable Object[]> input =
+            table.scan(root, ranges(root, rowType, ids, ordinals), projects);
+        return apply(root, input, ids, ordinals);
+      }
+    };
+  }
+
+  /** Returns a mutable list containing a range condition for each runtime
+   * filter that has been published. */
+  private static List<RexNode> ranges(DataContext root, RelDataType rowType,
+      String[] ids, int[] ordinals) {
+    final RexBuilder rexBuilder = new RexBuilder(root.getTypeFactory());
+    final List<RexNode> filters = new ArrayList<>();
+    for (int i = 0; i < ids.length; i++) {
+      final RuntimeFilter filter = get(root, ids[i]);
+      if (filter != null) {
+        filters.add(filter.toRange(rexBuilder, rowType, ordinals[i]));
+      }
+    }
+    return filters;
+  }
+
+  /** Applies the published runtime filters to rows that are arrays. */
+  private static Enumerator<@Nullable Object[]> apply(DataContext root,
+      Enumerable<@Nullable Object[]> input, String[] ids, int[] ordinals) {
+    Enumerator<@Nullable Object[]> enumerator = input.enumerator();
+    for (int i = 0; i < ids.length; i++) {
+      final RuntimeFilter filter = get(root, ids[i]);
+      if (filter != null) {
+        final int ordinal = ordinals[i];
+        enumerator = filter.apply(root, enumerator, row -> row[ordinal]);
+      }
+    }
+    return enumerator;
+  }
+
+  /** Returns an enumerator that skips rows whose key cannot match. */
+  private <E> Enumerator<E> apply(DataContext root, Enumerator<E> input,
+      Function1<E, @Nullable Object> keySelector) {
+    return new Enumerator<E>() {
+      long prunedCount;
+
+      @Override public E current() {
+        return input.current();
+      }
+
+      @Override public boolean moveNext() {
+        while (input.moveNext()) {
+          if (mightContain(keySelector.apply(input.current()))) {
+            return true;
+          }
+          ++prunedCount;
+        }
+        flush();
+        return false;
+      }
+
+      private void flush() {
+        if (prunedCount > 0) {
+          RuntimeStatistics.add(root, PRUNED_ROWS, prunedCount);
+          prunedCount = 0;
+        }
+      }
+
+      @Override public void reset() {
+        input.reset();
+      }
+
+      @Override public void close() {
+        flush();
+        input.close();
+      }
+    };
+  }
+
+  @Override public String toString() {
+    return "RuntimeFilter{keyCount=" + keyCount + ", min=" + min
+        + ", max=" + max + "}";
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+
+import com.google.common.collect.ImmutableSortedMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Named counters that the operators of a statement increment as they run,
+ * recording decisions that they made at run time (for example, which
+ * strategy an adaptive join chose) and how much work those decisions
+ * saved.
+ *
+ * <p>One instance is created for each execution of a statement. Generated
+ * code finds it via {@link DataContext.Variable#RUNTIME_STATISTICS}; clients
+ * call {@link org.apache.calcite.jdbc.CalciteStatement#getRuntimeStatistics()}.
+ *
+ * <p>Counters may be incremented from several threads.
+ */
+public class RuntimeStatistics {
+  private final ConcurrentMap<String, LongAdder> counters =
+      new ConcurrentHashMap<>();
+
+  /** Returns the runtime statistics of a data context, or null if the
+   * current statement does not collect statistics. */
+  public static @Nullable RuntimeStatistics of(DataContext root) {
+    final Object o =
+        root.get(DataContext.Variable.RUNTIME_STATISTICS.camelName);
+    return o instanceof RuntimeStatistics ? (RuntimeStatistics) o : null;
+  }
+
+  /** Adds to the counter with a given name, if the data context collects
+   * statistics. */
+  public static void add(DataContext root, String name, long delta) {
+    final RuntimeStatistics statistics = of(root);
+    if (statistics != null) {
+      statistics.add(name, delta);
+    }
+  }
+
+  /** Adds to the counter with a given name. */
+  public void add(String name, long delta) {
+    counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+  }
+
+  /** Returns the value of the counter with a given name, or 0 if it has
+   * never been incremented. */
+  public long get(String name) {
+    final LongAdder counter = counters.get(name);
+    return counter == null ? 0L : counter.sum();
+  }
+
+  /** Returns the current value of every counter, sorted by name. */
+  public Map<String, Long> toMap() {
+    final ImmutableSortedMap.Builder<String, Long> builder =
+        ImmutableSortedMap.naturalOrder();
+    counters.forEach((name, counter) -> builder.put(name, counter.sum()));
+    return builder.build();
+  }
+
+  @Override public String toString() {
+    return toMap().toString();
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.avatica.util.ByteString;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.apache.calcite.linq4j.Nullness.castNonNull;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Temporary file to which an operator writes rows that do not fit into
+ * memory, and from which it later reads them back.
+ *
+ * <p>Rows are written in the compact binary format of {@link RowCodec}.
+ * Values of the types that Calcite uses to represent SQL values at run time
+ * have a dedicated encoding; other values must be
+ * {@link java.io.Serializable} and are written using Java serialization.
+ *
+ * <p>A file is first written, then {@link #finish() finished}, then may be
+ * read any number of times. Closing the file deletes it.
+ *
+ * @see SpillManager#createFile(String)
+ */
+public class SpillFile implements AutoCloseable {
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final SpillManager manager;
+  private final File file;
+  private @Nullable DataOutputStream out;
+  private long rowCount;
+  private final RowCodec codec;
+
+  SpillFile(SpillManager manager, File file) throws IOException {
+    this.manager = requireNonNull(manager, "manager");
+    this.file = requireNonNull(file, "file");
+    this.codec = new RowCodec("spill file " + file);
+    this.out =
+        new DataOutputStream(
+            new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+  }
+
+  /** Appends a row to this file. */
+  public void write(@Nullable Object row) {
+    final DataOutputStream out =
+        requireNonNull(this.out, "file is not open for writing");
+    try {
+      codec.write(out, row);
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+    ++rowCount;
+  }
+
+  /** Finishes writing this file. Does nothing if it is already finished. */
+  public void finish() {
+    final DataOutputStream out = this.out;
+    if (out == null) {
+      return;
+    }
+    this.out = null;
+    try {
+      out.close();
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+    manager.recordSpill(rowCount, file.length());
+  }
+
+  /** Returns the number of rows written to this file. */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /** Returns an enumerable over the rows in this file. Finishes writing if
+   * necessary. Each enumerator reads the file from the beginning. */
+  public <E> Enumerable<E> read() {
+    finish();
+    return new AbstractEnumerable<E>() {
+      @Override public Enumerator<E> enumerator() {
+        return new SpillEnumerator<>();
+      }
+    };
+  }
+
+  /** Closes this file and deletes it. */
+  @Override public void close() {
+    final DataOutputStream out = this.out;
+    this.out = null;
+    if (out != null) {
+      try {
+        out.close();
+      } catch (IOException e) {
+        // ignore; we are about to delete the file
+      }
+    }
+    //noinspection ResultOfMethodCallIgnored
+    file.delete();
+  }
+
+  @Override public String toString() {
+    return file + "(" + rowCount + " rows)";
+  }
+
+  /** Estimates the number of bytes of heap occupied by a row or value.
+   *
+   * <p>The estimate is approximate and cheap to compute; operators use it to
+   * decide when they have exceeded their memory budget. */
+  public static long estimateSize(@Nullable Object value) {
+    if (value == null) {
+      return 0;
+    } else if (value instanceof Object[]) {
+      final Object[] values = (Object[]) value;
+      long size = 16 + 8L * values.length;
+      for (Object o : values) {
+        size += estimateSize(o);
+      }
+      return size;
+    } else if (value instanceof List) {
+      final List<?> values = (List<?>) value;
+      long size = 40 + 8L * values.size();
+      for (Object o : values) {
+        size += estimateSize(o);
+      }
+      return size;
+    } else if (value instanceof String) {
+      return 40 + 2L * ((String) value).length();
+    } else if (value instanceof Long || value instanceof Double) {
+      return 24;
+    } else if (value instanceof Number || value instanceof Boolean) {
+      return value instanceof BigDecimal ? 64 : 16;
+    } else if (value instanceof ByteString) {
+      return 40 + ((ByteString) value).length();
+    } else {
+      return 64;
+    }
+  }
+
+  /** Enumerator that reads the rows of a finished file. */
+  private class SpillEnumerator<E> implements Enumerator<E> {
+    private @Nullable DataInputStream in;
+    private long remaining;
+    private @Nullable E current;
+
+    SpillEnumerator() {
+      reset();
+    }
+
+    @Override public E current() {
+      return castNonNull(current);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override public boolean moveNext() {
+      if (remaining <= 0) {
+        current = null;
+        return false;
+      }
+      try {
+        if (in == null) {
+          in =
+              new DataInputStream(
+                  new BufferedInputStream(new FileInputStream(file),
+                      BUFFER_SIZE));
+        }
+        current = (E) codec.read(in);
+      } catch (IOException e) {
+        throw Util.toUnchecked(e);
+      }
+      --remaining;
+      return true;
+    }
+
+    @Override public void reset() {
+      close();
+      remaining = rowCount;
+      current = null;
+    }
+
+    @Override public void close() {
+      final DataInputStream in = this.in;
+      this.in = null;
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          throw Util.toUnchecked(e);
+        }
+      }
+    }
+  }
+}
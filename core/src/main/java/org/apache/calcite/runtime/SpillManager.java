@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.util.Util;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allows the operators of a statement to write rows to temporary files when
+ * their working set does not fit into memory, and counts how much they
+ * spilled.
+ *
+ * <p>One instance is created for each execution of a statement, if the
+ * {@link org.apache.calcite.config.CalciteConnectionProperty#SPILL_MEMORY_BUDGET}
+ * connection property is positive. Generated code finds it via
+ * {@link DataContext.Variable#SPILL_MANAGER}.
+ *
+ * <p>The memory budget is shared by all operators of the statement. An
+ * operator that buffers rows (such as
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableHashJoin} or
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSort}) obtains a
+ * {@link Reservation}, and grows it as it reads rows; when the reservation
+ * cannot grow any further, the operator writes rows to {@link SpillFile}s and
+ * releases the memory they occupied.
+ *
+ * <p>If the statement also has a {@link MemoryTracker}, reservations are
+ * counted against its limit too, and an operator spills if either the memory
+ * budget or the limit would be exceeded.
+ */
+public class SpillManager {
+  private final long memoryBudget;
+  private final @Nullable File directory;
+  private final @Nullable MemoryTracker memoryTracker;
+
+  private final AtomicLong reservedByteCount = new AtomicLong();
+  private final AtomicInteger spilledPartitionCount = new AtomicInteger();
+  private final AtomicLong spilledRowCount = new AtomicLong();
+  private final AtomicLong spilledByteCount = new AtomicLong();
+
+  /** Creates a SpillManager.
+   *
+   * @param memoryBudget Number of bytes of rows that the operators of the
+   *                     statement may hold in memory; must be positive
+   * @param directory    Directory in which to create temporary files, or null
+   *                     to use the system temporary directory
+   */
+  public SpillManager(long memoryBudget, @Nullable String directory) {
+    this(memoryBudget, directory, null);
+  }
+
+  /** Creates a SpillManager that also reserves memory from a
+   * {@link MemoryTracker}.
+   *
+   * @param memoryBudget  Number of bytes of rows that the operators of the
+   *                      statement may hold in memory; must be positive
+   * @param directory     Directory in which to create temporary files, or
+   *                      null to use the system temporary directory
+   * @param memoryTracker Memory tracker of the statement, or null
+   */
+  public SpillManager(long memoryBudget, @Nullable String directory,
+      @Nullable MemoryTracker memoryTracker) {
+    if (memoryBudget <= 0) {
+      throw new IllegalArgumentException("memoryBudget must be positive: "
+          + memoryBudget);
+    }
+    this.memoryBudget = memoryBudget;
+    this.directory = directory == null ? null : new File(directory);
+    this.memoryTracker = memoryTracker;
+  }
+
+  /** Returns the spill manager of a data context, or null if spilling is not
+   * enabled for the current statement. */
+  public static @Nullable SpillManager of(DataContext root) {
+    final Object o = root.get(DataContext.Variable.SPILL_MANAGER.camelName);
+    return o instanceof SpillManager ? (SpillManager) o : null;
+  }
+
+  /** Returns the number of bytes of rows that the operators of the statement
+   * may hold in memory: the memory budget, or the limit of the memory
+   * tracker, if that is smaller. */
+  public long memoryBudget() {
+    return memoryTracker == null
+        ? memoryBudget
+        : Math.min(memoryBudget, memoryTracker.getLimit());
+  }
+
+  /** Creates an empty reservation for an operator. */
+  public Reservation reserve(String operator) {
+    return new Reservation(
+        memoryTracker == null ? null : memoryTracker.reserve(operator));
+  }
+
+  /** Returns the number of bytes currently reserved by the operators of this
+   * statement. */
+  public long getReservedByteCount() {
+    return reservedByteCount.get();
+  }
+
+  /** Creates a temporary file. The caller must close it, which deletes it. */
+  public SpillFile createFile(String prefix) {
+    try {
+      final File file =
+          File.createTempFile("calcite-" + prefix + "-", ".spill", directory);
+      return new SpillFile(this, file);
+    } catch (IOException e) {
+      throw Util.toUnchecked(e);
+    }
+  }
+
+  /** Records that an operator has partitioned its input into a given number
+   * of partitions on disk. */
+  public void recordPartitions(int partitionCount) {
+    spilledPartitionCount.addAndGet(partitionCount);
+  }
+
+  /** Called by a {@link SpillFile} when it has finished writing. */
+  void recordSpill(long rowCount, long byteCount) {
+    spilledRowCount.addAndGet(rowCount);
+    spilledByteCount.addAndGet(byteCount);
+  }
+
+  /** Returns the number of partitions written to disk so far by the
+   * operators of this statement. */
+  public int getSpilledPartitionCount() {
+    return spilledPartitionCount.get();
+  }
+
+  /** Returns the number of rows written to disk so far by the operators of
+   * this statement. */
+  public long getSpilledRowCount() {
+    return spilledRowCount.get();
+  }
+
+  /** Returns the number of bytes written to disk so far by the operators of
+   * this statement. */
+  public long getSpilledByteCount() {
+    return spilledByteCount.get();
+  }
+
+  /** Memory reserved by one operator against the budget of the statement.
+   *
+   * <p>Closing a reservation releases all of the memory it holds. */
+  public class Reservation implements AutoCloseable {
+    private final MemoryTracker.@Nullable Reservation trackerReservation;
+    private long byteCount;
+
+    private Reservation(
+        MemoryTracker.@Nullable Reservation trackerReservation) {
+      this.trackerReservation = trackerReservation;
+    }
+
+    /** Tries to reserve another {@code n} bytes. Returns false, and reserves
+     * nothing, if that would exceed the memory budget of the statement, or
+     * the limit of its memory tracker. */
+    public boolean tryAdd(long n) {
+      for (;;) {
+        final long reserved = reservedByteCount.get();
+        if (reserved + n > memoryBudget) {
+          return false;
+        }
+        if (reservedByteCount.compareAndSet(reserved, reserved + n)) {
+          if (trackerReservation != null && !trackerReservation.tryAdd(n)) {
+            reservedByteCount.addAndGet(-n);
+            return false;
+          }
+          byteCount += n;
+          return true;
+        }
+      }
+    }
+
+    /** Reserves another {@code n} bytes, even if that exceeds the memory
+     * budget. An operator calls this when it cannot make progress without
+     * holding a row in memory.
+     *
+     * @throws CalciteException if that would exceed the limit of the
+     * statement's memory tracker */
+    public void add(long n) {
+      if (trackerReservation != null) {
+        trackerReservation.add(n);
+      }
+      reservedByteCount.addAndGet(n);
+      byteCount += n;
+    }
+
+    /** Releases {@code n} of the bytes held by this reservation. */
+    public void release(long n) {
+      final long released = Math.min(n, byteCount);
+      reservedByteCount.addAndGet(-released);
+      byteCount -= released;
+      if (trackerReservation != null) {
+        trackerReservation.release(released);
+      }
+    }
+
+    /** Returns the number of bytes held by this reservation. */
+    public long getByteCount() {
+      return byteCount;
+    }
+
+    @Override public void close() {
+      release(byteCount);
+    }
+  }
+
+  @Override public String toString() {
+    return "SpillManager(memoryBudget: " + memoryBudget
+        + ", spilledPartitions: " + spilledPartitionCount
+        + ", spilledRows: " + spilledRowCount
+        + ", spilledBytes: " + spilledByteCount + ")";
+  }
+}
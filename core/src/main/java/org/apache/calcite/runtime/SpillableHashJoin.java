@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.EnumerableDefaults;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Function1;
+import org.apache.calcite.linq4j.function.Function2;
+import org.apache.calcite.linq4j.function.Predicate2;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hash join that partitions its inputs to disk if its build input does not
+ * fit into the memory budget of the statement.
+ *
+ * <p>The join first reads its build (inner) input into memory, reserving
+ * memory from the statement's {@link SpillManager}. If it reads the whole
+ * input without exceeding the memory budget, it proceeds as
+ * {@link EnumerableDefaults#hashJoin} would, and releases the memory when its
+ * enumerator is closed. Otherwise it executes a grace hash join: it writes
+ * both inputs to {@link #PARTITION_COUNT} pairs of {@link SpillFile}s,
+ * partitioned by the hash of their join keys, then joins each pair of
+ * partitions separately. A partition whose build side is still
+ * too large is partitioned again, using different bits of the hash code, up to
+ * {@link #MAX_DEPTH} times; beyond that depth (typically because many rows
+ * have the same key) the partition is joined in memory.
+ *
+ * <p>Probe (outer) rows that fall into a partition whose build side is empty
+ * are discarded rather than written, unless the join generates nulls on the
+ * right.
+ *
+ * @param <TSource> Element type of the outer (probe) input
+ * @param <TInner> Element type of the inner (build) input
+ * @param <TKey> Key type
+ * @param <TResult> Result type
+ */
+public class SpillableHashJoin<TSource, TInner, TKey, TResult> {
+  /** Number of bits of the hash code used at each level of partitioning. */
+  private static final int PARTITION_BITS = 4;
+
+  /** Number of partitions into which each input is split. */
+  static final int PARTITION_COUNT = 1 << PARTITION_BITS;
+
+  /** Maximum number of times that a partition is split. */
+  static final int MAX_DEPTH = 3;
+
+  /** Estimated number of bytes of overhead per build row, in addition to the
+   * row itself, for the hash table entry that references it. */
+  private static final int ENTRY_OVERHEAD = 32;
+
+  private final SpillManager spillManager;
+  private final Function1<TSource, TKey> outerKeySelector;
+  private final Function1<TInner, TKey> innerKeySelector;
+  private final Function2<TSource, TInner, TResult> resultSelector;
+  private final @Nullable EqualityComparer<TKey> comparer;
+  private final boolean generateNullsOnLeft;
+  private final boolean generateNullsOnRight;
+  private final @Nullable Predicate2<TSource, TInner> predicate;
+  private final @Nullable Runnable onSpill;
+
+  private SpillableHashJoin(SpillManager spillManager,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer,
+      boolean generateNullsOnLeft, boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate,
+      @Nullable Runnable onSpill) {
+    this.spillManager = requireNonNull(spillManager, "spillManager");
+    this.outerKeySelector = outerKeySelector;
+    this.innerKeySelector = innerKeySelector;
+    this.resultSelector = resultSelector;
+    this.comparer = comparer;
+    this.generateNullsOnLeft = generateNullsOnLeft;
+    this.generateNullsOnRight = generateNullsOnRight;
+    this.predicate = predicate;
+    this.onSpill = onSpill;
+  }
+
+  /**
+   * Correlates the elements of two sequences based on matching keys, spilling
+   * to disk if the inner sequence does not fit into memory.
+   *
+   * <p>If spilling is not enabled for the current statement (that is,
+   * {@link SpillManager#of(DataContext)} returns null), this method is
+   * equivalent to
+   * {@link EnumerableDefaults#hashJoin(Enumerable, Enumerable, Function1, Function1, Function2, EqualityComparer, boolean, boolean, Predicate2)}.
+   */
+  public static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      DataContext root, Enumerable<TSource> outer, Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate) {
+    final SpillManager spillManager = SpillManager.of(root);
+    if (spillManager == null) {
+      return EnumerableDefaults.hashJoin(outer, inner, outerKeySelector,
+          innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+          generateNullsOnRight, predicate);
+    }
+    return hashJoin(spillManager, outer, inner, outerKeySelector,
+        innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+        generateNullsOnRight, predicate, null);
+  }
+
+  /** Correlates the elements of two sequences based on matching keys,
+   * spilling to disk if the inner sequence does not fit into memory, and
+   * calling {@code onSpill} (if not null) when it starts to spill. */
+  static <TSource, TInner, TKey, TResult> Enumerable<TResult> hashJoin(
+      SpillManager spillManager, Enumerable<TSource> outer,
+      Enumerable<TInner> inner,
+      Function1<TSource, TKey> outerKeySelector,
+      Function1<TInner, TKey> innerKeySelector,
+      Function2<TSource, TInner, TResult> resultSelector,
+      @Nullable EqualityComparer<TKey> comparer, boolean generateNullsOnLeft,
+      boolean generateNullsOnRight,
+      @Nullable Predicate2<TSource, TInner> predicate,
+      @Nullable Runnable onSpill) {
+    return new SpillableHashJoin<>(spillManager, outerKeySelector,
+        innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+        generateNullsOnRight, predicate, onSpill)
+        .join(outer, inner, 0);
+  }
+
+  private Enumerable<TResult> join(Enumerable<TSource> outer,
+      Enumerable<TInner> inner, int depth) {
+    return new AbstractEnumerable<TResult>() {
+      @Override public Enumerator<TResult> enumerator() {
+        final List<TInner> innerList = new ArrayList<>();
+        final SpillManager.Reservation reservation =
+            spillManager.reserve("EnumerableHashJoin");
+        try (Enumerator<TInner> inners = inner.enumerator()) {
+          while (inners.moveNext()) {
+            final TInner row = inners.current();
+            innerList.add(row);
+            final long size = SpillFile.estimateSize(row) + ENTRY_OVERHEAD;
+            if (!reservation.tryAdd(size)) {
+              if (depth < MAX_DEPTH) {
+                reservation.close();
+                return spill(outer, innerList, inners, depth);
+              }
+              reservation.add(size);
+            }
+          }
+        } catch (RuntimeException | Error e) {
+          reservation.close();
+          throw e;
+        }
+        final Enumerator<TResult> enumerator =
+            inMemoryJoin(outer, Linq4j.asEnumerable(innerList)).enumerator();
+        return new DelegatingEnumerator<TResult>(enumerator) {
+          @Override public void close() {
+            super.close();
+            reservation.close();
+          }
+        };
+      }
+    };
+  }
+
+  private Enumerable<TResult> inMemoryJoin(Enumerable<TSource> outer,
+      Enumerable<TInner> inner) {
+    return EnumerableDefaults.hashJoin(outer, inner, outerKeySelector,
+        innerKeySelector, resultSelector, comparer, generateNullsOnLeft,
+        generateNullsOnRight, predicate);
+  }
+
+  /** Writes the rows of the inner input that have been read so far, the
+   * remaining rows of the inner input, and all rows of the outer input, to
+   * partitions, and returns an enumerator that joins each pair of
+   * partitions. */
+  private Enumerator<TResult> spill(Enumerable<TSource> outer,
+      List<TInner> innerList, Enumerator<TInner> inners, int depth) {
+    if (depth == 0 && onSpill != null) {
+      onSpill.run();
+    }
+    final List<SpillFile> innerFiles = new ArrayList<>();
+    final List<SpillFile> outerFiles = new ArrayList<>();
+    try {
+      for (int i = 0; i < PARTITION_COUNT; i++) {
+        innerFiles.add(spillManager.createFile("hashjoin-build"));
+        outerFiles.add(spillManager.createFile("hashjoin-probe"));
+      }
+      for (TInner row : innerList) {
+        innerFiles.get(partition(innerKeySelector.apply(row), depth))
+            .write(row);
+      }
+      innerList.clear();
+      while (inners.moveNext()) {
+        final TInner row = inners.current();
+        innerFiles.get(partition(innerKeySelector.apply(row), depth))
+            .write(row);
+      }
+      try (Enumerator<TSource> outers = outer.enumerator()) {
+        while (outers.moveNext()) {
+          final TSource row = outers.current();
+          final int partition =
+              row == null ? 0 : partition(outerKeySelector.apply(row), depth);
+          if (innerFiles.get(partition).getRowCount() == 0
+              && !generateNullsOnRight) {
+            // The row cannot match, and the join does not need to emit it.
+            continue;
+          }
+          outerFiles.get(partition).write(row);
+        }
+      }
+      for (int i = 0; i < PARTITION_COUNT; i++) {
+        innerFiles.get(i).finish();
+        outerFiles.get(i).finish();
+      }
+    } catch (RuntimeException | Error e) {
+      closeAll(innerFiles);
+      closeAll(outerFiles);
+      throw e;
+    }
+    spillManager.recordPartitions(PARTITION_COUNT);
+    return new PartitionEnumerator(outerFiles, innerFiles, depth + 1);
+  }
+
+  /** Returns the partition of a key at a given depth. Null keys, which never
+   * match, go into partition 0. */
+  private int partition(@Nullable TKey key, int depth) {
+    if (key == null) {
+      return 0;
+    }
+    int h = comparer == null ? key.hashCode() : comparer.hashCode(key);
+    // Scramble the bits (as in MurmurHash3's finalizer), so that each depth
+    // uses a different, well-distributed group of bits.
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return (h >>> (depth * PARTITION_BITS)) & (PARTITION_COUNT - 1);
+  }
+
+  private static void closeAll(List<SpillFile> files) {
+    for (SpillFile file : files) {
+      file.close();
+    }
+  }
+
+  /** Enumerator that joins each pair of partitions in turn, and deletes the
+   * partition files when closed. */
+  private class PartitionEnumerator implements Enumerator<TResult> {
+    private final List<SpillFile> outerFiles;
+    private final List<SpillFile> innerFiles;
+    private final int depth;
+    private int partition = -1;
+    private Enumerator<TResult> current = Linq4j.emptyEnumerator();
+
+    PartitionEnumerator(List<SpillFile> outerFiles, List<SpillFile> innerFiles,
+        int depth) {
+      this.outerFiles = outerFiles;
+      this.innerFiles = innerFiles;
+      this.depth = depth;
+    }
+
+    @Override public TResult current() {
+      return current.current();
+    }
+
+    @Override public boolean moveNext() {
+      for (;;) {
+        if (current.moveNext()) {
+          return true;
+        }
+        current.close();
+        current = Linq4j.emptyEnumerator();
+        if (++partition >= PARTITION_COUNT) {
+          return false;
+        }
+        final SpillFile outerFile = outerFiles.get(partition);
+        final SpillFile innerFile = innerFiles.get(partition);
+        if (outerFile.getRowCount() == 0 && innerFile.getRowCount() == 0) {
+          continue;
+        }
+        current =
+            join(outerFile.<TSource>read(), innerFile.<TInner>read(), depth)
+                .enumerator();
+      }
+    }
+
+    @Override public void reset() {
+      current.close();
+      current = Linq4j.emptyEnumerator();
+      partition = -1;
+    }
+
+    @Override public void close() {
+      current.close();
+      current = Linq4j.emptyEnumerator();
+      closeAll(outerFiles);
+      closeAll(innerFiles);
+    }
+  }
+}
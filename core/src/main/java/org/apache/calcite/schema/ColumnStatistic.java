@@ -0,0 +1,46 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Statistics about the values of a column of a {@link Table}.
+ *
+ * <p>Each of the methods may return {@code null} meaning "not known".
+ *
+ * @see Statistic#getColumnStatistic(int)
+ * @see Statistics#column
+ */
+public interface ColumnStatistic {
+  /** Returns the approximate number of distinct non-null values in the
+   * column. */
+  default @Nullable Double getDistinctCount() {
+    return null;
+  }
+
+  /** Returns the fraction of rows, between 0 and 1, in which the column is
+   * null. */
+  default @Nullable Double getNullFraction() {
+    return null;
+  }
+
+  /** Returns a histogram of the non-null values in the column. */
+  default @Nullable Histogram getHistogram() {
+    return null;
+  }
+}
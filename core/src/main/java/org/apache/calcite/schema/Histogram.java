@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.util.DateString;
+import org.apache.calcite.util.NlsString;
+import org.apache.calcite.util.TimeString;
+import org.apache.calcite.util.TimestampString;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Ordering;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Equi-depth histogram of the non-null values of a column.
+ *
+ * <p>The values are divided into buckets that each hold the same number of
+ * rows. Bucket {@code i} holds the values between bound {@code i} and bound
+ * {@code i + 1}. A value that occurs in many rows may be the bound of several
+ * adjacent buckets.
+ *
+ * <p>Values are held in a normalized form, so that a histogram built from
+ * the values that an adapter returns can be compared with the values of
+ * literals: numbers as {@link BigDecimal}; dates, times and timestamps as the
+ * number of days or milliseconds that represents them, also as
+ * {@link BigDecimal}; and character strings as {@link String}. Within a
+ * bucket of numbers, values are assumed to be uniformly distributed.
+ *
+ * @see ColumnStatistic#getHistogram()
+ */
+public class Histogram {
+  private final ImmutableList<Comparable> bounds;
+
+  private Histogram(ImmutableList<Comparable> bounds) {
+    this.bounds = bounds;
+  }
+
+  /** Creates a histogram from the bounds of its buckets.
+   *
+   * @param bounds Sorted values, at least two; the first is the smallest
+   *               value in the column, and the last is the largest
+   */
+  public static Histogram of(List<?> bounds) {
+    checkArgument(bounds.size() >= 2, "histogram needs at least two bounds");
+    final ImmutableList.Builder<Comparable> b = ImmutableList.builder();
+    for (Object bound : bounds) {
+      final Comparable c = normalize(bound);
+      checkArgument(c != null, "cannot use %s as a bound", bound);
+      b.add(c);
+    }
+    final ImmutableList<Comparable> list = b.build();
+    checkArgument(isSorted(list), "bounds must be sorted");
+    return new Histogram(list);
+  }
+
+  /** Creates a histogram with up to {@code bucketCount} buckets from a
+   * collection of values; returns null if there are no non-null values, or
+   * if the values cannot be compared.
+   *
+   * <p>The histogram is exact for the values given; if they are a sample of
+   * the column, it is an estimate for the column. */
+  public static @Nullable Histogram create(Iterable<?> values,
+      int bucketCount) {
+    checkArgument(bucketCount > 0, "bucketCount must be positive");
+    final List<Comparable> list = new ArrayList<>();
+    for (Object value : values) {
+      if (value == null) {
+        continue;
+      }
+      final Comparable c = normalize(value);
+      if (c == null
+          || !list.isEmpty() && c.getClass() != list.get(0).getClass()) {
+        return null;
+      }
+      list.add(c);
+    }
+    if (list.isEmpty()) {
+      return null;
+    }
+    list.sort(Ordering.natural());
+    final int n = list.size();
+    final int buckets = Math.max(1, Math.min(bucketCount, n - 1));
+    final ImmutableList.Builder<Comparable> b = ImmutableList.builder();
+    for (int i = 0; i <= buckets; i++) {
+      b.add(list.get((int) ((long) i * (n - 1) / buckets)));
+    }
+    return new Histogram(b.build());
+  }
+
+  /** Returns the number of buckets. */
+  public int getBucketCount() {
+    return bounds.size() - 1;
+  }
+
+  /** Returns the bounds of the buckets, in normalized form. */
+  public List<Comparable> getBounds() {
+    return bounds;
+  }
+
+  /** Returns the smallest value, in normalized form. */
+  public Comparable getMin() {
+    return bounds.get(0);
+  }
+
+  /** Returns the largest value, in normalized form. */
+  public Comparable getMax() {
+    return bounds.get(bounds.size() - 1);
+  }
+
+  /** Returns the fraction of values that are less than a given value (or,
+   * if {@code inclusive}, less than or equal to it); or null if the value
+   * cannot be compared with the values in this histogram. */
+  public @Nullable Double fractionBelow(Object value, boolean inclusive) {
+    final Comparable v = normalize(value);
+    if (v == null || v.getClass() != bounds.get(0).getClass()) {
+      return null;
+    }
+    final int bucketCount = getBucketCount();
+    double count = 0;
+    for (int i = 0; i < bucketCount; i++) {
+      final Comparable lower = bounds.get(i);
+      final Comparable upper = bounds.get(i + 1);
+      final int cu = compare(v, upper);
+      if (cu > 0 || cu == 0 && inclusive) {
+        count += 1;
+        continue;
+      }
+      final int cl = compare(v, lower);
+      if (cl > 0) {
+        count += fractionWithin(v, lower, upper);
+      }
+      break;
+    }
+    return count / bucketCount;
+  }
+
+  /** Returns the fraction of a bucket that is below a value. */
+  private static double fractionWithin(Comparable v, Comparable lower,
+      Comparable upper) {
+    if (v instanceof BigDecimal) {
+      final double lo = ((BigDecimal) lower).doubleValue();
+      final double hi = ((BigDecimal) upper).doubleValue();
+      if (hi > lo) {
+        final double f = (((BigDecimal) v).doubleValue() - lo) / (hi - lo);
+        return Math.max(0d, Math.min(1d, f));
+      }
+    }
+    return 0.5d;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static int compare(Comparable c0, Comparable c1) {
+    return c0.compareTo(c1);
+  }
+
+  private static boolean isSorted(List<Comparable> list) {
+    for (int i = 1; i < list.size(); i++) {
+      if (list.get(i).getClass() != list.get(0).getClass()
+          || compare(list.get(i - 1), list.get(i)) > 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Converts a value to the form in which a histogram holds it, or returns
+   * null if histograms do not support values of its type. */
+  public static @Nullable Comparable normalize(@Nullable Object value) {
+    if (value instanceof BigDecimal) {
+      return (BigDecimal) value;
+    } else if (value instanceof BigInteger) {
+      return new BigDecimal((BigInteger) value);
+    } else if (value instanceof Double || value instanceof Float) {
+      final double d = ((Number) value).doubleValue();
+      return Double.isFinite(d) ? BigDecimal.valueOf(d) : null;
+    } else if (value instanceof Number) {
+      return BigDecimal.valueOf(((Number) value).longValue());
+    } else if (value instanceof String) {
+      return (String) value;
+    } else if (value instanceof Character) {
+      return value.toString();
+    } else if (value instanceof NlsString) {
+      return ((NlsString) value).getValue();
+    } else if (value instanceof DateString) {
+      return BigDecimal.valueOf(((DateString) value).getDaysSinceEpoch());
+    } else if (value instanceof TimeString) {
+      return BigDecimal.valueOf(((TimeString) value).getMillisOfDay());
+    } else if (value instanceof TimestampString) {
+      return BigDecimal.valueOf(
+          ((TimestampString) value).getMillisSinceEpoch());
+    } else {
+      return null;
+    }
+  }
+
+  @Override public String toString() {
+    return "Histogram" + bounds;
+  }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.schema;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.linq4j.Enumerable;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Table that can be scanned in partitions, so that several threads can each
+ * read part of its rows.
+ *
+ * <p>If the {@link org.apache.calcite.config.CalciteConnectionProperty#PARALLELISM
+ * parallelism} of a statement is greater than 1, Calcite reads the table on
+ * that many threads, each calling {@link #scan(DataContext)} with a data
+ * context whose {@link DataContext.Variable#PARTITION} and
+ * {@link DataContext.Variable#PARTITION_COUNT} variables identify the
+ * partition to read.
+ *
+ * @see PartitionedFilterableTable
+ */
+public interface PartitionedScannableTable extends ScannableTable {
+  /** Returns an enumerator over the rows in one partition of this Table.
+   * Each row is represented as an array of its column values.
+   *
+   * <p>Each row of the table must occur in precisely one of the partitions
+   * {@code 0} to {@code partitionCount - 1}.
+   *
+   * @param root Data context
+   * @param partition Ordinal of partition, between 0 and
+   *                  {@code partitionCount - 1}
+   * @param partitionCount Number of partitions
+   */
+  Enumerable<@Nullable Object[]> scan(DataContext root, int partition,
+      int partitionCount);
+
+  /** {@inheritDoc}
+   *
+   * <p>The default implementation reads the partition identified by the
+   * data context, or the whole table if the data context does not identify a
+   * partition. */
+  @Override default Enumerable<@Nullable Object[]> scan(DataContext root) {
+    final @Nullable Integer partitionCount =
+        DataContext.Variable.PARTITION_COUNT.get(root);
+    if (partitionCount == null) {
+      return scan(root, 0, 1);
+    }
+    final Integer partition = DataContext.Variable.PARTITION.get(root);
+    return scan(root, partition, partitionCount);
+  }
+}
@@ -65,4 +65,12 @@ default boolean isKey(ImmutableBitSet columns) {
   default @Nullable RelDistribution getDistribution()  {
     return null;
   }
+
+  /** Returns statistics about the values of a column, such as the number of
+   * distinct values and a histogram, or null if not known.
+   *
+   * @param ordinal Ordinal of the column in the table's row type */
+  default @Nullable ColumnStatistic getColumnStatistic(int ordinal) {
+    return null;
+  }
 }
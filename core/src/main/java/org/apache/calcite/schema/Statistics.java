@@ -18,12 +18,14 @@
 
 import org.apache.calcite.rel.RelCollation;
 import org.apache.calcite.rel.RelReferentialConstraint;
+import org.apache.calcite.util.HyperLogLog;
 import org.apache.calcite.util.ImmutableBitSet;
 
 import com.google.common.collect.ImmutableList;
 
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -65,11 +67,28 @@ public static Statistic of(final @Nullable Double rowCount,
       final @Nullable List<ImmutableBitSet> keys,
       final @Nullable List<RelReferentialConstraint> referentialConstraints,
       final @Nullable List<RelCollation> collations) {
+    return of(rowCount, keys, referentialConstraints, collations, null);
+  }
+
+  /** Returns a statistic with a given row count, set of unique keys,
+   * referential constraints, collations, and statistics for each column.
+   *
+   * <p>The list of column statistics is indexed by column ordinal; it may be
+   * shorter than the row type, and may contain nulls. */
+  public static Statistic of(final @Nullable Double rowCount,
+      final @Nullable List<ImmutableBitSet> keys,
+      final @Nullable List<RelReferentialConstraint> referentialConstraints,
+      final @Nullable List<RelCollation> collations,
+      final @Nullable List<? extends @Nullable ColumnStatistic> columnStatistics) {
     List<ImmutableBitSet> keysCopy = keys == null ? ImmutableList.of() : ImmutableList.copyOf(keys);
     List<RelReferentialConstraint> referentialConstraintsCopy =
         referentialConstraints == null ? null : ImmutableList.copyOf(referentialConstraints);
     List<RelCollation> collationsCopy =
         collations == null ? null : ImmutableList.copyOf(collations);
+    List<@Nullable ColumnStatistic> columnStatisticsCopy =
+        columnStatistics == null
+            ? ImmutableList.of()
+            : new ArrayList<>(columnStatistics);
 
     return new Statistic() {
       @Override public @Nullable Double getRowCount() {
@@ -96,6 +115,58 @@ public static Statistic of(final @Nullable Double rowCount,
       @Override public @Nullable List<RelCollation> getCollations() {
         return collationsCopy;
       }
+
+      @Override public @Nullable ColumnStatistic getColumnStatistic(
+          int ordinal) {
+        return ordinal < columnStatisticsCopy.size()
+            ? columnStatisticsCopy.get(ordinal)
+            : null;
+      }
     };
   }
+
+  /** Returns statistics about a column.
+   *
+   * @param distinctCount Number of distinct non-null values, or null
+   * @param nullFraction  Fraction of rows in which the column is null, or null
+   * @param histogram     Histogram of non-null values, or null
+   */
+  public static ColumnStatistic column(final @Nullable Double distinctCount,
+      final @Nullable Double nullFraction,
+      final @Nullable Histogram histogram) {
+    return new ColumnStatistic() {
+      @Override public @Nullable Double getDistinctCount() {
+        return distinctCount;
+      }
+
+      @Override public @Nullable Double getNullFraction() {
+        return nullFraction;
+      }
+
+      @Override public @Nullable Histogram getHistogram() {
+        return histogram;
+      }
+    };
+  }
+
+  /** Computes statistics about a column from its values, or from a sample
+   * of them. The number of distinct values is estimated using a
+   * {@link HyperLogLog} sketch; the histogram has up to
+   * {@code bucketCount} buckets. */
+  public static ColumnStatistic column(Iterable<?> values, int bucketCount) {
+    final HyperLogLog sketch = new HyperLogLog();
+    int rowCount = 0;
+    int nullCount = 0;
+    for (Object value : values) {
+      ++rowCount;
+      if (value == null) {
+        ++nullCount;
+      } else {
+        sketch.add(value);
+      }
+    }
+    return column(nullCount == rowCount ? 0d : sketch.estimate(),
+        rowCount == 0 ? null : (double) nullCount / rowCount,
+        Histogram.create(values, bucketCount));
+  }
 }
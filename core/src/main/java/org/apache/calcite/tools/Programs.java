@@ -31,6 +31,8 @@
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
 import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.plan.volcano.VolcanoPlanner;
+import org.apache.calcite.prepare.SubPlanCache;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.RelNodes;
 import org.apache.calcite.rel.core.Calc;
@@ -197,6 +199,25 @@ public static Program of(final HepProgram hepProgram, final boolean noDag,
   public static Program heuristicJoinOrder(
       final Iterable<? extends RelOptRule> rules,
       final boolean bushy, final int minJoinCount) {
+    return heuristicJoinOrder(rules,
+        bushy
+            ? CoreRules.MULTI_JOIN_OPTIMIZE_BUSHY
+            : CoreRules.MULTI_JOIN_OPTIMIZE,
+        minJoinCount);
+  }
+
+  /** Creates a program that gathers the joins of a query into a
+   * {@link org.apache.calcite.rel.rules.MultiJoin} and orders them using a
+   * given rule, such as {@link CoreRules#MULTI_JOIN_OPTIMIZE_DPHYP}, then
+   * applies a set of rules.
+   *
+   * @param rules Rules to apply after the joins have been ordered
+   * @param joinOrderRule Rule that converts a {@code MultiJoin} into joins
+   * @param minJoinCount Minimum number of joins for which to order joins
+   */
+  public static Program heuristicJoinOrder(
+      final Iterable<? extends RelOptRule> rules,
+      final RelOptRule joinOrderRule, final int minJoinCount) {
     return (planner, rel, requiredOutputTraits, materializations, lattices) -> {
       final int joinCount = RelOptUtil.countJoins(rel);
       final Program program;
@@ -223,9 +244,7 @@ public static Program heuristicJoinOrder(
                 CoreRules.JOIN_ASSOCIATE,
                 JoinPushThroughJoinRule.LEFT,
                 JoinPushThroughJoinRule.RIGHT));
-        list.add(bushy
-            ? CoreRules.MULTI_JOIN_OPTIMIZE_BUSHY
-            : CoreRules.MULTI_JOIN_OPTIMIZE);
+        list.add(joinOrderRule);
         final Program program2 = ofRules(list);
 
         program = sequence(program1, program2);
@@ -295,17 +314,27 @@ public static Program standard(RelMetadataProvider metadataProvider,
             planner.addLattice(lattice);
           }
 
-          planner.setRoot(rel);
+          // Replace subtrees that were optimized for previous queries.
+          final SubPlanCache subPlanCache =
+              planner.getContext().unwrap(SubPlanCache.class);
+          final RelNode rel1 =
+              subPlanCache == null ? rel : subPlanCache.substitute(rel);
+
+          planner.setRoot(rel1);
           final RelNode rootRel2 =
-              rel.getTraitSet().equals(requiredOutputTraits)
-                  ? rel
-                  : planner.changeTraits(rel, requiredOutputTraits);
+              rel1.getTraitSet().equals(requiredOutputTraits)
+                  ? rel1
+                  : planner.changeTraits(rel1, requiredOutputTraits);
           requireNonNull(rootRel2, "rootRel2");
 
           planner.setRoot(rootRel2);
           final RelOptPlanner planner2 = planner.chooseDelegate();
           final RelNode rootRel3 = planner2.findBestExp();
-          return requireNonNull(rootRel3, "could not implement exp");
+          requireNonNull(rootRel3, "could not implement exp");
+          if (subPlanCache != null && planner2 instanceof VolcanoPlanner) {
+            subPlanCache.store(rel1, (VolcanoPlanner) planner2);
+          }
+          return rootRel3;
         };
 
     List<Program> programs =
@@ -26,6 +26,8 @@
 import org.apache.calcite.adapter.enumerable.SourceSorter;
 import org.apache.calcite.adapter.java.ReflectiveSchema;
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.apache.calcite.adapter.vector.VectorContext;
+import org.apache.calcite.adapter.vector.VectorRel;
 import org.apache.calcite.avatica.util.ByteString;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.avatica.util.TimeUnitRange;
@@ -80,22 +82,31 @@
 import org.apache.calcite.rel.metadata.BuiltInMetadata.UniqueKeys;
 import org.apache.calcite.rel.metadata.Metadata;
 import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.runtime.AdaptiveHashJoin;
 import org.apache.calcite.runtime.ArrayBindable;
 import org.apache.calcite.runtime.Automaton;
 import org.apache.calcite.runtime.BinarySearch;
 import org.apache.calcite.runtime.Bindable;
 import org.apache.calcite.runtime.CompressionFunctions;
 import org.apache.calcite.runtime.Enumerables;
+import org.apache.calcite.runtime.ExternalSort;
 import org.apache.calcite.runtime.FlatLists;
 import org.apache.calcite.runtime.FunctionContexts;
 import org.apache.calcite.runtime.JsonFunctions;
+import org.apache.calcite.runtime.LocalExchange;
 import org.apache.calcite.runtime.Matcher;
+import org.apache.calcite.runtime.MemoryTracker;
+import org.apache.calcite.runtime.OffHeapHashJoin;
+import org.apache.calcite.runtime.OffHeapHashTable;
 import org.apache.calcite.runtime.PairList;
 import org.apache.calcite.runtime.Pattern;
+import org.apache.calcite.runtime.PrimitiveHashAggregate;
 import org.apache.calcite.runtime.RandomFunction;
 import org.apache.calcite.runtime.ResultSetEnumerable;
+import org.apache.calcite.runtime.RuntimeFilter;
 import org.apache.calcite.runtime.SortedMultiMap;
 import org.apache.calcite.runtime.SpatialTypeFunctions;
+import org.apache.calcite.runtime.SpillableHashJoin;
 import org.apache.calcite.runtime.SqlFunctions;
 import org.apache.calcite.runtime.SqlFunctions.FlatProductInputType;
 import org.apache.calcite.runtime.UrlFunctions;
@@ -210,6 +221,44 @@ public enum BuiltInMethod {
       Function1.class,
       Function1.class, Function2.class, EqualityComparer.class,
       boolean.class, boolean.class, Predicate2.class),
+  SPILLABLE_HASH_JOIN(SpillableHashJoin.class, "hashJoin", DataContext.class,
+      Enumerable.class, Enumerable.class, Function1.class, Function1.class,
+      Function2.class, EqualityComparer.class, boolean.class, boolean.class,
+      Predicate2.class),
+  OFF_HEAP_HASH_JOIN(OffHeapHashJoin.class, "hashJoin", Enumerable.class,
+      Enumerable.class, Function1.class, Function1.class, Function2.class,
+      EqualityComparer.class, boolean.class, boolean.class, Predicate2.class),
+  ADAPTIVE_HASH_JOIN(AdaptiveHashJoin.class, "hashJoin", DataContext.class,
+      Enumerable.class, Enumerable.class, Function1.class, Function1.class,
+      Function2.class, EqualityComparer.class, boolean.class, boolean.class,
+      Predicate2.class, int.class, boolean.class),
+  RUNTIME_FILTER_PUBLISH(RuntimeFilter.class, "publish", DataContext.class,
+      String.class, Enumerable.class, Function1.class, int.class),
+  RUNTIME_FILTER_FILTER(RuntimeFilter.class, "filter", DataContext.class,
+      String.class, Enumerable.class, Function1.class),
+  RUNTIME_FILTER_SCAN_FILTERABLE(RuntimeFilter.class, "scan",
+      DataContext.class, FilterableTable.class, String[].class, int[].class),
+  RUNTIME_FILTER_SCAN_PROJECTABLE_FILTERABLE(RuntimeFilter.class, "scan",
+      DataContext.class, ProjectableFilterableTable.class, String[].class,
+      int[].class),
+  MEMORY_TRACK(MemoryTracker.class, "track", DataContext.class, String.class,
+      Enumerable.class),
+  MEMORY_RELEASE(MemoryTracker.class, "release", Enumerable.class,
+      Enumerable.class),
+  MEMORY_TRACK_OUTPUT(MemoryTracker.class, "trackOutput", DataContext.class,
+      String.class, Enumerable.class),
+  MEMORY_TRACK_GROUPS(MemoryTracker.class, "trackGroups", DataContext.class,
+      String.class),
+  GROUP_TRACKER_ADD(MemoryTracker.GroupTracker.class, "add", Object.class,
+      Object.class),
+  GROUP_TRACKER_KEY_SELECTOR(MemoryTracker.GroupTracker.class, "keySelector",
+      Function1.class),
+  GROUP_TRACKER_KEY_SELECTORS(MemoryTracker.GroupTracker.class,
+      "keySelectors", List.class),
+  GROUP_TRACKER_ACCUMULATOR_INITIALIZER(MemoryTracker.GroupTracker.class,
+      "accumulatorInitializer", Function0.class),
+  GROUP_TRACKER_RELEASE(MemoryTracker.GroupTracker.class, "release",
+      Enumerable.class),
   ASOF_JOIN(ExtendedEnumerable.class, "asofJoin", Enumerable.class,
       Function1.class,   // outer key selector
       Function1.class,   // inner key selector
@@ -236,6 +285,11 @@ public enum BuiltInMethod {
       Enumerable.class, Function1.class, Function1.class, Predicate2.class, Function2.class,
       JoinType.class, Comparator.class, EqualityComparer.class),
   SLICE0(Enumerables.class, "slice0", Enumerable.class),
+  ENUMERABLES_GROUPS(Enumerables.class, "groups", Map.class, Function2.class),
+  VECTOR_EXECUTE(VectorContext.class, "execute", DataContext.class,
+      VectorRel.class, Enumerable[].class),
+  LOCAL_EXCHANGE_GATHER(LocalExchange.class, "gather", DataContext.class,
+      Function1.class, int.class),
   SEMI_JOIN(EnumerableDefaults.class, "semiJoin", Enumerable.class,
       Enumerable.class, Function1.class, Function1.class,
       EqualityComparer.class, Predicate2.class),
@@ -264,16 +318,50 @@ public enum BuiltInMethod {
   GROUP_BY_MULTIPLE(EnumerableDefaults.class, "groupByMultiple",
       Enumerable.class, List.class, Function0.class, Function2.class,
       Function2.class),
+  PRIMITIVE_HASH_AGGREGATE(PrimitiveHashAggregate.class, "aggregate",
+      Enumerable.class, int.class, int.class,
+      PrimitiveHashAggregate.RowAdder.class, Function1.class),
+  PRIMITIVE_HASH_AGGREGATE_TRACKED(PrimitiveHashAggregate.class, "aggregate",
+      Enumerable.class, int.class, int.class,
+      PrimitiveHashAggregate.RowAdder.class, Function1.class,
+      MemoryTracker.GroupTracker.class),
+  PRIMITIVE_HASH_AGGREGATE_GROUP(PrimitiveHashAggregate.class, "group",
+      long.class, boolean.class),
+  PRIMITIVE_HASH_AGGREGATE_GROUP2(PrimitiveHashAggregate.class, "group",
+      long.class, boolean.class, long.class, boolean.class),
+  PRIMITIVE_HASH_AGGREGATE_ADD(PrimitiveHashAggregate.class, "add", int.class,
+      int.class, long.class),
+  PRIMITIVE_HASH_AGGREGATE_MIN(PrimitiveHashAggregate.class, "min", int.class,
+      int.class, long.class),
+  PRIMITIVE_HASH_AGGREGATE_MAX(PrimitiveHashAggregate.class, "max", int.class,
+      int.class, long.class),
+  PRIMITIVE_HASH_AGGREGATE_KEY(PrimitiveHashAggregate.class, "key", int.class),
+  PRIMITIVE_HASH_AGGREGATE_KEY_IS_NULL(PrimitiveHashAggregate.class,
+      "keyIsNull", int.class),
+  PRIMITIVE_HASH_AGGREGATE_VALUE(PrimitiveHashAggregate.class, "value",
+      int.class),
+  PRIMITIVE_HASH_AGGREGATE_HAS_VALUE(PrimitiveHashAggregate.class, "hasValue",
+      int.class),
   AGGREGATE(ExtendedEnumerable.class, "aggregate", Object.class,
       Function2.class, Function1.class),
   ORDER_BY(ExtendedEnumerable.class, "orderBy", Function1.class,
       Comparator.class),
   ORDER_BY_WITH_FETCH_AND_OFFSET(EnumerableDefaults.class, "orderBy", Enumerable.class,
       Function1.class, Comparator.class, int.class, int.class),
+  EXTERNAL_ORDER_BY(ExternalSort.class, "orderBy", DataContext.class,
+      Enumerable.class, Function1.class, Comparator.class),
+  EXTERNAL_ORDER_BY_WITH_FETCH_AND_OFFSET(ExternalSort.class, "orderBy",
+      DataContext.class, Enumerable.class, Function1.class, Comparator.class,
+      int.class, int.class),
   UNION(ExtendedEnumerable.class, "union", Enumerable.class),
   CONCAT(ExtendedEnumerable.class, "concat", Enumerable.class),
   REPEAT_UNION(EnumerableDefaults.class, "repeatUnion", Enumerable.class,
       Enumerable.class, int.class, boolean.class, EqualityComparer.class, Function0.class),
+  REPEAT_UNION_WITH_FILTER(EnumerableDefaults.class, "repeatUnion",
+      Enumerable.class, Enumerable.class, int.class, Function0.class,
+      Function0.class),
+  OFF_HEAP_DISTINCT_FILTER(OffHeapHashTable.class, "distinctFilter",
+      EqualityComparer.class),
   MERGE_UNION(EnumerableDefaults.class, "mergeUnion", List.class, Function1.class,
       Comparator.class, boolean.class, EqualityComparer.class),
   LAZY_COLLECTION_SPOOL(EnumerableDefaults.class, "lazyCollectionSpool", Collection.class,
@@ -0,0 +1,144 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.util;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * HyperLogLog sketch, which estimates the number of distinct values in a
+ * stream using a small, fixed amount of memory.
+ *
+ * <p>With precision {@code p}, the sketch has 2<sup>p</sup> one-byte
+ * registers, and the standard error of the estimate is about
+ * 1.04 / 2<sup>p/2</sup>; for example, 1.6% for the default precision of
+ * 12. Sketches with the same precision can be merged, for example to combine
+ * sketches built over partitions of a table.
+ *
+ * <p>Values are compared by {@link Object#equals(Object)}, via their hash
+ * codes; strings are hashed by content, so that long strings with equal
+ * {@link String#hashCode()} are still distinguished.
+ *
+ * <p>See Flajolet, Fusy, Gandouet, Meunier: "HyperLogLog: the analysis of a
+ * near-optimal cardinality estimation algorithm" (2007).
+ */
+public class HyperLogLog {
+  /** Default precision. */
+  public static final int DEFAULT_PRECISION = 12;
+
+  private static final HashFunction HASH = Hashing.murmur3_128();
+
+  private final int precision;
+  private final byte[] registers;
+
+  /** Creates a sketch with a given precision, between 4 and 18. */
+  public HyperLogLog(int precision) {
+    checkArgument(precision >= 4 && precision <= 18,
+        "precision must be between 4 and 18: %s", precision);
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  /** Creates a sketch with the default precision. */
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /** Adds a value; null values are ignored. */
+  public void add(@Nullable Object value) {
+    if (value == null) {
+      return;
+    }
+    final long hash;
+    if (value instanceof String) {
+      hash = HASH.hashString((String) value, StandardCharsets.UTF_8).asLong();
+    } else {
+      hash = HASH.hashInt(value.hashCode()).asLong();
+    }
+    addHash(hash);
+  }
+
+  /** Adds a value that has already been hashed to 64 bits. */
+  public void addHash(long hash) {
+    final int index = (int) (hash >>> (Long.SIZE - precision));
+    final long w = hash << precision;
+    final int rank =
+        Math.min(Long.numberOfLeadingZeros(w), Long.SIZE - precision) + 1;
+    if (rank > registers[index]) {
+      registers[index] = (byte) rank;
+    }
+  }
+
+  /** Adds the values seen by another sketch, which must have the same
+   * precision, to this sketch. */
+  public void merge(HyperLogLog other) {
+    checkArgument(other.precision == precision,
+        "cannot merge sketches of different precision");
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) {
+        registers[i] = other.registers[i];
+      }
+    }
+  }
+
+  /** Returns the estimated number of distinct values added. */
+  public double estimate() {
+    final int m = registers.length;
+    double sum = 0;
+    int zeroCount = 0;
+    for (byte register : registers) {
+      sum += 1d / (1L << register);
+      if (register == 0) {
+        ++zeroCount;
+      }
+    }
+    final double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5d * m && zeroCount > 0) {
+      // Small range correction: use linear counting.
+      return m * Math.log((double) m / zeroCount);
+    }
+    return estimate;
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+    case 16:
+      return 0.673d;
+    case 32:
+      return 0.697d;
+    case 64:
+      return 0.709d;
+    default:
+      return 0.7213d / (1d + 1.079d / m);
+    }
+  }
+
+  @Override public String toString() {
+    return "HyperLogLog(precision=" + precision + ", estimate=" + estimate()
+        + ")";
+  }
+}
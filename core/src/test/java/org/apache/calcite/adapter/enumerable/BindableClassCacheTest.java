@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.enumerable;
+
+import org.apache.calcite.DataContexts;
+import org.apache.calcite.runtime.Bindable;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.ISimpleCompiler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tests for {@link BindableClassCache} and the on-disk caching of compiled
+ * classes in {@link EnumerableInterpretable}.
+ */
+class BindableClassCacheTest {
+  /** Source of a Bindable that uses an anonymous inner class, so that
+   * compiling it produces more than one class. */
+  private static final String SOURCE = "public final class Baz\n"
+      + "    implements org.apache.calcite.runtime.ArrayBindable {\n"
+      + "  public org.apache.calcite.linq4j.Enumerable bind(\n"
+      + "      org.apache.calcite.DataContext root) {\n"
+      + "    final java.util.function.IntFunction f =\n"
+      + "        new java.util.function.IntFunction() {\n"
+      + "          public Object apply(int i) {\n"
+      + "            return new Object[] {i * 10};\n"
+      + "          }\n"
+      + "        };\n"
+      + "    return org.apache.calcite.linq4j.Linq4j.asEnumerable(\n"
+      + "        java.util.Arrays.asList(f.apply(1), f.apply(2)));\n"
+      + "  }\n"
+      + "  public Class getElementType() {\n"
+      + "    return Object[].class;\n"
+      + "  }\n"
+      + "}\n";
+
+  @TempDir Path directory;
+
+  @Test void testCompileThenLoad() throws Exception {
+    final BindableClassCache cache = new BindableClassCache(directory);
+    final BindableCacheStatistics statistics = new BindableCacheStatistics();
+
+    final Bindable<?> bindable1 =
+        EnumerableInterpretable.compileToBindable("Baz", SOURCE, compiler(),
+            cache, statistics);
+    assertThat(rows(bindable1), is(Arrays.asList(10, 20)));
+    assertThat(statistics.compileCount(), is(1L));
+    assertThat(statistics.diskHitCount(), is(0L));
+
+    final Map<String, byte[]> classes =
+        cache.load(BindableClassCache.key(SOURCE));
+    assertThat(classes, notNullValue());
+    assertThat(requireNonNull(classes).keySet(), hasItems("Baz", "Baz$1"));
+
+    // A second "process" finds the classes on disk and does not compile.
+    final Bindable<?> bindable2 =
+        EnumerableInterpretable.compileToBindable("Baz", SOURCE, compiler(),
+            cache, statistics);
+    assertThat(rows(bindable2), is(Arrays.asList(10, 20)));
+    assertThat(statistics.compileCount(), is(1L));
+    assertThat(statistics.diskHitCount(), is(1L));
+    assertThat(statistics.hitRate(), is(0.5D));
+  }
+
+  /** Tests that a corrupt entry is discarded, and the code is compiled and
+   * stored again. */
+  @Test void testCorruptEntry() throws Exception {
+    final BindableClassCache cache = new BindableClassCache(directory);
+    final BindableCacheStatistics statistics = new BindableCacheStatistics();
+    final String key = BindableClassCache.key(SOURCE);
+    Files.write(directory.resolve(key + ".classes"), new byte[] {1, 2, 3});
+
+    final Bindable<?> bindable =
+        EnumerableInterpretable.compileToBindable("Baz", SOURCE, compiler(),
+            cache, statistics);
+    assertThat(rows(bindable), is(Arrays.asList(10, 20)));
+    assertThat(statistics.diskErrorCount(), is(1L));
+    assertThat(statistics.compileCount(), is(1L));
+    assertThat(cache.load(key), notNullValue());
+  }
+
+  /** Tests compiling using javac; the classes are stored in the on-disk
+   * cache under a key that differs from the one Janino would use. */
+  @Test void testCompileWithJavac() throws Exception {
+    assumeTrue(JavacClassCompiler.isAvailable(), "requires a JDK");
+    final BindableClassCache cache = new BindableClassCache(directory);
+    final BindableCacheStatistics statistics = new BindableCacheStatistics();
+
+    final Bindable<?> bindable =
+        EnumerableInterpretable.compileToBindable("Baz", SOURCE,
+            BindableCompiler.JAVAC, compiler(), cache, statistics);
+    assertThat(rows(bindable), is(Arrays.asList(10, 20)));
+    assertThat(statistics.compileCount(), is(1L));
+    assertThat(statistics.javacCompileCount(), is(1L));
+    assertThat(statistics.javacFallbackCount(), is(0L));
+
+    final Map<String, byte[]> classes =
+        cache.load(BindableClassCache.key(BindableCompiler.JAVAC, SOURCE));
+    assertThat(requireNonNull(classes).keySet(), hasItems("Baz", "Baz$1"));
+    assertThat(cache.load(BindableClassCache.key(SOURCE)), nullValue());
+
+    // Janino does not pick up the classes compiled by javac.
+    EnumerableInterpretable.compileToBindable("Baz", SOURCE, compiler(),
+        cache, statistics);
+    assertThat(statistics.compileCount(), is(2L));
+    assertThat(statistics.diskHitCount(), is(0L));
+  }
+
+  /** Tests that the key depends on the source code and on the compiler. */
+  @Test void testKey() {
+    assertThat(BindableClassCache.key(SOURCE),
+        is(BindableClassCache.key(SOURCE)));
+    assertThat(BindableClassCache.key(SOURCE).equals(BindableClassCache.key(SOURCE + " ")),
+        is(false));
+    assertThat(BindableClassCache.key(SOURCE),
+        is(BindableClassCache.key(BindableCompiler.JANINO, SOURCE)));
+    assertThat(
+        BindableClassCache.key(SOURCE)
+            .equals(BindableClassCache.key(BindableCompiler.JAVAC, SOURCE)),
+        is(false));
+  }
+
+  private static ISimpleCompiler compiler() throws Exception {
+    final ClassLoader classLoader =
+        requireNonNull(EnumerableInterpretable.class.getClassLoader());
+    final ISimpleCompiler compiler =
+        CompilerFactoryFactory.getDefaultCompilerFactory(classLoader)
+            .newSimpleCompiler();
+    compiler.setParentClassLoader(classLoader);
+    return compiler;
+  }
+
+  private static List<Object> rows(Bindable<?> bindable) {
+    return EnumerableInterpretable.box(bindable)
+        .bind(DataContexts.EMPTY)
+        .select(row -> requireNonNull(row[0]))
+        .toList();
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.adapter.vector;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.linq4j.tree.Primitive;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/** Tests for {@link VectorConvention}. */
+class VectorConventionTest {
+  /** Tests converting rows to batches and back. */
+  @Test void testBatchRoundTrip() {
+    final List<@Nullable Primitive> primitives =
+        Arrays.asList(Primitive.INT, null, Primitive.DOUBLE, Primitive.BOOLEAN);
+    final List<@Nullable Object[]> rows = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      rows.add(
+          new Object[] {i, i % 3 == 0 ? null : "s" + i,
+              i % 7 == 0 ? null : i / 2d, i % 2 == 0});
+    }
+    final Enumerable<VectorBatch> batches =
+        VectorBatch.fromRows(Linq4j.asEnumerable(rows), primitives);
+    final List<Integer> sizes = new ArrayList<>();
+    for (VectorBatch batch : batches) {
+      sizes.add(batch.size());
+    }
+    assertThat(sizes, is(Arrays.asList(1024, 1024, 452)));
+
+    final List<@Nullable Object[]> rows2 = VectorBatch.toRows(batches).toList();
+    assertThat(rows2.size(), is(rows.size()));
+    for (int i = 0; i < rows.size(); i++) {
+      assertThat(Arrays.asList(rows2.get(i)), is(Arrays.asList(rows.get(i))));
+    }
+  }
+
+  /** Tests that a filter keeps only the rows for which the condition is
+   * true, rather than false or unknown. */
+  @Test void testBatchFilter() {
+    final List<@Nullable Primitive> primitives =
+        Arrays.asList(Primitive.INT, Primitive.BOOLEAN);
+    final List<@Nullable Object[]> rows =
+        Arrays.asList(new Object[] {1, true}, new Object[] {2, null},
+            new Object[] {3, false}, new Object[] {4, true});
+    final VectorBatch batch =
+        VectorBatch.fromRows(Linq4j.asEnumerable(rows), primitives).first();
+    final VectorBatch filtered = batch.filter(batch.column(1));
+    assertThat(filtered.size(), is(2));
+    assertThat(filtered.column(0).getObject(0), is(1));
+    assertThat(filtered.column(0).getObject(1), is(4));
+  }
+
+  @Test void testFilterProject() {
+    tester()
+        .query("select empid, salary * 2 as s from emps\n"
+            + "where deptno = 10 and commission is not null")
+        .planContains("VectorContext.execute(")
+        .returnsUnordered("empid=100; s=20000.0",
+            "empid=110; s=23000.0");
+  }
+
+  @Test void testAggregate() {
+    tester()
+        .query("select deptno, count(*) as c, sum(empid) as s,\n"
+            + "  min(salary) as mi, max(commission) as ma\n"
+            + "from emps group by deptno")
+        .planContains("VectorContext.execute(")
+        .returnsUnordered("deptno=10; c=3; s=360; mi=7000.0; ma=1000",
+            "deptno=20; c=1; s=200; mi=8000.0; ma=500");
+  }
+
+  @Test void testAggregateWithoutGroupBy() {
+    tester()
+        .query("select count(*) as c, sum(empid) as s from emps\n"
+            + "where deptno > 100")
+        .returnsUnordered("c=0; s=null");
+  }
+
+  @Test void testJoin() {
+    tester()
+        .query("select e.name, d.name as dname\n"
+            + "from emps as e\n"
+            + "join depts as d on e.deptno = d.deptno")
+        .planContains("VectorContext.execute(")
+        .returnsUnordered("name=Bill; dname=Sales",
+            "name=Sebastian; dname=Sales",
+            "name=Theodore; dname=Sales");
+  }
+
+  @Test void testLeftJoin() {
+    tester()
+        .query("select e.name, d.name as dname\n"
+            + "from emps as e\n"
+            + "left join depts as d on e.deptno = d.deptno")
+        .returnsUnordered("name=Bill; dname=Sales",
+            "name=Eric; dname=null",
+            "name=Sebastian; dname=Sales",
+            "name=Theodore; dname=Sales");
+  }
+
+  /** Tests a join whose key has columns of each kind of storage: an
+   * {@code int}, a {@code String}, a {@code float}, and a nullable
+   * {@code Integer}. A row whose key has a null column matches no row. */
+  @Test void testJoinCompositeKey() {
+    tester()
+        .query("select e.empid, e2.empid as empid2\n"
+            + "from emps as e\n"
+            + "join emps as e2 on e.deptno = e2.deptno\n"
+            + "and e.name = e2.name and e.salary = e2.salary\n"
+            + "and e.commission = e2.commission")
+        .planContains("VectorContext.execute(")
+        .returnsUnordered("empid=100; empid2=100",
+            "empid=110; empid2=110",
+            "empid=200; empid2=200");
+  }
+
+  private static CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.VECTORIZE, true)
+        .withSchema("s", new ReflectiveSchema(new HrSchema()));
+  }
+}
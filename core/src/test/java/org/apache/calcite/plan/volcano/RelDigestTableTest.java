@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.plan.volcano;
+
+import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.rel.RelNode;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.calcite.plan.volcano.PlannerTests.NoneLeafRel;
+import static org.apache.calcite.plan.volcano.PlannerTests.newCluster;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Unit test for {@link RelDigestTable}.
+ */
+class RelDigestTableTest {
+  /** Tests that expressions can be found by digest after the table has
+   * grown, and after other expressions have been removed. */
+  @Test void testPutGetRemove() {
+    final RelOptCluster cluster = newCluster(new VolcanoPlanner());
+    final RelDigestTable table = new RelDigestTable();
+    final List<RelNode> rels = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      final RelNode rel = new NoneLeafRel(cluster, "r" + i);
+      rels.add(rel);
+      assertThat(table.putIfAbsent(rel), nullValue());
+    }
+    assertThat(table.size(), is(500));
+
+    // An expression with the same digest as a registered expression finds
+    // the registered expression.
+    final RelNode duplicate = new NoneLeafRel(cluster, "r7");
+    assertThat(table.putIfAbsent(duplicate), sameInstance(rels.get(7)));
+    assertThat(table.get(duplicate.getRelDigest()),
+        sameInstance(rels.get(7)));
+    assertThat(table.size(), is(500));
+
+    for (int i = 0; i < 500; i += 3) {
+      assertThat(table.remove(rels.get(i).getRelDigest()),
+          sameInstance(rels.get(i)));
+    }
+    assertThat(table.size(), is(333));
+    for (int i = 0; i < 500; i++) {
+      final RelNode rel = table.get(rels.get(i).getRelDigest());
+      if (i % 3 == 0) {
+        assertThat(rel, nullValue());
+      } else {
+        assertThat(rel, sameInstance(rels.get(i)));
+      }
+    }
+    assertThat(table.remove(rels.get(0).getRelDigest()), nullValue());
+
+    table.clear();
+    assertThat(table.size(), is(0));
+    assertThat(table.get(rels.get(1).getRelDigest()), nullValue());
+  }
+}
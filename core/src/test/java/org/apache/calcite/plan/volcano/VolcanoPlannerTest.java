@@ -22,6 +22,7 @@
 import org.apache.calcite.plan.Convention;
 import org.apache.calcite.plan.ConventionTraitDef;
 import org.apache.calcite.plan.RelOptCluster;
+import org.apache.calcite.plan.RelOptCost;
 import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptRule;
 import org.apache.calcite.plan.RelOptRuleCall;
@@ -37,6 +38,7 @@
 import org.apache.calcite.rel.core.RelFactories;
 import org.apache.calcite.rel.externalize.RelDotWriter;
 import org.apache.calcite.rel.logical.LogicalProject;
+import org.apache.calcite.rel.metadata.RelMetadataQuery;
 import org.apache.calcite.rel.rules.CoreRules;
 import org.apache.calcite.sql.SqlExplainLevel;
 import org.apache.calcite.tools.RelBuilder;
@@ -54,6 +56,11 @@
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.apache.calcite.plan.volcano.PlannerTests.AssertOperandsDifferentRule;
 import static org.apache.calcite.plan.volcano.PlannerTests.GoodSingleRule;
@@ -77,12 +84,17 @@
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import static java.util.Objects.requireNonNull;
+
 /**
  * Unit test for {@link VolcanoPlanner the optimizer}.
  */
@@ -596,6 +608,169 @@ private void removeTrivialProject(boolean useRule) {
         isLinux(plan));
   }
 
+  /** Tests that a planner that fires rules on several threads finds a plan
+   * as cheap as a planner that fires them on one thread, and finds the same
+   * plan each time. */
+  @Test void testParallelism() {
+    final Pair<String, RelOptCost> serial = planJoins(p -> { });
+    final Pair<String, RelOptCost> parallel =
+        planJoins(p -> p.setParallelism(4));
+    assertThat(parallel.right.toString(), is(serial.right.toString()));
+    for (int i = 0; i < 3; i++) {
+      final Pair<String, RelOptCost> again =
+          planJoins(p -> p.setParallelism(4));
+      assertThat(again.left, is(parallel.left));
+      assertThat(again.right.toString(), is(parallel.right.toString()));
+    }
+  }
+
+  /** Tests that the metadata query of a thread other than the planner's is
+   * retained after per-thread queries are disabled, so that its cached values
+   * are reused, and that {@link RelOptCluster#clearMetadataCache(RelNode)}
+   * removes values from it. */
+  @Test void testMetadataQueryPerThreadRetained() throws Exception {
+    final VolcanoPlanner planner = new VolcanoPlanner();
+    final RelOptCluster cluster = newCluster(planner);
+    final RelBuilder relBuilder =
+        RelFactories.LOGICAL_BUILDER.create(cluster, null);
+    final RelNode rel = relBuilder
+        .values(new String[]{"a"}, 1, 2, 3)
+        .filter(
+            relBuilder.equals(relBuilder.field("a"), relBuilder.literal(2)))
+        .build();
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final Callable<Double> rowCount = () ->
+          cluster.getMetadataQuery().getRowCount(rel);
+      cluster.setMetadataQueryPerThread(true);
+      final Double rowCount0 = executor.submit(rowCount).get();
+      cluster.setMetadataQueryPerThread(false);
+      final long computeCount = cluster.getMetadataComputeCount();
+      assertThat(computeCount, greaterThan(0L));
+
+      // The same thread finds the value in its cache.
+      cluster.setMetadataQueryPerThread(true);
+      assertThat(executor.submit(rowCount).get(), is(rowCount0));
+      cluster.setMetadataQueryPerThread(false);
+      assertThat(cluster.getMetadataComputeCount(), is(computeCount));
+
+      // After the value is cleared, the thread computes it again.
+      assertThat(cluster.clearMetadataCache(rel), is(true));
+      cluster.setMetadataQueryPerThread(true);
+      assertThat(executor.submit(rowCount).get(), is(rowCount0));
+      cluster.setMetadataQueryPerThread(false);
+      assertThat(cluster.getMetadataComputeCount(), greaterThan(computeCount));
+    } finally {
+      executor.shutdown();
+    }
+
+    // A new thread reuses the query that the previous thread used.
+    final long computeCount = cluster.getMetadataComputeCount();
+    final ExecutorService executor2 = Executors.newSingleThreadExecutor();
+    try {
+      cluster.setMetadataQueryPerThread(true);
+      executor2.submit(() -> cluster.getMetadataQuery().getRowCount(rel))
+          .get();
+      cluster.setMetadataQueryPerThread(false);
+      assertThat(cluster.getMetadataComputeCount(), is(computeCount));
+    } finally {
+      executor2.shutdown();
+    }
+  }
+
+  /** Tests that adding a relational expression to a set removes the cached
+   * metadata of the set's subsets and of the subsets that use them, and
+   * increments their metadata timestamps, but leaves other sets alone. */
+  @Test void testMembershipChangeClearsMetadata() {
+    final VolcanoPlanner planner = new VolcanoPlanner();
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    final RelOptCluster cluster = newCluster(planner);
+
+    final NoneLeafRel leafRel = new NoneLeafRel(cluster, "a");
+    final NoneSingleRel singleRel = new NoneSingleRel(cluster, leafRel);
+    planner.setRoot(singleRel);
+    final RelSubset leafSubset = planner.ensureRegistered(leafRel, null);
+    final RelSubset rootSubset = planner.ensureRegistered(singleRel, null);
+    final RelSubset otherSubset =
+        planner.ensureRegistered(new NoneLeafRel(cluster, "b"), null);
+
+    final RelMetadataQuery mq = cluster.getMetadataQuery();
+    mq.getRowCount(rootSubset);
+    mq.getRowCount(otherSubset);
+    final long leafTimestamp = leafSubset.getMetadataTimestamp();
+    final long rootTimestamp = rootSubset.getMetadataTimestamp();
+    final long otherTimestamp = otherSubset.getMetadataTimestamp();
+
+    planner.ensureRegistered(new NoneLeafRel(cluster, "c"), leafRel);
+    assertThat(leafSubset.getMetadataTimestamp(), greaterThan(leafTimestamp));
+    assertThat(rootSubset.getMetadataTimestamp(), greaterThan(rootTimestamp));
+    assertThat(otherSubset.getMetadataTimestamp(), is(otherTimestamp));
+    assertThat(cluster.clearMetadataCache(leafSubset), is(false));
+    assertThat(cluster.clearMetadataCache(rootSubset), is(false));
+    assertThat(cluster.clearMetadataCache(otherSubset), is(true));
+  }
+
+  /** Tests that a planner that runs out of budget returns the cheapest
+   * complete plan that it has found so far, and tells its listener. */
+  @Test void testBudget() {
+    final Pair<String, RelOptCost> unlimited = planJoins(p -> { });
+    final TestListener listener = new TestListener();
+    final Pair<String, RelOptCost> budgeted =
+        planJoins(p -> {
+          p.setBudget(0, 1, 0);
+          p.addListener(listener);
+        });
+    final List<RelOptListener.BudgetExhaustedEvent> events =
+        listener.getEventList().stream()
+            .filter(e -> e instanceof RelOptListener.BudgetExhaustedEvent)
+            .map(e -> (RelOptListener.BudgetExhaustedEvent) e)
+            .collect(Collectors.toList());
+    assertThat(events, hasSize(1));
+    assertThat(events.get(0).getRuleFireCount(), greaterThanOrEqualTo(1L));
+    assertThat(unlimited.right.isLe(budgeted.right), is(true));
+  }
+
+  /** Plans a join of four Values, and returns the plan and its cost. */
+  private static Pair<String, RelOptCost> planJoins(
+      Consumer<VolcanoPlanner> configure) {
+    VolcanoPlanner planner = new VolcanoPlanner();
+    configure.accept(planner);
+    planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
+    planner.addRule(CoreRules.JOIN_COMMUTE);
+    planner.addRule(CoreRules.JOIN_ASSOCIATE);
+    planner.addRule(EnumerableRules.ENUMERABLE_JOIN_RULE);
+    planner.addRule(EnumerableRules.ENUMERABLE_PROJECT_RULE);
+    planner.addRule(EnumerableRules.ENUMERABLE_VALUES_RULE);
+
+    RelOptCluster cluster = newCluster(planner);
+    RelBuilder relBuilder = RelFactories.LOGICAL_BUILDER.create(cluster, null);
+    RelNode logicalPlan = relBuilder
+        .values(new String[]{"a"}, 1, 2, 3, 4, 5, 6, 7, 8)
+        .values(new String[]{"b"}, 1, 2)
+        .join(JoinRelType.INNER,
+            relBuilder.equals(relBuilder.field(2, 0, "a"),
+                relBuilder.field(2, 1, "b")))
+        .values(new String[]{"c"}, 1, 2, 3, 4)
+        .join(JoinRelType.INNER,
+            relBuilder.equals(relBuilder.field(2, 0, "b"),
+                relBuilder.field(2, 1, "c")))
+        .values(new String[]{"d"}, 1, 2, 3, 4, 5, 6)
+        .join(JoinRelType.INNER,
+            relBuilder.equals(relBuilder.field(2, 0, "c"),
+                relBuilder.field(2, 1, "d")))
+        .build();
+
+    RelTraitSet desiredTraits =
+        cluster.traitSet().replace(EnumerableConvention.INSTANCE);
+    final RelNode newRoot = planner.changeTraits(logicalPlan, desiredTraits);
+    planner.setRoot(newRoot);
+
+    RelNode bestExp = planner.findBestExp();
+    final RelOptCost cost =
+        requireNonNull(planner.getCost(bestExp, cluster.getMetadataQuery()));
+    return Pair.of(RelOptUtil.toString(bestExp), cost);
+  }
+
   @Test void testPruneNode() {
     VolcanoPlanner planner = new VolcanoPlanner();
     planner.addRelTraitDef(ConventionTraitDef.INSTANCE);
@@ -1183,6 +1358,10 @@ public void ruleAttempted(RuleAttemptedEvent event) {
     public void ruleProductionSucceeded(RuleProductionEvent event) {
       recordEvent(event);
     }
+
+    @Override public void budgetExhausted(BudgetExhaustedEvent event) {
+      recordEvent(event);
+    }
   }
 
   /** Rule that converts a physical RelNode to an iterator. */
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteConnection;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.util.TestUtil;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Utilities for {@link PlanCacheTest} and {@link SubPlanCacheTest}.
+ */
+final class CacheTestUtil {
+  private CacheTestUtil() {
+  }
+
+  /** Runs some statements on a connection to the "hr" schema, with a given
+   * size for a cache. */
+  static void withConnection(CalciteConnectionProperty cacheSizeProperty,
+      int cacheSize, ConnectionConsumer consumer) {
+    try {
+      CalciteAssert.hr()
+          .with(Lex.JAVA)
+          .with(cacheSizeProperty, cacheSize)
+          .doWithConnection(connection -> {
+            try {
+              consumer.accept(connection);
+            } catch (SQLException e) {
+              throw TestUtil.rethrow(e);
+            }
+          });
+    } catch (Exception e) {
+      throw TestUtil.rethrow(e);
+    }
+  }
+
+  /** Executes a query and returns its rows as a string. */
+  static String query(CalciteConnection connection, String sql)
+      throws SQLException {
+    try (Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      return CalciteAssert.toString(resultSet);
+    }
+  }
+
+  /** Callback that uses a connection. */
+  @FunctionalInterface
+  interface ConnectionConsumer {
+    void accept(CalciteConnection connection) throws SQLException;
+  }
+
+  /** Table with a single INTEGER column. */
+  static class NumbersTable extends AbstractTable implements ScannableTable {
+    private final int[] values;
+
+    NumbersTable(int... values) {
+      this.values = values;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("x", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root) {
+      final List<@Nullable Object[]> rows = new ArrayList<>();
+      for (int value : values) {
+        rows.add(new Object[] {value});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
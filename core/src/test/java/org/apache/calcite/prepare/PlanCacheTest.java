@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.prepare.CacheTestUtil.ConnectionConsumer;
+import org.apache.calcite.prepare.CacheTestUtil.NumbersTable;
+import org.apache.calcite.runtime.Hook;
+
+import org.junit.jupiter.api.Test;
+
+import static org.apache.calcite.prepare.CacheTestUtil.query;
+import static org.apache.calcite.prepare.CacheTestUtil.withConnection;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link PlanCache}.
+ */
+class PlanCacheTest {
+  /** Tests that queries that differ only in their literals share a plan. */
+  @Test void testLiterals() {
+    check(10, connection -> {
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 100"),
+          is("name=Bill\n"));
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 150"),
+          is("name=Sebastian\n"));
+      assertThat(query(connection,
+              "select name from hr.emps\n"
+                  + "where deptno in (10, 20) and empid between 140 and 300\n"
+                  + "and name like 'E%'"),
+          is("name=Eric\n"));
+      assertThat(query(connection,
+              "select name from hr.emps\n"
+                  + "where deptno in (10, 30) and empid between 100 and 120\n"
+                  + "and name like 'T%'"),
+          is("name=Theodore\n"));
+    }, 2);
+  }
+
+  /** Tests that a literal that does not fit the type of the parameter that
+   * replaced it in a cached plan is not converted. */
+  @Test void testLiteralDoesNotFit() {
+    check(10, connection -> {
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 100"),
+          is("name=Bill\n"));
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 100.5"),
+          is(""));
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 200.0"),
+          is("name=Eric\n"));
+      assertThat(query(connection,
+              "select empid + 1 as e from hr.emps where empid = 100"),
+          is("e=101\n"));
+      // With a parameter, the type of "empid + 3000000000" would be INTEGER,
+      // not BIGINT.
+      assertThat(query(connection,
+              "select empid + 3000000000 as e from hr.emps where empid = 100"),
+          is("e=3000000100\n"));
+    }, 4);
+  }
+
+  /** Tests that an entry is discarded when a table that it uses is
+   * replaced. */
+  @Test void testTableReplaced() {
+    check(10, connection -> {
+      connection.getRootSchema().add("t", new NumbersTable(1, 2, 3));
+      assertThat(query(connection, "select x from t where x > 1"),
+          is("x=2\nx=3\n"));
+      connection.getRootSchema().add("t", new NumbersTable(4, 5));
+      assertThat(query(connection, "select x from t where x > 4"),
+          is("x=5\n"));
+    }, 2);
+  }
+
+  /** Tests that plans are not cached by default. */
+  @Test void testDisabled() {
+    check(0, connection -> {
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 100"),
+          is("name=Bill\n"));
+      assertThat(query(connection,
+              "select name from hr.emps where empid = 150"),
+          is("name=Sebastian\n"));
+    }, 2);
+  }
+
+  /** Tests that the least recently used entry is evicted. */
+  @Test void testEviction() {
+    check(1, connection -> {
+      query(connection, "select name from hr.emps where empid = 100");
+      query(connection, "select name from hr.depts where deptno = 10");
+      query(connection, "select name from hr.emps where empid = 150");
+    }, 3);
+  }
+
+  /** Runs some statements on a connection with a given plan cache size, and
+   * checks how many of them were prepared. */
+  private static void check(int planCacheSize,
+      ConnectionConsumer consumer, int expectedPrepareCount) {
+    final int[] prepareCount = {0};
+    try (Hook.Closeable ignored =
+             Hook.PARSE_TREE.addThread(args -> {
+               ++prepareCount[0];
+             })) {
+      withConnection(CalciteConnectionProperty.PLAN_CACHE_SIZE, planCacheSize,
+          consumer);
+    }
+    assertThat(prepareCount[0], is(expectedPrepareCount));
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.prepare;
+
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.prepare.CacheTestUtil.ConnectionConsumer;
+import org.apache.calcite.prepare.CacheTestUtil.NumbersTable;
+
+import org.junit.jupiter.api.Test;
+
+import static org.apache.calcite.prepare.CacheTestUtil.query;
+import static org.apache.calcite.prepare.CacheTestUtil.withConnection;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Tests for {@link SubPlanCache}.
+ */
+class SubPlanCacheTest {
+  private static final String JOIN_AGGREGATE = "select d.name, count(*) as c\n"
+      + "from hr.emps as e\n"
+      + "join hr.depts as d on e.deptno = d.deptno\n"
+      + "group by d.name";
+
+  /** Tests that a query that contains the join of a previous query uses the
+   * plan that was optimized for that query. */
+  @Test void testJoinReused() {
+    check(10, connection -> {
+      assertThat(query(connection, JOIN_AGGREGATE),
+          is("name=Sales; c=3\n"));
+      final String sql = JOIN_AGGREGATE + "\nhaving count(*) > 1";
+      assertThat(query(connection, "explain plan for " + sql),
+          containsString("CachedSubPlan"));
+      assertThat(query(connection, sql), is("name=Sales; c=3\n"));
+    });
+  }
+
+  /** Tests that two cached sub-plans that have the same row type, row count
+   * and cost, but compute different rows, are not treated as equivalent. */
+  @Test void testDifferentPlansWithSameCost() {
+    check(10, connection -> {
+      final String sql1 = "select e.name from hr.emps as e\n"
+          + "join hr.depts as d on e.deptno = d.deptno\n"
+          + "where e.empid = 100";
+      final String sql2 = "select e.name from hr.emps as e\n"
+          + "join hr.depts as d on e.deptno = d.deptno\n"
+          + "where e.empid = 110";
+      assertThat(query(connection, sql1), is("name=Bill\n"));
+      assertThat(query(connection, sql2), is("name=Theodore\n"));
+      final String sql = sql1 + "\nunion all\n" + sql2;
+      final String plan = query(connection, "explain plan for " + sql);
+      assertThat(plan, containsString("CachedSubPlan(plan=[Enumerable"));
+      assertThat(plan, containsString("100"));
+      assertThat(plan, containsString("110"));
+      final String rows = query(connection, sql);
+      assertThat(rows, containsString("name=Bill\n"));
+      assertThat(rows, containsString("name=Theodore\n"));
+    });
+  }
+
+  /** Tests that a query without a join does not use a cached plan. */
+  @Test void testNoJoin() {
+    check(10, connection -> {
+      final String sql = "select deptno, count(*) as c from hr.emps\n"
+          + "group by deptno";
+      query(connection, sql);
+      assertThat(query(connection, "explain plan for " + sql),
+          not(containsString("CachedSubPlan")));
+    });
+  }
+
+  /** Tests that a cached sub-plan is not used after a table that it reads
+   * has been replaced. */
+  @Test void testTableReplaced() {
+    check(10, connection -> {
+      connection.getRootSchema().add("t", new NumbersTable(1, 2, 3));
+      final String join = "select a.x from t as a\n"
+          + "join t as b on a.x = b.x\n";
+      assertThat(query(connection, join + "where a.x > 2"), is("x=3\n"));
+      final String sql = join + "where a.x > 4";
+      assertThat(query(connection, "explain plan for " + sql),
+          containsString("CachedSubPlan"));
+
+      connection.getRootSchema().add("t", new NumbersTable(4, 5));
+      assertThat(query(connection, "explain plan for " + sql),
+          not(containsString("CachedSubPlan")));
+      assertThat(query(connection, sql), is("x=5\n"));
+    });
+  }
+
+  /** Tests that sub-plans are not cached by default. */
+  @Test void testDisabled() {
+    check(0, connection -> {
+      query(connection, JOIN_AGGREGATE);
+      assertThat(query(connection, "explain plan for " + JOIN_AGGREGATE),
+          not(containsString("CachedSubPlan")));
+    });
+  }
+
+  /** Runs some statements on a connection with a given sub-plan cache
+   * size. */
+  private static void check(int subPlanCacheSize,
+      ConnectionConsumer consumer) {
+    withConnection(CalciteConnectionProperty.SUB_PLAN_CACHE_SIZE,
+        subPlanCacheSize, consumer);
+  }
+}
@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.ColumnStatistic;
+import org.apache.calcite.schema.Histogram;
+import org.apache.calcite.schema.SchemaPlus;
+import org.apache.calcite.schema.Statistic;
+import org.apache.calcite.schema.Statistics;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.RelBuilder;
+import org.apache.calcite.util.HyperLogLog;
+import org.apache.calcite.util.ImmutableBitSet;
+
+import com.google.common.collect.ImmutableList;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tests for {@link ColumnStatistic}, {@link Histogram} and
+ * {@link HyperLogLog}, and their use in estimating selectivity and the
+ * number of distinct values.
+ */
+class ColumnStatisticTest {
+  /** Table with 1,000 rows. Column A has values 0 to 999; column B has 9
+   * distinct values and 10% nulls. */
+  private static final Statistic STATISTIC = statistic();
+
+  private static Statistic statistic() {
+    final List<Integer> a = new ArrayList<>();
+    final List<@Nullable String> b = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      a.add(i);
+      b.add(i % 10 == 9 ? null : "b" + i % 9);
+    }
+    return Statistics.of(1000d, null, null, null,
+        ImmutableList.of(Statistics.column(a, 10),
+            Statistics.column(b, 10)));
+  }
+
+  @Test void testHistogram() {
+    final Histogram histogram = Histogram.of(ImmutableList.of(0, 10, 10, 40));
+    assertThat(histogram.getBucketCount(), is(3));
+    assertThat(fractionBelow(histogram, -1, true), is(0d));
+    assertThat(fractionBelow(histogram, 5, false), closeTo(1d / 6d, 1e-9));
+    // 10 is the bound of two buckets, so it is a frequent value
+    assertThat(fractionBelow(histogram, 10, false), closeTo(1d / 3d, 1e-9));
+    assertThat(fractionBelow(histogram, 10, true), closeTo(2d / 3d, 1e-9));
+    assertThat(fractionBelow(histogram, 25, true), closeTo(5d / 6d, 1e-9));
+    assertThat(fractionBelow(histogram, 40, true), is(1d));
+    assertThat(histogram.fractionBelow("x", true), is((Double) null));
+
+    final Histogram created =
+        requireNonNull(Histogram.create(ImmutableList.of(3, 1, 2, 4, 5), 2));
+    assertThat(created.getBounds().toString(), is("[1, 3, 5]"));
+  }
+
+  private static double fractionBelow(Histogram histogram, Object value,
+      boolean inclusive) {
+    return requireNonNull(histogram.fractionBelow(value, inclusive));
+  }
+
+  @Test void testHyperLogLog() {
+    final HyperLogLog sketch = new HyperLogLog();
+    final HyperLogLog sketch2 = new HyperLogLog();
+    for (int i = 0; i < 100_000; i++) {
+      sketch.add("v" + i);
+      sketch2.add("v" + (i + 50_000));
+    }
+    assertThat(sketch.estimate(), closeTo(100_000, 5_000));
+    sketch.merge(sketch2);
+    assertThat(sketch.estimate(), closeTo(150_000, 7_500));
+
+    final HyperLogLog small = new HyperLogLog();
+    for (int i = 0; i < 1000; i++) {
+      small.add(i % 7);
+    }
+    assertThat(small.estimate(), closeTo(7, 0.5));
+  }
+
+  @Test void testSelectivity() {
+    checkSelectivity(b -> b.lessThan(b.field("A"), b.literal(100)), 0.1, 0.01);
+    checkSelectivity(b -> b.greaterThanOrEqual(b.field("A"), b.literal(900)),
+        0.1, 0.01);
+    checkSelectivity(b -> b.equals(b.field("A"), b.literal(5)), 0.001, 0.0002);
+    // Out of range, so the estimate is one row
+    checkSelectivity(b -> b.equals(b.field("A"), b.literal(5000)), 0.001,
+        1e-9);
+    checkSelectivity(
+        b -> b.between(b.field("A"), b.literal(100), b.literal(299)),
+        0.2, 0.02);
+    checkSelectivity(b -> b.isNull(b.field("B")), 0.1, 1e-9);
+    checkSelectivity(b -> b.equals(b.field("B"), b.literal("b3")), 0.1, 0.01);
+    checkSelectivity(
+        b -> b.and(b.lessThan(b.field("A"), b.literal(500)),
+            b.isNotNull(b.field("B"))),
+        0.45, 0.05);
+  }
+
+  @Test void testDistinctRowCount() {
+    final RelBuilder b = builder(STATISTIC);
+    final RelNode scan = b.scan("T").build();
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+    // 9 values and null
+    assertThat(mq.getDistinctRowCount(scan, ImmutableBitSet.of(1), null),
+        closeTo(10d, 0.5));
+  }
+
+  /** Tests that without column statistics, selectivity is guessed as
+   * before. */
+  @Test void testNoColumnStatistics() {
+    final RelBuilder b = builder(Statistics.of(1000d, null));
+    final RelNode scan = b.scan("T").build();
+    b.push(scan);
+    final RexNode predicate = b.lessThan(b.field("A"), b.literal(100));
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+    assertThat(mq.getSelectivity(scan, predicate),
+        is(RelMdUtil.guessSelectivity(predicate)));
+  }
+
+  private static void checkSelectivity(Function<RelBuilder, RexNode> fn,
+      double expected, double error) {
+    final RelBuilder b = builder(STATISTIC);
+    final RelNode scan = b.scan("T").build();
+    b.push(scan);
+    final RexNode predicate = fn.apply(b);
+    final RelMetadataQuery mq = scan.getCluster().getMetadataQuery();
+    final Double selectivity = mq.getSelectivity(scan, predicate);
+    assertThat(predicate.toString(), requireNonNull(selectivity),
+        closeTo(expected, error));
+  }
+
+  private static RelBuilder builder(Statistic statistic) {
+    final SchemaPlus rootSchema = Frameworks.createRootSchema(true);
+    rootSchema.add("T", new AbstractTable() {
+      @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+        return typeFactory.builder()
+            .add("A", SqlTypeName.INTEGER)
+            .add("B", SqlTypeName.VARCHAR, 10).nullable(true)
+            .build();
+      }
+
+      @Override public Statistic getStatistic() {
+        return statistic;
+      }
+    });
+    return RelBuilder.create(
+        Frameworks.newConfigBuilder().defaultSchema(rootSchema).build());
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.rel.metadata;
+
+import org.apache.calcite.plan.RelOptPredicateList;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepRelVertex;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.tools.FrameworkConfig;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.RelBuilder;
+
+import com.google.common.collect.Multimap;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tests for {@link SharedRelMetadataCache}.
+ */
+class SharedRelMetadataCacheTest {
+  /** Configuration shared by the trees of a test. Values are shared only
+   * between trees that read the same {@link org.apache.calcite.schema.Table}
+   * objects, so the schema is reflective, whose tables are created once;
+   * a clone schema, such as SCOTT, creates tables on each lookup. */
+  private final FrameworkConfig config = Frameworks.newConfigBuilder()
+      .defaultSchema(
+          CalciteAssert.addSchema(Frameworks.createRootSchema(true),
+              CalciteAssert.SchemaSpec.HR))
+      .build();
+
+  /** Builds a join of "emps" and "depts" with a filter, using a new
+   * cluster. */
+  private RelNode join() {
+    final RelBuilder b = RelBuilder.create(config);
+    return b.scan("emps")
+        .filter(b.equals(b.field("salary"), b.literal(1000)))
+        .scan("depts")
+        .join(JoinRelType.INNER, "deptno")
+        .build();
+  }
+
+  /** Tests that metadata values computed in one cluster are used by a
+   * query of an identical tree in another cluster. */
+  @Test void testSharedBetweenClusters() {
+    final SharedRelMetadataCache cache = new SharedRelMetadataCache(100);
+
+    final RelNode rel1 = join();
+    rel1.getCluster().setSharedMetadataCache(cache);
+    final RelMetadataQuery mq1 = rel1.getCluster().getMetadataQuery();
+    final Double rowCount1 = mq1.getRowCount(rel1);
+    assertThat(cache.size(), greaterThan(0L));
+    assertThat(cache.stats().hitCount(), is(0L));
+
+    final RelNode rel2 = join();
+    assertThat(rel2.getCluster() != rel1.getCluster(), is(true));
+    rel2.getCluster().setSharedMetadataCache(cache);
+    final RelMetadataQuery mq2 = rel2.getCluster().getMetadataQuery();
+    final long missCount = cache.stats().missCount();
+    final Double rowCount2 = mq2.getRowCount(rel2);
+    assertThat(rowCount2, is(rowCount1));
+    assertThat(cache.stats().hitCount(), greaterThan(0L));
+    assertThat(cache.stats().missCount(), is(missCount));
+  }
+
+  /** Tests that values computed for a tree held by a {@link HepPlanner},
+   * whose inputs are {@link HepRelVertex}es, are used by an identical tree
+   * in another Hep planner, and after the metadata query is invalidated. */
+  @Test void testSharedBetweenHepPlanners() {
+    final SharedRelMetadataCache cache = new SharedRelMetadataCache(100);
+
+    final RelNode root1 = hepRoot(join(), cache);
+    assertThat(root1, instanceOf(HepRelVertex.class));
+    final RelOptPredicateList predicates1 =
+        root1.getCluster().getMetadataQuery().getPulledUpPredicates(root1);
+    assertThat(cache.stats().hitCount(), is(0L));
+
+    root1.getCluster().invalidateMetadataQuery();
+    final RelMetadataQuery mq1 = root1.getCluster().getMetadataQuery();
+    assertThat(mq1.getPulledUpPredicates(root1).pulledUpPredicates,
+        is(predicates1.pulledUpPredicates));
+    assertThat(mq1.getComputeCount(), is(0L));
+
+    final RelNode root2 = hepRoot(join(), cache);
+    final long hitCount = cache.stats().hitCount();
+    final RelMetadataQuery mq2 = root2.getCluster().getMetadataQuery();
+    // RelBuilder computed collations before the cluster had a shared cache
+    final long computeCount = mq2.getComputeCount();
+    assertThat(mq2.getPulledUpPredicates(root2).pulledUpPredicates.toString(),
+        is(predicates1.pulledUpPredicates.toString()));
+    assertThat(mq2.getComputeCount(), is(computeCount));
+    assertThat(cache.stats().hitCount(), greaterThan(hitCount));
+  }
+
+  /** Registers a tree in a new {@link HepPlanner}, and returns the vertex
+   * of its root. */
+  private static RelNode hepRoot(RelNode rel, SharedRelMetadataCache cache) {
+    rel.getCluster().setSharedMetadataCache(cache);
+    final HepPlanner planner = new HepPlanner(HepProgram.builder().build());
+    planner.setRoot(rel);
+    return requireNonNull(planner.getRoot());
+  }
+
+  /** Tests that values are not shared if the cluster has no cache, and that
+   * the cache is empty after {@link SharedRelMetadataCache#invalidateAll()}. */
+  @Test void testNotShared() {
+    final SharedRelMetadataCache cache = new SharedRelMetadataCache(100);
+
+    final RelNode rel1 = join();
+    rel1.getCluster().getMetadataQuery().getRowCount(rel1);
+    assertThat(cache.size(), is(0L));
+
+    rel1.getCluster().setSharedMetadataCache(cache);
+    final RelNode rel2 = join();
+    rel2.getCluster().setSharedMetadataCache(cache);
+    rel2.getCluster().getMetadataQuery().getRowCount(rel2);
+    assertThat(cache.size(), greaterThan(0L));
+
+    cache.invalidateAll();
+    assertThat(cache.size(), is(0L));
+  }
+
+  /** Tests that cost and node-type metadata are not shared: cost depends on
+   * the planner's cost factory, and node types would return the relational
+   * expressions of another cluster. */
+  @Test void testCostAndNodeTypesNotShared() {
+    final SharedRelMetadataCache cache = new SharedRelMetadataCache(100);
+
+    final RelNode rel1 = join();
+    rel1.getCluster().setSharedMetadataCache(cache);
+    final RelMetadataQuery mq1 = rel1.getCluster().getMetadataQuery();
+    mq1.getCumulativeCost(rel1);
+    mq1.getNodeTypes(rel1);
+
+    final RelNode rel2 = join();
+    rel2.getCluster().setSharedMetadataCache(cache);
+    final RelMetadataQuery mq2 = rel2.getCluster().getMetadataQuery();
+    mq2.getCumulativeCost(rel2);
+    assertThat(mq2.getComputeCount(), greaterThan(0L));
+
+    final Multimap<Class<? extends RelNode>, RelNode> nodeTypes =
+        requireNonNull(mq2.getNodeTypes(rel2));
+    assertThat(nodeTypes.isEmpty(), is(false));
+    for (RelNode node : nodeTypes.values()) {
+      assertThat(node.getCluster(), sameInstance(rel2.getCluster()));
+    }
+  }
+}
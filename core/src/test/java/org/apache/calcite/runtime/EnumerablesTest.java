@@ -16,6 +16,7 @@
  */
 package org.apache.calcite.runtime;
 
+import org.apache.calcite.DataContexts;
 import org.apache.calcite.linq4j.Enumerable;
 import org.apache.calcite.linq4j.EnumerableDefaults;
 import org.apache.calcite.linq4j.JoinType;
@@ -100,6 +101,24 @@ class EnumerablesTest {
         hasToString("[Dept(15, Marketing)]"));
   }
 
+  /** Tests that an {@link AdaptiveHashJoin} can be read more than once,
+   * whichever algorithm it chooses. With a threshold of 0, the join reads
+   * one row of "DEPTS" before it chooses a hash join, and the hash join must
+   * see that row followed by the rest of "DEPTS". */
+  @Test void testAdaptiveHashJoinTwice() {
+    for (int threshold : new int[] {0, 1, 10}) {
+      final Enumerable<String> join =
+          AdaptiveHashJoin.hashJoin(DataContexts.EMPTY, EMPS, DEPTS,
+              e -> e.deptno, d -> d.deptno, EMP_DEPT_TO_STRING, null, false,
+              true, null, threshold, false);
+      final String expected = "[{Fred, 10, null, null}, "
+          + "{Theodore, 20, 20, Sales}, {Sebastian, 20, 20, Sales}, "
+          + "{Joe, 30, null, null}]";
+      assertThat(join.toList(), hasToString(expected));
+      assertThat(join.toList(), hasToString(expected));
+    }
+  }
+
   @Test void testMergeJoin() {
     assertThat(
         EnumerableDefaults.mergeJoin(
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.DataContexts;
+import org.apache.calcite.linq4j.Enumerator;
+import org.apache.calcite.linq4j.Linq4j;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Tests for {@link ExternalSort}.
+ */
+class ExternalSortTest {
+  private static final int ROW_COUNT = 100_000;
+
+  /** Tests a sort whose statement's memory budget is entirely held by
+   * another operator. The sort must write a few large runs, not one run per
+   * row; and its output can be read twice, using
+   * {@link Enumerator#reset()}. */
+  @Test void testBudgetHeldByAnotherOperator() {
+    final SpillManager spillManager = new SpillManager(1_000_000, null);
+    final DataContext root =
+        DataContexts.of(
+            ImmutableMap.of(DataContext.Variable.SPILL_MANAGER.camelName,
+                spillManager));
+    final List<Integer> input = new ArrayList<>();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      input.add((int) ((i * 7919L) % ROW_COUNT));
+    }
+    try (SpillManager.Reservation other = spillManager.reserve("other")) {
+      other.add(spillManager.memoryBudget());
+      try (Enumerator<Integer> enumerator =
+               ExternalSort.<Integer, Integer>orderBy(root,
+                   Linq4j.asEnumerable(input), x -> x, null).enumerator()) {
+        checkSorted(enumerator);
+        enumerator.reset();
+        checkSorted(enumerator);
+      }
+    }
+    // Each row occupies about 32 bytes, so there are about 3.2 MB of rows,
+    // and each run holds at least 1 MB.
+    assertThat(spillManager.getSpilledPartitionCount(), greaterThan(0));
+    assertThat(spillManager.getSpilledPartitionCount(), lessThanOrEqualTo(4));
+  }
+
+  private static void checkSorted(Enumerator<Integer> enumerator) {
+    int expected = 0;
+    while (enumerator.moveNext()) {
+      assertThat(enumerator.current(), is(expected++));
+    }
+    assertThat(expected, is(ROW_COUNT));
+  }
+}
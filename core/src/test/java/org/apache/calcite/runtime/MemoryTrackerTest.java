@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteStatement;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.util.TestUtil;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.notNullValue;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tests for {@link MemoryTracker}.
+ */
+class MemoryTrackerTest {
+  /** Tests that a reservation cannot grow beyond the limit, and that the
+   * tracker remembers its peak. */
+  @Test void testReservation() {
+    final MemoryTracker tracker = new MemoryTracker(1_000);
+    final MemoryTracker.Reservation r1 = tracker.reserve("r1");
+    final MemoryTracker.Reservation r2 = tracker.reserve("r2");
+    r1.add(600);
+    assertThat(r2.tryAdd(500), is(false));
+    final CalciteException e =
+        assertThrows(CalciteException.class, () -> r2.add(500));
+    assertThat(e.getMessage(),
+        is("Query exceeded its memory limit of 1000 bytes while r2 was "
+            + "reserving another 500 bytes"));
+    assertThat(r2.tryAdd(400), is(true));
+    assertThat(tracker.getReservedByteCount(), is(1_000L));
+    r1.close();
+    r2.release(100);
+    assertThat(tracker.getReservedByteCount(), is(300L));
+    assertThat(tracker.getPeakByteCount(), is(1_000L));
+  }
+
+  /** Tests that a query whose sort needs more memory than the limit
+   * fails. */
+  @Test void testLimitExceeded() {
+    CalciteAssert.hr()
+        .with(CalciteConnectionProperty.QUERY_MEMORY_LIMIT, 200)
+        .query("select * from \"hr\".\"emps\" order by \"salary\"")
+        .throws_("Query exceeded its memory limit of 200 bytes while "
+            + "EnumerableSort was reserving");
+  }
+
+  /** Tests that the peak memory of a query is available from its statement,
+   * and that the memory is released when the query finishes. */
+  @Test void testPeak() throws Exception {
+    check(100_000, 0, "select x, count(*) as c from s.t\n"
+            + "group by x order by x",
+        (statement, rowCount) -> {
+          assertThat(rowCount, is(100));
+          final MemoryTracker tracker =
+              requireNonNull(statement.getMemoryTracker());
+          assertThat(tracker.getPeakByteCount(), greaterThan(0L));
+          assertThat(tracker.getPeakByteCount(),
+              lessThanOrEqualTo(100_000L));
+          assertThat(tracker.getReservedByteCount(), is(0L));
+        });
+  }
+
+  /** Tests that an aggregate reserves memory for each group as it creates
+   * the group, not as it returns it; a query that reads only one group fails
+   * if the aggregate's groups do not fit. */
+  @Test void testAggregateReservesGroupsAsItBuilds() {
+    final Exception e =
+        assertThrows(Exception.class, () ->
+            check(1_000, 0, "select x, count(*) as c from s.t\n"
+                    + "group by x limit 1",
+                (statement, rowCount) -> { }));
+    assertThat(TestUtil.printStackTrace(e),
+        TestUtil.hasMessage(e, "Query exceeded its memory limit of 1000 bytes "
+            + "while EnumerableAggregate was reserving"), is(true));
+  }
+
+  /** Tests that a sort that can spill spills, rather than fails, when it
+   * would exceed the memory limit, even though it is within the spill
+   * budget. */
+  @Test void testSpillWithinLimit() throws Exception {
+    check(5_000, 1_000_000, "select x from s.t order by x desc",
+        (statement, rowCount) -> {
+          assertThat(rowCount, is(1_000));
+          final SpillManager spillManager = statement.getSpillManager();
+          assertThat(spillManager, notNullValue());
+          assertThat(requireNonNull(spillManager).getSpilledRowCount(),
+              greaterThan(0L));
+          final MemoryTracker tracker =
+              requireNonNull(statement.getMemoryTracker());
+          assertThat(tracker.getPeakByteCount(), lessThanOrEqualTo(5_000L));
+        });
+  }
+
+  /** Runs a query against a table of 1,000 rows with a given memory limit and
+   * spill budget, and checks the statement after reading all rows. */
+  private static void check(long queryMemoryLimit, long spillMemoryBudget,
+      String sql, StatementChecker checker) throws Exception {
+    final Map<String, Table> tables =
+        ImmutableMap.of("t", new NumbersTable(1_000));
+    CalciteAssert.that()
+        .with(Lex.JAVA)
+        .withSchema("s", new AbstractSchema() {
+          @Override protected Map<String, Table> getTableMap() {
+            return tables;
+          }
+        })
+        .with(CalciteConnectionProperty.QUERY_MEMORY_LIMIT, queryMemoryLimit)
+        .with(CalciteConnectionProperty.SPILL_MEMORY_BUDGET, spillMemoryBudget)
+        .doWithConnection(connection -> {
+          try (Statement statement = connection.createStatement()) {
+            int rowCount = 0;
+            try (ResultSet resultSet = statement.executeQuery(sql)) {
+              while (resultSet.next()) {
+                ++rowCount;
+              }
+            }
+            checker.check(statement.unwrap(CalciteStatement.class), rowCount);
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Callback that checks a statement after its rows have been read. */
+  @FunctionalInterface
+  private interface StatementChecker {
+    void check(CalciteStatement statement, int rowCount);
+  }
+
+  /** Table with a single INTEGER column, x, whose values are 0, 1, ..., 99
+   * repeated. */
+  private static class NumbersTable extends AbstractTable
+      implements ScannableTable {
+    private final int rowCount;
+
+    NumbersTable(int rowCount) {
+      this.rowCount = rowCount;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("x", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root) {
+      final List<@Nullable Object[]> rows = new ArrayList<>();
+      for (int i = 0; i < rowCount; i++) {
+        rows.add(new Object[] {i % 100});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
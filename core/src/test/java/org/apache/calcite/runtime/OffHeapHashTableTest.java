@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.linq4j.function.EqualityComparer;
+import org.apache.calcite.linq4j.function.Functions;
+import org.apache.calcite.linq4j.function.Predicate1;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * Tests for {@link OffHeapRowStore} and {@link OffHeapHashTable}.
+ */
+class OffHeapHashTableTest {
+  @Test void testRowStore() {
+    // Small pages, so that rows are spread over several pages
+    try (OffHeapRowStore<@Nullable Object[]> store = new OffHeapRowStore<>(64)) {
+      for (int i = 0; i < 100; i++) {
+        assertThat(store.append(row(i)), is(i));
+      }
+      assertThat(store.size(), is(100));
+      assertThat(store.getAllocatedBytes(), greaterThan(64L));
+      assertThat(Arrays.toString(store.get(0)), is("[0, e0, null, 0.5]"));
+      assertThat(Arrays.toString(store.get(99)), is("[99, e99, 1, 0.5]"));
+      int i = 0;
+      for (@Nullable Object[] row : store) {
+        assertThat(Arrays.toString(row), is(Arrays.toString(row(i++))));
+      }
+      assertThat(i, is(100));
+
+      store.clear();
+      assertThat(store.size(), is(0));
+      assertThat(store.getAllocatedBytes(), is(0L));
+    }
+  }
+
+  private static @Nullable Object[] row(int i) {
+    return new @Nullable Object[] {i, "e" + i, i % 2 == 0 ? null : 1,
+        new BigDecimal("0.5")};
+  }
+
+  @Test void testHashTable() {
+    try (OffHeapHashTable<@Nullable Integer, @Nullable Object[]> table =
+             new OffHeapHashTable<>(row -> (Integer) row[1], null, 128)) {
+      table.add(new @Nullable Object[] {"a", 1});
+      table.add(new @Nullable Object[] {"b", 2});
+      table.add(new @Nullable Object[] {"c", 1});
+      table.add(new @Nullable Object[] {"d", null});
+      // Enough keys to cause the table to be rehashed several times
+      for (int i = 10; i < 1_000; i++) {
+        table.add(new @Nullable Object[] {"e" + i, i});
+      }
+      table.add(new @Nullable Object[] {"f", 1});
+      assertThat(table.size(), is(995));
+      assertThat(table.keyCount(), is(992));
+
+      assertThat(names(table, 1), is(Arrays.asList("a", "c", "f")));
+      assertThat(names(table, 2), is(Arrays.asList("b")));
+      assertThat(names(table, 500), is(Arrays.asList("e500")));
+      assertThat(names(table, 3), is(Arrays.asList()));
+      // A row whose key is null is stored, but cannot be found
+      assertThat(table.first(null), is(-1));
+      assertThat(table.row(3)[0], is("d"));
+
+      assertThat(table.addIfAbsent(new @Nullable Object[] {"g", 2}), is(false));
+      assertThat(table.addIfAbsent(new @Nullable Object[] {"h", 3}), is(true));
+      assertThat(names(table, 3), is(Arrays.asList("h")));
+    }
+  }
+
+  private static List<Object> names(
+      OffHeapHashTable<@Nullable Integer, @Nullable Object[]> table, int key) {
+    final List<Object> names = new ArrayList<>();
+    for (int i = table.first(key); i >= 0; i = table.next(i)) {
+      names.add(String.valueOf(table.row(i)[0]));
+    }
+    return names;
+  }
+
+  /** Tests keys whose encodings differ although the keys are equal: keys
+   * that are equal according to a comparer, and keys that are written using
+   * Java serialization. */
+  @SuppressWarnings("unchecked")
+  @Test void testKeysWithDifferentEncodings() {
+    final EqualityComparer<String> caseInsensitive =
+        new EqualityComparer<String>() {
+          @Override public boolean equal(String v1, String v2) {
+            return v1.equalsIgnoreCase(v2);
+          }
+
+          @Override public int hashCode(String s) {
+            return s.toLowerCase(Locale.ROOT).hashCode();
+          }
+        };
+    try (OffHeapHashTable<String, Object[]> table =
+             new OffHeapHashTable<>(row -> (String) row[0], caseInsensitive,
+                 64)) {
+      table.add(new Object[] {"Abc", 1});
+      table.add(new Object[] {"abc", 2});
+      table.add(new Object[] {"x", 3});
+      assertThat(table.keyCount(), is(2));
+      assertThat(table.first("ABC"), is(0));
+      assertThat(table.next(0), is(1));
+    }
+
+    // Equal sets whose comparators differ have different serialized forms
+    final TreeSet<String> set1 = new TreeSet<>(Arrays.asList("a", "b"));
+    final TreeSet<String> set2 = new TreeSet<>(Comparator.reverseOrder());
+    set2.addAll(set1);
+    try (OffHeapHashTable<TreeSet<String>, Object[]> table =
+             new OffHeapHashTable<>(row -> (TreeSet<String>) row[0], null,
+                 64)) {
+      table.add(new Object[] {set1});
+      assertThat(table.first(set2), is(0));
+      table.add(new Object[] {set2});
+      assertThat(table.keyCount(), is(1));
+    }
+  }
+
+  /** Tests that reading a row does not disturb the page to which rows are
+   * being appended. */
+  @Test void testRowStoreReadWhileAppending() {
+    try (OffHeapRowStore<String> store = new OffHeapRowStore<>(1024)) {
+      for (int i = 0; i < 50; i++) {
+        store.append("v" + i);
+        assertThat(store.get(i / 2), is("v" + i / 2));
+      }
+      for (int i = 0; i < 50; i++) {
+        assertThat(store.get(i), is("v" + i));
+      }
+    }
+  }
+
+  @Test void testDistinctFilter() {
+    final Predicate1<@Nullable String> filter =
+        OffHeapHashTable.<@Nullable String>distinctFilter(
+            Functions.identityComparer()).apply();
+    assertThat(filter.apply("a"), is(true));
+    assertThat(filter.apply("b"), is(true));
+    assertThat(filter.apply("a"), is(false));
+    assertThat(filter.apply(null), is(true));
+    assertThat(filter.apply(null), is(false));
+  }
+}
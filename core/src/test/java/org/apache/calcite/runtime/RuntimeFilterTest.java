@@ -0,0 +1,256 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.runtime;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.adapter.enumerable.EnumerableRules;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteStatement;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.rel.rules.CoreRules;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rel.type.RelDataTypeSystem;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.FilterableTable;
+import org.apache.calcite.schema.ScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeFactoryImpl;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.util.TestUtil;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.hasToString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Tests for {@link RuntimeFilter}.
+ */
+class RuntimeFilterTest {
+  /** Tests that a filter contains every key it was built from, and few
+   * others. */
+  @Test void testMightContain() {
+    final List<Integer> keys = new ArrayList<>();
+    for (int i = 0; i < 3000; i += 3) {
+      keys.add(i);
+    }
+    final RuntimeFilter filter = requireNonNull(RuntimeFilter.of(keys));
+    assertThat(filter.getKeyCount(), is(1000));
+    int falsePositiveCount = 0;
+    for (int i = 0; i < 3000; i++) {
+      if (i % 3 == 0) {
+        assertThat(filter.mightContain(i), is(true));
+      } else if (filter.mightContain(i)) {
+        ++falsePositiveCount;
+      }
+    }
+    assertThat(falsePositiveCount, lessThan(200));
+    assertThat(filter.mightContain(-3), is(false));
+    assertThat(filter.mightContain(3000), is(false));
+    assertThat(filter.mightContain(null), is(false));
+  }
+
+  /** Tests that integers of different types match, and that null keys are
+   * ignored. */
+  @Test void testTypes() {
+    final RuntimeFilter filter =
+        requireNonNull(RuntimeFilter.of(Arrays.asList(5, null, 10L)));
+    assertThat(filter.getKeyCount(), is(2));
+    assertThat(filter.mightContain(5L), is(true));
+    assertThat(filter.mightContain((short) 10), is(true));
+    assertThat(filter.mightContain("5"), is(false));
+
+    final RuntimeFilter stringFilter =
+        requireNonNull(RuntimeFilter.of(Arrays.asList("Sales", "HR")));
+    assertThat(stringFilter.mightContain("HR"), is(true));
+    assertThat(stringFilter.mightContain("Marketing"), is(false));
+    assertThat(stringFilter.mightContain(5), is(false));
+
+    // Keys of other types, or of a mixture of types, are not supported.
+    assertThat(RuntimeFilter.of(Arrays.asList(1.5D, 2.5D)), nullValue());
+    assertThat(RuntimeFilter.of(Arrays.asList(1, "a")), nullValue());
+  }
+
+  /** Tests that the bounds of a range condition have the type of the
+   * column, unless they do not fit into it. */
+  @Test void testRange() {
+    final RelDataTypeFactory typeFactory =
+        new SqlTypeFactoryImpl(RelDataTypeSystem.DEFAULT);
+    final RexBuilder rexBuilder = new RexBuilder(typeFactory);
+    final RelDataType rowType = typeFactory.builder()
+        .add("s", SqlTypeName.SMALLINT)
+        .add("v", SqlTypeName.VARCHAR, 10)
+        .build();
+    final RuntimeFilter filter =
+        requireNonNull(RuntimeFilter.of(Arrays.asList(3, 7)));
+    assertThat(filter.toRange(rexBuilder, rowType, 0),
+        hasToString("AND(>=($0, 3), <=($0, 7))"));
+
+    final RuntimeFilter wideFilter =
+        requireNonNull(RuntimeFilter.of(Arrays.asList(3, 100_000)));
+    assertThat(wideFilter.toRange(rexBuilder, rowType, 0),
+        hasToString("AND(>=($0, 3), <=($0, 100000:BIGINT))"));
+
+    final RuntimeFilter stringFilter =
+        requireNonNull(RuntimeFilter.of(Arrays.asList("HR", "HR")));
+    assertThat(stringFilter.toRange(rexBuilder, rowType, 1),
+        hasToString("=($1, 'HR')"));
+  }
+
+  /** Tests that a filter built from no keys accepts nothing. */
+  @Test void testEmpty() {
+    final RuntimeFilter filter =
+        requireNonNull(RuntimeFilter.of(Arrays.asList(null, null)));
+    assertThat(filter.getKeyCount(), is(0));
+    assertThat(filter.mightContain(0), is(false));
+    assertThat(filter.mightContain(""), is(false));
+  }
+
+  /** Tests that a hash join passes a range on its build keys to a
+   * {@link FilterableTable} on its probe side, and that the scan skips rows
+   * that cannot match. */
+  @Test void testFilterableTable() throws Exception {
+    final List<String> filters = new ArrayList<>();
+    final Map<String, Table> tables =
+        ImmutableMap.of("fact", new FactTable(filters),
+            "dim", new DimTable(3, 7));
+    final String sql = "select f.id from s.fact f\n"
+        + "join s.dim d on f.dimId = d.id";
+    CalciteAssert.that()
+        .with(Lex.JAVA)
+        .withSchema("s", new AbstractSchema() {
+          @Override protected Map<String, Table> getTableMap() {
+            return tables;
+          }
+        })
+        .with(CalciteConnectionProperty.RUNTIME_FILTER_MAX_KEYS, 100)
+        .doWithConnection(connection -> {
+          try (Hook.Closeable ignored =
+                   Hook.PLANNER.addThread((Consumer<RelOptPlanner>) planner -> {
+                     planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE);
+                     planner.removeRule(CoreRules.JOIN_COMMUTE);
+                   });
+               Statement statement = connection.createStatement();
+               ResultSet resultSet = statement.executeQuery(sql)) {
+            int rowCount = 0;
+            while (resultSet.next()) {
+              ++rowCount;
+            }
+            // 1000 rows, dimId = id % 50, so 20 rows for each of 3 and 7
+            assertThat(rowCount, is(40));
+            assertThat(filters, hasSize(1));
+            assertThat(filters.get(0), containsString(">=($1, 3)"));
+            assertThat(filters.get(0), containsString("<=($1, 7)"));
+            final RuntimeStatistics statistics =
+                statement.unwrap(CalciteStatement.class)
+                    .getRuntimeStatistics();
+            assertThat(statistics, notNullValue());
+            // Rows whose key is outside [3, 7] are always pruned; rows whose
+            // key is 4, 5 or 6 are pruned unless the Bloom filter has a false
+            // positive.
+            assertThat(
+                requireNonNull(statistics).get(RuntimeFilter.PRUNED_ROWS),
+                greaterThanOrEqualTo(900L));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Table with columns (id, dimId), 1,000 rows, that records the filters
+   * passed to it, and does not apply them. */
+  private static class FactTable extends AbstractTable
+      implements FilterableTable {
+    private final List<String> filters;
+
+    FactTable(List<String> filters) {
+      this.filters = filters;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("dimId", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root,
+        List<RexNode> filters) {
+      for (RexNode filter : filters) {
+        this.filters.add(filter.toString());
+      }
+      final List<@Nullable Object[]> rows = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        rows.add(new Object[] {i, i % 50});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+
+  /** Table with a single column, id. */
+  private static class DimTable extends AbstractTable
+      implements ScannableTable {
+    private final int[] ids;
+
+    DimTable(int... ids) {
+      this.ids = ids;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root) {
+      final List<@Nullable Object[]> rows = new ArrayList<>();
+      for (int id : ids) {
+        rows.add(new Object[] {id});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+}
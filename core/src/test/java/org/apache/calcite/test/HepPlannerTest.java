@@ -18,6 +18,7 @@
 
 import org.apache.calcite.plan.RelOptListener;
 import org.apache.calcite.plan.RelOptMaterialization;
+import org.apache.calcite.plan.RelOptUtil;
 import org.apache.calcite.plan.hep.HepMatchOrder;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -373,6 +374,27 @@ private void assertIncludesExactlyOnce(String message, String digest,
     assertThat(applyTimes2, is(87L));
   }
 
+  /** Tests that {@link HepMatchOrder#WORKLIST} reaches the same plan as
+   * {@link HepMatchOrder#ARBITRARY}, with fewer rule applications. */
+  @Test void testMatchWorkList() {
+    final long applyTimes = checkRuleApplyCount(HepMatchOrder.WORKLIST);
+    assertThat(applyTimes, is(65L));
+
+    final String arbitrary = reduceUnionTree(HepMatchOrder.ARBITRARY);
+    assertThat(reduceUnionTree(HepMatchOrder.WORKLIST), is(arbitrary));
+  }
+
+  private String reduceUnionTree(HepMatchOrder matchOrder) {
+    final HepProgram program = HepProgram.builder()
+        .addMatchOrder(matchOrder)
+        .addRuleInstance(CoreRules.FILTER_REDUCE_EXPRESSIONS)
+        .addRuleInstance(CoreRules.PROJECT_REDUCE_EXPRESSIONS)
+        .build();
+    final HepPlanner planner = new HepPlanner(program);
+    planner.setRoot(sql(COMPLEX_UNION_TREE).toRel());
+    return RelOptUtil.toString(planner.findBestExp());
+  }
+
   @Test void testMaterialization() {
     HepPlanner planner = new HepPlanner(HepProgram.builder().build());
     RelNode tableRel = sql("select * from dept").toRel();
@@ -21,6 +21,10 @@
 import org.apache.calcite.adapter.java.JavaTypeFactory;
 import org.apache.calcite.avatica.util.DateTimeUtils;
 import org.apache.calcite.interpreter.Interpreter;
+import org.apache.calcite.linq4j.AbstractEnumerable;
+import org.apache.calcite.linq4j.DelegatingEnumerator;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Enumerator;
 import org.apache.calcite.linq4j.QueryProvider;
 import org.apache.calcite.plan.hep.HepPlanner;
 import org.apache.calcite.plan.hep.HepProgram;
@@ -314,8 +318,42 @@ private static void assertRows(Interpreter interpreter,
         .returnsRows("[0]", "[10]", "[20]", "[30]");
     assertThat(scanCount.get(), is(1));
     assertThat(enumerateCount.get(), is(1));
-    assertThat("close is called twice: on last fetch, and interpreter close",
-        closeCount.get(), is(2));
+    assertThat("close is called once, on last fetch",
+        closeCount.get(), is(1));
+  }
+
+  /** Tests that a node that reads a
+   * {@link org.apache.calcite.schema.ScannableTable} in batches does not
+   * read from the table's enumerator after the enumerator is exhausted. */
+  @Test void testInterpretScannableTableBatch() {
+    final AtomicInteger closeCount = new AtomicInteger();
+    rootSchema().add("counting",
+        new ScannableTableTest.SimpleTable() {
+          @Override public Enumerable<@Nullable Object[]> scan(
+              DataContext root) {
+            final Enumerable<@Nullable Object[]> enumerable = super.scan(root);
+            return new AbstractEnumerable<@Nullable Object[]>() {
+              @Override public Enumerator<@Nullable Object[]> enumerator() {
+                return new DelegatingEnumerator<@Nullable Object[]>(
+                    enumerable.enumerator()) {
+                  @Override public boolean moveNext() {
+                    assertThat("moveNext after close", closeCount.get(),
+                        is(0));
+                    return super.moveNext();
+                  }
+
+                  @Override public void close() {
+                    closeCount.incrementAndGet();
+                    super.close();
+                  }
+                };
+              }
+            };
+          }
+        });
+    sql("select \"i\" + 1 from \"counting\"")
+        .returnsRows("[1]", "[11]", "[21]", "[31]");
+    assertThat(closeCount.get(), is(1));
   }
 
   @Test void testAggregateCount() {
@@ -580,6 +618,53 @@ private static void assertRows(Interpreter interpreter,
         "[null, null, 4, x]");
   }
 
+  /** Tests a full join whose inner input has duplicate rows, and whose
+   * condition has a non-equi part; the interpreter evaluates the condition
+   * only for rows whose keys are equal. */
+  @Test void testInterpretFullJoinWithDuplicates() {
+    final String sql = "select * from\n"
+        + "(select x, y from (values (1, 'a'), (2, 'b'), (3, 'c')) as t(x, y)) t\n"
+        + "full join\n"
+        + "(select x, y from (values (1, 'd'), (1, 'd'), (2, 'a'), (2, 'c')) as t2(x, y)) t2\n"
+        + "on t.x = t2.x and t.y < t2.y";
+    sql(sql).returnsRows(
+        "[1, a, 1, d]",
+        "[1, a, 1, d]",
+        "[2, b, 2, c]",
+        "[3, c, null, null]",
+        "[null, null, 2, a]");
+  }
+
+  /** Tests a full join whose left input is empty. */
+  @Test void testInterpretFullJoinEmptyLeft() {
+    final String sql = "select * from\n"
+        + "(select x, y from (values (1, 'a')) as t(x, y) where x > 5) t\n"
+        + "full join\n"
+        + "(select x, y from (values (1, 'd'), (2, 'c')) as t2(x, y)) t2\n"
+        + "on t.x = t2.x";
+    sql(sql).returnsRows("[null, null, 1, d]", "[null, null, 2, c]");
+  }
+
+  /** Tests a join on {@code IS NOT DISTINCT FROM}, where null keys match. */
+  @Test void testInterpretJoinIsNotDistinctFrom() {
+    final String sql = "select * from\n"
+        + "(select x, y from (values (1, 'a'), (cast(null as int), 'b')) as t(x, y)) t\n"
+        + "join\n"
+        + "(select x, y from (values (cast(null as int), 'c'), (1, 'd')) as t2(x, y)) t2\n"
+        + "on t.x is not distinct from t2.x";
+    sql(sql).returnsRows("[1, a, 1, d]", "[null, b, null, c]");
+  }
+
+  /** Tests an aggregate with grouping sets, one of which is a proper subset
+   * of the union of the grouping sets. */
+  @Test void testInterpretGroupingSets() {
+    final String sql = "select x, y, count(*) as c\n"
+        + "from (values (1, 'a'), (1, 'b'), (2, 'a')) as t(x, y)\n"
+        + "group by grouping sets ((x, y), (y))";
+    sql(sql).returnsRowsUnordered("[1, a, 1]", "[1, b, 1]", "[2, a, 1]",
+        "[null, a, 2]", "[null, b, 1]");
+  }
+
   @Test void testInterpretDecimalAggregate() {
     final String sql = "select x, min(y), max(y), sum(y), avg(y)\n"
         + "from (values ('a', -1.2), ('a', 2.3), ('a', 15)) as t(x, y)\n"
@@ -79,6 +79,7 @@
 import org.apache.calcite.rel.rules.JoinCommuteRule;
 import org.apache.calcite.rel.rules.MeasureRules;
 import org.apache.calcite.rel.rules.MultiJoin;
+import org.apache.calcite.rel.rules.MultiJoinOptimizeDphypRule;
 import org.apache.calcite.rel.rules.ProjectCorrelateTransposeRule;
 import org.apache.calcite.rel.rules.ProjectFilterTransposeRule;
 import org.apache.calcite.rel.rules.ProjectJoinTransposeRule;
@@ -9585,4 +9586,53 @@ private void checkJoinAssociateRuleWithTopAlwaysTrueCondition(boolean allowAlway
         .withRule(CoreRules.MULTI_JOIN_OPTIMIZE)
         .check();
   }
+
+  /** Tests {@link MultiJoinOptimizeDphypRule} on the query of
+   * {@link #testLoptOptimizeJoinRulePrioritizeSelfJoin()}. The rule joins
+   * EMP to DEPT first, because that join returns fewer rows than the
+   * self-join of EMP. */
+  @Test void testMultiJoinOptimizeDphyp() {
+    HepProgram program = new HepProgramBuilder()
+        .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+        .addRuleInstance(CoreRules.JOIN_TO_MULTI_JOIN)
+        .build();
+
+    sql("select e.empno from emp e\n"
+        + "inner join dept d on d.deptno = e.deptno\n"
+        + "inner join emp e2 on e.empno = e2.empno")
+        .withPre(program)
+        .withRule(CoreRules.MULTI_JOIN_OPTIMIZE_DPHYP)
+        .check();
+  }
+
+  /** Tests that {@link MultiJoinOptimizeDphypRule} uses the greedy algorithm
+   * of {@link CoreRules#MULTI_JOIN_OPTIMIZE} if the join has more inputs
+   * than {@link MultiJoinOptimizeDphypRule.Config#maxFactorCount()}. The plan
+   * is the same as in {@link #testLoptOptimizeJoinRulePrioritizeSelfJoin()}. */
+  @Test void testMultiJoinOptimizeDphypTooManyInputs() {
+    HepProgram program = new HepProgramBuilder()
+        .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+        .addRuleInstance(CoreRules.JOIN_TO_MULTI_JOIN)
+        .build();
+
+    sql("select e.empno from emp e\n"
+        + "inner join dept d on d.deptno = e.deptno\n"
+        + "inner join emp e2 on e.empno = e2.empno")
+        .withPre(program)
+        .withRule(
+            MultiJoinOptimizeDphypRule.Config.DEFAULT
+                .withMaxFactorCount(2)
+                .toRule())
+        .check();
+  }
+
+  /** Tests that {@link MultiJoinOptimizeDphypRule} uses the greedy algorithm
+   * of {@link CoreRules#MULTI_JOIN_OPTIMIZE} if the join graph is not
+   * connected; the rule does not consider cross products. */
+  @Test void testMultiJoinOptimizeDphypCrossJoin() {
+    final String sql = "select e.ename, d.name from emp e, dept d";
+    sql(sql).withPreRule(CoreRules.JOIN_TO_MULTI_JOIN)
+        .withRule(CoreRules.MULTI_JOIN_OPTIMIZE_DPHYP)
+        .check();
+  }
 }
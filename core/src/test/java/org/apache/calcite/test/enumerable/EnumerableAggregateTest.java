@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableAggregate}
+ * implemented using
+ * {@link org.apache.calcite.runtime.PrimitiveHashAggregate}, or fused with
+ * its input. */
+class EnumerableAggregateTest {
+  @Test void primitiveHashAggregate() {
+    tester(true)
+        .query("select deptno, count(*) as c, sum(commission) as s,\n"
+            + "  min(commission) as mi, max(empid) as ma,\n"
+            + "  count(commission) as cc\n"
+            + "from emps group by deptno")
+        .planContains("PrimitiveHashAggregate.aggregate(")
+        .returnsUnordered(
+            "deptno=10; c=3; s=1250; mi=250; ma=150; cc=2",
+            "deptno=20; c=1; s=500; mi=500; ma=200; cc=1");
+  }
+
+  /** Tests two keys, one of which is null in some rows. */
+  @Test void primitiveHashAggregateTwoKeys() {
+    tester(true)
+        .query("select deptno, commission, count(*) as c, sum(empid) as s\n"
+            + "from emps group by deptno, commission")
+        .planContains("PrimitiveHashAggregate.aggregate(")
+        .returnsUnordered(
+            "deptno=10; commission=1000; c=1; s=100",
+            "deptno=10; commission=250; c=1; s=110",
+            "deptno=10; commission=null; c=1; s=150",
+            "deptno=20; commission=500; c=1; s=200");
+  }
+
+  /** Tests a filtered aggregate, and aggregates that are null because no
+   * non-null value was added. */
+  @Test void primitiveHashAggregateFilter() {
+    tester(true)
+        .query("select commission,\n"
+            + "  sum(commission) filter (where empid > 120) as s,\n"
+            + "  max(empid) as m\n"
+            + "from emps group by commission")
+        .planContains("PrimitiveHashAggregate.aggregate(")
+        .returnsUnordered(
+            "commission=1000; s=null; m=100",
+            "commission=500; s=500; m=200",
+            "commission=250; s=null; m=110",
+            "commission=null; s=null; m=150");
+  }
+
+  /** Tests that an aggregate whose arguments are not exact integers uses the
+   * default implementation. */
+  @Test void primitiveHashAggregateNotApplicable() {
+    tester(true)
+        .query("select deptno, sum(salary) as s from emps group by deptno")
+        .planContains(".groupBy(")
+        .returnsUnordered(
+            "deptno=10; s=28500.0",
+            "deptno=20; s=8000.0");
+  }
+
+  /** Tests an aggregate whose input Calc is fused into the aggregate's
+   * loop. */
+  @Test void fusedAggregate() {
+    fusedTester()
+        .query("select deptno, count(*) as c, sum(empid + 1) as s\n"
+            + "from emps where salary > 7000 group by deptno")
+        .planContains("Enumerables.groups(")
+        .returnsUnordered(
+            "deptno=10; c=2; s=212",
+            "deptno=20; c=1; s=201");
+  }
+
+  @Test void fusedAggregateNoGroup() {
+    fusedTester()
+        .query("select count(*) as c, sum(salary) as s, max(name) as m\n"
+            + "from emps where deptno = 10")
+        .returnsUnordered("c=3; s=28500.0; m=Theodore");
+  }
+
+  /** Tests a fused aggregate with a filter, and with aggregates that are
+   * null because no non-null value was added. */
+  @Test void fusedAggregateFilter() {
+    fusedTester()
+        .query("select deptno, count(commission) as cc,\n"
+            + "  sum(empid) filter (where commission > 300) as s\n"
+            + "from emps where empid > 100 group by deptno")
+        .planContains("Enumerables.groups(")
+        .returnsUnordered(
+            "deptno=10; cc=1; s=null",
+            "deptno=20; cc=1; s=200");
+  }
+
+  private static CalciteAssert.AssertThat fusedTester() {
+    return tester(false)
+        .with(CalciteConnectionProperty.FUSE_OPERATORS, true);
+  }
+
+  private static CalciteAssert.AssertThat tester(boolean primitive) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.PRIMITIVE_HASH_AGGREGATE, primitive)
+        .withSchema("s", new ReflectiveSchema(new HrSchema()));
+  }
+}
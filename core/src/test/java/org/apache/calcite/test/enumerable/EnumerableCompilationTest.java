@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.enumerable.BindableCacheStatistics;
+import org.apache.calcite.adapter.enumerable.BindableCompiler;
+import org.apache.calcite.adapter.enumerable.EnumerableInterpretable;
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.plan.RelOptUtil;
+import org.apache.calcite.rel.RelRoot;
+import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchema;
+import org.apache.calcite.util.Holder;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import javax.tools.ToolProvider;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/** Tests for the compilers that turn the code generated for enumerable
+ * plans into classes, and for tiered compilation. */
+class EnumerableCompilationTest {
+  /** Tests that {@link BindableCompiler#JAVAC} compiles the generated code
+   * using {@code javac}, rather than silently falling back to Janino. */
+  @Test void testJavac() {
+    assumeTrue(ToolProvider.getSystemJavaCompiler() != null, "requires a JDK");
+    final BindableCacheStatistics statistics =
+        EnumerableInterpretable.cacheStatistics();
+    final long javacCompileCount = statistics.javacCompileCount();
+    final long javacFallbackCount = statistics.javacFallbackCount();
+    tester()
+        .with(CalciteConnectionProperty.COMPILER, BindableCompiler.JAVAC)
+        .query("select deptno, count(*) as c, sum(salary) as s\n"
+            + "from emps where empid > 100 group by deptno")
+        .returnsUnordered(
+            "deptno=10; c=2; s=18500.0",
+            "deptno=20; c=1; s=8000.0");
+    assertThat(statistics.javacCompileCount(), greaterThan(javacCompileCount));
+    assertThat(statistics.javacFallbackCount(), is(javacFallbackCount));
+  }
+
+  /** Tests a plan that the interpreter can run while the code is being
+   * compiled. Whichever of them runs the query, the results are the
+   * same. */
+  @Test void testTieredCompilation() {
+    final CalciteAssert.AssertQuery query =
+        tester()
+            .with(CalciteConnectionProperty.TIERED_COMPILATION, true)
+            .query("select empid, upper(name) as n\n"
+                + "from emps where deptno = 10 order by empid");
+    for (int i = 0; i < 3; i++) {
+      query.returnsOrdered("empid=100; n=BILL",
+          "empid=110; n=THEODORE",
+          "empid=150; n=SEBASTIAN");
+    }
+  }
+
+  /** Tests that a plan that contains a {@link org.apache.calcite.rel.core.Calc}
+   * runs in the interpreter while its code is being compiled. Compilation is
+   * deferred until the statement has been executed. */
+  @Test void testTieredCompilationInterpretsCalc() {
+    final List<Runnable> compilations = new ArrayList<>();
+    final BindableCacheStatistics statistics =
+        EnumerableInterpretable.cacheStatistics();
+    final long interpretedCount = statistics.interpretedCount();
+    tester()
+        .with(CalciteConnectionProperty.TIERED_COMPILATION, true)
+        .query("select empid, lower(name) as n\n"
+            + "from emps where deptno = 10 and empid > 105")
+        .withHook(Hook.COMPILE_EXECUTOR, (Consumer<Holder<Executor>>)
+            executor -> executor.set(compilations::add))
+        .withHook(Hook.PLAN_BEFORE_IMPLEMENTATION, (Consumer<RelRoot>) root ->
+            assertThat(RelOptUtil.toString(root.rel),
+                containsString("EnumerableCalc")))
+        .returnsUnordered("empid=110; n=theodore",
+            "empid=150; n=sebastian");
+    assertThat(statistics.interpretedCount(), greaterThan(interpretedCount));
+    compilations.forEach(Runnable::run);
+  }
+
+  /** Tests that a plan that contains an equi-join, which the interpreter
+   * evaluates using a hash table, runs in the interpreter while its code is
+   * being compiled. */
+  @Test void testTieredCompilationInterpretsEquiJoin() {
+    final List<Runnable> compilations = new ArrayList<>();
+    tester()
+        .with(CalciteConnectionProperty.TIERED_COMPILATION, true)
+        .query("select e.empid, d.name\n"
+            + "from emps as e join depts as d on e.deptno = d.deptno\n"
+            + "where e.empid < 150")
+        .withHook(Hook.COMPILE_EXECUTOR, (Consumer<Holder<Executor>>)
+            executor -> executor.set(compilations::add))
+        .returnsUnordered("empid=100; name=Sales",
+            "empid=110; name=Sales");
+    assertThat(compilations, hasSize(1));
+    compilations.forEach(Runnable::run);
+  }
+
+  /** Tests a plan that the interpreter does not run, because it contains a
+   * join that the interpreter would evaluate using a nested loop; the
+   * statement waits for the compiled code. */
+  @Test void testTieredCompilationNotInterpretable() {
+    final List<Runnable> compilations = new ArrayList<>();
+    tester()
+        .with(CalciteConnectionProperty.TIERED_COMPILATION, true)
+        .query("select e.empid, d.name\n"
+            + "from emps as e join depts as d on e.deptno > d.deptno")
+        .withHook(Hook.COMPILE_EXECUTOR, (Consumer<Holder<Executor>>)
+            executor -> executor.set(compilations::add))
+        .returnsUnordered("empid=200; name=Sales");
+    assertThat(compilations, empty());
+  }
+
+  /** Tests that statements that differ only in the values of their literals
+   * generate the same code if
+   * {@link CalciteConnectionProperty#HOIST_LITERALS} is set. */
+  @Test void testHoistLiterals() {
+    final List<String> plans = new ArrayList<>();
+    final String sql = "select empid, name || '!' as n\n"
+        + "from emps where deptno = %d and salary > %s";
+    final CalciteAssert.AssertThat tester =
+        tester()
+            .with(CalciteConnectionProperty.HOIST_LITERALS, true)
+            .withHook(Hook.JAVA_PLAN, (Consumer<String>) plans::add);
+    tester.query(String.format(sql, 10, "8000.0"))
+        .returnsUnordered("empid=100; n=Bill!",
+            "empid=110; n=Theodore!");
+    tester.query(String.format(sql, 20, "7000.0"))
+        .returnsUnordered("empid=200; n=Eric!");
+    assertThat(plans.size(), is(2));
+    assertThat(plans.get(1), is(plans.get(0)));
+    assertThat(plans.get(0), not(containsString("8000")));
+  }
+
+  private static CalciteAssert.AssertThat tester() {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .withSchema("s", new ReflectiveSchema(new HrSchema()));
+  }
+}
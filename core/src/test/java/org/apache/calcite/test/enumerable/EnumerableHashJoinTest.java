@@ -19,17 +19,33 @@
 import org.apache.calcite.adapter.enumerable.EnumerableRules;
 import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteStatement;
 import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.runtime.AdaptiveHashJoin;
 import org.apache.calcite.runtime.Hook;
+import org.apache.calcite.runtime.RuntimeStatistics;
+import org.apache.calcite.runtime.SpillManager;
 import org.apache.calcite.sql.fun.SqlStdOperatorTable;
 import org.apache.calcite.test.CalciteAssert;
 import org.apache.calcite.test.ReflectiveSchemaWithoutRowCount;
 import org.apache.calcite.test.schemata.hr.HrSchema;
+import org.apache.calcite.util.TestUtil;
 
 import org.junit.jupiter.api.Test;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.function.Consumer;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+import static java.util.Objects.requireNonNull;
+
 /**
  * Unit test for
  * {@link org.apache.calcite.adapter.enumerable.EnumerableHashJoin}.
@@ -318,6 +334,154 @@ class EnumerableHashJoinTest {
             "empid=200");
   }
 
+  /** Tests a hash join whose build side exceeds the memory budget, and
+   * therefore spills to disk. */
+  @Test void fullOuterJoinWithSpill() {
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.SPILL_MEMORY_BUDGET, 1)
+        .query(
+            "select e1.empid, e2.empid from emps e1 full outer join emps e2 "
+                + "on e1.deptno=e2.deptno and e1.commission=e2.commission")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .explainContains("EnumerableHashJoin(condition=[AND(=($1, $4), "
+            + "=($2, $5))], joinType=[full])")
+        .returnsUnordered(
+            "empid=100; empid=100",
+            "empid=110; empid=110",
+            "empid=150; empid=null",
+            "empid=200; empid=200",
+            "empid=null; empid=150");
+  }
+
+  /** Tests a hash join that holds its build side off-heap. Unmatched rows
+   * from both sides must be returned. */
+  @Test void fullOuterJoinOffHeap() {
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.OFF_HEAP_ROWS, true)
+        .query(
+            "select e1.empid, e2.empid from emps e1 full outer join emps e2 "
+                + "on e1.deptno=e2.deptno and e1.commission=e2.commission")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) code ->
+            assertThat(code, containsString("OffHeapHashJoin.hashJoin")))
+        .returnsUnordered(
+            "empid=100; empid=100",
+            "empid=110; empid=110",
+            "empid=150; empid=null",
+            "empid=200; empid=200",
+            "empid=null; empid=150");
+  }
+
+  /** As {@link #fullOuterJoinOffHeap()}, but the join has a non-equi
+   * condition, and several build rows have the same key. */
+  @Test void leftOuterJoinWithPredicateOffHeap() {
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.OFF_HEAP_ROWS, true)
+        .query("select e1.empid, e2.empid from emps e1\n"
+            + "left join emps e2\n"
+            + "on e1.deptno = e2.deptno and e1.empid < e2.empid")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .returnsUnordered(
+            "empid=100; empid=110",
+            "empid=100; empid=150",
+            "empid=110; empid=150",
+            "empid=150; empid=null",
+            "empid=200; empid=null");
+  }
+
+  /** Tests that the statement reports how much a hash join spilled. */
+  @Test void innerJoinSpillStatistics() throws Exception {
+    final String sql = "select e.empid, d.name from emps e\n"
+        + "join depts d on e.deptno = d.deptno";
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.SPILL_MEMORY_BUDGET, 1)
+        .doWithConnection(connection -> {
+          try (Hook.Closeable ignored =
+                   Hook.PLANNER.addThread((Consumer<RelOptPlanner>) planner ->
+                       planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE));
+               Statement statement = connection.createStatement();
+               ResultSet resultSet = statement.executeQuery(sql)) {
+            int rowCount = 0;
+            while (resultSet.next()) {
+              ++rowCount;
+            }
+            assertThat(rowCount, is(3));
+            final SpillManager spillManager =
+                statement.unwrap(CalciteStatement.class).getSpillManager();
+            assertThat(spillManager, notNullValue());
+            assertThat(spillManager.getSpilledPartitionCount(),
+                greaterThan(0));
+            assertThat(spillManager.getSpilledRowCount(), greaterThan(0L));
+            assertThat(spillManager.getSpilledByteCount(), greaterThan(0L));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  /** Tests an adaptive hash join whose build side is small enough for a
+   * nested loop. Unmatched rows from both sides must be returned. */
+  @Test void fullOuterJoinAdaptive() {
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.ADAPTIVE_JOIN_THRESHOLD, 10)
+        .query(
+            "select e1.empid, e2.empid from emps e1 full outer join emps e2 "
+                + "on e1.deptno=e2.deptno and e1.commission=e2.commission")
+        .withHook(Hook.PLANNER, (Consumer<RelOptPlanner>) planner ->
+            planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE))
+        .explainContains("EnumerableHashJoin(condition=[AND(=($1, $4), "
+            + "=($2, $5))], joinType=[full], adaptiveThreshold=[10])")
+        .returnsUnordered(
+            "empid=100; empid=100",
+            "empid=110; empid=110",
+            "empid=150; empid=null",
+            "empid=200; empid=200",
+            "empid=null; empid=150");
+  }
+
+  /** Tests that the statement reports which algorithm an adaptive hash join
+   * chose. The build side, "depts", has 3 rows. */
+  @Test void innerJoinAdaptiveStatistics() throws Exception {
+    checkAdaptiveStrategy(10, AdaptiveHashJoin.Strategy.NESTED_LOOP);
+    checkAdaptiveStrategy(2, AdaptiveHashJoin.Strategy.HASH);
+  }
+
+  private void checkAdaptiveStrategy(int threshold,
+      AdaptiveHashJoin.Strategy expectedStrategy) throws Exception {
+    final String sql = "select e.empid, d.name from emps e\n"
+        + "join depts d on e.deptno = d.deptno";
+    tester(false, new HrSchema())
+        .with(CalciteConnectionProperty.ADAPTIVE_JOIN_THRESHOLD, threshold)
+        .doWithConnection(connection -> {
+          try (Hook.Closeable ignored =
+                   Hook.PLANNER.addThread((Consumer<RelOptPlanner>) planner ->
+                       planner.removeRule(EnumerableRules.ENUMERABLE_MERGE_JOIN_RULE));
+               Statement statement = connection.createStatement();
+               ResultSet resultSet = statement.executeQuery(sql)) {
+            int rowCount = 0;
+            while (resultSet.next()) {
+              ++rowCount;
+            }
+            assertThat(rowCount, is(3));
+            final RuntimeStatistics statistics =
+                statement.unwrap(CalciteStatement.class)
+                    .getRuntimeStatistics();
+            assertThat(statistics, notNullValue());
+            for (AdaptiveHashJoin.Strategy strategy
+                : AdaptiveHashJoin.Strategy.values()) {
+              assertThat(strategy.name(),
+                  requireNonNull(statistics).get(strategy.counterName),
+                  is(strategy == expectedStrategy ? 1L : 0L));
+            }
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
   private CalciteAssert.AssertThat tester(boolean forceDecorrelate,
       Object schema) {
     return CalciteAssert.that()
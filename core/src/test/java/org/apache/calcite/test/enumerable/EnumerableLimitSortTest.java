@@ -158,8 +158,30 @@ public class EnumerableLimitSortTest {
             "commission=250; empid=36");
   }
 
+  /** Tests a sort with limit and offset that writes sorted runs to disk
+   * because its input exceeds the memory budget. */
+  @Test void limitWithOffsetAndSpill() {
+    tester(CalciteAssert.that()
+            .with(CalciteConnectionProperty.SPILL_MEMORY_BUDGET, 1),
+        "select empid, deptno * 2 as d from emps"
+            + " order by d desc, empid limit 5 offset 3")
+        .explainContains("EnumerableLimitSort(sort0=[$1], sort1=[$0], "
+            + "dir0=[DESC], dir1=[ASC], offset=[3], fetch=[5])")
+        .returnsOrdered(
+            "empid=45; d=180",
+            "empid=46; d=180",
+            "empid=22; d=160",
+            "empid=43; d=160",
+            "empid=25; d=140");
+  }
+
   private CalciteAssert.AssertQuery tester(String sqlQuery) {
-    return CalciteAssert.that()
+    return tester(CalciteAssert.that(), sqlQuery);
+  }
+
+  private CalciteAssert.AssertQuery tester(CalciteAssert.AssertThat that,
+      String sqlQuery) {
+    return that
         .with(CalciteConnectionProperty.LEX, Lex.JAVA)
         .with(CalciteConnectionProperty.FORCE_DECORRELATE, false)
         .withSchema("s", new ReflectiveSchema(new HrSchemaBig()))
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.DataContext;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.linq4j.Enumerable;
+import org.apache.calcite.linq4j.Linq4j;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rel.type.RelDataTypeFactory;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.schema.PartitionedFilterableTable;
+import org.apache.calcite.schema.PartitionedScannableTable;
+import org.apache.calcite.schema.Table;
+import org.apache.calcite.schema.impl.AbstractSchema;
+import org.apache.calcite.schema.impl.AbstractTable;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.calcite.test.CalciteAssert;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+/** Tests for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableLocalExchange}. */
+class EnumerableLocalExchangeTest {
+  @Test void filterProject() {
+    final NumbersTable table = new NumbersTable(10_000);
+    tester(table, 4)
+        .query("select id * 2 as d from t where id < 5")
+        .explainContains("EnumerableLocalExchange(distribution=[single], "
+            + "parallelism=[4])")
+        .returnsUnordered("d=0", "d=2", "d=4", "d=6", "d=8");
+    assertThat(table.partitions, is(ImmutableSet.of("0/4", "1/4", "2/4", "3/4")));
+  }
+
+  /** Tests that an aggregate is split into a partial aggregate per partition
+   * and a final aggregate; the final aggregate adds up the partial counts. */
+  @Test void aggregate() {
+    final NumbersTable table = new NumbersTable(10_000);
+    tester(table, 3)
+        .query("select k, count(*) as c, sum(id) as s, min(id) as mi,\n"
+            + "  max(id) as ma\n"
+            + "from t group by k")
+        .planContains("LocalExchange.gather(")
+        .returnsUnordered("k=0; c=1429; s=7142142; mi=0; ma=9996",
+            "k=1; c=1429; s=7143571; mi=1; ma=9997",
+            "k=2; c=1429; s=7145000; mi=2; ma=9998",
+            "k=3; c=1429; s=7146429; mi=3; ma=9999",
+            "k=4; c=1428; s=7137858; mi=4; ma=9993",
+            "k=5; c=1428; s=7139286; mi=5; ma=9994",
+            "k=6; c=1428; s=7140714; mi=6; ma=9995");
+    assertThat(table.partitions, is(ImmutableSet.of("0/3", "1/3", "2/3")));
+  }
+
+  /** Tests an aggregate without GROUP BY, some of whose partitions have no
+   * rows. */
+  @Test void aggregateWithoutGroupBy() {
+    final NumbersTable table = new NumbersTable(10_000);
+    tester(table, 4)
+        .query("select count(*) as c, sum(id) as s, min(id) as mi\n"
+            + "from t where id in (5, 9)")
+        .explainContains("EnumerableLocalExchange")
+        .returnsUnordered("c=2; s=14; mi=5");
+  }
+
+  /** Tests that a COUNT DISTINCT is not split; the scan below it is still
+   * parallelized. */
+  @Test void aggregateDistinct() {
+    final NumbersTable table = new NumbersTable(1_000);
+    tester(table, 2)
+        .query("select count(distinct k) as c from t")
+        .explainContains("EnumerableLocalExchange")
+        .returnsUnordered("c=7");
+  }
+
+  /** Tests a {@link PartitionedFilterableTable}, which is read by the
+   * interpreter. */
+  @Test void filterableTable() {
+    final NumbersFilterableTable table = new NumbersFilterableTable(10_000);
+    tester(table, 4)
+        .query("select count(*) as c, max(id) as m from t where k = 3")
+        .explainContains("EnumerableLocalExchange")
+        .returnsUnordered("c=1429; m=9999");
+    assertThat(table.partitions, is(ImmutableSet.of("0/4", "1/4", "2/4", "3/4")));
+  }
+
+  /** Tests that if the parallelism is 1, the table is scanned once, as a
+   * single partition. */
+  @Test void serial() {
+    final NumbersTable table = new NumbersTable(100);
+    tester(table, 1)
+        .query("select count(*) as c from t")
+        .explainHookMatches(not(containsString("EnumerableLocalExchange")))
+        .returnsUnordered("c=100");
+    assertThat(table.partitions, is(ImmutableSet.of("0/1")));
+  }
+
+  private static CalciteAssert.AssertThat tester(Table table,
+      int parallelism) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.PARALLELISM, parallelism)
+        .withSchema("s", new AbstractSchema() {
+          @Override protected Map<String, Table> getTableMap() {
+            return ImmutableMap.of("t", table);
+          }
+        });
+  }
+
+  /** Table whose rows are the integers from 0 to {@code n - 1}; row {@code i}
+   * is in partition {@code i % partitionCount}. Records which partitions
+   * were scanned. */
+  private static class NumbersTable extends AbstractTable
+      implements PartitionedScannableTable {
+    private final int n;
+    final Set<String> partitions = ConcurrentHashMap.newKeySet();
+
+    NumbersTable(int n) {
+      this.n = n;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return typeFactory.builder()
+          .add("id", SqlTypeName.INTEGER)
+          .add("k", SqlTypeName.INTEGER)
+          .build();
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root,
+        int partition, int partitionCount) {
+      partitions.add(partition + "/" + partitionCount);
+      final List<@Nullable Object[]> rows = new ArrayList<>();
+      for (int i = partition; i < n; i += partitionCount) {
+        rows.add(new Object[] {i, i % 7});
+      }
+      return Linq4j.asEnumerable(rows);
+    }
+  }
+
+  /** Variant of {@link NumbersTable} that implements
+   * {@link PartitionedFilterableTable}, and does not implement any of the
+   * filters. */
+  private static class NumbersFilterableTable extends AbstractTable
+      implements PartitionedFilterableTable {
+    private final NumbersTable table;
+    final Set<String> partitions;
+
+    NumbersFilterableTable(int n) {
+      this.table = new NumbersTable(n);
+      this.partitions = table.partitions;
+    }
+
+    @Override public RelDataType getRowType(RelDataTypeFactory typeFactory) {
+      return table.getRowType(typeFactory);
+    }
+
+    @Override public Enumerable<@Nullable Object[]> scan(DataContext root,
+        List<RexNode> filters, int partition, int partitionCount) {
+      return table.scan(root, partition, partitionCount);
+    }
+  }
+}
@@ -37,6 +37,9 @@
 import java.util.Arrays;
 import java.util.function.Consumer;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+
 /**
  * Unit tests for {@link EnumerableRepeatUnion}.
  *
@@ -121,6 +124,33 @@ class EnumerableRepeatUnionTest {
         .returnsOrdered("i=0", "i=1", "i=2", "i=3", "i=4", "i=5", "i=6", "i=7", "i=8", "i=9");
   }
 
+  /** As {@link #testGenerateNumbers2()}, but the rows seen so far, which
+   * are used to eliminate duplicates, are held off-heap. */
+  @Test void testGenerateNumbers2OffHeap() {
+    CalciteAssert.that()
+        .with(CalciteConnectionProperty.OFF_HEAP_ROWS, true)
+        .withRel(
+            builder -> builder
+                .values(new String[] { "i" }, 0)
+                .transientScan("AUX")
+                .filter(
+                    builder.call(SqlStdOperatorTable.LESS_THAN,
+                        builder.field(0),
+                        builder.literal(10)))
+                .project(
+                    builder.call(SqlStdOperatorTable.MOD,
+                        builder.call(SqlStdOperatorTable.PLUS,
+                            builder.field(0),
+                            builder.literal(1)),
+                        builder.literal(10)))
+                .repeatUnion("AUX", false)
+                .build())
+        .withHook(Hook.JAVA_PLAN, (Consumer<String>) code ->
+            assertThat(code, containsString("OffHeapHashTable.distinctFilter")))
+        .returnsOrdered("i=0", "i=1", "i=2", "i=3", "i=4", "i=5", "i=6", "i=7",
+            "i=8", "i=9");
+  }
+
   @Test void testGenerateNumbers3() {
     CalciteAssert.that()
         .withRel(
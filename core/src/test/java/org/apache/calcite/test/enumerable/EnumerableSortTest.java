@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.test.enumerable;
+
+import org.apache.calcite.adapter.java.ReflectiveSchema;
+import org.apache.calcite.config.CalciteConnectionProperty;
+import org.apache.calcite.config.Lex;
+import org.apache.calcite.jdbc.CalciteStatement;
+import org.apache.calcite.runtime.SpillManager;
+import org.apache.calcite.test.CalciteAssert;
+import org.apache.calcite.test.schemata.hr.HrSchemaBig;
+import org.apache.calcite.util.TestUtil;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+
+/** Tests for
+ * {@link org.apache.calcite.adapter.enumerable.EnumerableSort}. */
+class EnumerableSortTest {
+  /** Tests a sort that writes sorted runs to disk because its input exceeds
+   * the memory budget, and checks that it returns rows with equal keys in
+   * their original order. */
+  @Test void sortWithSpill() {
+    tester(1)
+        .query("select empid, deptno * 2 as d from emps\n"
+            + "where deptno >= 70\n"
+            + "order by d desc")
+        .explainContains("EnumerableSort(sort0=[$1], dir0=[DESC])")
+        .returnsOrdered(
+            "empid=37; d=240",
+            "empid=36; d=220",
+            "empid=44; d=200",
+            "empid=45; d=180",
+            "empid=46; d=180",
+            "empid=22; d=160",
+            "empid=43; d=160",
+            "empid=25; d=140",
+            "empid=32; d=140");
+  }
+
+  /** Tests that the statement reports how much a sort spilled. */
+  @Test void sortSpillStatistics() throws Exception {
+    final String sql = "select empid, deptno * 2 as d from emps\n"
+        + "order by d, empid desc";
+    tester(1)
+        .doWithConnection(connection -> {
+          try (Statement statement = connection.createStatement();
+               ResultSet resultSet = statement.executeQuery(sql)) {
+            final List<Integer> empIds = new ArrayList<>();
+            while (resultSet.next()) {
+              empIds.add(resultSet.getInt(1));
+            }
+            assertThat(empIds.size(), is(48));
+            assertThat(empIds.get(0), is(48));
+            assertThat(empIds.get(47), is(37));
+            final SpillManager spillManager =
+                statement.unwrap(CalciteStatement.class).getSpillManager();
+            assertThat(spillManager, notNullValue());
+            assertThat(spillManager.getSpilledPartitionCount(),
+                greaterThan(1));
+            assertThat(spillManager.getSpilledRowCount(), greaterThan(0L));
+          } catch (SQLException e) {
+            throw TestUtil.rethrow(e);
+          }
+        });
+  }
+
+  private static CalciteAssert.AssertThat tester(long spillMemoryBudget) {
+    return CalciteAssert.that()
+        .with(CalciteConnectionProperty.LEX, Lex.JAVA)
+        .with(CalciteConnectionProperty.SPILL_MEMORY_BUDGET, spillMemoryBudget)
+        .withSchema("s", new ReflectiveSchema(new HrSchemaBig()));
+  }
+}
@@ -4765,7 +4765,6 @@ public static int compareNullsLastForMergeJoin(@Nullable Comparable v0, @Nullabl
    * @param cleanUpFunction optional clean-up actions (e.g. delete temporary table)
    * @param <TSource> record type
    */
-  @SuppressWarnings("unchecked")
   public static <TSource> Enumerable<TSource> repeatUnion(
       Enumerable<TSource> seed,
       Enumerable<TSource> iteration,
@@ -4773,6 +4772,45 @@ public static <TSource> Enumerable<TSource> repeatUnion(
       boolean all,
       EqualityComparer<TSource> comparer,
       @Nullable Function0<Boolean> cleanUpFunction) {
+    final @Nullable Function0<Predicate1<TSource>> distinctFilterFactory;
+    if (all) {
+      distinctFilterFactory = null;
+    } else {
+      final Function1<TSource, Wrapped<TSource>> wrapper = wrapperFor(comparer);
+      distinctFilterFactory = () -> {
+        final Set<Wrapped<TSource>> processed = new HashSet<>();
+        return v -> processed.add(wrapper.apply(v));
+      };
+    }
+    return repeatUnion(seed, iteration, iterationLimit, distinctFilterFactory,
+        cleanUpFunction);
+  }
+
+  /**
+   * Repeat Union enumerable that uses a given filter to eliminate duplicates.
+   *
+   * <p>For each enumerator, and each time that it is reset, calls
+   * {@code distinctFilterFactory} to create a predicate that returns whether a
+   * record has not been seen before, and remembers it. If the predicate is
+   * also {@link AutoCloseable}, it is closed when the enumerator is reset or
+   * closed.
+   *
+   * @param seed seed enumerable
+   * @param iteration iteration enumerable
+   * @param iterationLimit maximum numbers of repetitions for the iteration enumerable
+   *                       (negative value means no limit)
+   * @param distinctFilterFactory creates a filter that eliminates duplicates,
+   *                              or null if duplicates are to be kept
+   * @param cleanUpFunction optional clean-up actions (e.g. delete temporary table)
+   * @param <TSource> record type
+   */
+  @SuppressWarnings("unchecked")
+  public static <TSource> Enumerable<TSource> repeatUnion(
+      Enumerable<TSource> seed,
+      Enumerable<TSource> iteration,
+      int iterationLimit,
+      @Nullable Function0<Predicate1<TSource>> distinctFilterFactory,
+      @Nullable Function0<Boolean> cleanUpFunction) {
     return new AbstractEnumerable<TSource>() {
       @Override public Enumerator<TSource> enumerator() {
         return new Enumerator<TSource>() {
@@ -4782,9 +4820,9 @@ public static <TSource> Enumerable<TSource> repeatUnion(
           private final Enumerator<TSource> seedEnumerator = seed.enumerator();
           private @Nullable Enumerator<TSource> iterativeEnumerator = null;
 
-          // Set to control duplicates, only used if "all" is false
-          private final Set<Wrapped<TSource>> processed = new HashSet<>();
-          private final Function1<TSource, Wrapped<TSource>> wrapper = wrapperFor(comparer);
+          // Filter to control duplicates, null if duplicates are kept
+          private @Nullable Predicate1<TSource> distinctFilter =
+              distinctFilterFactory == null ? null : distinctFilterFactory.apply();
 
           @Override public TSource current() {
             if (current == DUMMY) {
@@ -4794,18 +4832,22 @@ public static <TSource> Enumerable<TSource> repeatUnion(
           }
 
           private boolean checkValue(TSource value) {
-            if (all) {
+            if (distinctFilter == null) {
               return true; // no need to check duplicates
             }
 
             // check duplicates
-            final Wrapped<TSource> wrapped = wrapper.apply(value);
-            if (!processed.contains(wrapped)) {
-              processed.add(wrapped);
-              return true;
-            }
+            return distinctFilter.apply(value);
+          }
 
-            return false;
+          private void closeDistinctFilter() {
+            if (distinctFilter instanceof AutoCloseable) {
+              try {
+                ((AutoCloseable) distinctFilter).close();
+              } catch (Exception e) {
+                throw new RuntimeException(e);
+              }
+            }
           }
 
           @Override public boolean moveNext() {
@@ -4859,7 +4901,9 @@ private boolean checkValue(TSource value) {
           @Override public void reset() {
             seedEnumerator.reset();
             seedProcessed = false;
-            processed.clear();
+            closeDistinctFilter();
+            distinctFilter =
+                distinctFilterFactory == null ? null : distinctFilterFactory.apply();
             if (iterativeEnumerator != null) {
               iterativeEnumerator.close();
               iterativeEnumerator = null;
@@ -4871,6 +4915,7 @@ private boolean checkValue(TSource value) {
             if (cleanUpFunction != null) {
               cleanUpFunction.apply();
             }
+            closeDistinctFilter();
             seedEnumerator.close();
             if (iterativeEnumerator != null) {
               iterativeEnumerator.close();
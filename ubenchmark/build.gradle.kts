@@ -23,7 +23,9 @@
     jmhImplementation(project(":babel"))
     jmhImplementation(project(":core"))
     jmhImplementation(project(":linq4j"))
+    jmhImplementation(project(":plus"))
     jmhImplementation("com.google.guava:guava")
+    jmhImplementation("net.hydromatic:tpcds")
     jmhImplementation("org.codehaus.janino:commons-compiler")
     jmhImplementation("org.openjdk.jmh:jmh-core")
     jmhImplementation("org.openjdk.jmh:jmh-generator-annprocess")
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.hep.HepMatchOrder;
+import org.apache.calcite.plan.hep.HepPlanner;
+import org.apache.calcite.plan.hep.HepProgram;
+import org.apache.calcite.plan.hep.HepProgramBuilder;
+import org.apache.calcite.rel.RelNode;
+import org.apache.calcite.rel.core.JoinRelType;
+import org.apache.calcite.rel.rules.CoreRules;
+import org.apache.calcite.tools.Frameworks;
+import org.apache.calcite.tools.RelBuilder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the time taken to order the joins of star and chain queries
+ * with the greedy ({@link CoreRules#MULTI_JOIN_OPTIMIZE}), bushy
+ * ({@link CoreRules#MULTI_JOIN_OPTIMIZE_BUSHY}) and dynamic programming
+ * ({@link CoreRules#MULTI_JOIN_OPTIMIZE_DPHYP}) rules, as the number of
+ * inputs grows.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2048m")
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class JoinOrderBenchmark {
+  @Param({"4", "6", "8", "10", "12"})
+  int inputCount;
+
+  @Param({"star", "chain"})
+  String shape;
+
+  @Param({"greedy", "bushy", "dphyp"})
+  String algorithm;
+
+  RelNode rel;
+  HepProgram program;
+
+  @Setup
+  public void setup() {
+    final RelBuilder b =
+        RelBuilder.create(
+            Frameworks.newConfigBuilder()
+                .defaultSchema(Frameworks.createRootSchema(true))
+                .build());
+    if (shape.equals("star")) {
+      // Fact table with one foreign key for each dimension table.
+      final String[] fields = new String[inputCount - 1];
+      for (int i = 0; i < fields.length; i++) {
+        fields[i] = "f" + i;
+      }
+      values(b, 10_000, fields);
+      for (int i = 1; i < inputCount; i++) {
+        b.push(values(b, 10 * i, "d" + i).build())
+            .join(JoinRelType.INNER,
+                b.equals(b.field(2, 0, "f" + (i - 1)),
+                    b.field(2, 1, "d" + i)));
+      }
+    } else {
+      // Each table joins to the next.
+      values(b, 100, "a0", "b0");
+      for (int i = 1; i < inputCount; i++) {
+        b.push(values(b, 100 * (i % 3 + 1), "a" + i, "b" + i).build())
+            .join(JoinRelType.INNER,
+                b.equals(b.field(2, 0, "b" + (i - 1)),
+                    b.field(2, 1, "a" + i)));
+      }
+    }
+    rel = b.build();
+
+    final RelOptRule rule;
+    switch (algorithm) {
+    case "greedy":
+      rule = CoreRules.MULTI_JOIN_OPTIMIZE;
+      break;
+    case "bushy":
+      rule = CoreRules.MULTI_JOIN_OPTIMIZE_BUSHY;
+      break;
+    default:
+      rule = CoreRules.MULTI_JOIN_OPTIMIZE_DPHYP;
+      break;
+    }
+    program = new HepProgramBuilder()
+        .addMatchOrder(HepMatchOrder.BOTTOM_UP)
+        .addRuleInstance(CoreRules.JOIN_TO_MULTI_JOIN)
+        .addRuleInstance(rule)
+        .build();
+  }
+
+  private static RelBuilder values(RelBuilder b, int rowCount,
+      String... fieldNames) {
+    final Object[] values = new Object[rowCount * fieldNames.length];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = i / fieldNames.length;
+    }
+    return b.values(fieldNames, values);
+  }
+
+  @Benchmark
+  public RelNode orderJoins() {
+    final HepPlanner planner = new HepPlanner(program);
+    planner.setRoot(rel);
+    return planner.findBestExp();
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(JoinOrderBenchmark.class.getSimpleName())
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -16,7 +16,9 @@
  */
 package org.apache.calcite.benchmarks;
 
+import org.apache.calcite.config.CalciteConnectionProperty;
 import org.apache.calcite.jdbc.Driver;
+import org.apache.calcite.plan.RelOptCluster;
 import org.apache.calcite.rel.RelNode;
 import org.apache.calcite.rel.metadata.DefaultRelMetadataProvider;
 import org.apache.calcite.rel.metadata.JaninoRelMetadataProvider;
@@ -25,12 +27,15 @@
 import org.apache.calcite.runtime.Hook;
 import org.apache.calcite.test.CalciteAssert;
 
+import org.openjdk.jmh.annotations.AuxCounters;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Measurement;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -39,6 +44,8 @@
 
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
@@ -56,6 +63,47 @@
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 @BenchmarkMode(Mode.AverageTime)
 public class MetadataBenchmark {
+  private static final String SQL = ""
+      + "select \"store\".\"store_country\" as \"c0\",\n"
+      + " \"time_by_day\".\"the_year\" as \"c1\",\n"
+      + " \"product_class\".\"product_family\" as \"c2\",\n"
+      + " count(\"sales_fact_1997\".\"product_id\") as \"m0\"\n"
+      + "from \"store\" as \"store\",\n"
+      + " \"sales_fact_1997\" as \"sales_fact_1997\",\n"
+      + " \"time_by_day\" as \"time_by_day\",\n"
+      + " \"product_class\" as \"product_class\",\n"
+      + " \"product\" as \"product\"\n"
+      + "where \"sales_fact_1997\".\"store_id\" = \"store\".\"store_id\"\n"
+      + "and \"store\".\"store_country\" = 'USA'\n"
+      + "and \"sales_fact_1997\".\"time_id\" = \"time_by_day\".\"time_id\"\n"
+      + "and \"time_by_day\".\"the_year\" = 1997\n"
+      + "and \"sales_fact_1997\".\"product_id\" = \"product\".\"product_id\"\n"
+      + "and \"product\".\"product_class_id\" = \"product_class\".\"product_class_id\"\n"
+      + "group by \"store\".\"store_country\",\n"
+      + " \"time_by_day\".\"the_year\",\n"
+      + " \"product_class\".\"product_family\"";
+
+  private static final String RESULT = ""
+      + "c0=USA; c1=1997; c2=Non-Consumable; m0=16414\n"
+      + "c0=USA; c1=1997; c2=Drink; m0=7978\n"
+      + "c0=USA; c1=1997; c2=Food; m0=62445\n";
+
+  /** Number of threads on which the planner fires rules, and a count of the
+   * metadata values that handlers computed, rather than found in a cache,
+   * while planning. */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class PlanningState {
+    @Param({"1", "4"})
+    int parallelism;
+
+    public long computed;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      computed = 0;
+    }
+  }
 
   @Setup
   public void setup() throws SQLException {
@@ -65,24 +113,7 @@ public void setup() throws SQLException {
   private void test(final Supplier<RelMetadataQuery> supplier) {
     CalciteAssert.that()
         .with(CalciteAssert.Config.FOODMART_CLONE)
-        .query("select \"store\".\"store_country\" as \"c0\",\n"
-            + " \"time_by_day\".\"the_year\" as \"c1\",\n"
-            + " \"product_class\".\"product_family\" as \"c2\",\n"
-            + " count(\"sales_fact_1997\".\"product_id\") as \"m0\"\n"
-            + "from \"store\" as \"store\",\n"
-            + " \"sales_fact_1997\" as \"sales_fact_1997\",\n"
-            + " \"time_by_day\" as \"time_by_day\",\n"
-            + " \"product_class\" as \"product_class\",\n"
-            + " \"product\" as \"product\"\n"
-            + "where \"sales_fact_1997\".\"store_id\" = \"store\".\"store_id\"\n"
-            + "and \"store\".\"store_country\" = 'USA'\n"
-            + "and \"sales_fact_1997\".\"time_id\" = \"time_by_day\".\"time_id\"\n"
-            + "and \"time_by_day\".\"the_year\" = 1997\n"
-            + "and \"sales_fact_1997\".\"product_id\" = \"product\".\"product_id\"\n"
-            + "and \"product\".\"product_class_id\" = \"product_class\".\"product_class_id\"\n"
-            + "group by \"store\".\"store_country\",\n"
-            + " \"time_by_day\".\"the_year\",\n"
-            + " \"product_class\".\"product_family\"")
+        .query(SQL)
         .withHook(Hook.CONVERTED, (Consumer<RelNode>) rel -> {
           rel.getCluster().setMetadataQuerySupplier(supplier);
           rel.getCluster().invalidateMetadataQuery();
@@ -110,9 +141,7 @@ private void test(final Supplier<RelMetadataQuery> supplier) {
             + "      EnumerableCalc(expr#0..4=[{inputs}], product_class_id=[$t0], "
             + "product_family=[$t4])\n"
             + "        EnumerableTableScan(table=[[foodmart2, product_class]])")
-        .returns("c0=USA; c1=1997; c2=Non-Consumable; m0=16414\n"
-            + "c0=USA; c1=1997; c2=Drink; m0=7978\n"
-            + "c0=USA; c1=1997; c2=Food; m0=62445\n");
+        .returns(RESULT);
   }
 
   @Benchmark
@@ -127,6 +156,25 @@ public void janinoWithCompile() {
         new RelMetadataQuery(JaninoRelMetadataProvider.of(DefaultRelMetadataProvider.INSTANCE)));
   }
 
+  /** Plans the query, firing rules on {@code parallelism} threads, and counts
+   * the metadata values that were computed. Compare the {@code computed}
+   * counter between versions to see how much recomputation a change in the
+   * invalidation of cached metadata saves. */
+  @Benchmark
+  public void planning(PlanningState state) {
+    final List<RelOptCluster> clusters = new ArrayList<>();
+    CalciteAssert.that()
+        .with(CalciteAssert.Config.FOODMART_CLONE)
+        .with(CalciteConnectionProperty.PLANNER_PARALLELISM, state.parallelism)
+        .query(SQL)
+        .withHook(Hook.CONVERTED,
+            (Consumer<RelNode>) rel -> clusters.add(rel.getCluster()))
+        .returns(RESULT);
+    for (RelOptCluster cluster : clusters) {
+      state.computed += cluster.getMetadataComputeCount();
+    }
+  }
+
   @Benchmark
   public void proxying() {
     test(
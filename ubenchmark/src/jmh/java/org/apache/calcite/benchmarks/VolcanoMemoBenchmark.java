@@ -0,0 +1,214 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to you under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.calcite.benchmarks;
+
+import org.apache.calcite.plan.RelOptPlanner;
+import org.apache.calcite.plan.volcano.VolcanoPlanner;
+import org.apache.calcite.runtime.Hook;
+
+import net.hydromatic.tpcds.query.Query;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Benchmarks the time and memory taken to plan TPC-DS queries with
+ * {@link VolcanoPlanner}, and reports the number of relational expressions
+ * in the planner's memo.
+ *
+ * <p>{@link #plan} measures planning time. {@link GCProfiler} (which
+ * {@link #main} adds) reports the bytes allocated per operation, which
+ * include garbage, so it is not a measure of the size of the memo.
+ *
+ * <p>{@link #retainedMemo} measures the size of the memo: the heap that is
+ * still in use, after a full garbage collection, while the planner is
+ * reachable, less the heap in use before planning. Its
+ * {@code retainedBytesPerRel} counter divides that by
+ * {@link VolcanoPlanner#getRelCount()}.
+ */
+@Fork(value = 1, jvmArgsPrepend = "-Xmx2048m")
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Threads(1)
+public class VolcanoMemoBenchmark {
+  @Param({"1", "17", "27", "58"})
+  int query;
+
+  Connection connection;
+  String sql;
+
+  /** Counts the relational expressions registered in the planner. */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class MemoCounters {
+    public long rels;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      rels = 0;
+    }
+  }
+
+  /** Measures the heap retained by the planner's memo. */
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  @State(Scope.Thread)
+  public static class RetainedCounters {
+    public long rels;
+    public long retainedBytes;
+    public long retainedBytesPerRel;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      rels = 0;
+      retainedBytes = 0;
+      retainedBytesPerRel = 0;
+    }
+  }
+
+  @Setup
+  public void setup() throws SQLException {
+    final String model = "inline:"
+        + "{\n"
+        + "  version: '1.0',\n"
+        + "  defaultSchema: 'TPCDS',\n"
+        + "  schemas: [\n"
+        + "    {\n"
+        + "      type: 'custom',\n"
+        + "      name: 'TPCDS',\n"
+        + "      factory: 'org.apache.calcite.adapter.tpcds.TpcdsSchemaFactory',\n"
+        + "      operand: {\n"
+        + "        columnPrefix: true,\n"
+        + "        scale: 1.0\n"
+        + "      }\n"
+        + "    }\n"
+        + "  ]\n"
+        + "}";
+    connection = DriverManager.getConnection("jdbc:calcite:model=" + model);
+    sql = "explain plan for " + Query.of(query).sql(new Random(0));
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    connection.close();
+  }
+
+  @Benchmark
+  public String plan(MemoCounters counters) throws SQLException {
+    final VolcanoPlanner[] planners = {null};
+    final String plan = plan(planners);
+    if (planners[0] != null) {
+      counters.rels += planners[0].getRelCount();
+    }
+    return plan;
+  }
+
+  /** Plans a query, then measures how much heap the planner retains.
+   * Each iteration plans the query once, because the measurement forces
+   * garbage collections, which would distort the time of {@link #plan}. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @Warmup(iterations = 2, batchSize = 1)
+  @Measurement(iterations = 5, batchSize = 1)
+  public String retainedMemo(RetainedCounters counters) throws SQLException {
+    final long before = heapUsedAfterGc();
+    final VolcanoPlanner[] planners = {null};
+    final String plan = plan(planners);
+    final long after = heapUsedAfterGc();
+    // Read the planner after the measurement, so that it is reachable
+    // while the heap is measured.
+    final VolcanoPlanner planner = planners[0];
+    if (planner != null && planner.getRelCount() > 0) {
+      final long retained = Math.max(after - before, 0);
+      counters.rels += planner.getRelCount();
+      counters.retainedBytes += retained;
+      counters.retainedBytesPerRel += retained / planner.getRelCount();
+    }
+    return plan;
+  }
+
+  /** Runs the query and stores the planner that planned it in
+   * {@code planners[0]}. */
+  private String plan(VolcanoPlanner[] planners) throws SQLException {
+    final Consumer<RelOptPlanner> handler = planner -> {
+      if (planner instanceof VolcanoPlanner) {
+        planners[0] = (VolcanoPlanner) planner;
+      }
+    };
+    try (Hook.Closeable ignore = Hook.PLANNER.addThread(handler);
+         Statement statement = connection.createStatement();
+         ResultSet resultSet = statement.executeQuery(sql)) {
+      resultSet.next();
+      return resultSet.getString(1);
+    }
+  }
+
+  /** Returns the number of bytes of heap in use after collecting garbage
+   * until the number stops falling. */
+  private static long heapUsedAfterGc() {
+    final Runtime runtime = Runtime.getRuntime();
+    long used = Long.MAX_VALUE;
+    for (int i = 0; i < 10; i++) {
+      System.gc();
+      final long next = runtime.totalMemory() - runtime.freeMemory();
+      if (next >= used) {
+        return next;
+      }
+      used = next;
+    }
+    return used;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt = new OptionsBuilder()
+        .include(VolcanoMemoBenchmark.class.getSimpleName())
+        .addProfiler(GCProfiler.class)
+        .detectJvmArgs()
+        .build();
+
+    new Runner(opt).run();
+  }
+}